@@ -0,0 +1,165 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.IndexSettings.AutoIdLayout;
+import org.elasticsearch.index.mapper.IdFieldMapper;
+import org.elasticsearch.index.mapper.Uid;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the layouts of auto-generated ids: measures the cost of looking up ids that were already indexed in every segment, newest
+ * first, like the engine does when a request with an auto-generated id is retried, and reports the size of the terms dictionary of the
+ * {@code _id} field per document as a secondary result.
+ */
+@Fork(3)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class AutoIdLookupBenchmark {
+
+    @Param({"default", "time_ordered"})
+    private String layout;
+
+    @Param({"1000000"})
+    private int numDocs;
+
+    @Param({"50000"})
+    private int docsPerSegment;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private BytesRef[] retriedIds;
+    private long termsBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        AutoIdLayout autoIdLayout = AutoIdLayout.valueOf(layout.toUpperCase(Locale.ROOT));
+        directory = new ByteBuffersDirectory();
+        IndexWriterConfig config = new IndexWriterConfig()
+            .setMergePolicy(NoMergePolicy.INSTANCE)
+            .setUseCompoundFile(false);
+        Random random = new Random(42);
+        retriedIds = new BytesRef[1024];
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            Document document = new Document();
+            StringField idField = new StringField(IdFieldMapper.NAME, new BytesRef(), Field.Store.NO);
+            document.add(idField);
+            for (int i = 0; i < numDocs; i++) {
+                BytesRef id = Uid.encodeId(autoIdLayout.generateId());
+                idField.setBytesValue(id);
+                writer.addDocument(document);
+                // reservoir sampling of the ids that are retried
+                int slot = i < retriedIds.length ? i : random.nextInt(i + 1);
+                if (slot < retriedIds.length) {
+                    retriedIds[slot] = id;
+                }
+                if ((i + 1) % docsPerSegment == 0) {
+                    writer.flush();
+                }
+            }
+            writer.commit();
+        }
+        reader = DirectoryReader.open(directory);
+        termsBytes = 0;
+        for (String file : directory.listAll()) {
+            if (file.endsWith(".tim") || file.endsWith(".tip")) {
+                termsBytes += directory.fileLength(file);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    /**
+     * Reports the bytes that the terms dictionary and terms index of the {@code _id} field take per document.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TermsDictionarySize {
+
+        public double termsBytesPerDoc;
+
+        @Setup(Level.Iteration)
+        public void setup(AutoIdLookupBenchmark benchmark) {
+            termsBytesPerDoc = (double) benchmark.termsBytes / benchmark.numDocs;
+        }
+    }
+
+    @Benchmark
+    public int lookupRetriedIds(TermsDictionarySize termsDictionarySize) throws IOException {
+        List<LeafReaderContext> leaves = reader.leaves();
+        TermsEnum[] termsEnums = new TermsEnum[leaves.size()];
+        for (int i = 0; i < termsEnums.length; i++) {
+            Terms terms = leaves.get(i).reader().terms(IdFieldMapper.NAME);
+            termsEnums[i] = terms.iterator();
+        }
+        int found = 0;
+        for (BytesRef id : retriedIds) {
+            // the newest segments are the most likely to contain the id
+            for (int i = termsEnums.length - 1; i >= 0; i--) {
+                if (termsEnums[i].seekExact(id)) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.util.function.Predicate;
+
+/**
+ * An {@link HttpObjectAggregator} that lets the requests that are consumed incrementally pass through without aggregating their
+ * content: the request head and then the chunks of the content are passed on as they are received. The maximum content length of
+ * these requests is enforced by their {@link org.elasticsearch.http.HttpContentStream}.
+ */
+class Netty4HttpAggregator extends HttpObjectAggregator {
+
+    private final Predicate<HttpRequest> streamContent;
+    private boolean streaming;
+
+    Netty4HttpAggregator(int maxContentLength, Predicate<HttpRequest> streamContent) {
+        super(maxContentLength);
+        this.streamContent = streamContent;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest && msg instanceof FullHttpRequest == false) {
+            final HttpRequest request = (HttpRequest) msg;
+            // requests without content are aggregated, and so are the requests whose declared length is too large so that the
+            // aggregator rejects them
+            final long contentLength = HttpUtil.getContentLength(request, -1L);
+            streaming = request.decoderResult().isSuccess() && contentLength != 0 && contentLength <= maxContentLength()
+                && streamContent.test(request);
+            if (streaming && HttpUtil.is100ContinueExpected(request)) {
+                ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER));
+                HttpUtil.set100ContinueExpected(request, false);
+            }
+        }
+        if (streaming) {
+            if (msg instanceof LastHttpContent) {
+                streaming = false;
+            }
+            ctx.fireChannelRead(msg);
+        } else {
+            super.channelRead(ctx, msg);
+        }
+    }
+}
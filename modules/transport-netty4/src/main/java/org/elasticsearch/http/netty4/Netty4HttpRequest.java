@@ -23,6 +23,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -30,7 +31,9 @@ import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.http.HttpContentStream;
 import org.elasticsearch.http.HttpRequest;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
@@ -52,25 +55,43 @@ public class Netty4HttpRequest implements HttpRequest {
     private final FullHttpRequest request;
     private final boolean pooled;
     private final BytesReference content;
+    private final HttpContentStream contentStream;
 
     Netty4HttpRequest(FullHttpRequest request, int sequence) {
         this(request, new HttpHeadersMap(request.headers()), sequence, new AtomicBoolean(false), true,
-            Netty4Utils.toBytesReference(request.content()));
+            Netty4Utils.toBytesReference(request.content()), null);
+    }
+
+    /**
+     * Creates a request whose content is received after it is dispatched, through the given {@link HttpContentStream}.
+     */
+    Netty4HttpRequest(io.netty.handler.codec.http.HttpRequest request, int sequence, HttpContentStream contentStream) {
+        this(new DefaultFullHttpRequest(request.protocolVersion(), request.method(), request.uri(), Unpooled.EMPTY_BUFFER,
+                request.headers(), EmptyHttpHeaders.INSTANCE), sequence, contentStream);
+    }
+
+    private Netty4HttpRequest(FullHttpRequest request, int sequence, HttpContentStream contentStream) {
+        this(request, new HttpHeadersMap(request.headers()), sequence, new AtomicBoolean(false), false, BytesArray.EMPTY,
+            contentStream);
     }
 
     private Netty4HttpRequest(FullHttpRequest request, HttpHeadersMap headers, int sequence, AtomicBoolean released, boolean pooled,
-                              BytesReference content) {
+                              BytesReference content, HttpContentStream contentStream) {
         this.request = request;
         this.sequence = sequence;
         this.headers = headers;
         this.content = content;
         this.pooled = pooled;
         this.released = released;
+        this.contentStream = contentStream;
     }
 
     @Override
     public RestRequest.Method method() {
-        HttpMethod httpMethod = request.method();
+        return translateMethod(request.method());
+    }
+
+    static RestRequest.Method translateMethod(HttpMethod httpMethod) {
         if (httpMethod == HttpMethod.GET)
             return RestRequest.Method.GET;
 
@@ -117,8 +138,17 @@ public class Netty4HttpRequest implements HttpRequest {
         return content;
     }
 
+    @Override
+    public HttpContentStream contentStream() {
+        return contentStream;
+    }
+
     @Override
     public void release() {
+        if (contentStream != null) {
+            // the response was sent, so the rest of the content isn't needed anymore
+            contentStream.discard();
+        }
         if (pooled && released.compareAndSet(false, true)) {
             request.release();
         }
@@ -135,7 +165,7 @@ public class Netty4HttpRequest implements HttpRequest {
             return new Netty4HttpRequest(
                 new DefaultFullHttpRequest(request.protocolVersion(), request.method(), request.uri(), copiedContent, request.headers(),
                     request.trailingHeaders()),
-                headers, sequence, new AtomicBoolean(false), false, Netty4Utils.toBytesReference(copiedContent));
+                headers, sequence, new AtomicBoolean(false), false, Netty4Utils.toBytesReference(copiedContent), contentStream);
         } finally {
             release();
         }
@@ -180,7 +210,7 @@ public class Netty4HttpRequest implements HttpRequest {
         FullHttpRequest requestWithoutHeader = new DefaultFullHttpRequest(request.protocolVersion(), request.method(), request.uri(),
             request.content(), headersWithoutContentTypeHeader, trailingHeaders);
         return new Netty4HttpRequest(requestWithoutHeader, new HttpHeadersMap(requestWithoutHeader.headers()), sequence, released,
-            pooled, content);
+            pooled, content, contentStream);
     }
 
     @Override
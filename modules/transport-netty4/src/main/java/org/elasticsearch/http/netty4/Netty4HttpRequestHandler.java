@@ -19,15 +19,24 @@
 
 package org.elasticsearch.http.netty4;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.http.HttpContentStream;
 import org.elasticsearch.http.HttpPipelinedRequest;
 
+import java.nio.channels.ClosedChannelException;
+
 @ChannelHandler.Sharable
-class Netty4HttpRequestHandler extends SimpleChannelInboundHandler<HttpPipelinedRequest<FullHttpRequest>> {
+class Netty4HttpRequestHandler extends SimpleChannelInboundHandler<Object> {
 
     private final Netty4HttpServerTransport serverTransport;
 
@@ -36,11 +45,24 @@ class Netty4HttpRequestHandler extends SimpleChannelInboundHandler<HttpPipelined
     }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, HttpPipelinedRequest<FullHttpRequest> msg) {
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof HttpPipelinedRequest) {
+            final HttpPipelinedRequest<?> pipelinedRequest = (HttpPipelinedRequest<?>) msg;
+            if (pipelinedRequest.getRequest() instanceof FullHttpRequest) {
+                handleRequest(ctx, (FullHttpRequest) pipelinedRequest.getRequest(), pipelinedRequest.getSequence());
+            } else {
+                handleStreamedRequest(ctx, (HttpRequest) pipelinedRequest.getRequest(), pipelinedRequest.getSequence());
+            }
+        } else {
+            assert msg instanceof HttpContent : "Invalid message type: " + msg.getClass();
+            handleContent(ctx, (HttpContent) msg);
+        }
+    }
+
+    private void handleRequest(ChannelHandlerContext ctx, FullHttpRequest request, int sequence) {
         Netty4HttpChannel channel = ctx.channel().attr(Netty4HttpServerTransport.HTTP_CHANNEL_KEY).get();
-        FullHttpRequest request = msg.getRequest();
         boolean success = false;
-        Netty4HttpRequest httpRequest = new Netty4HttpRequest(request, msg.getSequence());
+        Netty4HttpRequest httpRequest = new Netty4HttpRequest(request, sequence);
         try {
             if (request.decoderResult().isFailure()) {
                 Throwable cause = request.decoderResult().cause();
@@ -61,6 +83,66 @@ class Netty4HttpRequestHandler extends SimpleChannelInboundHandler<HttpPipelined
         }
     }
 
+    /**
+     * Dispatches a request whose content hasn't been received yet. The chunks of the content that follow are handed over to the
+     * {@link HttpContentStream} of the request as they are received.
+     */
+    private void handleStreamedRequest(ChannelHandlerContext ctx, HttpRequest request, int sequence) {
+        Netty4HttpChannel channel = ctx.channel().attr(Netty4HttpServerTransport.HTTP_CHANNEL_KEY).get();
+        final Channel nettyChannel = ctx.channel();
+        final HttpContentStream contentStream = new HttpContentStream(serverTransport.maxContentLength(),
+            new HttpContentStream.ReadControl() {
+                @Override
+                public void pauseReading() {
+                    nettyChannel.config().setAutoRead(false);
+                }
+
+                @Override
+                public void resumeReading() {
+                    nettyChannel.config().setAutoRead(true);
+                }
+            });
+        ctx.channel().attr(Netty4HttpServerTransport.HTTP_CONTENT_STREAM_KEY).set(contentStream);
+        boolean success = false;
+        Netty4HttpRequest httpRequest = new Netty4HttpRequest(request, sequence, contentStream);
+        try {
+            serverTransport.incomingRequest(httpRequest, channel);
+            success = true;
+        } finally {
+            if (success == false) {
+                httpRequest.release();
+            }
+        }
+    }
+
+    private void handleContent(ChannelHandlerContext ctx, HttpContent content) {
+        final HttpContentStream contentStream = ctx.channel().attr(Netty4HttpServerTransport.HTTP_CONTENT_STREAM_KEY).get();
+        assert contentStream != null : "received content without a streamed request";
+        final boolean isLast = content instanceof LastHttpContent;
+        if (isLast || content.decoderResult().isFailure()) {
+            ctx.channel().attr(Netty4HttpServerTransport.HTTP_CONTENT_STREAM_KEY).set(null);
+        }
+        if (content.decoderResult().isFailure()) {
+            final Throwable cause = content.decoderResult().cause();
+            contentStream.fail(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+            return;
+        }
+        // the buffer is released once this method returns, so the chunk is copied to outlive it
+        final ByteBuf buffer = content.content();
+        final byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        contentStream.receiveChunk(new BytesArray(bytes), isLast);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        final HttpContentStream contentStream = ctx.channel().attr(Netty4HttpServerTransport.HTTP_CONTENT_STREAM_KEY).getAndSet(null);
+        if (contentStream != null) {
+            contentStream.fail(new ClosedChannelException());
+        }
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         ExceptionsHelper.maybeDieOnAnotherThread(cause);
@@ -35,6 +35,7 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpContentDecompressor;
 import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 import io.netty.handler.timeout.ReadTimeoutException;
@@ -56,10 +57,12 @@ import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.core.internal.net.NetUtils;
 import org.elasticsearch.http.AbstractHttpServerTransport;
 import org.elasticsearch.http.HttpChannel;
+import org.elasticsearch.http.HttpContentStream;
 import org.elasticsearch.http.HttpHandlingSettings;
 import org.elasticsearch.http.HttpReadTimeoutException;
 import org.elasticsearch.http.HttpServerChannel;
 import org.elasticsearch.http.netty4.cors.Netty4CorsHandler;
+import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.NettyAllocator;
 import org.elasticsearch.transport.netty4.Netty4Utils;
@@ -280,6 +283,24 @@ public class Netty4HttpServerTransport extends AbstractHttpServerTransport {
 
     static final AttributeKey<Netty4HttpChannel> HTTP_CHANNEL_KEY = AttributeKey.newInstance("es-http-channel");
     static final AttributeKey<Netty4HttpServerChannel> HTTP_SERVER_CHANNEL_KEY = AttributeKey.newInstance("es-http-server-channel");
+    static final AttributeKey<HttpContentStream> HTTP_CONTENT_STREAM_KEY = AttributeKey.newInstance("es-http-content-stream");
+
+    int maxContentLength() {
+        return handlingSettings.getMaxContentLength();
+    }
+
+    /**
+     * Whether the content of the given request is handed over to its handler as it is received rather than aggregated first.
+     */
+    boolean supportsIncrementalContent(HttpRequest request) {
+        final RestRequest.Method method;
+        try {
+            method = Netty4HttpRequest.translateMethod(request.method());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return dispatcher.supportsIncrementalContent(method, request.uri());
+    }
 
     protected static class HttpChannelHandler extends ChannelInitializer<Channel> {
 
@@ -306,7 +327,9 @@ public class Netty4HttpServerTransport extends AbstractHttpServerTransport {
             ch.pipeline().addLast("decoder", decoder);
             ch.pipeline().addLast("decoder_compress", new HttpContentDecompressor());
             ch.pipeline().addLast("encoder", new HttpResponseEncoder());
-            final HttpObjectAggregator aggregator = new HttpObjectAggregator(handlingSettings.getMaxContentLength());
+            // the CORS handler needs the aggregated request, so requests are only streamed if CORS is disabled
+            final HttpObjectAggregator aggregator = new Netty4HttpAggregator(handlingSettings.getMaxContentLength(),
+                handlingSettings.isCorsEnabled() ? request -> false : transport::supportsIncrementalContent);
             aggregator.setMaxCumulationBufferComponents(transport.maxCompositeBufferComponents);
             ch.pipeline().addLast("aggregator", aggregator);
             if (handlingSettings.isCompression()) {
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.action.admin.cluster.node.stats;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.admin.indices.stats.CommonStatsFlags;
 import org.elasticsearch.action.support.nodes.BaseNodesRequest;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -44,6 +45,8 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
     private boolean discovery;
     private boolean ingest;
     private boolean adaptiveSelection;
+    private boolean indexingPressure;
+    private boolean translogSync;
 
     public NodesStatsRequest() {
         super((String[]) null);
@@ -64,6 +67,10 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         discovery = in.readBoolean();
         ingest = in.readBoolean();
         adaptiveSelection = in.readBoolean();
+        if (in.getVersion().onOrAfter(Version.V_8_0_0)) {
+            indexingPressure = in.readBoolean();
+            translogSync = in.readBoolean();
+        }
     }
 
     /**
@@ -91,6 +98,8 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         this.discovery = true;
         this.ingest = true;
         this.adaptiveSelection = true;
+        this.indexingPressure = true;
+        this.translogSync = true;
         return this;
     }
 
@@ -111,6 +120,8 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         this.discovery = false;
         this.ingest = false;
         this.adaptiveSelection = false;
+        this.indexingPressure = false;
+        this.translogSync = false;
         return this;
     }
 
@@ -298,6 +309,30 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         return this;
     }
 
+    public boolean indexingPressure() {
+        return indexingPressure;
+    }
+
+    /**
+     * Should indexing pressure statistics be returned.
+     */
+    public NodesStatsRequest indexingPressure(boolean indexingPressure) {
+        this.indexingPressure = indexingPressure;
+        return this;
+    }
+
+    public boolean translogSync() {
+        return translogSync;
+    }
+
+    /**
+     * Should translog group commit statistics be returned.
+     */
+    public NodesStatsRequest translogSync(boolean translogSync) {
+        this.translogSync = translogSync;
+        return this;
+    }
+
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
@@ -314,5 +349,9 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         out.writeBoolean(discovery);
         out.writeBoolean(ingest);
         out.writeBoolean(adaptiveSelection);
+        if (out.getVersion().onOrAfter(Version.V_8_0_0)) {
+            out.writeBoolean(indexingPressure);
+            out.writeBoolean(translogSync);
+        }
     }
 }
@@ -149,4 +149,20 @@ public class NodesStatsRequestBuilder
         return this;
     }
 
+    /**
+     * Should indexing pressure statistics be returned.
+     */
+    public NodesStatsRequestBuilder setIndexingPressure(boolean indexingPressure) {
+        request.indexingPressure(indexingPressure);
+        return this;
+    }
+
+    /**
+     * Should translog group commit statistics be returned.
+     */
+    public NodesStatsRequestBuilder setTranslogSync(boolean translogSync) {
+        request.translogSync(translogSync);
+        return this;
+    }
+
 }
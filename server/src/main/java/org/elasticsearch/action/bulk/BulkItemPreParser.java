@@ -0,0 +1,165 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.shard.IndexShard;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Parses the documents of the index requests of a {@link BulkShardRequest} on a bounded number of threads, ahead of the thread that
+ * executes the items on the primary one after the other. The executing thread {@link #take takes} the parsed document of an item
+ * when it gets to it, which is only used if the mapping did not change in the meantime, so mapping updates and the order in which
+ * the items are applied are unaffected. Items that no other thread claimed yet are left to the executing thread, which parses them
+ * as usual, so the executing thread never waits for more than the parsing of a single document.
+ *
+ * @see org.elasticsearch.index.IndexSettings#MAX_BULK_PARSE_THREADS_SETTING
+ */
+final class BulkItemPreParser {
+
+    private static final Logger logger = LogManager.getLogger(BulkItemPreParser.class);
+
+    private static final int UNCLAIMED = 0;
+    private static final int PARSING = 1;
+    private static final int DONE = 2;
+
+    private final BulkItemRequest[] items;
+    private final IndexShard primary;
+    private final AtomicInteger nextItem = new AtomicInteger();
+    private final AtomicIntegerArray states;
+    private final IndexShard.PreParsedDocument[] documents;
+
+    private BulkItemPreParser(BulkItemRequest[] items, IndexShard primary) {
+        // the items are copied since the executing thread replaces translated update requests
+        this.items = items.clone();
+        this.primary = primary;
+        this.states = new AtomicIntegerArray(items.length);
+        this.documents = new IndexShard.PreParsedDocument[items.length];
+    }
+
+    /**
+     * Starts parsing the documents of the given request on the given executor if the index of the primary allows for more than
+     * one parse thread, returns {@code null} otherwise.
+     */
+    @Nullable
+    static BulkItemPreParser start(BulkShardRequest request, IndexShard primary, Executor executor) {
+        final int numItems = request.items().length;
+        if (numItems <= 1) {
+            return null;
+        }
+        final int maxParseThreads = primary.indexSettings().getMaxBulkParseThreads();
+        if (maxParseThreads <= 1) {
+            return null;
+        }
+        final BulkItemPreParser preParser = new BulkItemPreParser(request.items(), primary);
+        // the executing thread counts as one of the parse threads
+        final int helpers = Math.min(maxParseThreads - 1, numItems - 1);
+        for (int i = 0; i < helpers; i++) {
+            executor.execute(new AbstractRunnable() {
+                @Override
+                protected void doRun() {
+                    preParser.parseRemaining();
+                }
+
+                @Override
+                public void onRejection(Exception e) {
+                    // the executing thread parses the documents that were not parsed ahead
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    logger.debug("failed to parse bulk items ahead of their execution", e);
+                }
+            });
+        }
+        return preParser;
+    }
+
+    private void parseRemaining() {
+        int item;
+        while ((item = nextItem.getAndIncrement()) < items.length) {
+            if (states.compareAndSet(item, UNCLAIMED, PARSING)) {
+                parse(item);
+            }
+        }
+    }
+
+    private void parse(int item) {
+        try {
+            final BulkItemRequest itemRequest = items[item];
+            // items that already have a response were aborted
+            if (itemRequest.request() instanceof IndexRequest && itemRequest.getPrimaryResponse() == null) {
+                final IndexRequest request = (IndexRequest) itemRequest.request();
+                documents[item] = primary.preParse(new SourceToParse(request.index(), request.id(), request.source(),
+                    request.getContentType(), request.routing()));
+            }
+        } catch (Exception e) {
+            // the document is parsed again when the item is executed, which reports the failure
+            logger.trace("failed to parse bulk item ahead of its execution", e);
+        } finally {
+            states.set(item, DONE);
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the document of the item at the given position if it was parsed ahead, or {@code null} if the caller has to parse it.
+     * The document of an item is only returned once.
+     */
+    @Nullable
+    IndexShard.PreParsedDocument take(int item) {
+        if (states.compareAndSet(item, UNCLAIMED, DONE)) {
+            // no other thread got to this item yet
+            return null;
+        }
+        if (states.get(item) == PARSING) {
+            synchronized (this) {
+                while (states.get(item) == PARSING) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+            }
+        }
+        final IndexShard.PreParsedDocument document = documents[item];
+        documents[item] = null;
+        return document;
+    }
+
+    /**
+     * Stops parsing the items that were not claimed yet.
+     */
+    void close() {
+        nextItem.set(items.length);
+    }
+}
@@ -180,6 +180,11 @@ class BulkPrimaryExecutionContext {
         return locationToSync;
     }
 
+    /** returns the position of the current item in {@link BulkShardRequest#items()} */
+    int getCurrentItemIndex() {
+        return currentIndex;
+    }
+
     private BulkItemRequest getCurrentItem() {
         return request.items()[currentIndex];
     }
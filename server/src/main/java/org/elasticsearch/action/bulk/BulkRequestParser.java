@@ -25,6 +25,7 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
@@ -37,6 +38,8 @@ import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -71,13 +74,13 @@ public final class BulkRequestParser {
         this.errorOnType = errorOnType;
     }
 
-    private static int findNextMarker(byte marker, int from, BytesReference data) {
+    private static int findNextMarker(byte marker, int from, BytesReference data, boolean lastChunk) {
         final int res = data.indexOf(marker, from);
         if (res != -1) {
             assert res >= 0;
             return res;
         }
-        if (from != data.length()) {
+        if (lastChunk && from != data.length()) {
             throw new IllegalArgumentException("The bulk request must be terminated by a newline [\\n]");
         }
         return res;
@@ -111,175 +114,283 @@ public final class BulkRequestParser {
             BiConsumer<IndexRequest, String> indexRequestConsumer,
             Consumer<UpdateRequest> updateRequestConsumer,
             Consumer<DeleteRequest> deleteRequestConsumer) throws IOException {
-        XContent xContent = xContentType.xContent();
-        int line = 0;
-        int from = 0;
-        byte marker = xContent.streamSeparator();
-        while (true) {
-            int nextMarker = findNextMarker(marker, from, data);
-            if (nextMarker == -1) {
-                break;
+        incrementalParser(defaultIndex, defaultRouting, defaultFetchSourceContext, defaultPipeline, allowExplicitIndex, xContentType,
+            indexRequestConsumer, updateRequestConsumer, deleteRequestConsumer).parse(data, true);
+    }
+
+    /**
+     * Create an {@link IncrementalParser} that accepts the bulk body in chunks, assuming the provided default values. Items are passed
+     * to the consumers as soon as they have been fully received, in the same way as {@link #parse}.
+     */
+    public IncrementalParser incrementalParser(
+            @Nullable String defaultIndex,
+            @Nullable String defaultRouting, @Nullable FetchSourceContext defaultFetchSourceContext,
+            @Nullable String defaultPipeline, boolean allowExplicitIndex,
+            XContentType xContentType,
+            BiConsumer<IndexRequest, String> indexRequestConsumer,
+            Consumer<UpdateRequest> updateRequestConsumer,
+            Consumer<DeleteRequest> deleteRequestConsumer) {
+        return new IncrementalParser(defaultIndex, defaultRouting, defaultFetchSourceContext, defaultPipeline, allowExplicitIndex,
+            xContentType, indexRequestConsumer, updateRequestConsumer, deleteRequestConsumer);
+    }
+
+    /**
+     * Parses a bulk body that is handed over in consecutive chunks. Every item whose action/metadata line and, if required, source
+     * line are complete is parsed and passed on to the consumers right away. Trailing bytes that do not form a complete item yet are
+     * retained and parsed together with the next chunk, so the caller does not have to hold on to the chunks it has handed over.
+     */
+    public final class IncrementalParser {
+
+        private final String defaultIndex;
+        private final String defaultRouting;
+        private final FetchSourceContext defaultFetchSourceContext;
+        private final String defaultPipeline;
+        private final boolean allowExplicitIndex;
+        private final XContentType xContentType;
+        private final BiConsumer<IndexRequest, String> indexRequestConsumer;
+        private final Consumer<UpdateRequest> updateRequestConsumer;
+        private final Consumer<DeleteRequest> deleteRequestConsumer;
+
+        private final List<BytesReference> pendingChunks = new ArrayList<>();
+        private int line = 0;
+        private boolean lastChunkParsed = false;
+
+        private IncrementalParser(@Nullable String defaultIndex,
+                                  @Nullable String defaultRouting, @Nullable FetchSourceContext defaultFetchSourceContext,
+                                  @Nullable String defaultPipeline, boolean allowExplicitIndex,
+                                  XContentType xContentType,
+                                  BiConsumer<IndexRequest, String> indexRequestConsumer,
+                                  Consumer<UpdateRequest> updateRequestConsumer,
+                                  Consumer<DeleteRequest> deleteRequestConsumer) {
+            this.defaultIndex = defaultIndex;
+            this.defaultRouting = defaultRouting;
+            this.defaultFetchSourceContext = defaultFetchSourceContext;
+            this.defaultPipeline = defaultPipeline;
+            this.allowExplicitIndex = allowExplicitIndex;
+            this.xContentType = xContentType;
+            this.indexRequestConsumer = indexRequestConsumer;
+            this.updateRequestConsumer = updateRequestConsumer;
+            this.deleteRequestConsumer = deleteRequestConsumer;
+        }
+
+        /**
+         * Parse the next chunk of the bulk body. All items that are complete once this chunk has been appended to the retained
+         * bytes of the previous chunks are passed to the consumers.
+         *
+         * @param chunk     the next chunk of the bulk body
+         * @param lastChunk whether this is the last chunk, in which case the body must be terminated by a newline
+         */
+        public void parse(BytesReference chunk, boolean lastChunk) throws IOException {
+            if (lastChunkParsed) {
+                throw new IllegalStateException("the last chunk of the bulk request has already been parsed");
             }
-            line++;
+            lastChunkParsed = lastChunk;
+            pendingChunks.add(chunk);
+            if (lastChunk == false && chunk.indexOf(xContentType.xContent().streamSeparator(), 0) == -1) {
+                // no new line was completed by this chunk, so there is nothing to parse yet
+                return;
+            }
+            final BytesReference data = pendingChunks.size() == 1 ? pendingChunks.get(0)
+                : new CompositeBytesReference(pendingChunks.toArray(new BytesReference[0]));
+            pendingChunks.clear();
+            final int consumed = parseCompleteItems(data, lastChunk);
+            if (consumed < data.length()) {
+                pendingChunks.add(data.slice(consumed, data.length() - consumed));
+            }
+        }
 
-            // now parse the action
-            // EMPTY is safe here because we never call namedObject
-            try (InputStream stream = data.slice(from, nextMarker - from).streamInput();
-                    XContentParser parser = xContent
-                            .createParser(NamedXContentRegistry.EMPTY, LoggingDeprecationHandler.INSTANCE, stream)) {
-                // move pointers
-                from = nextMarker + 1;
+        /**
+         * Returns the number of bytes that have been handed over but do not form a complete item yet.
+         */
+        public int pendingBytes() {
+            int pendingBytes = 0;
+            for (BytesReference pendingChunk : pendingChunks) {
+                pendingBytes += pendingChunk.length();
+            }
+            return pendingBytes;
+        }
 
-                // Move to START_OBJECT
-                XContentParser.Token token = parser.nextToken();
-                if (token == null) {
-                    continue;
-                }
-                if (token != XContentParser.Token.START_OBJECT) {
-                    throw new IllegalArgumentException("Malformed action/metadata line [" + line + "], expected "
-                            + XContentParser.Token.START_OBJECT + " but found [" + token + "]");
-                }
-                // Move to FIELD_NAME, that's the action
-                token = parser.nextToken();
-                if (token != XContentParser.Token.FIELD_NAME) {
-                    throw new IllegalArgumentException("Malformed action/metadata line [" + line + "], expected "
-                            + XContentParser.Token.FIELD_NAME + " but found [" + token + "]");
+        /**
+         * Parses all complete items in {@code data} and returns the number of bytes consumed.
+         */
+        private int parseCompleteItems(BytesReference data, boolean lastChunk) throws IOException {
+            XContent xContent = xContentType.xContent();
+            int from = 0;
+            byte marker = xContent.streamSeparator();
+            while (true) {
+                int nextMarker = findNextMarker(marker, from, data, lastChunk);
+                if (nextMarker == -1) {
+                    break;
                 }
-                String action = parser.currentName();
+                final int itemStart = from;
+                line++;
+
+                // now parse the action
+                // EMPTY is safe here because we never call namedObject
+                try (InputStream stream = data.slice(from, nextMarker - from).streamInput();
+                        XContentParser parser = xContent
+                                .createParser(NamedXContentRegistry.EMPTY, LoggingDeprecationHandler.INSTANCE, stream)) {
+                    // move pointers
+                    from = nextMarker + 1;
 
-                String index = defaultIndex;
-                String type = null;
-                String id = null;
-                String routing = defaultRouting;
-                FetchSourceContext fetchSourceContext = defaultFetchSourceContext;
-                String opType = null;
-                long version = Versions.MATCH_ANY;
-                VersionType versionType = VersionType.INTERNAL;
-                long ifSeqNo = SequenceNumbers.UNASSIGNED_SEQ_NO;
-                long ifPrimaryTerm = UNASSIGNED_PRIMARY_TERM;
-                int retryOnConflict = 0;
-                String pipeline = defaultPipeline;
+                    // Move to START_OBJECT
+                    XContentParser.Token token = parser.nextToken();
+                    if (token == null) {
+                        continue;
+                    }
+                    if (token != XContentParser.Token.START_OBJECT) {
+                        throw new IllegalArgumentException("Malformed action/metadata line [" + line + "], expected "
+                                + XContentParser.Token.START_OBJECT + " but found [" + token + "]");
+                    }
+                    // Move to FIELD_NAME, that's the action
+                    token = parser.nextToken();
+                    if (token != XContentParser.Token.FIELD_NAME) {
+                        throw new IllegalArgumentException("Malformed action/metadata line [" + line + "], expected "
+                                + XContentParser.Token.FIELD_NAME + " but found [" + token + "]");
+                    }
+                    String action = parser.currentName();
 
-                // at this stage, next token can either be END_OBJECT (and use default index and type, with auto generated id)
-                // or START_OBJECT which will have another set of parameters
-                token = parser.nextToken();
+                    String index = defaultIndex;
+                    String type = null;
+                    String id = null;
+                    String routing = defaultRouting;
+                    FetchSourceContext fetchSourceContext = defaultFetchSourceContext;
+                    String opType = null;
+                    long version = Versions.MATCH_ANY;
+                    VersionType versionType = VersionType.INTERNAL;
+                    long ifSeqNo = SequenceNumbers.UNASSIGNED_SEQ_NO;
+                    long ifPrimaryTerm = UNASSIGNED_PRIMARY_TERM;
+                    int retryOnConflict = 0;
+                    String pipeline = defaultPipeline;
 
-                if (token == XContentParser.Token.START_OBJECT) {
-                    String currentFieldName = null;
-                    while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
-                        if (token == XContentParser.Token.FIELD_NAME) {
-                            currentFieldName = parser.currentName();
-                        } else if (token.isValue()) {
-                            if (INDEX.match(currentFieldName, parser.getDeprecationHandler())){
-                                if (!allowExplicitIndex) {
-                                    throw new IllegalArgumentException("explicit index in bulk is not allowed");
-                                }
-                                index = parser.text();
-                            } else if (TYPE.match(currentFieldName, parser.getDeprecationHandler())) {
-                                if (errorOnType) {
+                    // at this stage, next token can either be END_OBJECT (and use default index and type, with auto generated id)
+                    // or START_OBJECT which will have another set of parameters
+                    token = parser.nextToken();
+
+                    if (token == XContentParser.Token.START_OBJECT) {
+                        String currentFieldName = null;
+                        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                            if (token == XContentParser.Token.FIELD_NAME) {
+                                currentFieldName = parser.currentName();
+                            } else if (token.isValue()) {
+                                if (INDEX.match(currentFieldName, parser.getDeprecationHandler())){
+                                    if (!allowExplicitIndex) {
+                                        throw new IllegalArgumentException("explicit index in bulk is not allowed");
+                                    }
+                                    index = parser.text();
+                                } else if (TYPE.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    if (errorOnType) {
+                                        throw new IllegalArgumentException("Action/metadata line [" + line
+                                            + "] contains an unknown parameter [" + currentFieldName + "]");
+                                    }
+                                    type = parser.text();
+                                } else if (ID.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    id = parser.text();
+                                } else if (ROUTING.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    routing = parser.text();
+                                } else if (OP_TYPE.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    opType = parser.text();
+                                } else if (VERSION.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    version = parser.longValue();
+                                } else if (VERSION_TYPE.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    versionType = VersionType.fromString(parser.text());
+                                } else if (IF_SEQ_NO.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    ifSeqNo = parser.longValue();
+                                } else if (IF_PRIMARY_TERM.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    ifPrimaryTerm = parser.longValue();
+                                } else if (RETRY_ON_CONFLICT.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    retryOnConflict = parser.intValue();
+                                } else if (PIPELINE.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    pipeline = parser.text();
+                                } else if (SOURCE.match(currentFieldName, parser.getDeprecationHandler())) {
+                                    fetchSourceContext = FetchSourceContext.fromXContent(parser);
+                                } else {
                                     throw new IllegalArgumentException("Action/metadata line [" + line + "] contains an unknown parameter ["
-                                        + currentFieldName + "]");
+                                            + currentFieldName + "]");
                                 }
-                                type = parser.text();
-                            } else if (ID.match(currentFieldName, parser.getDeprecationHandler())) {
-                                id = parser.text();
-                            } else if (ROUTING.match(currentFieldName, parser.getDeprecationHandler())) {
-                                routing = parser.text();
-                            } else if (OP_TYPE.match(currentFieldName, parser.getDeprecationHandler())) {
-                                opType = parser.text();
-                            } else if (VERSION.match(currentFieldName, parser.getDeprecationHandler())) {
-                                version = parser.longValue();
-                            } else if (VERSION_TYPE.match(currentFieldName, parser.getDeprecationHandler())) {
-                                versionType = VersionType.fromString(parser.text());
-                            } else if (IF_SEQ_NO.match(currentFieldName, parser.getDeprecationHandler())) {
-                                ifSeqNo = parser.longValue();
-                            } else if (IF_PRIMARY_TERM.match(currentFieldName, parser.getDeprecationHandler())) {
-                                ifPrimaryTerm = parser.longValue();
-                            } else if (RETRY_ON_CONFLICT.match(currentFieldName, parser.getDeprecationHandler())) {
-                                retryOnConflict = parser.intValue();
-                            } else if (PIPELINE.match(currentFieldName, parser.getDeprecationHandler())) {
-                                pipeline = parser.text();
-                            } else if (SOURCE.match(currentFieldName, parser.getDeprecationHandler())) {
+                            } else if (token == XContentParser.Token.START_ARRAY) {
+                                throw new IllegalArgumentException("Malformed action/metadata line [" + line +
+                                        "], expected a simple value for field [" + currentFieldName + "] but found [" + token + "]");
+                            } else if (token == XContentParser.Token.START_OBJECT && SOURCE.match(currentFieldName,
+                                    parser.getDeprecationHandler())) {
                                 fetchSourceContext = FetchSourceContext.fromXContent(parser);
-                            } else {
-                                throw new IllegalArgumentException("Action/metadata line [" + line + "] contains an unknown parameter ["
-                                        + currentFieldName + "]");
+                            } else if (token != XContentParser.Token.VALUE_NULL) {
+                                throw new IllegalArgumentException("Malformed action/metadata line [" + line
+                                        + "], expected a simple value for field [" + currentFieldName + "] but found [" + token + "]");
                             }
-                        } else if (token == XContentParser.Token.START_ARRAY) {
-                            throw new IllegalArgumentException("Malformed action/metadata line [" + line +
-                                    "], expected a simple value for field [" + currentFieldName + "] but found [" + token + "]");
-                        } else if (token == XContentParser.Token.START_OBJECT && SOURCE.match(currentFieldName,
-                                parser.getDeprecationHandler())) {
-                            fetchSourceContext = FetchSourceContext.fromXContent(parser);
-                        } else if (token != XContentParser.Token.VALUE_NULL) {
-                            throw new IllegalArgumentException("Malformed action/metadata line [" + line
-                                    + "], expected a simple value for field [" + currentFieldName + "] but found [" + token + "]");
                         }
+                    } else if (token != XContentParser.Token.END_OBJECT) {
+                        throw new IllegalArgumentException("Malformed action/metadata line [" + line + "], expected "
+                                + XContentParser.Token.START_OBJECT + " or " + XContentParser.Token.END_OBJECT
+                                + " but found [" + token + "]");
                     }
-                } else if (token != XContentParser.Token.END_OBJECT) {
-                    throw new IllegalArgumentException("Malformed action/metadata line [" + line + "], expected "
-                            + XContentParser.Token.START_OBJECT + " or " + XContentParser.Token.END_OBJECT + " but found [" + token + "]");
-                }
 
-                if ("delete".equals(action)) {
-                    deleteRequestConsumer.accept(new DeleteRequest(index).id(id).routing(routing)
-                            .version(version).versionType(versionType).setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm));
-                } else {
-                    nextMarker = findNextMarker(marker, from, data);
-                    if (nextMarker == -1) {
-                        break;
-                    }
-                    line++;
+                    if ("delete".equals(action)) {
+                        deleteRequestConsumer.accept(new DeleteRequest(index).id(id).routing(routing)
+                                .version(version).versionType(versionType).setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm));
+                    } else {
+                        nextMarker = findNextMarker(marker, from, data, lastChunk);
+                        if (nextMarker == -1) {
+                            if (lastChunk == false) {
+                                // the source line has not been received completely, parse the item again with the next chunk
+                                line--;
+                                from = itemStart;
+                            }
+                            break;
+                        }
+                        line++;
 
-                    // we use internalAdd so we don't fork here, this allows us not to copy over the big byte array to small chunks
-                    // of index request.
-                    if ("index".equals(action)) {
-                        if (opType == null) {
-                            indexRequestConsumer.accept(new IndexRequest(index).id(id).routing(routing)
-                                    .version(version).versionType(versionType)
-                                    .setPipeline(pipeline).setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
-                                    .source(sliceTrimmingCarriageReturn(data, from, nextMarker,xContentType), xContentType), type);
-                        } else {
+                        // we use internalAdd so we don't fork here, this allows us not to copy over the big byte array to small chunks
+                        // of index request.
+                        if ("index".equals(action)) {
+                            if (opType == null) {
+                                indexRequestConsumer.accept(new IndexRequest(index).id(id).routing(routing)
+                                        .version(version).versionType(versionType)
+                                        .setPipeline(pipeline).setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
+                                        .source(sliceTrimmingCarriageReturn(data, from, nextMarker,xContentType), xContentType), type);
+                            } else {
+                                indexRequestConsumer.accept(new IndexRequest(index).id(id).routing(routing)
+                                        .version(version).versionType(versionType)
+                                        .create("create".equals(opType)).setPipeline(pipeline)
+                                        .setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
+                                        .source(sliceTrimmingCarriageReturn(data, from, nextMarker, xContentType), xContentType), type);
+                            }
+                        } else if ("create".equals(action)) {
                             indexRequestConsumer.accept(new IndexRequest(index).id(id).routing(routing)
                                     .version(version).versionType(versionType)
-                                    .create("create".equals(opType)).setPipeline(pipeline)
-                                    .setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
+                                    .create(true).setPipeline(pipeline).setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
                                     .source(sliceTrimmingCarriageReturn(data, from, nextMarker, xContentType), xContentType), type);
-                        }
-                    } else if ("create".equals(action)) {
-                        indexRequestConsumer.accept(new IndexRequest(index).id(id).routing(routing)
-                                .version(version).versionType(versionType)
-                                .create(true).setPipeline(pipeline).setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
-                                .source(sliceTrimmingCarriageReturn(data, from, nextMarker, xContentType), xContentType), type);
-                    } else if ("update".equals(action)) {
-                        if (version != Versions.MATCH_ANY || versionType != VersionType.INTERNAL) {
-                            throw new IllegalArgumentException("Update requests do not support versioning. " +
-                                    "Please use `if_seq_no` and `if_primary_term` instead");
-                        }
-                        UpdateRequest updateRequest = new UpdateRequest().index(index).id(id).routing(routing)
-                                .retryOnConflict(retryOnConflict)
-                                .setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
-                                .routing(routing);
-                        // EMPTY is safe here because we never call namedObject
-                        try (InputStream dataStream = sliceTrimmingCarriageReturn(data, from, nextMarker, xContentType).streamInput();
-                                XContentParser sliceParser = xContent.createParser(NamedXContentRegistry.EMPTY,
-                                        LoggingDeprecationHandler.INSTANCE, dataStream)) {
-                            updateRequest.fromXContent(sliceParser);
-                        }
-                        if (fetchSourceContext != null) {
-                            updateRequest.fetchSource(fetchSourceContext);
-                        }
-                        IndexRequest upsertRequest = updateRequest.upsertRequest();
-                        if (upsertRequest != null) {
-                            upsertRequest.setPipeline(defaultPipeline);
-                        }
+                        } else if ("update".equals(action)) {
+                            if (version != Versions.MATCH_ANY || versionType != VersionType.INTERNAL) {
+                                throw new IllegalArgumentException("Update requests do not support versioning. " +
+                                        "Please use `if_seq_no` and `if_primary_term` instead");
+                            }
+                            UpdateRequest updateRequest = new UpdateRequest().index(index).id(id).routing(routing)
+                                    .retryOnConflict(retryOnConflict)
+                                    .setIfSeqNo(ifSeqNo).setIfPrimaryTerm(ifPrimaryTerm)
+                                    .routing(routing);
+                            // EMPTY is safe here because we never call namedObject
+                            try (InputStream dataStream = sliceTrimmingCarriageReturn(data, from, nextMarker, xContentType).streamInput();
+                                    XContentParser sliceParser = xContent.createParser(NamedXContentRegistry.EMPTY,
+                                            LoggingDeprecationHandler.INSTANCE, dataStream)) {
+                                updateRequest.fromXContent(sliceParser);
+                            }
+                            if (fetchSourceContext != null) {
+                                updateRequest.fetchSource(fetchSourceContext);
+                            }
+                            IndexRequest upsertRequest = updateRequest.upsertRequest();
+                            if (upsertRequest != null) {
+                                upsertRequest.setPipeline(defaultPipeline);
+                            }
 
-                        updateRequestConsumer.accept(updateRequest);
+                            updateRequestConsumer.accept(updateRequest);
+                        }
+                        // move pointers
+                        from = nextMarker + 1;
                     }
-                    // move pointers
-                    from = nextMarker + 1;
                 }
             }
+            return from;
         }
     }
 
@@ -19,6 +19,8 @@
 
 package org.elasticsearch.action.bulk;
 
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.action.support.replication.ReplicatedWriteRequest;
 import org.elasticsearch.action.support.replication.ReplicationRequest;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -29,7 +31,9 @@ import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
-public class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequest> {
+public class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequest> implements Accountable {
+
+    private static final long SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(BulkShardRequest.class);
 
     private BulkItemRequest[] items;
 
@@ -123,6 +127,17 @@ public class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequest> {
         return super.routedBasedOnClusterVersion(routedBasedOnClusterVersion);
     }
 
+    @Override
+    public long ramBytesUsed() {
+        long ramBytesUsed = SHALLOW_SIZE;
+        for (BulkItemRequest item : items) {
+            if (item != null) {
+                ramBytesUsed += item.request().ramBytesUsed();
+            }
+        }
+        return ramBytesUsed;
+    }
+
     @Override
     public void onRetry() {
         for (BulkItemRequest item : items) {
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.action.index;
 
+import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.ElasticsearchGenerationException;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionRequestValidationException;
@@ -31,7 +32,6 @@ import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.common.Nullable;
-import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -42,6 +42,7 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.IndexSettings.AutoIdLayout;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.shard.ShardId;
@@ -82,6 +83,8 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
      */
     static final int MAX_SOURCE_LENGTH_IN_TOSTRING = 2048;
 
+    private static final long SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(IndexRequest.class);
+
     private static final ShardId NO_SHARD_ID = null;
 
     private String id;
@@ -568,6 +571,14 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
 
 
     public void process(Version indexCreatedVersion, @Nullable MappingMetaData mappingMd, String concreteIndex) {
+        process(indexCreatedVersion, mappingMd, concreteIndex, AutoIdLayout.DEFAULT);
+    }
+
+    /**
+     * Validates the request against the mapping of its index, and generates an id with the given layout if it has none.
+     */
+    public void process(Version indexCreatedVersion, @Nullable MappingMetaData mappingMd, String concreteIndex,
+                        AutoIdLayout autoIdLayout) {
         if (mappingMd != null) {
             // might as well check for routing here
             if (mappingMd.routingRequired() && routing == null) {
@@ -585,7 +596,7 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
             assert ifSeqNo == UNASSIGNED_SEQ_NO;
             assert ifPrimaryTerm == UNASSIGNED_PRIMARY_TERM;
             autoGeneratedTimestamp = Math.max(0, System.currentTimeMillis()); // extra paranoia
-            String uid = UUIDs.base64UUID();
+            String uid = autoIdLayout.generateId();
             id(uid);
         }
     }
@@ -650,6 +661,11 @@ public class IndexRequest extends ReplicatedWriteRequest<IndexRequest> implement
         return "index {[" + index + "][" + id + "], source[" + sSource + "]}";
     }
 
+    @Override
+    public long ramBytesUsed() {
+        return SHALLOW_SIZE + RamUsageEstimator.sizeOf(id) + (source == null ? 0 : source.ramBytesUsed());
+    }
+
 
     /**
      * Returns <code>true</code> if this request has been sent to a shard copy more than once.
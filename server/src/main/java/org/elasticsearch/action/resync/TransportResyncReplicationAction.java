@@ -32,6 +32,7 @@ import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexingPressure;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.shard.IndexShard;
@@ -54,10 +55,29 @@ public class TransportResyncReplicationAction extends TransportWriteAction<Resyn
     @Inject
     public TransportResyncReplicationAction(Settings settings, TransportService transportService,
                                             ClusterService clusterService, IndicesService indicesService, ThreadPool threadPool,
-                                            ShardStateAction shardStateAction, ActionFilters actionFilters) {
+                                            ShardStateAction shardStateAction, ActionFilters actionFilters,
+                                            IndexingPressure indexingPressure) {
         super(settings, ACTION_NAME, transportService, clusterService, indicesService, threadPool, shardStateAction, actionFilters,
             ResyncReplicationRequest::new, ResyncReplicationRequest::new, ThreadPool.Names.WRITE,
-            true /* we should never reject resync because of thread pool capacity on primary */);
+            true /* we should never reject resync because of thread pool capacity on primary */, indexingPressure);
+    }
+
+    @Override
+    protected long primaryOperationSize(ResyncReplicationRequest request) {
+        return operationSizeInBytes(request.getOperations());
+    }
+
+    @Override
+    protected long replicaOperationSize(ResyncReplicationRequest request) {
+        return operationSizeInBytes(request.getOperations());
+    }
+
+    private static long operationSizeInBytes(Translog.Operation... operations) {
+        long operationSizeInBytes = 0;
+        for (Translog.Operation operation : operations) {
+            operationSizeInBytes += operation.estimateSize();
+        }
+        return operationSizeInBytes;
     }
 
     @Override
@@ -32,6 +32,7 @@ import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.index.shard.ShardId;
@@ -41,6 +42,7 @@ import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.ShardSearchRequest;
+import org.elasticsearch.threadpool.Scheduler;
 import org.elasticsearch.transport.Transport;
 
 import java.util.ArrayDeque;
@@ -61,7 +63,9 @@ import java.util.stream.Collectors;
  * the shards replica iterator is exhausted. Each shard is referenced by position in the {@link GroupShardsIterator} which is later
  * referred to as the {@code shardIndex}.
  * The fan out and collect algorithm is traditionally used as the initial phase which can either be a query execution or collection of
- * distributed frequencies
+ * distributed frequencies.
+ * If {@link ShardRequestHedging hedging} is enabled, the request of a shard that is slow to answer is also sent to its next replica, and
+ * the first response wins.
  */
 abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> extends SearchPhase implements SearchPhaseContext {
     private static final float DEFAULT_INDEX_BOOST = 1.0f;
@@ -94,6 +98,10 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
     private final int maxConcurrentRequestsPerNode;
     private final Map<String, PendingExecutions> pendingExecutionsPerNode = new ConcurrentHashMap<>();
     private final boolean throttleConcurrentRequests;
+    @Nullable
+    private final ShardRequestHedging hedging;
+    @Nullable
+    private final List<HedgedShard> hedgedShards;
 
     AbstractSearchAsyncAction(String name, Logger logger, SearchTransportService searchTransportService,
                                         BiFunction<String, String, Transport.Connection> nodeIdToConnection,
@@ -104,6 +112,19 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
                                         SearchTimeProvider timeProvider, long clusterStateVersion,
                                         SearchTask task, SearchPhaseResults<Result> resultConsumer, int maxConcurrentRequestsPerNode,
                                         SearchResponse.Clusters clusters) {
+        this(name, logger, searchTransportService, nodeIdToConnection, aliasFilter, concreteIndexBoosts, indexRoutings, executor, request,
+            listener, shardsIts, timeProvider, clusterStateVersion, task, resultConsumer, maxConcurrentRequestsPerNode, clusters, null);
+    }
+
+    AbstractSearchAsyncAction(String name, Logger logger, SearchTransportService searchTransportService,
+                                        BiFunction<String, String, Transport.Connection> nodeIdToConnection,
+                                        Map<String, AliasFilter> aliasFilter, Map<String, Float> concreteIndexBoosts,
+                                        Map<String, Set<String>> indexRoutings,
+                                        Executor executor, SearchRequest request,
+                                        ActionListener<SearchResponse> listener, GroupShardsIterator<SearchShardIterator> shardsIts,
+                                        SearchTimeProvider timeProvider, long clusterStateVersion,
+                                        SearchTask task, SearchPhaseResults<Result> resultConsumer, int maxConcurrentRequestsPerNode,
+                                        SearchResponse.Clusters clusters, @Nullable ShardRequestHedging hedging) {
         super(name);
         final List<SearchShardIterator> toSkipIterators = new ArrayList<>();
         final List<SearchShardIterator> iterators = new ArrayList<>();
@@ -138,6 +159,18 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         this.indexRoutings = indexRoutings;
         this.results = resultConsumer;
         this.clusters = clusters;
+        if (hedging != null && hedging.isEnabled()) {
+            this.hedging = hedging;
+            this.hedgedShards = new ArrayList<>(this.shardsIts.size());
+            for (int index = 0; index < this.shardsIts.size(); index++) {
+                final SearchShardIterator shardIt = this.shardsIts.get(index);
+                // the reader of a point in time only exists on the copies that it was opened on
+                hedgedShards.add(shardIt.size() > 1 && shardIt.getReaderId() == -1 ? new HedgedShard(index, shardIt) : null);
+            }
+        } else {
+            this.hedging = null;
+            this.hedgedShards = null;
+        }
     }
 
     /**
@@ -205,7 +238,7 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         successfulOps.incrementAndGet();
         skippedOps.incrementAndGet();
         assert iterator.skip();
-        successfulShardExecution(iterator);
+        successfulShardExecution(iterator, 0);
     }
 
     private void performPhaseOnShard(final int shardIndex, final SearchShardIterator shardIt, final ShardRouting shard) {
@@ -224,38 +257,7 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
                 : null;
             Runnable r = () -> {
                 final Thread thread = Thread.currentThread();
-                try {
-                    executePhaseOnShard(shardIt, shard,
-                        new SearchActionListener<Result>(shardIt.newSearchShardTarget(shard.currentNodeId()), shardIndex) {
-                            @Override
-                            public void innerOnResponse(Result result) {
-                                try {
-                                    onShardResult(result, shardIt);
-                                } finally {
-                                    executeNext(pendingExecutions, thread);
-                                }
-                            }
-
-                            @Override
-                            public void onFailure(Exception t) {
-                                try {
-                                    onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, t);
-                                } finally {
-                                    executeNext(pendingExecutions, thread);
-                                }
-                            }
-                        });
-                } catch (final Exception e) {
-                    try {
-                        /*
-                         * It is possible to run into connection exceptions here because we are getting the connection early and might
-                         * run into nodes that are not connected. In this case, on shard failure will move us to the next shard copy.
-                         */
-                        fork(() -> onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, e));
-                    } finally {
-                        executeNext(pendingExecutions, thread);
-                    }
-                }
+                sendShardRequest(shardIndex, shardIt, shard, false, () -> executeNext(pendingExecutions, thread));
             };
             if (throttleConcurrentRequests) {
                 pendingExecutions.tryRun(r);
@@ -265,6 +267,59 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         }
     }
 
+    private void sendShardRequest(final int shardIndex, final SearchShardIterator shardIt, final ShardRouting shard,
+                                  final boolean hedge, final Runnable onCompletion) {
+        final HedgedShard hedgedShard = hedgedShards == null ? null : hedgedShards.get(shardIndex);
+        if (hedgedShard != null && hedge == false) {
+            hedgedShard.onRequestSent(shard);
+        }
+        try {
+            executePhaseOnShard(shardIt, shard,
+                new SearchActionListener<Result>(shardIt.newSearchShardTarget(shard.currentNodeId()), shardIndex) {
+                    @Override
+                    public void innerOnResponse(Result result) {
+                        try {
+                            if (hedgedShard == null) {
+                                onShardResult(result, shardIt, 0);
+                            } else {
+                                hedgedShard.onResult(result);
+                            }
+                        } finally {
+                            onCompletion.run();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception t) {
+                        try {
+                            onShardRequestFailure(hedgedShard, shardIndex, shard, shardIt, t);
+                        } finally {
+                            onCompletion.run();
+                        }
+                    }
+                });
+        } catch (final Exception e) {
+            try {
+                /*
+                 * It is possible to run into connection exceptions here because we are getting the connection early and might
+                 * run into nodes that are not connected. In this case, on shard failure will move us to the next shard copy.
+                 */
+                fork(() -> onShardRequestFailure(hedgedShard, shardIndex, shard, shardIt, e));
+            } finally {
+                onCompletion.run();
+            }
+        }
+    }
+
+    private void onShardRequestFailure(@Nullable HedgedShard hedgedShard, int shardIndex, ShardRouting shard,
+                                       SearchShardIterator shardIt, Exception e) {
+        if (hedgedShard == null) {
+            onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, e);
+        } else {
+            hedgedShard.onFailure(shard, e);
+        }
+    }
+
     /**
      * Sends the request to the actual shard.
      * @param shardIt the shards iterator
@@ -461,8 +516,9 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
      * Executed once for every successful shard level request.
      * @param result the result returned form the shard
      * @param shardIt the shard iterator
+     * @param otherRequestsInFlight the number of hedged requests for the same shard that are still in flight and lost
      */
-    private void onShardResult(Result result, SearchShardIterator shardIt) {
+    private void onShardResult(Result result, SearchShardIterator shardIt, int otherRequestsInFlight) {
         assert result.getShardIndex() != -1 : "shard index is not set";
         assert result.getSearchShardTarget() != null : "search shard target must not be null";
         successfulOps.incrementAndGet();
@@ -482,15 +538,16 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         // cause the successor to read a wrong value from successfulOps if second phase is very fast ie. count etc.
         // increment all the "future" shards to update the total ops since we some may work and some may not...
         // and when that happens, we break on total ops, so we must maintain them
-        successfulShardExecution(shardIt);
+        successfulShardExecution(shardIt, otherRequestsInFlight);
     }
 
-    private void successfulShardExecution(SearchShardIterator shardsIt) {
+    private void successfulShardExecution(SearchShardIterator shardsIt, int otherRequestsInFlight) {
         final int remainingOpsOnIterator;
         if (shardsIt.skip()) {
             remainingOpsOnIterator = shardsIt.remaining();
         } else {
-            remainingOpsOnIterator = shardsIt.remaining() + 1;
+            // the copies that the lost hedged requests were sent to are accounted for by the winner
+            remainingOpsOnIterator = shardsIt.remaining() + 1 + otherRequestsInFlight;
         }
         final int xTotalOps = totalOps.addAndGet(remainingOpsOnIterator);
         if (xTotalOps == expectedTotalOps) {
@@ -568,7 +625,7 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
     /**
      * Executed once all shard results have been received and processed
      * @see #onShardFailure(int, SearchShardTarget, Exception)
-     * @see #onShardResult(SearchPhaseResult, SearchShardIterator)
+     * @see #onShardResult(SearchPhaseResult, SearchShardIterator, int)
      */
     final void onPhaseDone() {  // as a tribute to @kimchy aka. finishHim()
         executeNextPhase(this, getNextPhase(results, this));
@@ -603,7 +660,8 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         final String[] routings = indexRoutings.getOrDefault(indexName, Collections.emptySet())
             .toArray(new String[0]);
         return new ShardSearchRequest(shardIt.getOriginalIndices(), request, shardIt.shardId(), getNumShards(),
-            filter, indexBoost, timeProvider.getAbsoluteStartMillis(), shardIt.getClusterAlias(), routings);
+            filter, indexBoost, timeProvider.getAbsoluteStartMillis(), shardIt.getClusterAlias(), routings,
+            shardIt.getReaderId(), shardIt.getReaderKeepAlive());
     }
 
     /**
@@ -630,6 +688,115 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         }
     }
 
+    /**
+     * The requests that are in flight for a shard whose request may be hedged. The first request is hedged once, if it hasn't
+     * completed after the {@link ShardRequestHedging#hedgeDelay(String) hedge delay} of its node. The first successful response wins
+     * and the search contexts of the other responses are released. A failure only moves on to the next copy of the shard if no other
+     * request for the shard is in flight, and the request that is retried on the next copy is not hedged.
+     */
+    private final class HedgedShard {
+        private final int shardIndex;
+        private final SearchShardIterator shardIt;
+        private int inFlight = 0;
+        private boolean hedgeScheduled = false;
+        // whether all the requests in flight failed and the request was retried on the next copy
+        private boolean retried = false;
+        private boolean done = false;
+        private Scheduler.ScheduledCancellable hedgeTask;
+
+        HedgedShard(int shardIndex, SearchShardIterator shardIt) {
+            this.shardIndex = shardIndex;
+            this.shardIt = shardIt;
+        }
+
+        synchronized void onRequestSent(ShardRouting shard) {
+            inFlight++;
+            if (hedgeScheduled == false) {
+                hedgeScheduled = true;
+                final TimeValue delay = hedging.hedgeDelay(shard.currentNodeId());
+                if (delay != null) {
+                    hedgeTask = hedging.schedule(this::hedge, delay);
+                }
+            }
+        }
+
+        private void hedge() {
+            final ShardRouting shard;
+            synchronized (this) {
+                // don't hedge a request that is being retried on the next copy after a failure, the hedge delay was the one of the
+                // node that failed
+                if (done || retried || inFlight != 1 || shardIt.remaining() == 0) {
+                    return;
+                }
+                final ShardRouting next = shardIt.getShardRoutings().get(shardIt.size() - shardIt.remaining());
+                if (hedging.tryAcquire(next.currentNodeId()) == false) {
+                    logger.trace("{}: not hedging request, too many hedged requests in flight to [{}]", shardIt.shardId(),
+                        next.currentNodeId());
+                    return;
+                }
+                shard = shardIt.nextOrNull();
+                assert shard == next : "expected [" + next + "] but got [" + shard + "]";
+                inFlight++;
+            }
+            logger.trace("{}: hedging request on [{}]", shardIt.shardId(), shard.currentNodeId());
+            sendShardRequest(shardIndex, shardIt, shard, true, () -> hedging.release(shard.currentNodeId()));
+        }
+
+        void onResult(Result result) {
+            final int otherRequestsInFlight;
+            synchronized (this) {
+                if (done == false) {
+                    done = true;
+                    otherRequestsInFlight = inFlight - 1;
+                    inFlight = 0;
+                    if (hedgeTask != null) {
+                        hedgeTask.cancel();
+                    }
+                } else {
+                    otherRequestsInFlight = -1;
+                }
+            }
+            if (otherRequestsInFlight >= 0) {
+                onShardResult(result, shardIt, otherRequestsInFlight);
+            } else {
+                // another request for this shard won, its results are the ones that the next phase uses
+                final SearchShardTarget shardTarget = result.getSearchShardTarget();
+                logger.trace("{}: releasing the result of the hedged request on [{}] that lost", shardIt.shardId(),
+                    shardTarget.getNodeId());
+                try {
+                    Transport.Connection connection = getConnection(shardTarget.getClusterAlias(), shardTarget.getNodeId());
+                    sendReleaseSearchContext(result.getRequestId(), connection, shardTarget.getOriginalIndices());
+                } catch (Exception e) {
+                    logger.trace("failed to release context", e);
+                }
+            }
+        }
+
+        void onFailure(ShardRouting shard, Exception e) {
+            synchronized (this) {
+                if (done) {
+                    logger.trace(() -> new ParameterizedMessage("{}: hedged request on [{}] failed after another one won",
+                        shardIt.shardId(), shard.currentNodeId()), e);
+                    return;
+                }
+                inFlight--;
+                if (inFlight > 0) {
+                    // wait for the other request, it wins if it succeeds. The failure is recorded under the lock so that a success
+                    // of the other request clears it.
+                    onShardFailure(shardIndex, shardIt.newSearchShardTarget(shard.currentNodeId()), e);
+                    final int xTotalOps = totalOps.incrementAndGet();
+                    assert xTotalOps < expectedTotalOps : "the other request in flight must still be accounted for";
+                    return;
+                }
+                retried = true;
+                if (hedgeTask != null) {
+                    hedgeTask.cancel();
+                }
+            }
+            AbstractSearchAsyncAction.this.onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, e);
+        }
+    }
+
     private static final class PendingExecutions {
         private final int permits;
         private int permitsTaken = 0;
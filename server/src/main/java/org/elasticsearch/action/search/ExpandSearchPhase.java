@@ -26,13 +26,23 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.missing.Missing;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.TopHits;
+import org.elasticsearch.search.aggregations.metrics.TopHitsAggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.collapse.CollapseBuilder;
 import org.elasticsearch.search.internal.InternalSearchResponse;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * This search phase is an optional phase that will be executed once all hits are fetched from the shards that executes
@@ -40,6 +50,10 @@ import java.util.List;
  * forwards to the next phase immediately.
  */
 final class ExpandSearchPhase extends SearchPhase {
+    static final String GROUPS_AGGREGATION_NAME = "_groups";
+    static final String MISSING_GROUP_AGGREGATION_NAME = "_missing_group";
+    static final String TOP_HITS_AGGREGATION_NAME = "_top_hits";
+
     private final SearchPhaseContext context;
     private final InternalSearchResponse searchResponse;
     private final String scrollId;
@@ -67,49 +81,72 @@ final class ExpandSearchPhase extends SearchPhase {
             SearchRequest searchRequest = context.getRequest();
             CollapseBuilder collapseBuilder = searchRequest.source().collapse();
             final List<InnerHitBuilder> innerHitBuilders = collapseBuilder.getInnerHits();
+            // inner hits that are collapsed themselves can't be expanded in a batch
+            final List<InnerHitBuilder> groupInnerHitBuilders = new ArrayList<>();
+            final List<InnerHitBuilder> batchedInnerHitBuilders = new ArrayList<>();
+            for (InnerHitBuilder innerHitBuilder : innerHitBuilders) {
+                if (collapseBuilder.isBatchedExpansion() && innerHitBuilder.getInnerCollapseBuilder() == null) {
+                    batchedInnerHitBuilders.add(innerHitBuilder);
+                } else {
+                    groupInnerHitBuilders.add(innerHitBuilder);
+                }
+            }
             MultiSearchRequest multiRequest = new MultiSearchRequest();
             if (collapseBuilder.getMaxConcurrentGroupRequests() > 0) {
                 multiRequest.maxConcurrentSearchRequests(collapseBuilder.getMaxConcurrentGroupRequests());
             }
-            for (SearchHit hit : searchResponse.hits().getHits()) {
-                BoolQueryBuilder groupQuery = new BoolQueryBuilder();
-                Object collapseValue = hit.field(collapseBuilder.getField()).getValue();
-                if (collapseValue != null) {
-                    groupQuery.filter(QueryBuilders.matchQuery(collapseBuilder.getField(), collapseValue));
-                } else {
-                    groupQuery.mustNot(QueryBuilders.existsQuery(collapseBuilder.getField()));
-                }
-                QueryBuilder origQuery = searchRequest.source().query();
-                if (origQuery != null) {
-                    groupQuery.must(origQuery);
-                }
-                for (InnerHitBuilder innerHitBuilder : innerHitBuilders) {
-                    CollapseBuilder innerCollapseBuilder = innerHitBuilder.getInnerCollapseBuilder();
-                    SearchSourceBuilder sourceBuilder = buildExpandSearchSourceBuilder(innerHitBuilder, innerCollapseBuilder)
-                        .query(groupQuery)
-                        .postFilter(searchRequest.source().postFilter());
-                    SearchRequest groupRequest = new SearchRequest(searchRequest);
-                    groupRequest.source(sourceBuilder);
-                    multiRequest.add(groupRequest);
+            if (groupInnerHitBuilders.isEmpty() == false) {
+                for (SearchHit hit : searchResponse.hits().getHits()) {
+                    BoolQueryBuilder groupQuery = new BoolQueryBuilder();
+                    Object collapseValue = hit.field(collapseBuilder.getField()).getValue();
+                    if (collapseValue != null) {
+                        groupQuery.filter(QueryBuilders.matchQuery(collapseBuilder.getField(), collapseValue));
+                    } else {
+                        groupQuery.mustNot(QueryBuilders.existsQuery(collapseBuilder.getField()));
+                    }
+                    QueryBuilder origQuery = searchRequest.source().query();
+                    if (origQuery != null) {
+                        groupQuery.must(origQuery);
+                    }
+                    for (InnerHitBuilder innerHitBuilder : groupInnerHitBuilders) {
+                        CollapseBuilder innerCollapseBuilder = innerHitBuilder.getInnerCollapseBuilder();
+                        SearchSourceBuilder sourceBuilder = buildExpandSearchSourceBuilder(innerHitBuilder, innerCollapseBuilder)
+                            .query(groupQuery)
+                            .postFilter(searchRequest.source().postFilter());
+                        SearchRequest groupRequest = new SearchRequest(searchRequest);
+                        groupRequest.source(sourceBuilder);
+                        multiRequest.add(groupRequest);
+                    }
                 }
             }
+            for (InnerHitBuilder innerHitBuilder : batchedInnerHitBuilders) {
+                SearchRequest batchedRequest = new SearchRequest(searchRequest);
+                batchedRequest.source(buildBatchedExpandSearchSourceBuilder(searchRequest.source(), innerHitBuilder));
+                multiRequest.add(batchedRequest);
+            }
             context.getSearchTransport().sendExecuteMultiSearch(multiRequest, context.getTask(),
                 ActionListener.wrap(response -> {
                     Iterator<MultiSearchResponse.Item> it = response.iterator();
-                    for (SearchHit hit : searchResponse.hits.getHits()) {
-                        for (InnerHitBuilder innerHitBuilder : innerHitBuilders) {
-                            MultiSearchResponse.Item item = it.next();
-                            if (item.isFailure()) {
-                                context.onPhaseFailure(this, "failed to expand hits", item.getFailure());
-                                return;
-                            }
-                            SearchHits innerHits = item.getResponse().getHits();
-                            if (hit.getInnerHits() == null) {
-                                hit.setInnerHits(new HashMap<>(innerHitBuilders.size()));
+                    if (groupInnerHitBuilders.isEmpty() == false) {
+                        for (SearchHit hit : searchResponse.hits.getHits()) {
+                            for (InnerHitBuilder innerHitBuilder : groupInnerHitBuilders) {
+                                MultiSearchResponse.Item item = it.next();
+                                if (item.isFailure()) {
+                                    context.onPhaseFailure(this, "failed to expand hits", item.getFailure());
+                                    return;
+                                }
+                                setInnerHits(hit, innerHitBuilder, item.getResponse().getHits());
                             }
-                            hit.getInnerHits().put(innerHitBuilder.getName(), innerHits);
                         }
                     }
+                    for (InnerHitBuilder innerHitBuilder : batchedInnerHitBuilders) {
+                        MultiSearchResponse.Item item = it.next();
+                        if (item.isFailure()) {
+                            context.onPhaseFailure(this, "failed to expand hits", item.getFailure());
+                            return;
+                        }
+                        regroupBatchedInnerHits(collapseBuilder.getField(), innerHitBuilder, item.getResponse().getAggregations());
+                    }
                     context.sendSearchResponse(searchResponse, scrollId);
                 }, context::onFailure)
             );
@@ -118,6 +155,130 @@ final class ExpandSearchPhase extends SearchPhase {
         }
     }
 
+    private void setInnerHits(SearchHit hit, InnerHitBuilder innerHitBuilder, SearchHits innerHits) {
+        if (hit.getInnerHits() == null) {
+            hit.setInnerHits(new HashMap<>(context.getRequest().source().collapse().getInnerHits().size()));
+        }
+        hit.getInnerHits().put(innerHitBuilder.getName(), innerHits);
+    }
+
+    /**
+     * Builds a search that expands the inner hits of all collapsed hits at once: it matches the documents of all the groups and
+     * returns the top hits of each group from a {@code terms} aggregation on the collapse field, or from a {@code missing}
+     * aggregation for the group of the documents without a value. Every shard is searched once for all groups.
+     */
+    private SearchSourceBuilder buildBatchedExpandSearchSourceBuilder(SearchSourceBuilder source, InnerHitBuilder innerHitBuilder) {
+        final String field = source.collapse().getField();
+        final Set<Object> collapseValues = new LinkedHashSet<>();
+        boolean hasMissingGroup = false;
+        for (SearchHit hit : searchResponse.hits().getHits()) {
+            Object collapseValue = hit.field(field).getValue();
+            if (collapseValue != null) {
+                collapseValues.add(collapseValue);
+            } else {
+                hasMissingGroup = true;
+            }
+        }
+        final BoolQueryBuilder groupsQuery = new BoolQueryBuilder();
+        if (collapseValues.isEmpty() == false) {
+            groupsQuery.should(QueryBuilders.termsQuery(field, collapseValues));
+        }
+        if (hasMissingGroup) {
+            groupsQuery.should(new BoolQueryBuilder().mustNot(QueryBuilders.existsQuery(field)));
+        }
+        final BoolQueryBuilder query = new BoolQueryBuilder().filter(groupsQuery);
+        if (source.query() != null) {
+            query.must(source.query());
+        }
+        if (source.postFilter() != null) {
+            // the post filter applies to the inner hits, but not to aggregations
+            query.filter(source.postFilter());
+        }
+        final SearchSourceBuilder batchedSource = new SearchSourceBuilder()
+            .query(query)
+            .size(0)
+            .trackTotalHits(false);
+        if (collapseValues.isEmpty() == false) {
+            batchedSource.aggregation(AggregationBuilders.terms(GROUPS_AGGREGATION_NAME)
+                .field(field)
+                .size(collapseValues.size())
+                .shardSize(collapseValues.size())
+                .subAggregation(buildTopHitsAggregationBuilder(innerHitBuilder)));
+        }
+        if (hasMissingGroup) {
+            batchedSource.aggregation(AggregationBuilders.missing(MISSING_GROUP_AGGREGATION_NAME)
+                .field(field)
+                .subAggregation(buildTopHitsAggregationBuilder(innerHitBuilder)));
+        }
+        return batchedSource;
+    }
+
+    private void regroupBatchedInnerHits(String field, InnerHitBuilder innerHitBuilder, Aggregations aggregations) {
+        final Map<Object, SearchHits> groups = new HashMap<>();
+        final Terms terms = aggregations == null ? null : aggregations.get(GROUPS_AGGREGATION_NAME);
+        if (terms != null) {
+            for (Terms.Bucket bucket : terms.getBuckets()) {
+                TopHits topHits = bucket.getAggregations().get(TOP_HITS_AGGREGATION_NAME);
+                groups.put(groupKey(bucket.getKey()), topHits.getHits());
+            }
+        }
+        final Missing missing = aggregations == null ? null : aggregations.get(MISSING_GROUP_AGGREGATION_NAME);
+        for (SearchHit hit : searchResponse.hits().getHits()) {
+            Object collapseValue = hit.field(field).getValue();
+            SearchHits innerHits;
+            if (collapseValue == null) {
+                innerHits = missing == null ? null : ((TopHits) missing.getAggregations().get(TOP_HITS_AGGREGATION_NAME)).getHits();
+            } else {
+                innerHits = groups.get(groupKey(collapseValue));
+            }
+            // the documents of a group may have been deleted since the collapsed hit was fetched
+            setInnerHits(hit, innerHitBuilder, innerHits == null ? SearchHits.empty() : innerHits);
+        }
+    }
+
+    /**
+     * Normalizes the collapse value of a hit and the key of a terms bucket, since integers may be read as longs and floats as doubles.
+     */
+    private static Object groupKey(Object value) {
+        if (value instanceof Float || value instanceof Double) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    private TopHitsAggregationBuilder buildTopHitsAggregationBuilder(InnerHitBuilder options) {
+        TopHitsAggregationBuilder topHits = AggregationBuilders.topHits(TOP_HITS_AGGREGATION_NAME);
+        topHits.from(options.getFrom());
+        topHits.size(options.getSize());
+        if (options.getSorts() != null) {
+            options.getSorts().forEach(topHits::sort);
+        }
+        if (options.getFetchSourceContext() != null) {
+            topHits.fetchSource(options.getFetchSourceContext());
+        }
+        if (options.getDocValueFields() != null) {
+            options.getDocValueFields().forEach(ff -> topHits.docValueField(ff.field, ff.format));
+        }
+        if (options.getStoredFieldsContext() != null && options.getStoredFieldsContext().fieldNames() != null) {
+            options.getStoredFieldsContext().fieldNames().forEach(topHits::storedField);
+        }
+        if (options.getScriptFields() != null) {
+            for (SearchSourceBuilder.ScriptField field : options.getScriptFields()) {
+                topHits.scriptField(field.fieldName(), field.script(), field.ignoreFailure());
+            }
+        }
+        if (options.getHighlightBuilder() != null) {
+            topHits.highlighter(options.getHighlightBuilder());
+        }
+        topHits.explain(options.isExplain());
+        topHits.trackScores(options.isTrackScores());
+        topHits.version(options.isVersion());
+        topHits.seqNoAndPrimaryTerm(options.isSeqNoAndPrimaryTerm());
+        return topHits;
+    }
+
     private SearchSourceBuilder buildExpandSearchSourceBuilder(InnerHitBuilder options, CollapseBuilder innerCollapseBuilder) {
         SearchSourceBuilder groupSource = new SearchSourceBuilder();
         groupSource.from(options.getFrom());
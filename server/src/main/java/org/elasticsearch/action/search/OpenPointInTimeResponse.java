@@ -0,0 +1,65 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Objects;
+
+public class OpenPointInTimeResponse extends ActionResponse implements ToXContentObject {
+    private static final ParseField ID = new ParseField("id");
+
+    private final String searchContextId;
+
+    public OpenPointInTimeResponse(String searchContextId) {
+        this.searchContextId = Objects.requireNonNull(searchContextId);
+    }
+
+    public OpenPointInTimeResponse(StreamInput in) throws IOException {
+        super(in);
+        searchContextId = in.readString();
+    }
+
+    /**
+     * The id of the point in time, to use in the <code>pit</code> section of search requests.
+     */
+    public String getSearchContextId() {
+        return searchContextId;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(searchContextId);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(ID.getPreferredName(), searchContextId);
+        builder.endObject();
+        return builder;
+    }
+}
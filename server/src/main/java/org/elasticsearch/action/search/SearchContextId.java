@@ -0,0 +1,138 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The id of a point in time. It records, for each shard of the targeted indices, the node that holds the
+ * reader context of the shard and the id of this context on that node.
+ */
+public final class SearchContextId {
+    private final String[] indices;
+    private final Map<ShardId, ReaderIdForNode> shards;
+
+    SearchContextId(String[] indices, Map<ShardId, ReaderIdForNode> shards) {
+        this.indices = indices;
+        this.shards = Collections.unmodifiableMap(shards);
+    }
+
+    /**
+     * The concrete indices that the point in time was opened on.
+     */
+    public String[] indices() {
+        return indices;
+    }
+
+    public Map<ShardId, ReaderIdForNode> shards() {
+        return shards;
+    }
+
+    static String encode(String[] indices, Map<ShardId, ReaderIdForNode> shards, Version version) {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(version);
+            Version.writeVersion(version, out);
+            out.writeStringArray(indices);
+            out.writeMap(shards, (o, shardId) -> shardId.writeTo(o), (o, reader) -> reader.writeTo(o));
+            return Base64.getUrlEncoder().encodeToString(BytesReference.toBytes(out.bytes()));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public static SearchContextId decode(String id) {
+        try {
+            final byte[] bytes = Base64.getUrlDecoder().decode(id);
+            try (StreamInput in = StreamInput.wrap(bytes)) {
+                final Version version = Version.readVersion(in);
+                in.setVersion(version);
+                final String[] indices = in.readStringArray();
+                final Map<ShardId, ReaderIdForNode> shards = in.readMap(ShardId::new, ReaderIdForNode::new);
+                if (in.available() > 0) {
+                    throw new IllegalArgumentException("Not all bytes were read");
+                }
+                return new SearchContextId(indices, shards);
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot parse point in time id", e);
+        }
+    }
+
+    /**
+     * The location of the reader context of a shard.
+     */
+    public static final class ReaderIdForNode implements Writeable {
+        private final String node;
+        private final long readerId;
+
+        ReaderIdForNode(String node, long readerId) {
+            this.node = node;
+            this.readerId = readerId;
+        }
+
+        ReaderIdForNode(StreamInput in) throws IOException {
+            this.node = in.readString();
+            this.readerId = in.readLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(node);
+            out.writeLong(readerId);
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public long getReaderId() {
+            return readerId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ReaderIdForNode that = (ReaderIdForNode) o;
+            return readerId == that.readerId && node.equals(that.node);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(node, readerId);
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.tasks.Task;
@@ -270,6 +271,20 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
                     addValidationError("[request_cache] cannot be used in a scroll context", validationException);
             }
         }
+        if (pointInTimeBuilder() != null) {
+            if (scroll) {
+                validationException = addValidationError("using [point in time] is not allowed in a scroll context", validationException);
+            }
+            if (indices.length > 0) {
+                validationException = addValidationError("[indices] cannot be used with point in time", validationException);
+            }
+            if (routing() != null) {
+                validationException = addValidationError("[routing] cannot be used with point in time", validationException);
+            }
+            if (preference() != null) {
+                validationException = addValidationError("[preference] cannot be used with point in time", validationException);
+            }
+        }
         return validationException;
     }
 
@@ -419,6 +434,14 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
         return source;
     }
 
+    /**
+     * The point in time that this request targets, <code>null</code> if the request targets the current state of the indices.
+     */
+    @Nullable
+    public PointInTimeBuilder pointInTimeBuilder() {
+        return source != null ? source.pointInTimeBuilder() : null;
+    }
+
     /**
      * The tye of search to execute.
      */
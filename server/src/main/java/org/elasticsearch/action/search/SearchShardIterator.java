@@ -24,6 +24,7 @@ import org.elasticsearch.cluster.routing.PlainShardIterator;
 import org.elasticsearch.cluster.routing.ShardIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchShardTarget;
 
@@ -40,6 +41,8 @@ public final class SearchShardIterator extends PlainShardIterator {
 
     private final OriginalIndices originalIndices;
     private final String clusterAlias;
+    private final long readerId;
+    private final TimeValue readerKeepAlive;
     private boolean skip = false;
 
     /**
@@ -52,9 +55,27 @@ public final class SearchShardIterator extends PlainShardIterator {
      * @param originalIndices the indices that the search request originally related to (before any rewriting happened)
      */
     public SearchShardIterator(@Nullable String clusterAlias, ShardId shardId, List<ShardRouting> shards, OriginalIndices originalIndices) {
+        this(clusterAlias, shardId, shards, originalIndices, -1L, null);
+    }
+
+    /**
+     * Creates a {@link PlainShardIterator} instance that iterates over the copies of a shard that hold the point in time
+     * reader context identified by <code>readerId</code>.
+     *
+     * @param clusterAlias the alias of the cluster where the shard is located
+     * @param shardId shard id of the group
+     * @param shards  shards to iterate
+     * @param originalIndices the indices that the search request originally related to (before any rewriting happened)
+     * @param readerId the id of the reader context to search or -1 to search the current reader of the shard
+     * @param readerKeepAlive the new keep alive of the reader context or <code>null</code> to keep the current one
+     */
+    public SearchShardIterator(@Nullable String clusterAlias, ShardId shardId, List<ShardRouting> shards, OriginalIndices originalIndices,
+                               long readerId, @Nullable TimeValue readerKeepAlive) {
         super(shardId, shards);
         this.originalIndices = originalIndices;
         this.clusterAlias = clusterAlias;
+        this.readerId = readerId;
+        this.readerKeepAlive = readerKeepAlive;
     }
 
     /**
@@ -72,6 +93,21 @@ public final class SearchShardIterator extends PlainShardIterator {
         return clusterAlias;
     }
 
+    /**
+     * Returns the id of the point in time reader context to search, -1 if the current reader of the shard should be searched.
+     */
+    long getReaderId() {
+        return readerId;
+    }
+
+    /**
+     * Returns the new keep alive of the point in time reader context, <code>null</code> if the current one should be kept.
+     */
+    @Nullable
+    TimeValue getReaderKeepAlive() {
+        return readerKeepAlive;
+    }
+
     /**
      * Creates a new shard target from this iterator, pointing at the node identified by the provided identifier.
      * @see SearchShardTarget
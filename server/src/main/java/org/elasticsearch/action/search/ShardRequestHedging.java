@@ -0,0 +1,144 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.node.ResponseCollectorService;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The policy of the coordinating node for hedging the shard requests of the initial search phase. If a shard hasn't answered after
+ * a delay, a duplicate of its request is sent to another copy of the shard and the first response wins.
+ * <p>
+ * The delay is the configured percentile of the service time of the node of the first copy, assuming that service times are
+ * exponentially distributed around the EWMA that the {@link ResponseCollectorService} keeps for the node. Shards on nodes without
+ * statistics are not hedged. The number of hedged requests that are in flight to a node is capped so that hedging can't amplify the
+ * load of nodes that are already overloaded.
+ */
+public final class ShardRequestHedging {
+
+    /** Whether the shard requests of searches that are slow to answer are hedged. */
+    public static final Setting<Boolean> HEDGING_ENABLED_SETTING =
+        Setting.boolSetting("search.hedging.enabled", false, Property.Dynamic, Property.NodeScope);
+
+    /** The percentile of the service time of a node after which the request of a shard is hedged. */
+    public static final Setting<Double> HEDGING_PERCENTILE_SETTING =
+        Setting.doubleSetting("search.hedging.percentile", 95d, 50d, 99.9d, Property.Dynamic, Property.NodeScope);
+
+    /** The minimum delay after which the request of a shard is hedged, for nodes that usually answer very quickly. */
+    public static final Setting<TimeValue> HEDGING_MIN_DELAY_SETTING =
+        Setting.timeSetting("search.hedging.min_delay", TimeValue.timeValueMillis(10), TimeValue.ZERO,
+            Property.Dynamic, Property.NodeScope);
+
+    /** The maximum number of hedged requests that this node sends concurrently to another node. */
+    public static final Setting<Integer> HEDGING_MAX_IN_FLIGHT_PER_NODE_SETTING =
+        Setting.intSetting("search.hedging.max_in_flight_per_node", 5, 0, Property.Dynamic, Property.NodeScope);
+
+    private final ThreadPool threadPool;
+    private final ResponseCollectorService responseCollectorService;
+    private final Map<String, Integer> inFlightPerNode = new HashMap<>();
+
+    private volatile boolean enabled;
+    private volatile double percentile;
+    private volatile TimeValue minDelay;
+    private volatile int maxInFlightPerNode;
+
+    ShardRequestHedging(ClusterSettings clusterSettings, ThreadPool threadPool, ResponseCollectorService responseCollectorService) {
+        this.threadPool = threadPool;
+        this.responseCollectorService = responseCollectorService;
+        this.enabled = clusterSettings.get(HEDGING_ENABLED_SETTING);
+        this.percentile = clusterSettings.get(HEDGING_PERCENTILE_SETTING);
+        this.minDelay = clusterSettings.get(HEDGING_MIN_DELAY_SETTING);
+        this.maxInFlightPerNode = clusterSettings.get(HEDGING_MAX_IN_FLIGHT_PER_NODE_SETTING);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_ENABLED_SETTING, value -> this.enabled = value);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_PERCENTILE_SETTING, value -> this.percentile = value);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_MIN_DELAY_SETTING, value -> this.minDelay = value);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_MAX_IN_FLIGHT_PER_NODE_SETTING, value -> this.maxInFlightPerNode = value);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the delay after which a request sent to the given node is hedged, or {@code null} if it shouldn't be hedged.
+     */
+    @Nullable
+    TimeValue hedgeDelay(String nodeId) {
+        if (enabled == false) {
+            return null;
+        }
+        final Optional<ResponseCollectorService.ComputedNodeStats> stats = responseCollectorService.getNodeStatistics(nodeId);
+        if (stats.isPresent() == false || stats.get().serviceTime <= 0) {
+            return null;
+        }
+        return TimeValue.timeValueNanos(hedgeDelayNanos(stats.get().serviceTime, percentile, minDelay.nanos()));
+    }
+
+    /**
+     * The given percentile of an exponential distribution of the given mean, which is {@code -ln(1 - p) * mean}.
+     */
+    static long hedgeDelayNanos(double serviceTimeNanos, double percentile, long minDelayNanos) {
+        final double delay = -Math.log1p(-percentile / 100) * serviceTimeNanos;
+        return Math.max(minDelayNanos, (long) Math.ceil(delay));
+    }
+
+    Scheduler.ScheduledCancellable schedule(Runnable hedge, TimeValue delay) {
+        return threadPool.schedule(hedge, delay, ThreadPool.Names.GENERIC);
+    }
+
+    /**
+     * Takes one of the hedged requests that may be in flight to the given node, returning {@code false} if none is left.
+     */
+    synchronized boolean tryAcquire(String nodeId) {
+        final int inFlight = inFlightPerNode.getOrDefault(nodeId, 0);
+        if (inFlight >= maxInFlightPerNode) {
+            return false;
+        }
+        inFlightPerNode.put(nodeId, inFlight + 1);
+        return true;
+    }
+
+    /**
+     * Gives back a hedged request that was taken with {@link #tryAcquire(String)} once it completed.
+     */
+    synchronized void release(String nodeId) {
+        final Integer inFlight = inFlightPerNode.get(nodeId);
+        assert inFlight != null && inFlight > 0 : "no hedged request in flight to [" + nodeId + "]";
+        if (inFlight == 1) {
+            inFlightPerNode.remove(nodeId);
+        } else {
+            inFlightPerNode.put(nodeId, inFlight - 1);
+        }
+    }
+
+    synchronized int inFlight(String nodeId) {
+        return inFlightPerNode.getOrDefault(nodeId, 0);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Frees the reader contexts of a point in time. The contexts that cannot be reached are released by the
+ * expiry of their keep alive.
+ */
+public class TransportClosePointInTimeAction extends HandledTransportAction<ClosePointInTimeRequest, ClearScrollResponse> {
+
+    private final ClusterService clusterService;
+    private final SearchTransportService searchTransportService;
+
+    @Inject
+    public TransportClosePointInTimeAction(TransportService transportService, ClusterService clusterService, ActionFilters actionFilters,
+                                           SearchTransportService searchTransportService) {
+        super(ClosePointInTimeAction.NAME, transportService, actionFilters, ClosePointInTimeRequest::new);
+        this.clusterService = clusterService;
+        this.searchTransportService = searchTransportService;
+    }
+
+    @Override
+    protected void doExecute(Task task, ClosePointInTimeRequest request, ActionListener<ClearScrollResponse> listener) {
+        final SearchContextId searchContextId = SearchContextId.decode(request.getId());
+        final Collection<SearchContextId.ReaderIdForNode> readers = searchContextId.shards().values();
+        if (readers.isEmpty()) {
+            listener.onResponse(new ClearScrollResponse(true, 0));
+            return;
+        }
+        final OriginalIndices originalIndices = new OriginalIndices(searchContextId.indices(), IndicesOptions.strictExpandOpen());
+        final DiscoveryNodes nodes = clusterService.state().nodes();
+        final CountDown countDown = new CountDown(readers.size());
+        final AtomicInteger freed = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Runnable onDone = () -> {
+            if (countDown.countDown()) {
+                listener.onResponse(new ClearScrollResponse(failed.get() == false, freed.get()));
+            }
+        };
+        for (SearchContextId.ReaderIdForNode reader : readers) {
+            final DiscoveryNode node = nodes.get(reader.getNode());
+            if (node == null) {
+                // the node left the cluster and the reader context with it
+                onDone.run();
+                continue;
+            }
+            try {
+                searchTransportService.sendFreeReaderContext(searchTransportService.getConnection(null, node), reader.getReaderId(),
+                    originalIndices, ActionListener.wrap(
+                        response -> {
+                            if (response.isFreed()) {
+                                freed.incrementAndGet();
+                            }
+                            onDone.run();
+                        },
+                        e -> {
+                            logger.warn(() -> new ParameterizedMessage("failed to free reader context on node [{}]", node), e);
+                            failed.set(true);
+                            onDone.run();
+                        }));
+            } catch (Exception e) {
+                logger.warn(() -> new ParameterizedMessage("failed to free reader context on node [{}]", node), e);
+                failed.set(true);
+                onDone.run();
+            }
+        }
+    }
+}
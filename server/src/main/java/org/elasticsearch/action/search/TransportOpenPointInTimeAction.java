@@ -0,0 +1,196 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.NoShardAvailableActionException;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opens a point in time on the concrete indices that the request resolves to. A reader context is opened on one
+ * copy of each shard and the locations of these contexts are encoded in the returned {@link SearchContextId}.
+ */
+public class TransportOpenPointInTimeAction extends HandledTransportAction<OpenPointInTimeRequest, OpenPointInTimeResponse> {
+
+    private final ClusterService clusterService;
+    private final IndexNameExpressionResolver indexNameExpressionResolver;
+    private final SearchTransportService searchTransportService;
+
+    @Inject
+    public TransportOpenPointInTimeAction(TransportService transportService, ClusterService clusterService, ActionFilters actionFilters,
+                                          IndexNameExpressionResolver indexNameExpressionResolver,
+                                          SearchTransportService searchTransportService) {
+        super(OpenPointInTimeAction.NAME, transportService, actionFilters, OpenPointInTimeRequest::new);
+        this.clusterService = clusterService;
+        this.indexNameExpressionResolver = indexNameExpressionResolver;
+        this.searchTransportService = searchTransportService;
+    }
+
+    @Override
+    protected void doExecute(Task task, OpenPointInTimeRequest request, ActionListener<OpenPointInTimeResponse> listener) {
+        final ClusterState clusterState = clusterService.state();
+        clusterState.blocks().globalBlockedRaiseException(ClusterBlockLevel.READ);
+        final Index[] indices = indexNameExpressionResolver.concreteIndices(clusterState, request.indicesOptions(), request.indices());
+        final String[] concreteIndices = new String[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            concreteIndices[i] = indices[i].getName();
+        }
+        Map<String, Set<String>> routingMap = indexNameExpressionResolver.resolveSearchRouting(clusterState, request.routing(),
+            request.indices());
+        routingMap = routingMap == null ? Collections.emptyMap() : routingMap;
+        final GroupShardsIterator<ShardIterator> shardIterators = clusterService.operationRouting().searchShards(clusterState,
+            concreteIndices, routingMap, request.preference());
+        final OriginalIndices originalIndices = new OriginalIndices(request);
+        new OpenReaderContexts(task, request, originalIndices, concreteIndices, shardIterators, clusterState, listener).run();
+    }
+
+    /**
+     * Opens a reader context on every shard. If a shard fails then all the contexts that were opened are freed and the
+     * request fails, the point in time would otherwise miss some documents.
+     */
+    private class OpenReaderContexts implements Runnable {
+        private final Task task;
+        private final OpenPointInTimeRequest request;
+        private final OriginalIndices originalIndices;
+        private final String[] concreteIndices;
+        private final GroupShardsIterator<ShardIterator> shardIterators;
+        private final ClusterState clusterState;
+        private final ActionListener<OpenPointInTimeResponse> listener;
+        private final Map<ShardId, SearchContextId.ReaderIdForNode> readers = new HashMap<>();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final CountDown countDown;
+
+        OpenReaderContexts(Task task, OpenPointInTimeRequest request, OriginalIndices originalIndices, String[] concreteIndices,
+                           GroupShardsIterator<ShardIterator> shardIterators, ClusterState clusterState,
+                           ActionListener<OpenPointInTimeResponse> listener) {
+            this.task = task;
+            this.request = request;
+            this.originalIndices = originalIndices;
+            this.concreteIndices = concreteIndices;
+            this.shardIterators = shardIterators;
+            this.clusterState = clusterState;
+            this.listener = listener;
+            this.countDown = new CountDown(shardIterators.size());
+        }
+
+        @Override
+        public void run() {
+            if (shardIterators.size() == 0) {
+                listener.onResponse(new OpenPointInTimeResponse(
+                    SearchContextId.encode(concreteIndices, Collections.emptyMap(), clusterState.nodes().getMinNodeVersion())));
+                return;
+            }
+            for (ShardIterator shardIt : shardIterators) {
+                final ShardRouting shard = shardIt.nextOrNull();
+                if (shard == null) {
+                    onShardFailure(new NoShardAvailableActionException(shardIt.shardId()));
+                    continue;
+                }
+                try {
+                    final DiscoveryNode node = clusterState.nodes().get(shard.currentNodeId());
+                    final SearchTransportService.OpenReaderContextRequest shardRequest =
+                        new SearchTransportService.OpenReaderContextRequest(shard.shardId(), request.keepAlive(), originalIndices);
+                    searchTransportService.sendOpenReaderContext(searchTransportService.getConnection(null, node), shardRequest, task,
+                        ActionListener.wrap(
+                            response -> onShardResponse(shard, response.readerId()),
+                            this::onShardFailure));
+                } catch (Exception e) {
+                    onShardFailure(e);
+                }
+            }
+        }
+
+        private void onShardResponse(ShardRouting shard, long readerId) {
+            synchronized (readers) {
+                readers.put(shard.shardId(), new SearchContextId.ReaderIdForNode(shard.currentNodeId(), readerId));
+            }
+            onShardDone();
+        }
+
+        private void onShardFailure(Exception e) {
+            if (failure.compareAndSet(null, e) == false) {
+                failure.get().addSuppressed(e);
+            }
+            onShardDone();
+        }
+
+        private void onShardDone() {
+            if (countDown.countDown() == false) {
+                return;
+            }
+            final Exception e = failure.get();
+            if (e != null) {
+                freeReaderContexts();
+                listener.onFailure(e);
+            } else {
+                final Version version = clusterState.nodes().getMinNodeVersion();
+                listener.onResponse(new OpenPointInTimeResponse(SearchContextId.encode(concreteIndices, readers, version)));
+            }
+        }
+
+        private void freeReaderContexts() {
+            final List<Map.Entry<ShardId, SearchContextId.ReaderIdForNode>> opened;
+            synchronized (readers) {
+                opened = new ArrayList<>(readers.entrySet());
+            }
+            for (Map.Entry<ShardId, SearchContextId.ReaderIdForNode> entry : opened) {
+                final SearchContextId.ReaderIdForNode reader = entry.getValue();
+                final DiscoveryNode node = clusterService.state().nodes().get(reader.getNode());
+                if (node == null) {
+                    continue;
+                }
+                try {
+                    searchTransportService.sendFreeReaderContext(searchTransportService.getConnection(null, node),
+                        reader.getReaderId(), originalIndices, ActionListener.wrap(r -> {},
+                            e -> logger.debug(() -> new ParameterizedMessage("failed to free reader context of [{}]",
+                                entry.getKey()), e)));
+                } catch (Exception e) {
+                    logger.debug(() -> new ParameterizedMessage("failed to free reader context of [{}]", entry.getKey()), e);
+                }
+            }
+        }
+    }
+}
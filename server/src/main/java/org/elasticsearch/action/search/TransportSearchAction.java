@@ -30,11 +30,15 @@ import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.IndexTimestampRange;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
@@ -43,12 +47,17 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.util.concurrent.CountDown;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.ConstantScoreQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.index.query.Rewriteable;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.InternalSearchResponse;
@@ -97,6 +106,7 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
     private final SearchPhaseController searchPhaseController;
     private final SearchService searchService;
     private final IndexNameExpressionResolver indexNameExpressionResolver;
+    private final ShardRequestHedging hedging;
 
     @Inject
     public TransportSearchAction(ThreadPool threadPool, TransportService transportService, SearchService searchService,
@@ -112,6 +122,8 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         this.clusterService = clusterService;
         this.searchService = searchService;
         this.indexNameExpressionResolver = indexNameExpressionResolver;
+        this.hedging = new ShardRequestHedging(clusterService.getClusterSettings(), threadPool,
+            searchService.getResponseCollectorService());
     }
 
     private Map<String, AliasFilter> buildPerIndexAliasFilter(SearchRequest request, ClusterState clusterState,
@@ -205,6 +217,13 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                 searchRequest.source(source);
             }
             final ClusterState clusterState = clusterService.state();
+            if (searchRequest.pointInTimeBuilder() != null) {
+                // a point in time is bound to the concrete indices of the local cluster that it was opened on
+                final SearchContextId searchContextId = SearchContextId.decode(searchRequest.pointInTimeBuilder().getId());
+                final OriginalIndices localIndices = new OriginalIndices(searchContextId.indices(), searchRequest.indicesOptions());
+                executeLocalSearch(task, timeProvider, searchRequest, localIndices, clusterState, listener);
+                return;
+            }
             final Map<String, OriginalIndices> remoteClusterIndices = remoteClusterService.groupIndices(searchRequest.indicesOptions(),
                 searchRequest.indices());
             OriginalIndices localIndices = remoteClusterIndices.remove(RemoteClusterAware.LOCAL_CLUSTER_GROUP_KEY);
@@ -468,7 +487,9 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         // TODO: I think startTime() should become part of ActionRequest and that should be used both for index name
         // date math expressions and $now in scripts. This way all apis will deal with now in the same way instead
         // of just for the _search api
-        final Index[] indices = resolveLocalIndices(localIndices, searchRequest.indicesOptions(), clusterState, timeProvider);
+        final Index[] indices = skipIndicesOutsideOfTimestampRanges(searchRequest, clusterState.metaData(),
+            timeProvider::getAbsoluteStartMillis,
+            resolveLocalIndices(localIndices, searchRequest.indicesOptions(), clusterState, timeProvider));
         Map<String, AliasFilter> aliasFilter = buildPerIndexAliasFilter(searchRequest, clusterState, indices, remoteAliasMap);
         Map<String, Set<String>> routingMap = indexNameExpressionResolver.resolveSearchRouting(clusterState, searchRequest.routing(),
             searchRequest.indices());
@@ -477,11 +498,16 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         for (int i = 0; i < indices.length; i++) {
             concreteIndices[i] = indices[i].getName();
         }
-        Map<String, Long> nodeSearchCounts = searchTransportService.getPendingSearchRequests();
-        GroupShardsIterator<ShardIterator> localShardsIterator = clusterService.operationRouting().searchShards(clusterState,
+        final GroupShardsIterator<SearchShardIterator> shardIterators;
+        if (searchRequest.pointInTimeBuilder() != null) {
+            shardIterators = pointInTimeShardIterators(clusterState, searchRequest.pointInTimeBuilder(), localIndices);
+        } else {
+            Map<String, Long> nodeSearchCounts = searchTransportService.getPendingSearchRequests();
+            GroupShardsIterator<ShardIterator> localShardsIterator = clusterService.operationRouting().searchShards(clusterState,
                 concreteIndices, routingMap, searchRequest.preference(), searchService.getResponseCollectorService(), nodeSearchCounts);
-        GroupShardsIterator<SearchShardIterator> shardIterators = mergeShardsIterators(localShardsIterator, localIndices,
-            searchRequest.getLocalClusterAlias(), remoteShardIterators);
+            shardIterators = mergeShardsIterators(localShardsIterator, localIndices, searchRequest.getLocalClusterAlias(),
+                remoteShardIterators);
+        }
 
         failIfOverShardCountLimit(clusterService, shardIterators.size());
 
@@ -515,6 +541,64 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
             Collections.unmodifiableMap(aliasFilter), concreteIndexBoosts, routingMap, listener, preFilterSearchShards, clusters).start();
     }
 
+    /**
+     * Skips the indices whose {@link IndexTimestampRange recorded timestamp range} can't match the range queries on their timestamp
+     * field that the query of the search requires, before sending any request to their shards. At least one index is kept so that
+     * the search still returns aggregations.
+     */
+    static Index[] skipIndicesOutsideOfTimestampRanges(SearchRequest searchRequest, MetaData metaData, LongSupplier nowInMillis,
+                                                       Index[] indices) {
+        if (indices.length <= 1 || searchRequest.pointInTimeBuilder() != null || searchRequest.searchType() != QUERY_THEN_FETCH
+            || SearchService.canRewriteToMatchNone(searchRequest.source()) == false) {
+            return indices;
+        }
+        final List<RangeQueryBuilder> ranges = new ArrayList<>();
+        collectRequiredRanges(searchRequest.source().query(), ranges);
+        if (ranges.isEmpty()) {
+            return indices;
+        }
+        final List<Index> matchingIndices = new ArrayList<>(indices.length);
+        for (Index index : indices) {
+            final IndexMetaData indexMetaData = metaData.index(index);
+            final IndexTimestampRange timestampRange = indexMetaData == null ? null : IndexTimestampRange.fromIndexMetaData(indexMetaData);
+            if (timestampRange == null || mayMatch(timestampRange, ranges, nowInMillis)) {
+                matchingIndices.add(index);
+            }
+        }
+        if (matchingIndices.size() == indices.length) {
+            return indices;
+        }
+        return matchingIndices.isEmpty() ? new Index[] { indices[0] } : matchingIndices.toArray(Index.EMPTY_ARRAY);
+    }
+
+    private static boolean mayMatch(IndexTimestampRange timestampRange, List<RangeQueryBuilder> ranges, LongSupplier nowInMillis) {
+        for (RangeQueryBuilder range : ranges) {
+            if (range.fieldName().equals(timestampRange.getField()) && timestampRange.mayMatch(range, nowInMillis) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collects the range queries that documents must match to match the given query.
+     */
+    private static void collectRequiredRanges(QueryBuilder query, List<RangeQueryBuilder> ranges) {
+        if (query instanceof RangeQueryBuilder) {
+            ranges.add((RangeQueryBuilder) query);
+        } else if (query instanceof ConstantScoreQueryBuilder) {
+            collectRequiredRanges(((ConstantScoreQueryBuilder) query).innerQuery(), ranges);
+        } else if (query instanceof BoolQueryBuilder) {
+            final BoolQueryBuilder bool = (BoolQueryBuilder) query;
+            for (QueryBuilder clause : bool.must()) {
+                collectRequiredRanges(clause, ranges);
+            }
+            for (QueryBuilder clause : bool.filter()) {
+                collectRequiredRanges(clause, ranges);
+            }
+        }
+    }
+
     static BiFunction<String, String, Transport.Connection> buildConnectionLookup(String requestClusterAlias,
                                                               Function<String, DiscoveryNode> localNodes,
                                                               BiFunction<String, String, DiscoveryNode> remoteNodes,
@@ -545,6 +629,29 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                     && searchRequest.getPreFilterShardSize() < shardIterators.size();
     }
 
+    /**
+     * Builds the shard iterators of a search that targets a point in time. Each iterator holds the single copy of the shard
+     * that holds the reader context, so the search fails on a shard if this copy was relocated or is not started anymore.
+     */
+    static GroupShardsIterator<SearchShardIterator> pointInTimeShardIterators(ClusterState clusterState, PointInTimeBuilder pointInTime,
+                                                                              OriginalIndices localIndices) {
+        final SearchContextId searchContextId = SearchContextId.decode(pointInTime.getId());
+        final List<SearchShardIterator> iterators = new ArrayList<>(searchContextId.shards().size());
+        for (Map.Entry<ShardId, SearchContextId.ReaderIdForNode> entry : searchContextId.shards().entrySet()) {
+            final ShardId shardId = entry.getKey();
+            final SearchContextId.ReaderIdForNode reader = entry.getValue();
+            final List<ShardRouting> shards = new ArrayList<>(1);
+            for (ShardRouting shard : clusterState.routingTable().shardRoutingTable(shardId).activeShards()) {
+                if (reader.getNode().equals(shard.currentNodeId())) {
+                    shards.add(shard);
+                    break;
+                }
+            }
+            iterators.add(new SearchShardIterator(null, shardId, shards, localIndices, reader.getReaderId(), pointInTime.getKeepAlive()));
+        }
+        return new GroupShardsIterator<>(iterators);
+    }
+
     static GroupShardsIterator<SearchShardIterator> mergeShardsIterators(GroupShardsIterator<ShardIterator> localShardsIterator,
                                                              OriginalIndices localIndices,
                                                              @Nullable String localClusterAlias,
@@ -587,12 +694,12 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                 case DFS_QUERY_THEN_FETCH:
                     searchAsyncAction = new SearchDfsQueryThenFetchAsyncAction(logger, searchTransportService, connectionLookup,
                         aliasFilter, concreteIndexBoosts, indexRoutings, searchPhaseController, executor, searchRequest, listener,
-                        shardIterators, timeProvider, clusterStateVersion, task, clusters);
+                        shardIterators, timeProvider, clusterStateVersion, task, clusters, hedging);
                     break;
                 case QUERY_THEN_FETCH:
                     searchAsyncAction = new SearchQueryThenFetchAsyncAction(logger, searchTransportService, connectionLookup,
                         aliasFilter, concreteIndexBoosts, indexRoutings, searchPhaseController, executor, searchRequest, listener,
-                        shardIterators, timeProvider, clusterStateVersion, task, clusters);
+                        shardIterators, timeProvider, clusterStateVersion, task, clusters, hedging);
                     break;
                 default:
                     throw new IllegalStateException("Unknown search type: [" + searchRequest.searchType() + "]");
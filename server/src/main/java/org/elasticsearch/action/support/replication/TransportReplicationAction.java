@@ -153,7 +153,15 @@ public abstract class TransportReplicationAction<
     @Override
     protected void doExecute(Task task, Request request, ActionListener<Response> listener) {
         assert request.shardId() != null : "request shardId must be set";
-        new ReroutePhase((ReplicationTask) task, request, listener).run();
+        runReroutePhase(task, request, listener, true);
+    }
+
+    private void runReroutePhase(Task task, Request request, ActionListener<Response> listener, boolean initiatedByNodeClient) {
+        try {
+            new ReroutePhase((ReplicationTask) task, request, listener, initiatedByNodeClient).run();
+        } catch (RuntimeException e) {
+            listener.onFailure(e);
+        }
     }
 
     protected ReplicationOperation.Replicas<ReplicaRequest> newReplicasProxy() {
@@ -215,6 +223,32 @@ public abstract class TransportReplicationAction<
         return TransportRequestOptions.EMPTY;
     }
 
+    /**
+     * Accounts for a request that was rerouted to this node by another coordinating node. The returned {@link Releasable} is
+     * closed once the request has completed. Implementations may throw an
+     * {@link org.elasticsearch.common.util.concurrent.EsRejectedExecutionException} to reject the request.
+     */
+    protected Releasable checkOperationLimits(final Request request) {
+        return () -> {};
+    }
+
+    /**
+     * Accounts for a request that is about to be executed on the primary shard. {@code rerouteWasLocal} is set if the request was
+     * routed to this node by the local {@link ReroutePhase}, in which case {@code localRerouteInitiatedByNodeClient} tells whether
+     * the request was started through the node client (rather than received from another node via
+     * {@link #checkOperationLimits(ReplicationRequest)}).
+     */
+    protected Releasable checkPrimaryLimits(final Request request, boolean rerouteWasLocal, boolean localRerouteInitiatedByNodeClient) {
+        return () -> {};
+    }
+
+    /**
+     * Accounts for a request that is about to be executed on a replica shard.
+     */
+    protected Releasable checkReplicaLimits(final ReplicaRequest request) {
+        return () -> {};
+    }
+
     private ClusterBlockException blockExceptions(final ClusterState state, final String indexName) {
         ClusterBlockLevel globalBlockLevel = globalBlockLevel();
         if (globalBlockLevel != null) {
@@ -247,12 +281,23 @@ public abstract class TransportReplicationAction<
     }
 
     protected void handleOperationRequest(final Request request, final TransportChannel channel, Task task) {
-        execute(task, request, new ChannelActionListener<>(channel, actionName, request));
+        Releasable releasable = checkOperationLimits(request);
+        ActionListener<Response> listener =
+            ActionListener.runBefore(new ChannelActionListener<>(channel, actionName, request), releasable::close);
+        runReroutePhase(task, request, listener, false);
     }
 
     protected void handlePrimaryRequest(final ConcreteShardRequest<Request> request, final TransportChannel channel, final Task task) {
-        new AsyncPrimaryAction(
-            request, new ChannelActionListener<>(channel, transportPrimaryAction, request), (ReplicationTask) task).run();
+        Releasable releasable = checkPrimaryLimits(request.getRequest(), request.sentFromLocalReroute(),
+            request.localRerouteInitiatedByNodeClient());
+        ActionListener<Response> listener =
+            ActionListener.runBefore(new ChannelActionListener<>(channel, transportPrimaryAction, request), releasable::close);
+
+        try {
+            new AsyncPrimaryAction(request, listener, (ReplicationTask) task).run();
+        } catch (RuntimeException e) {
+            listener.onFailure(e);
+        }
     }
 
     class AsyncPrimaryAction extends AbstractRunnable {
@@ -467,8 +512,15 @@ public abstract class TransportReplicationAction<
 
     protected void handleReplicaRequest(final ConcreteReplicaRequest<ReplicaRequest> replicaRequest,
                                         final TransportChannel channel, final Task task) {
-        new AsyncReplicaAction(
-            replicaRequest, new ChannelActionListener<>(channel, transportReplicaAction, replicaRequest), (ReplicationTask) task).run();
+        Releasable releasable = checkReplicaLimits(replicaRequest.getRequest());
+        ActionListener<ReplicaResponse> listener =
+            ActionListener.runBefore(new ChannelActionListener<>(channel, transportReplicaAction, replicaRequest), releasable::close);
+
+        try {
+            new AsyncReplicaAction(replicaRequest, listener, (ReplicationTask) task).run();
+        } catch (RuntimeException e) {
+            listener.onFailure(e);
+        }
     }
 
     public static class RetryOnReplicaException extends ElasticsearchException {
@@ -604,9 +656,15 @@ public abstract class TransportReplicationAction<
         private final ReplicationTask task;
         private final ClusterStateObserver observer;
         private final AtomicBoolean finished = new AtomicBoolean();
+        private final boolean initiatedByNodeClient;
 
         ReroutePhase(ReplicationTask task, Request request, ActionListener<Response> listener) {
+            this(task, request, listener, false);
+        }
+
+        ReroutePhase(ReplicationTask task, Request request, ActionListener<Response> listener, boolean initiatedByNodeClient) {
             this.request = request;
+            this.initiatedByNodeClient = initiatedByNodeClient;
             if (task != null) {
                 this.request.setParentTask(clusterService.localNode().getId(), task.getId());
             }
@@ -692,7 +750,8 @@ public abstract class TransportReplicationAction<
                     transportPrimaryAction, request.shardId(), request, state.version(), primary.currentNodeId());
             }
             performAction(node, transportPrimaryAction, true,
-                new ConcreteShardRequest<>(request, primary.allocationId().getId(), indexMetaData.primaryTerm(primary.id())));
+                new ConcreteShardRequest<>(request, primary.allocationId().getId(), indexMetaData.primaryTerm(primary.id()),
+                    true, initiatedByNodeClient));
         }
 
         private void performRemoteAction(ClusterState state, ShardRouting primary, DiscoveryNode node) {
@@ -1039,19 +1098,34 @@ public abstract class TransportReplicationAction<
         private final String targetAllocationID;
         private final long primaryTerm;
         private final R request;
+        // Indicates if this primary shard request originated by a reroute on this local node. Not serialized, only set for requests
+        // that are handed over to the local transport without going over the wire.
+        private final boolean sentFromLocalReroute;
+        // Indicates if this local reroute was initiated by the NodeClient executing a transport action. This
+        // is only true if sentFromLocalReroute is true.
+        private final boolean localRerouteInitiatedByNodeClient;
 
         public ConcreteShardRequest(Writeable.Reader<R> requestReader, StreamInput in) throws IOException {
             targetAllocationID = in.readString();
             primaryTerm  = in.readVLong();
+            sentFromLocalReroute = false;
+            localRerouteInitiatedByNodeClient = false;
             request = requestReader.read(in);
         }
 
         public ConcreteShardRequest(R request, String targetAllocationID, long primaryTerm) {
+            this(request, targetAllocationID, primaryTerm, false, false);
+        }
+
+        public ConcreteShardRequest(R request, String targetAllocationID, long primaryTerm,
+                                    boolean sentFromLocalReroute, boolean localRerouteInitiatedByNodeClient) {
             Objects.requireNonNull(request);
             Objects.requireNonNull(targetAllocationID);
             this.request = request;
             this.targetAllocationID = targetAllocationID;
             this.primaryTerm = primaryTerm;
+            this.sentFromLocalReroute = sentFromLocalReroute;
+            this.localRerouteInitiatedByNodeClient = localRerouteInitiatedByNodeClient;
         }
 
         @Override
@@ -1089,6 +1163,14 @@ public abstract class TransportReplicationAction<
             return request;
         }
 
+        public boolean sentFromLocalReroute() {
+            return sentFromLocalReroute;
+        }
+
+        public boolean localRerouteInitiatedByNodeClient() {
+            return localRerouteInitiatedByNodeClient;
+        }
+
         public String getTargetAllocationID() {
             return targetAllocationID;
         }
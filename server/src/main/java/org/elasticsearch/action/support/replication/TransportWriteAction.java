@@ -32,7 +32,9 @@ import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexingPressure;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.index.shard.IndexShard;
@@ -57,12 +59,63 @@ public abstract class TransportWriteAction<
             Response extends ReplicationResponse & WriteResponse
         > extends TransportReplicationAction<Request, ReplicaRequest, Response> {
 
+    private final boolean forceExecutionOnPrimary;
+    private final IndexingPressure indexingPressure;
+
     protected TransportWriteAction(Settings settings, String actionName, TransportService transportService,
                                    ClusterService clusterService, IndicesService indicesService, ThreadPool threadPool,
                                    ShardStateAction shardStateAction, ActionFilters actionFilters, Writeable.Reader<Request> request,
-                                   Writeable.Reader<ReplicaRequest> replicaRequest, String executor, boolean forceExecutionOnPrimary) {
+                                   Writeable.Reader<ReplicaRequest> replicaRequest, String executor, boolean forceExecutionOnPrimary,
+                                   IndexingPressure indexingPressure) {
         super(settings, actionName, transportService, clusterService, indicesService, threadPool, shardStateAction, actionFilters,
               request, replicaRequest, executor, true, forceExecutionOnPrimary);
+        this.forceExecutionOnPrimary = forceExecutionOnPrimary;
+        this.indexingPressure = indexingPressure;
+    }
+
+    @Override
+    protected Releasable checkOperationLimits(Request request) {
+        return indexingPressure.markPrimaryOperationStarted(primaryOperationSize(request), forceExecutionOnPrimary);
+    }
+
+    @Override
+    protected Releasable checkPrimaryLimits(Request request, boolean rerouteWasLocal, boolean localRerouteInitiatedByNodeClient) {
+        if (rerouteWasLocal) {
+            // the bytes of a request started through the node client were already accounted for by the coordinating stage, whereas
+            // a local reroute of a request received from another node was accounted for in checkOperationLimits
+            if (localRerouteInitiatedByNodeClient) {
+                return indexingPressure.markPrimaryOperationLocalToCoordinatingNodeStarted(primaryOperationSize(request));
+            } else {
+                return () -> {};
+            }
+        } else {
+            // the request was received directly from the network, either because the write action skips the reroute step
+            // or because the primary was relocated
+            return indexingPressure.markPrimaryOperationStarted(primaryOperationSize(request), forceExecutionOnPrimary);
+        }
+    }
+
+    /**
+     * Accounts for the bytes of a replica operation without ever rejecting it: a rejected replica operation fails the replica copy.
+     * The bytes still count against the budget of new coordinating and primary operations, which is where back-pressure is applied.
+     */
+    @Override
+    protected Releasable checkReplicaLimits(ReplicaRequest request) {
+        return indexingPressure.markReplicaOperationStarted(replicaOperationSize(request), true);
+    }
+
+    /**
+     * The number of bytes a request occupies on the primary, used for indexing pressure accounting.
+     */
+    protected long primaryOperationSize(Request request) {
+        return 0;
+    }
+
+    /**
+     * The number of bytes a request occupies on a replica, used for indexing pressure accounting.
+     */
+    protected long replicaOperationSize(ReplicaRequest request) {
+        return 0;
     }
 
     /** Syncs operation result to the translog or throws a shard not available failure */
@@ -0,0 +1,152 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.metadata;
+
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.time.DateFormatter;
+import org.elasticsearch.common.time.DateMathParser;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * The smallest and largest values of the timestamp field of an index, in milliseconds since the epoch. They are recorded in the custom
+ * data of the {@link IndexMetaData} by the {@link IndexTimestampRangeService} once the index has a block that rejects writes, so that
+ * searches with a range query on the timestamp field can skip the index on the coordinating node, without sending any request to its
+ * shards.
+ */
+public final class IndexTimestampRange {
+
+    /**
+     * The date field whose range is recorded in the metadata of the index once it stops receiving writes.
+     */
+    public static final Setting<String> INDEX_TIMESTAMP_RANGE_FIELD_SETTING =
+        Setting.simpleString("index.timestamp_range.field", Property.IndexScope, Property.Final);
+
+    static final String CUSTOM_KEY = "timestamp_range";
+
+    private final String field;
+    @Nullable
+    private final String format;
+    private final long min;
+    private final long max;
+
+    IndexTimestampRange(String field, @Nullable String format, long min, long max) {
+        this.field = field;
+        this.format = format;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Returns the timestamp range recorded for the given index, or {@code null} if none was recorded or if the index may receive writes,
+     * in which case the recorded range may not contain all of its timestamps anymore.
+     */
+    @Nullable
+    public static IndexTimestampRange fromIndexMetaData(IndexMetaData indexMetaData) {
+        final Map<String, String> customData = indexMetaData.getCustomData(CUSTOM_KEY);
+        if (customData == null || isWriteBlocked(indexMetaData) == false) {
+            return null;
+        }
+        return new IndexTimestampRange(customData.get("field"), customData.get("format"), Long.parseLong(customData.get("min")),
+            Long.parseLong(customData.get("max")));
+    }
+
+    /**
+     * Returns whether the given index has a block that rejects writes, the only state in which its timestamp range can be recorded.
+     */
+    static boolean isWriteBlocked(IndexMetaData indexMetaData) {
+        return IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.get(indexMetaData.getSettings())
+            || IndexMetaData.INDEX_READ_ONLY_SETTING.get(indexMetaData.getSettings());
+    }
+
+    Map<String, String> toCustomData() {
+        final Map<String, String> customData = new HashMap<>();
+        customData.put("field", field);
+        if (format != null) {
+            customData.put("format", format);
+        }
+        customData.put("min", Long.toString(min));
+        customData.put("max", Long.toString(max));
+        return customData;
+    }
+
+    /**
+     * The timestamp field.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * The smallest timestamp of the index, {@link Long#MAX_VALUE} if no document has one.
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * The largest timestamp of the index, {@link Long#MIN_VALUE} if no document has one.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns whether documents of the index may match the given range query on the timestamp field. The bounds of the query are parsed
+     * with its format, or else the format of the field, and the range is considered to match if they can't be parsed.
+     */
+    public boolean mayMatch(RangeQueryBuilder query, LongSupplier nowInMillis) {
+        assert field.equals(query.fieldName());
+        final long from;
+        final long to;
+        try {
+            final String pattern = query.format() != null ? query.format()
+                : format != null ? format : DateFieldMapper.DEFAULT_DATE_TIME_FORMATTER.pattern();
+            final DateMathParser parser = DateFormatter.forPattern(pattern).toDateMathParser();
+            final ZoneId zone = query.timeZone() == null ? null : ZoneId.of(query.timeZone());
+            // the bounds are widened to whole milliseconds, which may only keep more indices
+            from = query.from() == null ? Long.MIN_VALUE
+                : parser.parse(query.from().toString(), nowInMillis, query.includeLower() == false, zone).toEpochMilli();
+            if (query.to() == null) {
+                to = Long.MAX_VALUE;
+            } else {
+                final Instant instant = parser.parse(query.to().toString(), nowInMillis, query.includeUpper(), zone);
+                if (instant.getNano() % 1_000_000 != 0) {
+                    to = instant.toEpochMilli() + 1;
+                } else {
+                    to = query.includeUpper() ? instant.toEpochMilli() : instant.toEpochMilli() - 1;
+                }
+            }
+        } catch (ElasticsearchParseException | IllegalArgumentException | DateTimeException | ArithmeticException e) {
+            return true;
+        }
+        return from <= max && to >= min;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.metadata;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.ClusterStateUpdateTask;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Priority;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.gateway.GatewayService;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.Max;
+import org.elasticsearch.search.aggregations.metrics.Min;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.elasticsearch.cluster.metadata.IndexTimestampRange.INDEX_TIMESTAMP_RANGE_FIELD_SETTING;
+
+/**
+ * Records the {@link IndexTimestampRange} of the indices that have a {@link IndexTimestampRange#INDEX_TIMESTAMP_RANGE_FIELD_SETTING
+ * timestamp field} once they have a block that rejects writes. The elected master refreshes such an index, searches for the smallest
+ * and largest values of its timestamp field, and records them in the metadata of the index. The settings update that lifts the block
+ * removes the range again, see {@link MetaDataUpdateSettingsService}.
+ */
+public class IndexTimestampRangeService implements ClusterStateListener {
+
+    private static final Logger logger = LogManager.getLogger(IndexTimestampRangeService.class);
+
+    private final Client client;
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    // the indices whose range is being recorded, or that can't have one
+    private final Set<Index> ongoingRecords = ConcurrentCollections.newConcurrentSet();
+
+    public IndexTimestampRangeService(Client client, ClusterService clusterService, ThreadPool threadPool) {
+        this.client = client;
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        clusterService.addListener(this);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        ongoingRecords.removeAll(event.indicesDeleted());
+        if (event.localNodeMaster() == false || (event.metaDataChanged() == false && event.routingTableChanged() == false)) {
+            return;
+        }
+        final ClusterState state = event.state();
+        if (state.blocks().hasGlobalBlock(GatewayService.STATE_NOT_RECOVERED_BLOCK)) {
+            return;
+        }
+        for (IndexMetaData indexMetaData : state.metaData()) {
+            final String field = INDEX_TIMESTAMP_RANGE_FIELD_SETTING.get(indexMetaData.getSettings());
+            if (Strings.isEmpty(field)) {
+                continue;
+            }
+            if (IndexTimestampRange.isWriteBlocked(indexMetaData) && indexMetaData.getState() == IndexMetaData.State.OPEN
+                && IndexTimestampRange.fromIndexMetaData(indexMetaData) == null) {
+                final IndexRoutingTable routingTable = state.routingTable().index(indexMetaData.getIndex());
+                if (routingTable != null && routingTable.allPrimaryShardsActive() && ongoingRecords.add(indexMetaData.getIndex())) {
+                    recordTimestampRange(indexMetaData, field);
+                }
+            }
+        }
+    }
+
+    private void recordTimestampRange(IndexMetaData indexMetaData, String field) {
+        final Index index = indexMetaData.getIndex();
+        final String format;
+        try {
+            format = timestampFormat(indexMetaData, field);
+        } catch (IllegalArgumentException e) {
+            // the index stays in the ongoing records so that it isn't checked again
+            logger.warn(new ParameterizedMessage("{} can't record the range of timestamp field [{}]", index, field), e);
+            return;
+        }
+        final ActionListener<IndexTimestampRange> listener = ActionListener.wrap(
+            range -> submitTimestampRange(index, indexMetaData.getSettingsVersion(), range),
+            e -> {
+                logger.debug(new ParameterizedMessage("{} failed to compute the range of timestamp field [{}]", index, field), e);
+                ongoingRecords.remove(index);
+            });
+        final ThreadContext threadContext = threadPool.getThreadContext();
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            threadContext.markAsSystemContext();
+            // writes that completed before the index stopped receiving them may not be visible to searches yet
+            client.admin().indices().prepareRefresh(index.getName()).execute(ActionListener.wrap(
+                refreshResponse -> {
+                    if (refreshResponse.getFailedShards() > 0) {
+                        throw new ElasticsearchException("failed to refresh [{}] shards", refreshResponse.getFailedShards());
+                    }
+                    client.prepareSearch(index.getName())
+                        .setSize(0)
+                        .setTrackTotalHits(false)
+                        .setRequestCache(false)
+                        .addAggregation(AggregationBuilders.min("min").field(field))
+                        .addAggregation(AggregationBuilders.max("max").field(field))
+                        .execute(ActionListener.map(listener, response -> toTimestampRange(field, format, response)));
+                },
+                listener::onFailure));
+        }
+    }
+
+    static IndexTimestampRange toTimestampRange(String field, @Nullable String format, SearchResponse response) {
+        if (response.getFailedShards() > 0) {
+            throw new ElasticsearchException("failed to search [{}] shards", response.getFailedShards());
+        }
+        final Min min = response.getAggregations().get("min");
+        final Max max = response.getAggregations().get("max");
+        // an index without timestamps has an empty range, which no query matches
+        return new IndexTimestampRange(field, format,
+            Double.isInfinite(min.getValue()) ? Long.MAX_VALUE : (long) Math.floor(min.getValue()),
+            Double.isInfinite(max.getValue()) ? Long.MIN_VALUE : (long) Math.ceil(max.getValue()));
+    }
+
+    private void submitTimestampRange(Index index, long settingsVersion, IndexTimestampRange range) {
+        clusterService.submitStateUpdateTask("record-timestamp-range " + index, new ClusterStateUpdateTask(Priority.LOW) {
+            @Override
+            public ClusterState execute(ClusterState currentState) {
+                final IndexMetaData indexMetaData = currentState.metaData().index(index);
+                // the block may have been lifted while the range was computed, in which case the range may miss writes
+                if (indexMetaData == null || indexMetaData.getSettingsVersion() != settingsVersion
+                    || IndexTimestampRange.isWriteBlocked(indexMetaData) == false
+                    || IndexTimestampRange.fromIndexMetaData(indexMetaData) != null) {
+                    return currentState;
+                }
+                return ClusterState.builder(currentState)
+                    .metaData(MetaData.builder(currentState.metaData())
+                        .put(IndexMetaData.builder(indexMetaData).putCustom(IndexTimestampRange.CUSTOM_KEY, range.toCustomData())))
+                    .build();
+            }
+
+            @Override
+            public void onFailure(String source, Exception e) {
+                logger.debug(new ParameterizedMessage("{} failed to record the range of timestamp field [{}]", index, range.getField()), e);
+                ongoingRecords.remove(index);
+            }
+
+            @Override
+            public void clusterStateProcessed(String source, ClusterState oldState, ClusterState newState) {
+                ongoingRecords.remove(index);
+            }
+        });
+    }
+
+    /**
+     * Returns the format of the timestamp field of the given index, or {@code null} if it uses the default format.
+     *
+     * @throws IllegalArgumentException if the field isn't a {@code date} or {@code date_nanos} field whose values are parsed the same
+     *         way on any node
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static String timestampFormat(IndexMetaData indexMetaData, String field) {
+        final MappingMetaData mapping = indexMetaData.mapping();
+        Map<String, Object> fieldMapping = mapping == null ? null : mapping.sourceAsMap();
+        for (String name : field.split("\\.")) {
+            final Object properties = fieldMapping == null ? null : fieldMapping.get("properties");
+            final Object child = properties instanceof Map ? ((Map<String, Object>) properties).get(name) : null;
+            fieldMapping = child instanceof Map ? (Map<String, Object>) child : null;
+        }
+        if (fieldMapping == null) {
+            throw new IllegalArgumentException("field [" + field + "] isn't mapped");
+        }
+        final Object type = fieldMapping.get("type");
+        if ("date".equals(type) == false && "date_nanos".equals(type) == false) {
+            throw new IllegalArgumentException("field [" + field + "] is of type [" + type + "] but must be a date");
+        }
+        if (fieldMapping.containsKey("locale")) {
+            throw new IllegalArgumentException("field [" + field + "] has a locale");
+        }
+        final Object format = fieldMapping.get("format");
+        return format == null ? null : format.toString();
+    }
+}
@@ -219,6 +219,10 @@ public class MetaDataUpdateSettingsService {
                     if (same(currentState.metaData().index(index).getSettings(), metaDataBuilder.get(index).getSettings()) == false) {
                         final IndexMetaData.Builder builder = IndexMetaData.builder(metaDataBuilder.get(index));
                         builder.settingsVersion(1 + builder.settingsVersion());
+                        // the recorded timestamp range is only valid as long as writes are blocked, lifting the block removes it
+                        if (IndexTimestampRange.isWriteBlocked(metaDataBuilder.get(index)) == false) {
+                            builder.removeCustom(IndexTimestampRange.CUSTOM_KEY);
+                        }
                         metaDataBuilder.put(builder);
                     }
                 }
@@ -55,9 +55,13 @@ class TimeBasedUUIDGenerator implements UUIDGenerator {
         return SECURE_MUNGED_ADDRESS;
     }
 
-    @Override
-    public String getBase64UUID()  {
-        final int sequenceId = sequenceNumber.incrementAndGet() & 0xffffff;
+    // the bottom 3 bytes of the next sequence number
+    final int nextSequenceId() {
+        return sequenceNumber.incrementAndGet() & 0xffffff;
+    }
+
+    // the timestamp of the id that uses the given sequence id, which never goes backwards
+    final long nextTimestamp(int sequenceId) {
         long timestamp = currentTimeMillis();
 
         synchronized (this) {
@@ -73,6 +77,13 @@ class TimeBasedUUIDGenerator implements UUIDGenerator {
 
             lastTimestamp = timestamp;
         }
+        return timestamp;
+    }
+
+    @Override
+    public String getBase64UUID()  {
+        final int sequenceId = nextSequenceId();
+        final long timestamp = nextTimestamp(sequenceId);
 
         final byte[] uuidBytes = new byte[15];
         int i = 0;
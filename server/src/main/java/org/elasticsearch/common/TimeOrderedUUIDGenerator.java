@@ -0,0 +1,64 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common;
+
+import java.util.Base64;
+
+/**
+ * Flake ids like the ones of {@link TimeBasedUUIDGenerator}, with the same bytes, but laid out so that the bytes of ids sort by the time
+ * and the node they were generated on. Ids that are indexed into the same segment share long prefixes, which makes the terms dictionary of
+ * the {@code _id} field compress well, and the ids that a segment doesn't contain rarely share a prefix with the ones it does, so
+ * that looking them up, for instance when a request is retried, can usually stop at the terms index without reading a block.
+ */
+class TimeOrderedUUIDGenerator extends TimeBasedUUIDGenerator {
+
+    @Override
+    public String getBase64UUID() {
+        final int sequenceId = nextSequenceId();
+        final long timestamp = nextTimestamp(sequenceId);
+
+        final byte[] uuidBytes = new byte[15];
+        int i = 0;
+
+        // The coarse bytes of the timestamp come first so that ids sort by time and the ids that are generated within a
+        // minute share the same 4 bytes, which are encoded as the same leading Base64 characters.
+        uuidBytes[i++] = (byte) (timestamp >>> 40); // changes every 35 years
+        uuidBytes[i++] = (byte) (timestamp >>> 32); // changes every ~50 days
+        uuidBytes[i++] = (byte) (timestamp >>> 24); // changes every ~4.5h
+        uuidBytes[i++] = (byte) (timestamp >>> 16); // changes every ~65 secs
+
+        // Then the node, so that the ids of a node are next to each other within that minute.
+        byte[] macAddress = macAddress();
+        assert macAddress.length == 6;
+        System.arraycopy(macAddress, 0, uuidBytes, i, macAddress.length);
+        i += macAddress.length;
+
+        // Finally the bytes that change with every document, in the order in which they change.
+        uuidBytes[i++] = (byte) (timestamp >>> 8);
+        uuidBytes[i++] = (byte) timestamp;
+        uuidBytes[i++] = (byte) (sequenceId >>> 16);
+        uuidBytes[i++] = (byte) (sequenceId >>> 8);
+        uuidBytes[i++] = (byte) sequenceId;
+
+        assert i == uuidBytes.length;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(uuidBytes);
+    }
+}
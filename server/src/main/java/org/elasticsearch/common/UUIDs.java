@@ -27,6 +27,7 @@ public class UUIDs {
 
     private static final RandomBasedUUIDGenerator RANDOM_UUID_GENERATOR = new RandomBasedUUIDGenerator();
     private static final UUIDGenerator TIME_UUID_GENERATOR = new TimeBasedUUIDGenerator();
+    private static final UUIDGenerator TIME_ORDERED_UUID_GENERATOR = new TimeOrderedUUIDGenerator();
 
     /** Generates a time-based UUID (similar to Flake IDs), which is preferred when generating an ID to be indexed into a Lucene index as
      *  primary key.  The id is opaque and the implementation is free to change at any time! */
@@ -34,6 +35,12 @@ public class UUIDs {
         return TIME_UUID_GENERATOR.getBase64UUID();
     }
 
+    /** Generates a time-based UUID like {@link #base64UUID()}, whose leading bytes are the time and the node it was generated on, so that
+     *  the ids that are generated together share long prefixes. The id is opaque and the implementation is free to change at any time! */
+    public static String timeOrderedBase64UUID() {
+        return TIME_ORDERED_UUID_GENERATOR.getBase64UUID();
+    }
+
     /** Returns a Base64 encoded version of a Version 4.0 compatible UUID as defined here: http://www.ietf.org/rfc/rfc4122.txt, using the
      *  provided {@code Random} instance */
     public static String randomBase64UUID(Random random) {
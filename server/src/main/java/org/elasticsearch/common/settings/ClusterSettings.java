@@ -21,6 +21,7 @@ package org.elasticsearch.common.settings;
 import org.apache.logging.log4j.LogManager;
 import org.elasticsearch.action.admin.cluster.configuration.TransportAddVotingConfigExclusionsAction;
 import org.elasticsearch.action.admin.indices.close.TransportCloseIndexAction;
+import org.elasticsearch.action.search.ShardRequestHedging;
 import org.elasticsearch.action.search.TransportSearchAction;
 import org.elasticsearch.action.support.AutoCreateIndex;
 import org.elasticsearch.action.support.DestructiveOperations;
@@ -76,14 +77,19 @@ import org.elasticsearch.gateway.PersistedClusterStateService;
 import org.elasticsearch.http.HttpTransportSettings;
 import org.elasticsearch.index.IndexModule;
 import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.IndexingPressure;
 import org.elasticsearch.indices.IndexingMemoryController;
 import org.elasticsearch.indices.IndicesQueryCache;
 import org.elasticsearch.indices.IndicesRequestCache;
+import org.elasticsearch.indices.IndicesSegmentAggregationCache;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.TranslogSyncScheduler;
 import org.elasticsearch.indices.analysis.HunspellService;
 import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
 import org.elasticsearch.indices.recovery.RecoverySettings;
+import org.elasticsearch.indices.replication.SegmentReplicationSourceService;
+import org.elasticsearch.indices.replication.SegmentReplicationTargetService;
 import org.elasticsearch.indices.store.IndicesStore;
 import org.elasticsearch.monitor.fs.FsService;
 import org.elasticsearch.monitor.jvm.JvmGcMonitorService;
@@ -96,6 +102,7 @@ import org.elasticsearch.persistent.decider.EnableAssignmentDecider;
 import org.elasticsearch.plugins.PluginsService;
 import org.elasticsearch.repositories.fs.FsRepository;
 import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.action.document.RestBulkAction;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.SearchModule;
 import org.elasticsearch.search.SearchService;
@@ -286,6 +293,10 @@ public final class ClusterSettings extends AbstractScopedSettings {
             SearchService.DEFAULT_SEARCH_TIMEOUT_SETTING,
             SearchService.DEFAULT_ALLOW_PARTIAL_SEARCH_RESULTS,
             TransportSearchAction.SHARD_COUNT_LIMIT_SETTING,
+            ShardRequestHedging.HEDGING_ENABLED_SETTING,
+            ShardRequestHedging.HEDGING_PERCENTILE_SETTING,
+            ShardRequestHedging.HEDGING_MIN_DELAY_SETTING,
+            ShardRequestHedging.HEDGING_MAX_IN_FLIGHT_PER_NODE_SETTING,
             RemoteClusterService.REMOTE_CLUSTER_SKIP_UNAVAILABLE,
             SniffConnectionStrategy.REMOTE_CONNECTIONS_PER_CLUSTER,
             RemoteClusterService.REMOTE_INITIAL_CONNECTION_TIMEOUT_SETTING,
@@ -365,6 +376,7 @@ public final class ClusterSettings extends AbstractScopedSettings {
             IndicesFieldDataCache.INDICES_FIELDDATA_CACHE_SIZE_KEY,
             IndicesRequestCache.INDICES_CACHE_QUERY_SIZE,
             IndicesRequestCache.INDICES_CACHE_QUERY_EXPIRE,
+            IndicesSegmentAggregationCache.INDICES_SEGMENT_AGGS_CACHE_SIZE,
             HunspellService.HUNSPELL_LAZY_LOAD,
             HunspellService.HUNSPELL_IGNORE_CASE,
             HunspellService.HUNSPELL_DICTIONARY_OPTIONS,
@@ -388,6 +400,7 @@ public final class ClusterSettings extends AbstractScopedSettings {
             SearchService.MAX_KEEPALIVE_SETTING,
             MultiBucketConsumerService.MAX_BUCKET_SETTING,
             SearchService.LOW_LEVEL_CANCELLATION_SETTING,
+            SearchService.CONCURRENT_SEGMENT_SEARCH_SETTING,
             SearchService.MAX_OPEN_SCROLL_CONTEXT,
             Node.WRITE_PORTS_FILE_SETTING,
             Node.NODE_NAME_SETTING,
@@ -398,6 +411,7 @@ public final class ClusterSettings extends AbstractScopedSettings {
             Node.NODE_LOCAL_STORAGE_SETTING,
             AutoCreateIndex.AUTO_CREATE_INDEX_SETTING,
             BaseRestHandler.MULTI_ALLOW_EXPLICIT_INDEX,
+            RestBulkAction.STREAM_CONTENT_SETTING,
             ClusterName.CLUSTER_NAME_SETTING,
             Client.CLIENT_TYPE_SETTING_S,
             ClusterModule.SHARDS_ALLOCATOR_TYPE_SETTING,
@@ -433,6 +447,11 @@ public final class ClusterSettings extends AbstractScopedSettings {
             IndexingMemoryController.MAX_INDEX_BUFFER_SIZE_SETTING,
             IndexingMemoryController.SHARD_INACTIVE_TIME_SETTING,
             IndexingMemoryController.SHARD_MEMORY_INTERVAL_TIME_SETTING,
+            IndexingPressure.MAX_INDEXING_BYTES,
+            TranslogSyncScheduler.GROUP_COMMIT_INTERVAL_SETTING,
+            TranslogSyncScheduler.GROUP_COMMIT_MAX_BATCH_SIZE_SETTING,
+            SegmentReplicationTargetService.SEGMENT_REPLICATION_INTERVAL_SETTING,
+            SegmentReplicationSourceService.SEGMENT_REPLICATION_FLUSH_INTERVAL_SETTING,
             ResourceWatcherService.ENABLED,
             ResourceWatcherService.RELOAD_INTERVAL_HIGH,
             ResourceWatcherService.RELOAD_INTERVAL_MEDIUM,
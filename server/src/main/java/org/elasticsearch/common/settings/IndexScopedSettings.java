@@ -19,6 +19,7 @@
 package org.elasticsearch.common.settings;
 
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.IndexTimestampRange;
 import org.elasticsearch.cluster.metadata.MetaDataIndexStateService;
 import org.elasticsearch.cluster.routing.UnassignedInfo;
 import org.elasticsearch.cluster.routing.allocation.decider.EnableAllocationDecider;
@@ -42,6 +43,7 @@ import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.index.store.FsDirectoryFactory;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.indices.IndicesRequestCache;
+import org.elasticsearch.indices.IndicesSegmentAggregationCache;
 
 import java.util.Collections;
 import java.util.Map;
@@ -103,6 +105,7 @@ public final class IndexScopedSettings extends AbstractScopedSettings {
             MergePolicyConfig.INDEX_MERGE_POLICY_MAX_MERGED_SEGMENT_SETTING,
             MergePolicyConfig.INDEX_MERGE_POLICY_SEGMENTS_PER_TIER_SETTING,
             MergePolicyConfig.INDEX_MERGE_POLICY_RECLAIM_DELETES_WEIGHT_SETTING,
+            MergePolicyConfig.INDEX_MERGE_POLICY_TIME_SERIES_FIELD_SETTING,
             IndexSortConfig.INDEX_SORT_FIELD_SETTING,
             IndexSortConfig.INDEX_SORT_ORDER_SETTING,
             IndexSortConfig.INDEX_SORT_MISSING_SETTING,
@@ -126,6 +129,7 @@ public final class IndexScopedSettings extends AbstractScopedSettings {
             IndexSettings.ALLOW_UNMAPPED,
             IndexSettings.INDEX_CHECK_ON_STARTUP,
             IndexSettings.MAX_REFRESH_LISTENERS_PER_SHARD,
+            IndexSettings.MAX_BULK_PARSE_THREADS_SETTING,
             IndexSettings.MAX_SLICES_PER_SCROLL,
             IndexSettings.MAX_REGEX_LENGTH_SETTING,
             ShardsLimitAllocationDecider.INDEX_TOTAL_SHARDS_PER_NODE_SETTING,
@@ -134,17 +138,24 @@ public final class IndexScopedSettings extends AbstractScopedSettings {
             IndexSettings.INDEX_SOFT_DELETES_RETENTION_OPERATIONS_SETTING,
             IndexSettings.INDEX_SOFT_DELETES_RETENTION_LEASE_PERIOD_SETTING,
             IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING,
+            IndicesSegmentAggregationCache.INDEX_SEGMENT_AGGS_CACHE_ENABLED_SETTING,
             UnassignedInfo.INDEX_DELAYED_NODE_LEFT_TIMEOUT_SETTING,
             EnableAllocationDecider.INDEX_ROUTING_REBALANCE_ENABLE_SETTING,
             EnableAllocationDecider.INDEX_ROUTING_ALLOCATION_ENABLE_SETTING,
             IndexSettings.INDEX_FLUSH_AFTER_MERGE_THRESHOLD_SIZE_SETTING,
             IndexSettings.INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING,
             IndexSettings.INDEX_TRANSLOG_GENERATION_THRESHOLD_SIZE_SETTING,
+            IndexSettings.INDEX_TRANSLOG_COMPRESS_SETTING,
+            IndexSettings.INDEX_COMPACT_VERSION_MAP_SETTING,
+            IndexSettings.INDEX_REPLICATION_TYPE_SETTING,
+            IndexSettings.INDEX_AUTO_ID_LAYOUT_SETTING,
+            IndexTimestampRange.INDEX_TIMESTAMP_RANGE_FIELD_SETTING,
             IndexSettings.INDEX_TRANSLOG_RETENTION_AGE_SETTING,
             IndexSettings.INDEX_TRANSLOG_RETENTION_SIZE_SETTING,
             IndexSettings.INDEX_SEARCH_IDLE_AFTER,
             IndexSettings.INDEX_SEARCH_THROTTLED,
             IndexFieldDataService.INDEX_FIELDDATA_CACHE_KEY,
+            IndexFieldDataService.INDEX_FIELDDATA_INCREMENTAL_GLOBAL_ORDINALS_SETTING,
             FieldMapper.IGNORE_MALFORMED_SETTING,
             FieldMapper.COERCE_SETTING,
             Store.INDEX_STORE_STATS_REFRESH_INTERVAL_SETTING,
@@ -0,0 +1,194 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.rest.RestStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The content of an http request that is received incrementally, after the request has been dispatched to a {@link RestHandler} that
+ * {@link RestHandler#supportsIncrementalContent() supports incremental content}. The http transport hands the chunks of the content
+ * over as it receives them and they are passed on to the {@link Handler} in order. Chunks that are received before the handler is set
+ * are buffered, and reading from the network is paused if too many bytes are buffered.
+ */
+public final class HttpContentStream {
+
+    /**
+     * The maximum number of bytes that are buffered until the handler is set before reading from the network is paused.
+     */
+    static final int MAX_BUFFERED_BYTES = 1 << 20;
+
+    /**
+     * Consumes the content of a request as it is received.
+     */
+    public interface Handler {
+
+        /**
+         * Called with the next chunk of the content. {@code isLast} is set on the last chunk, after which no more calls are made.
+         */
+        void onChunk(BytesReference chunk, boolean isLast);
+
+        /**
+         * Called if the content could not be received completely, for instance because the connection was closed. No more calls are
+         * made after this one.
+         */
+        void onFailure(Exception e);
+    }
+
+    /**
+     * Controls whether the http transport reads more data from the network.
+     */
+    public interface ReadControl {
+
+        void pauseReading();
+
+        void resumeReading();
+    }
+
+    private final long maxContentLength;
+    private final ReadControl readControl;
+
+    private final List<BytesReference> bufferedChunks = new ArrayList<>();
+    private long bufferedBytes;
+    private boolean pausedForBuffering;
+    private long receivedBytes;
+    private boolean lastChunkReceived;
+    private Exception failure;
+    private boolean discarded;
+    private Handler handler;
+
+    public HttpContentStream(long maxContentLength, ReadControl readControl) {
+        this.maxContentLength = maxContentLength;
+        this.readControl = readControl;
+    }
+
+    /**
+     * Sets the handler that consumes the content. The chunks that were already received are passed to the handler before this
+     * method returns.
+     */
+    public synchronized void setHandler(Handler handler) {
+        if (this.handler != null) {
+            throw new IllegalStateException("the content of the request is already consumed");
+        }
+        this.handler = handler;
+        if (discarded) {
+            return;
+        }
+        final int numChunks = bufferedChunks.size();
+        for (int i = 0; i < numChunks; i++) {
+            handler.onChunk(bufferedChunks.get(i), lastChunkReceived && i == numChunks - 1);
+        }
+        bufferedChunks.clear();
+        bufferedBytes = 0;
+        if (failure != null) {
+            handler.onFailure(failure);
+        }
+        if (pausedForBuffering) {
+            pausedForBuffering = false;
+            readControl.resumeReading();
+        }
+    }
+
+    /**
+     * Called by the http transport with the next chunk of the content, which must not use pooled buffers.
+     */
+    public synchronized void receiveChunk(BytesReference chunk, boolean isLast) {
+        if (isDone()) {
+            return;
+        }
+        receivedBytes += chunk.length();
+        if (receivedBytes > maxContentLength) {
+            fail(new ElasticsearchStatusException("the content of the request is larger than the maximum content length of [{}] bytes",
+                RestStatus.REQUEST_ENTITY_TOO_LARGE, maxContentLength));
+            return;
+        }
+        lastChunkReceived = isLast;
+        if (handler == null) {
+            bufferedChunks.add(chunk);
+            bufferedBytes += chunk.length();
+            if (bufferedBytes > MAX_BUFFERED_BYTES && pausedForBuffering == false && isLast == false) {
+                pausedForBuffering = true;
+                readControl.pauseReading();
+            }
+        } else {
+            handler.onChunk(chunk, isLast);
+        }
+    }
+
+    /**
+     * Called by the http transport if the content can't be received completely.
+     */
+    public synchronized void fail(Exception e) {
+        if (isDone()) {
+            return;
+        }
+        failure = e;
+        bufferedChunks.clear();
+        bufferedBytes = 0;
+        if (handler != null) {
+            handler.onFailure(e);
+        }
+        if (pausedForBuffering) {
+            pausedForBuffering = false;
+            readControl.resumeReading();
+        }
+    }
+
+    /**
+     * Discards the rest of the content, typically because a response was sent before it was received completely. The chunks that
+     * are received from now on are dropped and the handler isn't called anymore.
+     */
+    public synchronized void discard() {
+        if (discarded) {
+            return;
+        }
+        discarded = true;
+        bufferedChunks.clear();
+        bufferedBytes = 0;
+        pausedForBuffering = false;
+        // the rest of the content must be read and dropped so that the connection can be used for the next request, whether
+        // reading was paused for buffering or by the handler
+        readControl.resumeReading();
+    }
+
+    /**
+     * Pauses reading from the network, for instance while the handler can't keep up with the content. Chunks that the transport
+     * has already read may still be received.
+     */
+    public void pauseReading() {
+        readControl.pauseReading();
+    }
+
+    /**
+     * Resumes reading from the network after {@link #pauseReading()}.
+     */
+    public void resumeReading() {
+        readControl.resumeReading();
+    }
+
+    private boolean isDone() {
+        return discarded || failure != null || lastChunkReceived;
+    }
+}
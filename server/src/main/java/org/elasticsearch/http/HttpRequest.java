@@ -19,6 +19,7 @@
 
 package org.elasticsearch.http;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
@@ -52,6 +53,15 @@ public interface HttpRequest {
 
     BytesReference content();
 
+    /**
+     * Returns the stream over which the content of this request is received if the request was dispatched before its content was
+     * received, in which case {@link #content()} is empty, or {@code null} otherwise.
+     */
+    @Nullable
+    default HttpContentStream contentStream() {
+        return null;
+    }
+
     /**
      * Get all of the headers and values associated with the headers. Modifications of this map are not supported.
      */
@@ -60,5 +60,13 @@ public interface HttpServerTransport extends LifecycleComponent {
          */
         void dispatchBadRequest(RestChannel channel, ThreadContext threadContext, Throwable cause);
 
+        /**
+         * Whether the request with the given method and uri is dispatched to a handler that consumes the content incrementally, in
+         * which case the http transport may dispatch it before its content is received, see {@link HttpRequest#contentStream()}.
+         */
+        default boolean supportsIncrementalContent(RestRequest.Method method, String uri) {
+            return false;
+        }
+
     }
 }
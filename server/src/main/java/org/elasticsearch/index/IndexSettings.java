@@ -23,6 +23,7 @@ import org.apache.logging.log4j.util.Strings;
 import org.apache.lucene.index.MergePolicy;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.IndexScopedSettings;
 import org.elasticsearch.common.settings.Setting;
@@ -216,6 +217,13 @@ public final class IndexSettings {
                     new ByteSizeValue(Long.MAX_VALUE, ByteSizeUnit.BYTES),
                     Property.Dynamic, Property.IndexScope);
 
+    /**
+     * Controls whether the operations of new translog generations are compressed. Generations that are already written keep
+     * their format, so changes only apply from the next generation on.
+     */
+    public static final Setting<Boolean> INDEX_TRANSLOG_COMPRESS_SETTING =
+        Setting.boolSetting("index.translog.compress", false, Property.Dynamic, Property.IndexScope);
+
     /**
      * Index setting to enable / disable deletes garbage collection.
      * This setting is realtime updateable
@@ -225,6 +233,31 @@ public final class IndexSettings {
         Setting.timeSetting("index.gc_deletes", DEFAULT_GC_DELETES, new TimeValue(-1, TimeUnit.MILLISECONDS),
             Property.Dynamic, Property.IndexScope);
 
+    /**
+     * Controls whether the engine keeps the versions of recently indexed documents in paged primitive arrays rather than in a map of
+     * objects. This reduces the heap used by the version map for indices with custom document ids and a high indexing rate.
+     */
+    public static final Setting<Boolean> INDEX_COMPACT_VERSION_MAP_SETTING =
+        Setting.boolSetting("index.version_map.compact", false, Property.IndexScope);
+
+    /**
+     * Controls how the replicas of an index are kept in sync with their primary. With {@link ReplicationType#SEGMENT} only the primary
+     * indexes documents, replicas only record the replicated operations in their translog and periodically copy the segments of the
+     * primary instead.
+     */
+    public static final Setting<ReplicationType> INDEX_REPLICATION_TYPE_SETTING =
+        new Setting<>("index.replication.type", ReplicationType.DOCUMENT.name(),
+            (value) -> ReplicationType.valueOf(value.toUpperCase(Locale.ROOT)), Property.IndexScope, Property.Final);
+
+    /**
+     * Controls the layout of the ids that are generated for documents that are indexed without one. Ids with the
+     * {@link AutoIdLayout#TIME_ORDERED} layout share long prefixes within a segment, which makes the {@code _id} field smaller and
+     * looking up ids cheaper when the append-only optimization doesn't apply, for instance when requests are retried.
+     */
+    public static final Setting<AutoIdLayout> INDEX_AUTO_ID_LAYOUT_SETTING =
+        new Setting<>("index.auto_id.layout", AutoIdLayout.DEFAULT.name(),
+            (value) -> AutoIdLayout.valueOf(value.toUpperCase(Locale.ROOT)), Property.IndexScope);
+
     /**
      * Specifies if the index should use soft-delete instead of hard-delete for update/delete operations.
      * Soft-deletes is enabled by default for 7.0+ indices.
@@ -289,6 +322,13 @@ public final class IndexSettings {
     public static final Setting<Integer> MAX_REFRESH_LISTENERS_PER_SHARD = Setting.intSetting("index.max_refresh_listeners",
         1000, 0, Property.Dynamic, Property.IndexScope);
 
+    /**
+     * The maximum number of threads that parse the documents of a shard-level bulk request on the primary. With the default of
+     * {@code 1} documents are parsed one after the other on the thread that indexes them.
+     */
+    public static final Setting<Integer> MAX_BULK_PARSE_THREADS_SETTING = Setting.intSetting("index.bulk.max_parse_threads",
+        1, 1, Property.Dynamic, Property.IndexScope);
+
     /**
      * The maximum number of slices allowed in a scroll request
      */
@@ -355,6 +395,7 @@ public final class IndexSettings {
     private volatile TimeValue translogRetentionAge;
     private volatile ByteSizeValue translogRetentionSize;
     private volatile ByteSizeValue generationThresholdSize;
+    private volatile boolean translogCompress;
     private volatile ByteSizeValue flushAfterMergeThresholdSize;
     private final MergeSchedulerConfig mergeSchedulerConfig;
     private final MergePolicyConfig mergePolicyConfig;
@@ -362,6 +403,8 @@ public final class IndexSettings {
     private final IndexScopedSettings scopedSettings;
     private long gcDeletesInMillis = DEFAULT_GC_DELETES.millis();
     private final boolean softDeleteEnabled;
+    private final boolean compactVersionMap;
+    private final ReplicationType replicationType;
     private volatile long softDeleteRetentionOperations;
 
     private volatile long retentionLeaseMillis;
@@ -399,6 +442,10 @@ public final class IndexSettings {
      * The maximum number of refresh listeners allows on this shard.
      */
     private volatile int maxRefreshListeners;
+    /**
+     * The maximum number of threads that parse the documents of a shard-level bulk request.
+     */
+    private volatile int maxBulkParseThreads;
     /**
      * The maximum number of slices allowed in a scroll request.
      */
@@ -488,10 +535,13 @@ public final class IndexSettings {
         refreshInterval = scopedSettings.get(INDEX_REFRESH_INTERVAL_SETTING);
         flushThresholdSize = scopedSettings.get(INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING);
         generationThresholdSize = scopedSettings.get(INDEX_TRANSLOG_GENERATION_THRESHOLD_SIZE_SETTING);
+        translogCompress = scopedSettings.get(INDEX_TRANSLOG_COMPRESS_SETTING);
         flushAfterMergeThresholdSize = scopedSettings.get(INDEX_FLUSH_AFTER_MERGE_THRESHOLD_SIZE_SETTING);
         mergeSchedulerConfig = new MergeSchedulerConfig(this);
         gcDeletesInMillis = scopedSettings.get(INDEX_GC_DELETES_SETTING).getMillis();
         softDeleteEnabled = scopedSettings.get(INDEX_SOFT_DELETES_SETTING);
+        compactVersionMap = scopedSettings.get(INDEX_COMPACT_VERSION_MAP_SETTING);
+        replicationType = scopedSettings.get(INDEX_REPLICATION_TYPE_SETTING);
         softDeleteRetentionOperations = scopedSettings.get(INDEX_SOFT_DELETES_RETENTION_OPERATIONS_SETTING);
         retentionLeaseMillis = scopedSettings.get(INDEX_SOFT_DELETES_RETENTION_LEASE_PERIOD_SETTING).millis();
         warmerEnabled = scopedSettings.get(INDEX_WARMER_ENABLED_SETTING);
@@ -504,6 +554,7 @@ public final class IndexSettings {
         maxNgramDiff = scopedSettings.get(MAX_NGRAM_DIFF_SETTING);
         maxShingleDiff = scopedSettings.get(MAX_SHINGLE_DIFF_SETTING);
         maxRefreshListeners = scopedSettings.get(MAX_REFRESH_LISTENERS_PER_SHARD);
+        maxBulkParseThreads = scopedSettings.get(MAX_BULK_PARSE_THREADS_SETTING);
         maxSlicesPerScroll = scopedSettings.get(MAX_SLICES_PER_SCROLL);
         maxAnalyzedOffset = scopedSettings.get(MAX_ANALYZED_OFFSET_SETTING);
         maxTermsCount = scopedSettings.get(MAX_TERMS_COUNT_SETTING);
@@ -551,10 +602,12 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(
                 INDEX_TRANSLOG_GENERATION_THRESHOLD_SIZE_SETTING,
                 this::setGenerationThresholdSize);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_COMPRESS_SETTING, this::setTranslogCompress);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_AGE_SETTING, this::setTranslogRetentionAge);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_SIZE_SETTING, this::setTranslogRetentionSize);
         scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_INTERVAL_SETTING, this::setRefreshInterval);
         scopedSettings.addSettingsUpdateConsumer(MAX_REFRESH_LISTENERS_PER_SHARD, this::setMaxRefreshListeners);
+        scopedSettings.addSettingsUpdateConsumer(MAX_BULK_PARSE_THREADS_SETTING, this::setMaxBulkParseThreads);
         scopedSettings.addSettingsUpdateConsumer(MAX_ANALYZED_OFFSET_SETTING, this::setHighlightMaxAnalyzedOffset);
         scopedSettings.addSettingsUpdateConsumer(MAX_TERMS_COUNT_SETTING, this::setMaxTermsCount);
         scopedSettings.addSettingsUpdateConsumer(MAX_SLICES_PER_SCROLL, this::setMaxSlicesPerScroll);
@@ -600,6 +653,10 @@ public final class IndexSettings {
         this.generationThresholdSize = generationThresholdSize;
     }
 
+    private void setTranslogCompress(boolean translogCompress) {
+        this.translogCompress = translogCompress;
+    }
+
     private void setGCDeletes(TimeValue timeValue) {
         this.gcDeletesInMillis = timeValue.getMillis();
     }
@@ -815,6 +872,13 @@ public final class IndexSettings {
         return generationThresholdSize;
     }
 
+    /**
+     * Returns <code>true</code> if the operations of new translog generations should be compressed.
+     */
+    public boolean isTranslogCompressEnabled() {
+        return translogCompress;
+    }
+
     /**
      * Returns the {@link MergeSchedulerConfig}
      */
@@ -944,6 +1008,17 @@ public final class IndexSettings {
         this.maxRefreshListeners = maxRefreshListeners;
     }
 
+    /**
+     * The maximum number of threads that parse the documents of a shard-level bulk request.
+     */
+    public int getMaxBulkParseThreads() {
+        return maxBulkParseThreads;
+    }
+
+    private void setMaxBulkParseThreads(int maxBulkParseThreads) {
+        this.maxBulkParseThreads = maxBulkParseThreads;
+    }
+
     /**
      * The maximum number of slices allowed in a scroll request.
      */
@@ -1010,6 +1085,27 @@ public final class IndexSettings {
         return softDeleteEnabled;
     }
 
+    /**
+     * Returns <code>true</code> if the engine should use a compact version map.
+     */
+    public boolean isCompactVersionMapEnabled() {
+        return compactVersionMap;
+    }
+
+    /**
+     * Returns the way the replicas of this index are kept in sync with their primary.
+     */
+    public ReplicationType getReplicationType() {
+        return replicationType;
+    }
+
+    /**
+     * Returns <code>true</code> if the replicas of this index copy the segments of their primary instead of indexing documents.
+     */
+    public boolean isSegmentReplication() {
+        return replicationType == ReplicationType.SEGMENT;
+    }
+
     private void setSoftDeleteRetentionOperations(long ops) {
         this.softDeleteRetentionOperations = ops;
     }
@@ -1032,4 +1128,39 @@ public final class IndexSettings {
     private void setSearchThrottled(boolean searchThrottled) {
         this.searchThrottled = searchThrottled;
     }
+
+    /**
+     * The ways in which the replicas of an index can be kept in sync with their primary.
+     */
+    public enum ReplicationType {
+        /**
+         * Replicas index every replicated operation, like the primary does.
+         */
+        DOCUMENT,
+        /**
+         * Replicas only record the replicated operations in their translog and copy the segments of the primary.
+         */
+        SEGMENT
+    }
+
+    /**
+     * The layouts of the ids that are generated for documents that are indexed without one.
+     */
+    public enum AutoIdLayout {
+        /**
+         * Ids that start with the bytes of their sequence number, see {@link UUIDs#base64UUID()}.
+         */
+        DEFAULT,
+        /**
+         * Ids that start with the time and the node they were generated on, see {@link UUIDs#timeOrderedBase64UUID()}.
+         */
+        TIME_ORDERED;
+
+        /**
+         * Generates a new id with this layout.
+         */
+        public String generateId() {
+            return this == TIME_ORDERED ? UUIDs.timeOrderedBase64UUID() : UUIDs.base64UUID();
+        }
+    }
 }
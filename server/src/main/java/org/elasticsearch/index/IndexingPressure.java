@@ -0,0 +1,189 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index;
+
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the number of bytes of write requests that are in flight on this node, per indexing stage, and rejects new
+ * coordinating and primary operations once the configured memory budget is exhausted.
+ * <p>
+ * Coordinating and primary operations share the {@link #MAX_INDEXING_BYTES} budget, which also includes the bytes of the
+ * replica operations in flight. Replica operations are only rejected above 1.5 times that budget and only if they are not
+ * forced. Write actions always force their replica operations since a rejected replica operation fails the replica copy, so
+ * their bytes are accounted for but never rejected and back-pressure is applied to new coordinating and primary operations.
+ */
+public class IndexingPressure {
+
+    public static final Setting<ByteSizeValue> MAX_INDEXING_BYTES =
+        Setting.memorySizeSetting("indexing_pressure.memory.limit", "10%", Setting.Property.NodeScope);
+
+    private final AtomicLong currentCombinedCoordinatingAndPrimaryBytes = new AtomicLong(0);
+    private final AtomicLong currentCoordinatingBytes = new AtomicLong(0);
+    private final AtomicLong currentPrimaryBytes = new AtomicLong(0);
+    private final AtomicLong currentReplicaBytes = new AtomicLong(0);
+
+    private final AtomicLong totalCoordinatingBytes = new AtomicLong(0);
+    private final AtomicLong totalPrimaryBytes = new AtomicLong(0);
+    private final AtomicLong totalReplicaBytes = new AtomicLong(0);
+
+    private final AtomicLong coordinatingRejections = new AtomicLong(0);
+    private final AtomicLong primaryRejections = new AtomicLong(0);
+    private final AtomicLong replicaRejections = new AtomicLong(0);
+
+    private final long primaryAndCoordinatingLimits;
+    private final long replicaLimits;
+
+    public IndexingPressure(Settings settings) {
+        this.primaryAndCoordinatingLimits = MAX_INDEXING_BYTES.get(settings).getBytes();
+        this.replicaLimits = (long) (this.primaryAndCoordinatingLimits * 1.5);
+    }
+
+    /**
+     * Marks the start of a bulk request on the coordinating node. The returned {@link Releasable} must be closed once the
+     * whole request has completed.
+     *
+     * @throws EsRejectedExecutionException if the operation would exceed the indexing memory budget and
+     *                                      {@code forceExecution} is not set
+     */
+    public Releasable markCoordinatingOperationStarted(long bytes, boolean forceExecution) {
+        final long combinedBytes = currentCombinedCoordinatingAndPrimaryBytes.addAndGet(bytes);
+        final long replicaWriteBytes = currentReplicaBytes.get();
+        final long totalBytes = combinedBytes + replicaWriteBytes;
+        if (forceExecution == false && totalBytes > primaryAndCoordinatingLimits) {
+            currentCombinedCoordinatingAndPrimaryBytes.getAndAdd(-bytes);
+            coordinatingRejections.getAndIncrement();
+            throw new EsRejectedExecutionException("rejected execution of coordinating operation [" +
+                "coordinating_and_primary_bytes=" + (combinedBytes - bytes) + ", " +
+                "replica_bytes=" + replicaWriteBytes + ", " +
+                "all_bytes=" + (totalBytes - bytes) + ", " +
+                "coordinating_operation_bytes=" + bytes + ", " +
+                "max_coordinating_and_primary_bytes=" + primaryAndCoordinatingLimits + "]", false);
+        }
+        currentCoordinatingBytes.getAndAdd(bytes);
+        totalCoordinatingBytes.getAndAdd(bytes);
+        return wrapReleasable(() -> {
+            currentCombinedCoordinatingAndPrimaryBytes.getAndAdd(-bytes);
+            currentCoordinatingBytes.getAndAdd(-bytes);
+        });
+    }
+
+    /**
+     * Marks the start of a primary operation whose bytes have already been accounted for by
+     * {@link #markCoordinatingOperationStarted(long, boolean)} on this node. Only the primary stage counters are updated
+     * and the operation is never rejected.
+     */
+    public Releasable markPrimaryOperationLocalToCoordinatingNodeStarted(long bytes) {
+        currentPrimaryBytes.getAndAdd(bytes);
+        totalPrimaryBytes.getAndAdd(bytes);
+        return wrapReleasable(() -> currentPrimaryBytes.getAndAdd(-bytes));
+    }
+
+    /**
+     * Marks the start of a primary operation that was received from another node.
+     *
+     * @throws EsRejectedExecutionException if the operation would exceed the indexing memory budget and
+     *                                      {@code forceExecution} is not set
+     */
+    public Releasable markPrimaryOperationStarted(long bytes, boolean forceExecution) {
+        final long combinedBytes = currentCombinedCoordinatingAndPrimaryBytes.addAndGet(bytes);
+        final long replicaWriteBytes = currentReplicaBytes.get();
+        final long totalBytes = combinedBytes + replicaWriteBytes;
+        if (forceExecution == false && totalBytes > primaryAndCoordinatingLimits) {
+            currentCombinedCoordinatingAndPrimaryBytes.getAndAdd(-bytes);
+            primaryRejections.getAndIncrement();
+            throw new EsRejectedExecutionException("rejected execution of primary operation [" +
+                "coordinating_and_primary_bytes=" + (combinedBytes - bytes) + ", " +
+                "replica_bytes=" + replicaWriteBytes + ", " +
+                "all_bytes=" + (totalBytes - bytes) + ", " +
+                "primary_operation_bytes=" + bytes + ", " +
+                "max_coordinating_and_primary_bytes=" + primaryAndCoordinatingLimits + "]", false);
+        }
+        currentPrimaryBytes.getAndAdd(bytes);
+        totalPrimaryBytes.getAndAdd(bytes);
+        return wrapReleasable(() -> {
+            currentCombinedCoordinatingAndPrimaryBytes.getAndAdd(-bytes);
+            currentPrimaryBytes.getAndAdd(-bytes);
+        });
+    }
+
+    /**
+     * Marks the start of a replica operation.
+     *
+     * @throws EsRejectedExecutionException if the operation would exceed the replica memory budget and
+     *                                      {@code forceExecution} is not set
+     */
+    public Releasable markReplicaOperationStarted(long bytes, boolean forceExecution) {
+        final long replicaWriteBytes = currentReplicaBytes.addAndGet(bytes);
+        if (forceExecution == false && replicaWriteBytes > replicaLimits) {
+            currentReplicaBytes.getAndAdd(-bytes);
+            replicaRejections.getAndIncrement();
+            throw new EsRejectedExecutionException("rejected execution of replica operation [" +
+                "replica_bytes=" + (replicaWriteBytes - bytes) + ", " +
+                "replica_operation_bytes=" + bytes + ", " +
+                "max_replica_bytes=" + replicaLimits + "]", false);
+        }
+        totalReplicaBytes.getAndAdd(bytes);
+        return wrapReleasable(() -> currentReplicaBytes.getAndAdd(-bytes));
+    }
+
+    public long getCurrentCombinedCoordinatingAndPrimaryBytes() {
+        return currentCombinedCoordinatingAndPrimaryBytes.get();
+    }
+
+    public long getCurrentCoordinatingBytes() {
+        return currentCoordinatingBytes.get();
+    }
+
+    public long getCurrentPrimaryBytes() {
+        return currentPrimaryBytes.get();
+    }
+
+    public long getCurrentReplicaBytes() {
+        return currentReplicaBytes.get();
+    }
+
+    public IndexingPressureStats stats() {
+        return new IndexingPressureStats(
+            currentCombinedCoordinatingAndPrimaryBytes.get(),
+            currentCoordinatingBytes.get(), currentPrimaryBytes.get(), currentReplicaBytes.get(),
+            totalCoordinatingBytes.get(), totalPrimaryBytes.get(), totalReplicaBytes.get(),
+            coordinatingRejections.get(), primaryRejections.get(), replicaRejections.get(),
+            primaryAndCoordinatingLimits);
+    }
+
+    private static Releasable wrapReleasable(Releasable releasable) {
+        final AtomicBoolean called = new AtomicBoolean();
+        return () -> {
+            if (called.compareAndSet(false, true)) {
+                releasable.close();
+            } else {
+                assert false : "IndexingPressure memory is adjusted twice";
+            }
+        };
+    }
+}
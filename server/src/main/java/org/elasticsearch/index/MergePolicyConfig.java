@@ -91,6 +91,12 @@ import org.elasticsearch.common.unit.ByteSizeValue;
  * </ul>
  *
  * <p>
+ * The static setting <code>index.merge.policy.time_series.field</code> names a date
+ * or long field by which the {@link TimeSeriesMergePolicy} orders segments, so that
+ * only segments holding adjacent time ranges are merged. The settings above still
+ * apply to it. It is not set by default.
+ *
+ * <p>
  * For normal merging, the policy first computes a "budget" of how many
  * segments are allowed to be in the index. If the index is over-budget,
  * then the policy sorts segments by decreasing size (proportionally considering percent
@@ -117,6 +123,7 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 
 public final class MergePolicyConfig {
     private final EsTieredMergePolicy mergePolicy = new EsTieredMergePolicy();
+    private final TimeSeriesMergePolicy timeSeriesMergePolicy;
     private final Logger logger;
     private final boolean mergesEnabled;
 
@@ -156,6 +163,8 @@ public final class MergePolicyConfig {
     public static final Setting<Double> INDEX_MERGE_POLICY_DELETES_PCT_ALLOWED_SETTING =
         Setting.doubleSetting("index.merge.policy.deletes_pct_allowed", DEFAULT_DELETES_PCT_ALLOWED, 20.0d, 50.0d,
             Property.Dynamic, Property.IndexScope);
+    public static final Setting<String> INDEX_MERGE_POLICY_TIME_SERIES_FIELD_SETTING =
+        Setting.simpleString("index.merge.policy.time_series.field", Property.IndexScope);
     // don't convert to Setting<> and register... we only set this in tests and register via a plugin
     public static final String INDEX_MERGE_ENABLED = "index.merge.enabled";
 
@@ -185,12 +194,17 @@ public final class MergePolicyConfig {
         mergePolicy.setMaxMergedSegmentMB(maxMergedSegment.getMbFrac());
         mergePolicy.setSegmentsPerTier(segmentsPerTier);
         mergePolicy.setDeletesPctAllowed(deletesPctAllowed);
+        final String timeSeriesField = indexSettings.getValue(INDEX_MERGE_POLICY_TIME_SERIES_FIELD_SETTING);
+        timeSeriesMergePolicy = timeSeriesField.isEmpty() ? null : new TimeSeriesMergePolicy(mergePolicy, timeSeriesField);
         if (logger.isTraceEnabled()) {
             logger.trace("using [tiered] merge mergePolicy with expunge_deletes_allowed[{}], floor_segment[{}]," +
                     " max_merge_at_once[{}], max_merge_at_once_explicit[{}], max_merged_segment[{}], segments_per_tier[{}]," +
                     " deletes_pct_allowed[{}]",
                 forceMergeDeletesPctAllowed, floorSegment, maxMergeAtOnce, maxMergeAtOnceExplicit, maxMergedSegment, segmentsPerTier,
                 deletesPctAllowed);
+            if (timeSeriesMergePolicy != null) {
+                logger.trace("merging segments in the order of [{}]", timeSeriesField);
+            }
         }
     }
 
@@ -243,7 +257,10 @@ public final class MergePolicyConfig {
     }
 
     MergePolicy getMergePolicy() {
-        return mergesEnabled ? mergePolicy : NoMergePolicy.INSTANCE;
+        if (mergesEnabled == false) {
+            return NoMergePolicy.INSTANCE;
+        }
+        return timeSeriesMergePolicy != null ? timeSeriesMergePolicy : mergePolicy;
     }
 
     private static double parseNoCFSRatio(String noCFSRatio) {
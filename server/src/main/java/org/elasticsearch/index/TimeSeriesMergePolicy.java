@@ -0,0 +1,324 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.FilterMergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A merge policy for indices whose documents arrive roughly in the order of a timestamp field. Where {@link EsTieredMergePolicy}
+ * picks segments of similar size regardless of the documents they hold, this policy sorts the segments by the smallest timestamp
+ * they contain and only merges segments that are next to each other in that order. Merged segments then keep covering a narrow
+ * time range, so that range queries on recent data can skip the segments of older data based on their points.
+ * <p>
+ * The time bounds of a segment are read from the points of the timestamp field once and cached for as long as the segment is part
+ * of the index. The sizes of the segments and the budget of segments per tier follow the settings of the wrapped
+ * {@link EsTieredMergePolicy}, which also handles forced merges and merges that expunge deletes.
+ *
+ * @see MergePolicyConfig#INDEX_MERGE_POLICY_TIME_SERIES_FIELD_SETTING
+ */
+public final class TimeSeriesMergePolicy extends FilterMergePolicy {
+
+    private final EsTieredMergePolicy tieredMergePolicy;
+    private final String field;
+    private final Map<String, TimeBounds> timeBounds = ConcurrentCollections.newConcurrentMap();
+
+    TimeSeriesMergePolicy(EsTieredMergePolicy tieredMergePolicy, String field) {
+        super(tieredMergePolicy);
+        this.tieredMergePolicy = tieredMergePolicy;
+        this.field = field;
+    }
+
+    /**
+     * The name of the field whose values order the segments.
+     */
+    public String getField() {
+        return field;
+    }
+
+    @Override
+    public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos infos, MergeContext mergeContext) throws IOException {
+        final Set<String> segmentNames = new HashSet<>();
+        final List<SegmentBounds> segments = new ArrayList<>(infos.size());
+        final long floorSegmentBytes = (long) (tieredMergePolicy.getFloorSegmentMB() * 1024 * 1024);
+        for (SegmentCommitInfo info : infos) {
+            segmentNames.add(info.info.name);
+            TimeBounds bounds;
+            try {
+                bounds = getTimeBounds(info);
+            } catch (IOException e) {
+                // merging the segment next to arbitrary segments is better than failing to merge
+                bounds = TimeBounds.UNKNOWN;
+            }
+            segments.add(new SegmentBounds(info, bounds, size(info, mergeContext)));
+        }
+        // forget about the bounds of segments that were merged away
+        timeBounds.keySet().retainAll(segmentNames);
+        if (segments.isEmpty()) {
+            return null;
+        }
+        segments.sort(Comparator.comparing((SegmentBounds segment) -> segment.bounds, TimeBounds.COMPARATOR)
+            .thenComparing(segment -> segment.info.info.name));
+
+        final long maxMergedSegmentBytes = (long) (tieredMergePolicy.getMaxMergedSegmentMB() * 1024 * 1024);
+        final int maxMergeAtOnce = tieredMergePolicy.getMaxMergeAtOnce();
+        final double segmentsPerTier = tieredMergePolicy.getSegmentsPerTier();
+        final Set<SegmentCommitInfo> merging = mergeContext.getMergingSegments();
+
+        // segments that are merging or that are large enough already separate the runs of segments that may be merged together
+        final List<List<SegmentBounds>> runs = new ArrayList<>();
+        List<SegmentBounds> run = new ArrayList<>();
+        int eligibleCount = 0;
+        long totalBytes = 0;
+        long minSegmentBytes = Long.MAX_VALUE;
+        for (SegmentBounds segment : segments) {
+            if (merging.contains(segment.info) || segment.bytes > maxMergedSegmentBytes / 2) {
+                if (run.isEmpty() == false) {
+                    runs.add(run);
+                    run = new ArrayList<>();
+                }
+            } else {
+                run.add(segment);
+                eligibleCount++;
+                totalBytes += segment.bytes;
+                minSegmentBytes = Math.min(minSegmentBytes, segment.bytes);
+            }
+        }
+        if (run.isEmpty() == false) {
+            runs.add(run);
+        }
+
+        final int allowedSegmentCount = allowedSegmentCount(Math.max(1, Math.max(minSegmentBytes, floorSegmentBytes)), totalBytes,
+            maxMergedSegmentBytes, maxMergeAtOnce, segmentsPerTier);
+        MergeSpecification spec = null;
+        while (eligibleCount > allowedSegmentCount) {
+            Window best = null;
+            for (List<SegmentBounds> candidates : runs) {
+                for (int start = 0; start < candidates.size() - 1; start++) {
+                    final Window window = bestWindowStartingAt(candidates, start, maxMergeAtOnce, maxMergedSegmentBytes,
+                        floorSegmentBytes);
+                    if (window != null && (best == null || window.score < best.score)) {
+                        best = window;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            final List<SegmentBounds> candidates = best.run;
+            final List<SegmentCommitInfo> toMerge = new ArrayList<>(best.end - best.start);
+            for (SegmentBounds segment : candidates.subList(best.start, best.end)) {
+                toMerge.add(segment.info);
+            }
+            if (spec == null) {
+                spec = new MergeSpecification();
+            }
+            spec.add(new OneMerge(toMerge));
+            eligibleCount -= toMerge.size();
+            // the merged segments may not be picked again, the segments on either side of them become separate runs
+            runs.remove(candidates);
+            if (best.start > 0) {
+                runs.add(new ArrayList<>(candidates.subList(0, best.start)));
+            }
+            if (best.end < candidates.size()) {
+                runs.add(new ArrayList<>(candidates.subList(best.end, candidates.size())));
+            }
+        }
+        return spec;
+    }
+
+    /**
+     * Computes how many segments the index may have before merging, in the same way as {@link org.apache.lucene.index.TieredMergePolicy}.
+     */
+    private static int allowedSegmentCount(long levelBytes, long totalBytes, long maxMergedSegmentBytes, int maxMergeAtOnce,
+                                           double segmentsPerTier) {
+        long bytesLeft = totalBytes;
+        double allowedSegmentCount = 0;
+        while (true) {
+            final double levelSegmentCount = bytesLeft / (double) levelBytes;
+            if (levelSegmentCount < segmentsPerTier || levelBytes >= maxMergedSegmentBytes) {
+                allowedSegmentCount += Math.ceil(levelSegmentCount);
+                break;
+            }
+            allowedSegmentCount += segmentsPerTier;
+            bytesLeft -= segmentsPerTier * levelBytes;
+            levelBytes = Math.min(maxMergedSegmentBytes, levelBytes * maxMergeAtOnce);
+        }
+        return (int) Math.max(allowedSegmentCount, segmentsPerTier);
+    }
+
+    /**
+     * Returns the merge of at least two consecutive segments starting at the given position with the lowest score, where merges of
+     * segments of similar size and of more segments score lower, or {@code null} if no such merge fits into the maximum segment size.
+     */
+    private static Window bestWindowStartingAt(List<SegmentBounds> run, int start, int maxMergeAtOnce, long maxMergedSegmentBytes,
+                                               long floorSegmentBytes) {
+        Window best = null;
+        long totalBytes = 0;
+        long maxBytes = 0;
+        for (int end = start; end < run.size() && end - start < maxMergeAtOnce; end++) {
+            final long bytes = run.get(end).bytes;
+            if (totalBytes + bytes > maxMergedSegmentBytes) {
+                break;
+            }
+            totalBytes += bytes;
+            maxBytes = Math.max(maxBytes, Math.max(bytes, floorSegmentBytes));
+            if (end > start) {
+                // the skew is 1 / number of segments for segments of equal size, close to 1 for a merge into a large segment
+                final double skew = maxBytes / (double) Math.max(totalBytes, floorSegmentBytes);
+                final double score = skew * Math.pow(Math.max(totalBytes, floorSegmentBytes), 0.05);
+                if (best == null || score < best.score) {
+                    best = new Window(run, start, end + 1, score);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the smallest and largest value of the timestamp field in the given segment, which includes the values of deleted
+     * documents, or {@link TimeBounds#UNKNOWN} if the segment has no points for the field.
+     */
+    public TimeBounds getTimeBounds(SegmentCommitInfo info) throws IOException {
+        TimeBounds bounds = timeBounds.get(info.info.name);
+        if (bounds == null) {
+            bounds = readTimeBounds(info, field);
+            timeBounds.put(info.info.name, bounds);
+        }
+        return bounds;
+    }
+
+    /**
+     * Reads the smallest and largest value of the given long or date field of a segment from its points.
+     */
+    public static TimeBounds readTimeBounds(SegmentCommitInfo info, String field) throws IOException {
+        final Codec codec = info.info.getCodec();
+        final Directory directory = info.info.dir;
+        final Directory segmentDirectory = info.info.getUseCompoundFile()
+            ? codec.compoundFormat().getCompoundReader(directory, info.info, IOContext.READ) : directory;
+        try {
+            final FieldInfos fieldInfos;
+            if (info.hasFieldUpdates()) {
+                // doc values updates write a new generation of field infos next to the segment
+                fieldInfos = codec.fieldInfosFormat().read(directory, info.info,
+                    Long.toString(info.getFieldInfosGen(), Character.MAX_RADIX), IOContext.READONCE);
+            } else {
+                fieldInfos = codec.fieldInfosFormat().read(segmentDirectory, info.info, "", IOContext.READONCE);
+            }
+            final FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+            if (fieldInfo == null || fieldInfo.getPointDataDimensionCount() != 1 || fieldInfo.getPointNumBytes() != Long.BYTES) {
+                return TimeBounds.UNKNOWN;
+            }
+            try (PointsReader pointsReader = codec.pointsFormat().fieldsReader(
+                    new SegmentReadState(segmentDirectory, info.info, fieldInfos, IOContext.READ))) {
+                final PointValues values = pointsReader.getValues(field);
+                if (values == null || values.size() == 0) {
+                    return TimeBounds.UNKNOWN;
+                }
+                return new TimeBounds(LongPoint.decodeDimension(values.getMinPackedValue(), 0),
+                    LongPoint.decodeDimension(values.getMaxPackedValue(), 0));
+            }
+        } finally {
+            if (segmentDirectory != directory) {
+                IOUtils.close(segmentDirectory);
+            }
+        }
+    }
+
+    /**
+     * The range of values of the timestamp field in a segment.
+     */
+    public static final class TimeBounds {
+
+        /** The bounds of segments that have no values for the timestamp field, which are ordered after all other segments. */
+        public static final TimeBounds UNKNOWN = new TimeBounds(Long.MAX_VALUE, Long.MAX_VALUE);
+
+        static final Comparator<TimeBounds> COMPARATOR = Comparator.comparingLong((TimeBounds bounds) -> bounds.min)
+            .thenComparingLong(bounds -> bounds.max);
+
+        private final long min;
+        private final long max;
+
+        TimeBounds(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return this == UNKNOWN ? "unknown" : "[" + min + "-" + max + "]";
+        }
+    }
+
+    private static final class SegmentBounds {
+        final SegmentCommitInfo info;
+        final TimeBounds bounds;
+        final long bytes;
+
+        SegmentBounds(SegmentCommitInfo info, TimeBounds bounds, long bytes) {
+            this.info = info;
+            this.bounds = bounds;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Window {
+        final List<SegmentBounds> run;
+        final int start;
+        final int end;
+        final double score;
+
+        Window(List<SegmentBounds> run, int start, int end, double score) {
+            this.run = run;
+            this.start = start;
+            this.end = end;
+            this.score = score;
+        }
+    }
+}
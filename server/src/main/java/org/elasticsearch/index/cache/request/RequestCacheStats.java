@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.cache.request;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -34,6 +35,10 @@ public class RequestCacheStats implements Writeable, ToXContentFragment {
     private long evictions;
     private long hitCount;
     private long missCount;
+    private long segmentMemorySize;
+    private long segmentEvictions;
+    private long segmentHitCount;
+    private long segmentMissCount;
 
     public RequestCacheStats() {
     }
@@ -43,13 +48,28 @@ public class RequestCacheStats implements Writeable, ToXContentFragment {
         evictions = in.readVLong();
         hitCount = in.readVLong();
         missCount = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_8_0_0)) {
+            segmentMemorySize = in.readVLong();
+            segmentEvictions = in.readVLong();
+            segmentHitCount = in.readVLong();
+            segmentMissCount = in.readVLong();
+        }
     }
 
     public RequestCacheStats(long memorySize, long evictions, long hitCount, long missCount) {
+        this(memorySize, evictions, hitCount, missCount, 0, 0, 0, 0);
+    }
+
+    public RequestCacheStats(long memorySize, long evictions, long hitCount, long missCount,
+                             long segmentMemorySize, long segmentEvictions, long segmentHitCount, long segmentMissCount) {
         this.memorySize = memorySize;
         this.evictions = evictions;
         this.hitCount = hitCount;
         this.missCount = missCount;
+        this.segmentMemorySize = segmentMemorySize;
+        this.segmentEvictions = segmentEvictions;
+        this.segmentHitCount = segmentHitCount;
+        this.segmentMissCount = segmentMissCount;
     }
 
     public void add(RequestCacheStats stats) {
@@ -57,6 +77,10 @@ public class RequestCacheStats implements Writeable, ToXContentFragment {
         this.evictions += stats.evictions;
         this.hitCount += stats.hitCount;
         this.missCount += stats.missCount;
+        this.segmentMemorySize += stats.segmentMemorySize;
+        this.segmentEvictions += stats.segmentEvictions;
+        this.segmentHitCount += stats.segmentHitCount;
+        this.segmentMissCount += stats.segmentMissCount;
     }
 
     public long getMemorySizeInBytes() {
@@ -79,12 +103,41 @@ public class RequestCacheStats implements Writeable, ToXContentFragment {
         return this.missCount;
     }
 
+    /**
+     * The memory used by the per-segment aggregation results of this shard, see {@code index.requests.cache.segment_aggs.enable}.
+     */
+    public long getSegmentMemorySizeInBytes() {
+        return this.segmentMemorySize;
+    }
+
+    public ByteSizeValue getSegmentMemorySize() {
+        return new ByteSizeValue(segmentMemorySize);
+    }
+
+    public long getSegmentEvictions() {
+        return this.segmentEvictions;
+    }
+
+    public long getSegmentHitCount() {
+        return this.segmentHitCount;
+    }
+
+    public long getSegmentMissCount() {
+        return this.segmentMissCount;
+    }
+
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(memorySize);
         out.writeVLong(evictions);
         out.writeVLong(hitCount);
         out.writeVLong(missCount);
+        if (out.getVersion().onOrAfter(Version.V_8_0_0)) {
+            out.writeVLong(segmentMemorySize);
+            out.writeVLong(segmentEvictions);
+            out.writeVLong(segmentHitCount);
+            out.writeVLong(segmentMissCount);
+        }
     }
 
     @Override
@@ -94,6 +147,10 @@ public class RequestCacheStats implements Writeable, ToXContentFragment {
         builder.field(Fields.EVICTIONS, getEvictions());
         builder.field(Fields.HIT_COUNT, getHitCount());
         builder.field(Fields.MISS_COUNT, getMissCount());
+        builder.humanReadableField(Fields.SEGMENT_MEMORY_SIZE_IN_BYTES, Fields.SEGMENT_MEMORY_SIZE, getSegmentMemorySize());
+        builder.field(Fields.SEGMENT_EVICTIONS, getSegmentEvictions());
+        builder.field(Fields.SEGMENT_HIT_COUNT, getSegmentHitCount());
+        builder.field(Fields.SEGMENT_MISS_COUNT, getSegmentMissCount());
         builder.endObject();
         return builder;
     }
@@ -105,5 +162,10 @@ public class RequestCacheStats implements Writeable, ToXContentFragment {
         static final String EVICTIONS = "evictions";
         static final String HIT_COUNT = "hit_count";
         static final String MISS_COUNT = "miss_count";
+        static final String SEGMENT_MEMORY_SIZE = "segment_memory_size";
+        static final String SEGMENT_MEMORY_SIZE_IN_BYTES = "segment_memory_size_in_bytes";
+        static final String SEGMENT_EVICTIONS = "segment_evictions";
+        static final String SEGMENT_HIT_COUNT = "segment_hit_count";
+        static final String SEGMENT_MISS_COUNT = "segment_miss_count";
     }
 }
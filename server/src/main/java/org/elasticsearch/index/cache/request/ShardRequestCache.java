@@ -32,9 +32,14 @@ public final class ShardRequestCache {
     final CounterMetric totalMetric = new CounterMetric();
     final CounterMetric hitCount = new CounterMetric();
     final CounterMetric missCount = new CounterMetric();
+    final CounterMetric segmentEvictionsMetric = new CounterMetric();
+    final CounterMetric segmentTotalMetric = new CounterMetric();
+    final CounterMetric segmentHitCount = new CounterMetric();
+    final CounterMetric segmentMissCount = new CounterMetric();
 
     public RequestCacheStats stats() {
-        return new RequestCacheStats(totalMetric.count(), evictionsMetric.count(), hitCount.count(), missCount.count());
+        return new RequestCacheStats(totalMetric.count(), evictionsMetric.count(), hitCount.count(), missCount.count(),
+            segmentTotalMetric.count(), segmentEvictionsMetric.count(), segmentHitCount.count(), segmentMissCount.count());
     }
 
     public void onHit() {
@@ -62,4 +67,23 @@ public final class ShardRequestCache {
         }
         totalMetric.dec(dec);
     }
+
+    public void onSegmentHit() {
+        segmentHitCount.inc();
+    }
+
+    public void onSegmentMiss() {
+        segmentMissCount.inc();
+    }
+
+    public void onSegmentCached(long sizeInBytes) {
+        segmentTotalMetric.inc(sizeInBytes);
+    }
+
+    public void onSegmentRemoval(long sizeInBytes, boolean evicted) {
+        if (evicted) {
+            segmentEvictionsMetric.inc();
+        }
+        segmentTotalMetric.dec(sizeInBytes);
+    }
 }
@@ -0,0 +1,55 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FilterCodec;
+import org.apache.lucene.codecs.StoredFieldsFormat;
+import org.apache.lucene.codecs.compressing.CompressingStoredFieldsFormat;
+import org.apache.lucene.codecs.lucene84.Lucene84Codec;
+
+/**
+ * A {@link Codec} that compresses stored fields with a {@link DictionaryCompressionMode dictionary}, and otherwise delegates to the
+ * default Lucene codec. Segments are read back through the instance that is registered by name with the codec SPI, so the postings
+ * formats that are picked per field when writing are found again through the attributes of the fields.
+ */
+public final class DictionaryCompressionCodec extends FilterCodec {
+
+    public static final String CODEC_NAME = "DictionaryCompression84";
+
+    private final StoredFieldsFormat storedFieldsFormat = new CompressingStoredFieldsFormat("DictionaryCompressionStoredFields",
+        new DictionaryCompressionMode(), 60 * 1024, 512, 1024);
+
+    /**
+     * Public no-arg constructor for the codec SPI, only used to read segments.
+     */
+    public DictionaryCompressionCodec() {
+        this(new Lucene84Codec());
+    }
+
+    public DictionaryCompressionCodec(Lucene84Codec delegate) {
+        super(CODEC_NAME, delegate);
+    }
+
+    @Override
+    public StoredFieldsFormat storedFieldsFormat() {
+        return storedFieldsFormat;
+    }
+}
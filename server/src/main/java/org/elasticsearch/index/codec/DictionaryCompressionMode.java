@@ -0,0 +1,272 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
+import org.apache.lucene.codecs.compressing.Decompressor;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link CompressionMode} that compresses small documents better than LZ4 while decompressing almost as fast. Each chunk of
+ * stored fields is split into a dictionary, made of its first bytes, and sub-blocks that are compressed independently of each
+ * other with LZ4, but that can all refer back to the dictionary. Since a chunk holds many documents of the same index, the
+ * dictionary is a sample of documents that share most of their field names and many of their values with the documents of the
+ * sub-blocks. Reading a document only decompresses the dictionary and the sub-blocks that hold the document.
+ * <p>
+ * A chunk is written as the length of its dictionary and of its sub-blocks, the compressed length of the dictionary and of each
+ * sub-block, and then the compressed dictionary and sub-blocks.
+ */
+final class DictionaryCompressionMode extends CompressionMode {
+
+    /** the number of sub-blocks a chunk is split into, besides its dictionary */
+    static final int NUM_SUB_BLOCKS = 10;
+    /** the dictionary is this many times smaller than a sub-block */
+    static final int DICTIONARY_SIZE_FACTOR = 6;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_DISTANCE = 1 << 16;
+    private static final int LAST_LITERALS = 5;
+    private static final int HASH_LOG = 12;
+
+    @Override
+    public Compressor newCompressor() {
+        return new DictionaryCompressor();
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+        return new DictionaryDecompressor();
+    }
+
+    @Override
+    public String toString() {
+        return "DICTIONARY_LZ4";
+    }
+
+    private static final class DictionaryCompressor extends Compressor {
+        private final int[] hashTable = new int[1 << HASH_LOG];
+        private final ByteBuffersDataOutput compressed = ByteBuffersDataOutput.newResettableInstance();
+        private int[] compressedLengths = new int[NUM_SUB_BLOCKS + 1];
+        private byte[] buffer = BytesRef.EMPTY_BYTES;
+
+        @Override
+        public void compress(byte[] bytes, int off, int len, DataOutput out) throws IOException {
+            final int dictLength = Math.min(MAX_DISTANCE >> 1, len / (NUM_SUB_BLOCKS * DICTIONARY_SIZE_FACTOR));
+            final int blockLength = Math.max(1, (len - dictLength + NUM_SUB_BLOCKS - 1) / NUM_SUB_BLOCKS);
+            final int numBlocks = (len - dictLength + blockLength - 1) / blockLength;
+            out.writeVInt(dictLength);
+            out.writeVInt(blockLength);
+
+            buffer = ArrayUtil.grow(buffer, dictLength + blockLength);
+            compressedLengths = ArrayUtil.grow(compressedLengths, numBlocks + 1);
+            compressed.reset();
+            System.arraycopy(bytes, off, buffer, 0, dictLength);
+            compressedLengths[0] = compressBlock(buffer, 0, dictLength, hashTable, compressed);
+            for (int i = 0, start = dictLength; i < numBlocks; i++, start += blockLength) {
+                final int length = Math.min(blockLength, len - start);
+                // sub-blocks are compressed right after the dictionary so that their matches may refer to it
+                System.arraycopy(bytes, off + start, buffer, dictLength, length);
+                compressedLengths[i + 1] = compressBlock(buffer, dictLength, dictLength + length, hashTable, compressed);
+            }
+            for (int i = 0; i <= numBlocks; i++) {
+                out.writeVInt(compressedLengths[i]);
+            }
+            compressed.copyTo(out);
+        }
+
+        @Override
+        public void close() {
+            // nothing to release, unlike the Deflater of the best_compression mode
+        }
+    }
+
+    private static final class DictionaryDecompressor extends Decompressor {
+        private int[] compressedLengths = new int[NUM_SUB_BLOCKS + 1];
+        private byte[] buffer = BytesRef.EMPTY_BYTES;
+
+        @Override
+        public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+            assert offset + length <= originalLength;
+            final int dictLength = in.readVInt();
+            final int blockLength = in.readVInt();
+            final int numBlocks = (originalLength - dictLength + blockLength - 1) / blockLength;
+            compressedLengths = ArrayUtil.grow(compressedLengths, numBlocks + 1);
+            for (int i = 0; i <= numBlocks; i++) {
+                compressedLengths[i] = in.readVInt();
+            }
+
+            buffer = ArrayUtil.grow(buffer, dictLength + blockLength);
+            decompressBlock(in, buffer, 0, dictLength);
+            bytes.bytes = ArrayUtil.grow(bytes.bytes, length);
+            bytes.offset = 0;
+            bytes.length = 0;
+            if (offset < dictLength) {
+                bytes.length = Math.min(length, dictLength - offset);
+                System.arraycopy(buffer, offset, bytes.bytes, 0, bytes.length);
+            }
+            for (int i = 0, start = dictLength; i < numBlocks && bytes.length < length; i++, start += blockLength) {
+                final int end = Math.min(start + blockLength, originalLength);
+                if (end <= offset) {
+                    in.skipBytes(compressedLengths[i + 1]);
+                    continue;
+                }
+                decompressBlock(in, buffer, dictLength, end - start);
+                final int from = Math.max(offset, start);
+                final int to = Math.min(offset + length, end);
+                System.arraycopy(buffer, dictLength + from - start, bytes.bytes, bytes.length, to - from);
+                bytes.length += to - from;
+            }
+            assert bytes.length == length;
+        }
+
+        @Override
+        public Decompressor clone() {
+            return new DictionaryDecompressor();
+        }
+    }
+
+    /**
+     * LZ4-compresses {@code buffer[start:end]} into {@code out}, allowing matches to refer to the dictionary {@code buffer[0:start]},
+     * and returns the number of written bytes.
+     */
+    static int compressBlock(byte[] buffer, int start, int end, int[] hashTable, ByteBuffersDataOutput out) throws IOException {
+        final long startSize = out.size();
+        Arrays.fill(hashTable, -1);
+        for (int i = 0; i + MIN_MATCH <= start; i++) {
+            hashTable[hash(readInt(buffer, i))] = i;
+        }
+        final int limit = end - LAST_LITERALS;
+        int anchor = start;
+        int i = start;
+        while (i + MIN_MATCH <= limit) {
+            final int value = readInt(buffer, i);
+            final int h = hash(value);
+            int ref = hashTable[h];
+            hashTable[h] = i;
+            if (ref < 0 || i - ref >= MAX_DISTANCE || readInt(buffer, ref) != value) {
+                // skip faster over data that doesn't compress
+                i += 1 + ((i - anchor) >>> 6);
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < limit && buffer[ref + matchLength] == buffer[i + matchLength]) {
+                matchLength++;
+            }
+            while (i > anchor && ref > 0 && buffer[i - 1] == buffer[ref - 1]) {
+                i--;
+                ref--;
+                matchLength++;
+            }
+            writeToken(out, i - anchor, matchLength - MIN_MATCH);
+            out.writeBytes(buffer, anchor, i - anchor);
+            final int distance = i - ref;
+            out.writeByte((byte) distance);
+            out.writeByte((byte) (distance >>> 8));
+            if (matchLength - MIN_MATCH >= 0x0F) {
+                writeLength(out, matchLength - MIN_MATCH - 0x0F);
+            }
+            i += matchLength;
+            anchor = i;
+        }
+        // the last literals, which may be empty
+        writeToken(out, end - anchor, 0);
+        out.writeBytes(buffer, anchor, end - anchor);
+        return Math.toIntExact(out.size() - startSize);
+    }
+
+    private static void writeToken(DataOutput out, int literalLength, int matchLength) throws IOException {
+        out.writeByte((byte) (Math.min(literalLength, 0x0F) << 4 | Math.min(matchLength, 0x0F)));
+        if (literalLength >= 0x0F) {
+            writeLength(out, literalLength - 0x0F);
+        }
+    }
+
+    private static void writeLength(DataOutput out, int length) throws IOException {
+        for (; length >= 0xFF; length -= 0xFF) {
+            out.writeByte((byte) 0xFF);
+        }
+        out.writeByte((byte) length);
+    }
+
+    /**
+     * Decompresses {@code length} bytes into {@code buffer[start:start+length]}, whose matches may refer to the dictionary
+     * {@code buffer[0:start]}.
+     */
+    static void decompressBlock(DataInput in, byte[] buffer, int start, int length) throws IOException {
+        final int end = start + length;
+        int position = start;
+        while (true) {
+            final int token = in.readByte() & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == 0x0F) {
+                literalLength += readLength(in);
+            }
+            in.readBytes(buffer, position, literalLength);
+            position += literalLength;
+            if (position >= end) {
+                break;
+            }
+            final int distance = (in.readByte() & 0xFF) | ((in.readByte() & 0xFF) << 8);
+            int matchLength = token & 0x0F;
+            if (matchLength == 0x0F) {
+                matchLength += readLength(in);
+            }
+            matchLength += MIN_MATCH;
+            final int ref = position - distance;
+            if (distance >= matchLength) {
+                System.arraycopy(buffer, ref, buffer, position, matchLength);
+            } else {
+                // the match overlaps the bytes it produces
+                for (int j = 0; j < matchLength; j++) {
+                    buffer[position + j] = buffer[ref + j];
+                }
+            }
+            position += matchLength;
+        }
+        if (position != end) {
+            throw new IOException("corrupt block, decompressed [" + (position - start) + "] bytes but expected [" + length + "]");
+        }
+    }
+
+    private static int readLength(DataInput in) throws IOException {
+        int length = 0;
+        byte b;
+        while ((b = in.readByte()) == (byte) 0xFF) {
+            length += 0xFF;
+        }
+        return length + (b & 0xFF);
+    }
+
+    private static int readInt(byte[] buffer, int i) {
+        return ((buffer[i] & 0xFF) << 24) | ((buffer[i + 1] & 0xFF) << 16) | ((buffer[i + 2] & 0xFF) << 8) | (buffer[i + 3] & 0xFF);
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -21,6 +21,7 @@ package org.elasticsearch.index.codec;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene84.Lucene84Codec;
@@ -35,7 +36,8 @@ import org.elasticsearch.index.mapper.MapperService;
  * {@link MapperService} to lookup a {@link PostingsFormat} per field. This
  * allows users to change the low level postings format for individual fields
  * per index in real time via the mapping API. If no specific postings format is
- * configured for a specific field the default postings format is used.
+ * configured for a specific field the default postings format is used. Field
+ * types can also provide their own {@link DocValuesFormat}.
  */
 public class PerFieldMappingPostingFormatCodec extends Lucene84Codec {
     private final Logger logger;
@@ -63,4 +65,14 @@ public class PerFieldMappingPostingFormatCodec extends Lucene84Codec {
         return super.getPostingsFormatForField(field);
     }
 
+    @Override
+    public DocValuesFormat getDocValuesFormatForField(String field) {
+        final MappedFieldType fieldType = mapperService.fullName(field);
+        // internal fields like the soft deletes field have no mapping
+        if (fieldType != null && fieldType.docValuesFormat() != null) {
+            return fieldType.docValuesFormat();
+        }
+        return super.getDocValuesFormatForField(field);
+    }
+
 }
@@ -0,0 +1,213 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link LiveVersionMap.VersionLookup} that keeps the ids of the documents in {@link BytesRefHash}es and their versions, sequence
+ * numbers, primary terms and translog locations in parallel paged arrays, indexed by the id's ordinal in the hash. This avoids
+ * allocating a {@link BytesRef}, a byte array, a {@link VersionValue}, a {@link Translog.Location} and a map entry per document, and
+ * its memory usage is exactly what the backing arrays use.
+ * <p>
+ * These structures are not thread-safe, so the lookup is split into stripes that are each guarded by their own lock. Removed ids are
+ * only marked as such, their slots are reclaimed when the lookup is dropped after the next refresh.
+ */
+final class CompactVersionLookup extends LiveVersionMap.VersionLookup {
+
+    /*
+     * Readers might still hold a reference to a lookup that a refresh just dropped, since they are not synchronized with refreshes.
+     * We therefore can't hand the pages of a dropped lookup back to a recycler and leave them to the garbage collector instead.
+     */
+    private static final BigArrays BIG_ARRAYS = BigArrays.NON_RECYCLING_INSTANCE;
+
+    private static final int NUM_STRIPES = 16;
+
+    // the translog size of a slot is overloaded to mark entries without a translog location and removed entries
+    private static final int NO_LOCATION = -1;
+    private static final int REMOVED = -2;
+
+    private final Stripe[] stripes = new Stripe[NUM_STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong ramBytesUsed = new AtomicLong();
+
+    CompactVersionLookup(int expectedSize) {
+        final int expectedSizePerStripe = expectedSize / NUM_STRIPES;
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new Stripe(expectedSizePerStripe);
+        }
+    }
+
+    private Stripe stripe(int code) {
+        return stripes[code & (NUM_STRIPES - 1)];
+    }
+
+    @Override
+    VersionValue get(BytesRef key) {
+        final int code = key.hashCode();
+        return stripe(code).get(key, code);
+    }
+
+    @Override
+    void put(BytesRef key, IndexVersionValue value) {
+        final int code = key.hashCode();
+        stripe(code).put(key, code, value);
+    }
+
+    @Override
+    void remove(BytesRef key) {
+        final int code = key.hashCode();
+        stripe(code).remove(key, code);
+    }
+
+    @Override
+    int size() {
+        return size.get();
+    }
+
+    @Override
+    long ramBytesUsed() {
+        return ramBytesUsed.get();
+    }
+
+    @Override
+    LiveVersionMap.VersionLookup newLookup(int expectedSize) {
+        return new CompactVersionLookup(expectedSize);
+    }
+
+    @Override
+    Map<BytesRef, VersionValue> asMap() {
+        final Map<BytesRef, VersionValue> map = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            stripe.copyTo(map);
+        }
+        return map;
+    }
+
+    private final class Stripe {
+        private final BytesRefHash ids;
+        private LongArray versions;
+        private LongArray seqNos;
+        private LongArray terms;
+        private LongArray translogGenerations;
+        private LongArray translogOffsets;
+        private IntArray translogSizes;
+        private long stripeRamBytesUsed;
+
+        Stripe(long capacity) {
+            ids = new BytesRefHash(capacity, BIG_ARRAYS);
+            versions = BIG_ARRAYS.newLongArray(capacity, false);
+            seqNos = BIG_ARRAYS.newLongArray(capacity, false);
+            terms = BIG_ARRAYS.newLongArray(capacity, false);
+            translogGenerations = BIG_ARRAYS.newLongArray(capacity, false);
+            translogOffsets = BIG_ARRAYS.newLongArray(capacity, false);
+            translogSizes = BIG_ARRAYS.newIntArray(capacity, false);
+            stripeRamBytesUsed = computeRamBytesUsed();
+            ramBytesUsed.addAndGet(stripeRamBytesUsed);
+        }
+
+        synchronized VersionValue get(BytesRef key, int code) {
+            final long id = ids.find(key, code);
+            if (id < 0) {
+                return null;
+            }
+            final int translogSize = translogSizes.get(id);
+            if (translogSize == REMOVED) {
+                return null;
+            }
+            return toVersionValue(id, translogSize);
+        }
+
+        synchronized void put(BytesRef key, int code, IndexVersionValue value) {
+            long id = ids.add(key, code);
+            final boolean added;
+            if (id >= 0) {
+                versions = BIG_ARRAYS.grow(versions, id + 1);
+                seqNos = BIG_ARRAYS.grow(seqNos, id + 1);
+                terms = BIG_ARRAYS.grow(terms, id + 1);
+                translogGenerations = BIG_ARRAYS.grow(translogGenerations, id + 1);
+                translogOffsets = BIG_ARRAYS.grow(translogOffsets, id + 1);
+                translogSizes = BIG_ARRAYS.grow(translogSizes, id + 1);
+                final long newRamBytesUsed = computeRamBytesUsed();
+                if (newRamBytesUsed != stripeRamBytesUsed) {
+                    ramBytesUsed.addAndGet(newRamBytesUsed - stripeRamBytesUsed);
+                    stripeRamBytesUsed = newRamBytesUsed;
+                }
+                added = true;
+            } else {
+                id = -1 - id;
+                added = translogSizes.get(id) == REMOVED;
+            }
+            versions.set(id, value.version);
+            seqNos.set(id, value.seqNo);
+            terms.set(id, value.term);
+            final Translog.Location location = value.getLocation();
+            if (location == null) {
+                translogSizes.set(id, NO_LOCATION);
+            } else {
+                assert location.size >= 0 : "translog size [" + location.size + "] collides with the markers";
+                translogGenerations.set(id, location.generation);
+                translogOffsets.set(id, location.translogLocation);
+                translogSizes.set(id, location.size);
+            }
+            if (added) {
+                size.incrementAndGet();
+            }
+        }
+
+        synchronized void remove(BytesRef key, int code) {
+            final long id = ids.find(key, code);
+            if (id >= 0 && translogSizes.get(id) != REMOVED) {
+                translogSizes.set(id, REMOVED);
+                size.decrementAndGet();
+            }
+        }
+
+        synchronized void copyTo(Map<BytesRef, VersionValue> map) {
+            for (long id = 0; id < ids.size(); id++) {
+                final int translogSize = translogSizes.get(id);
+                if (translogSize != REMOVED) {
+                    map.put(BytesRef.deepCopyOf(ids.get(id, new BytesRef())), toVersionValue(id, translogSize));
+                }
+            }
+        }
+
+        private VersionValue toVersionValue(long id, int translogSize) {
+            final Translog.Location location = translogSize == NO_LOCATION ? null
+                : new Translog.Location(translogGenerations.get(id), translogOffsets.get(id), translogSize);
+            return new IndexVersionValue(location, versions.get(id), seqNos.get(id), terms.get(id));
+        }
+
+        private long computeRamBytesUsed() {
+            return ids.ramBytesUsed() + versions.ramBytesUsed() + seqNos.ramBytesUsed() + terms.ramBytesUsed()
+                + translogGenerations.ramBytesUsed() + translogOffsets.ramBytesUsed() + translogSizes.ramBytesUsed();
+        }
+    }
+}
@@ -141,7 +141,7 @@ public class InternalEngine extends Engine {
 
     // A uid (in the form of BytesRef) to the version map
     // we use the hashed variant since we iterate over it and check removal and additions on existing keys
-    private final LiveVersionMap versionMap = new LiveVersionMap();
+    private final LiveVersionMap versionMap;
 
     private volatile SegmentInfos lastCommittedSegmentInfos;
 
@@ -187,6 +187,7 @@ public class InternalEngine extends Engine {
             final EngineConfig engineConfig,
             final BiFunction<Long, Long, LocalCheckpointTracker> localCheckpointTrackerSupplier) {
         super(engineConfig);
+        this.versionMap = new LiveVersionMap(engineConfig.getIndexSettings().isCompactVersionMapEnabled());
         final TranslogDeletionPolicy translogDeletionPolicy = new TranslogDeletionPolicy(
                 engineConfig.getIndexSettings().getTranslogRetentionSize().getBytes(),
                 engineConfig.getIndexSettings().getTranslogRetentionAge().getMillis(),
@@ -1498,7 +1499,7 @@ public class InternalEngine extends Engine {
                     SequenceNumbers.UNASSIGNED_SEQ_NO, preFlightError.get());
             } else {
                 markSeqNoAsSeen(noOp.seqNo());
-                if (hasBeenProcessedBefore(noOp) == false) {
+                if (addNoOpTombstoneToLucene(noOp)) {
                     try {
                         final ParsedDocument tombstone = engineConfig.getTombstoneDocSupplier().newNoopTombstoneDoc(noOp.reason());
                         tombstone.updateSeqID(noOp.seqNo(), noOp.primaryTerm());
@@ -1550,6 +1551,13 @@ public class InternalEngine extends Engine {
         return Optional.empty();
     }
 
+    /**
+     * Returns whether a tombstone for the given NoOp should be added to Lucene.
+     */
+    protected boolean addNoOpTombstoneToLucene(final NoOp noOp) {
+        return hasBeenProcessedBefore(noOp) == false;
+    }
+
     @Override
     public void refresh(String source) throws EngineException {
         refresh(source, SearcherScope.EXTERNAL, true);
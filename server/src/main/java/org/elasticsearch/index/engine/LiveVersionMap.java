@@ -38,15 +38,11 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
 
     private final KeyedLock<BytesRef> keyedLock = new KeyedLock<>();
 
-    private static final class VersionLookup {
-
-        /** Tracks bytes used by current map, i.e. what is freed on refresh. For deletes, which are also added to tombstones,
-         *  we only account for the CHM entry here, and account for BytesRef/VersionValue against the tombstones, since refresh would not
-         *  clear this RAM. */
-        final AtomicLong ramBytesUsed = new AtomicLong();
-
-        private static final VersionLookup EMPTY = new VersionLookup(Collections.emptyMap());
-        private final Map<BytesRef, VersionValue> map;
+    /**
+     * Holds the versions of the documents indexed within a single refresh cycle. Deletes are never held here, they only go to the
+     * tombstones.
+     */
+    abstract static class VersionLookup {
 
         // each version map has a notion of safe / unsafe which allows us to apply certain optimization in the auto-generated ID usecase
         // where we know that documents can't have any duplicates so we can skip the version map entirely. This reduces
@@ -64,45 +60,122 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         // the tombstone
         private final AtomicLong minDeleteTimestamp = new AtomicLong(Long.MAX_VALUE);
 
-        private VersionLookup(Map<BytesRef, VersionValue> map) {
+        abstract VersionValue get(BytesRef key);
+
+        abstract void put(BytesRef key, IndexVersionValue value);
+
+        abstract void remove(BytesRef key);
+
+        abstract int size();
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * Returns the bytes used by this lookup, i.e. what is freed on refresh.
+         */
+        abstract long ramBytesUsed();
+
+        /**
+         * Builds an empty lookup of the same kind that receives the writes of the next refresh cycle.
+         */
+        abstract VersionLookup newLookup(int expectedSize);
+
+        /**
+         * Returns the versions held by this lookup as a map, for testing.
+         */
+        abstract Map<BytesRef, VersionValue> asMap();
+
+        boolean isUnsafe() {
+            return unsafe;
+        }
+
+        void markAsUnsafe() {
+            unsafe = true;
+        }
+
+        public void updateMinDeletedTimestamp(DeleteVersionValue delete) {
+            long time = delete.time;
+            minDeleteTimestamp.updateAndGet(prev -> Math.min(time, prev));
+        }
+
+    }
+
+    /**
+     * A {@link VersionLookup} that keeps a {@link VersionValue} per document in a concurrent map.
+     */
+    private static final class MapVersionLookup extends VersionLookup {
+
+        /** Tracks bytes used by current map, i.e. what is freed on refresh. For deletes, which are also added to tombstones,
+         *  we only account for the CHM entry here, and account for BytesRef/VersionValue against the tombstones, since refresh would not
+         *  clear this RAM. */
+        private final AtomicLong ramBytesUsed = new AtomicLong();
+
+        private final Map<BytesRef, VersionValue> map;
+
+        private MapVersionLookup(Map<BytesRef, VersionValue> map) {
             this.map = map;
         }
 
+        @Override
         VersionValue get(BytesRef key) {
             return map.get(key);
         }
 
-        VersionValue put(BytesRef key, VersionValue value) {
-            return map.put(key, value);
+        @Override
+        void put(BytesRef uid, IndexVersionValue version) {
+            long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
+            long ramAccounting = BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed;
+            VersionValue previousValue = map.put(uid, version);
+            ramAccounting += previousValue == null ? 0 : -(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed);
+            adjustRam(ramAccounting);
         }
 
-        boolean isEmpty() {
-            return map.isEmpty();
+        @Override
+        void remove(BytesRef uid) {
+            VersionValue previousValue = map.remove(uid);
+            if (previousValue != null) {
+                long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
+                adjustRam(-(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed));
+            }
+        }
+
+        private void adjustRam(long value) {
+            if (value != 0) {
+                long v = ramBytesUsed.addAndGet(value);
+                assert v >= 0 : "bytes=" + v;
+            }
         }
 
+        @Override
         int size() {
             return map.size();
         }
 
-        boolean isUnsafe() {
-            return unsafe;
+        @Override
+        boolean isEmpty() {
+            return map.isEmpty();
         }
 
-        void markAsUnsafe() {
-            unsafe = true;
+        @Override
+        long ramBytesUsed() {
+            return ramBytesUsed.get();
         }
 
-        public VersionValue remove(BytesRef uid) {
-            return map.remove(uid);
+        @Override
+        VersionLookup newLookup(int expectedSize) {
+            return new MapVersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(expectedSize));
         }
 
-        public void updateMinDeletedTimestamp(DeleteVersionValue delete) {
-            long time = delete.time;
-            minDeleteTimestamp.updateAndGet(prev -> Math.min(time, prev));
+        @Override
+        Map<BytesRef, VersionValue> asMap() {
+            return map;
         }
-
     }
 
+    private static final VersionLookup EMPTY = new MapVersionLookup(Collections.emptyMap());
+
     private static final class Maps {
 
         // All writes (adds and deletes) go into here:
@@ -123,9 +196,8 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
             this.previousMapsNeededSafeAccess = previousMapsNeededSafeAccess;
         }
 
-        Maps() {
-            this(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency()),
-                VersionLookup.EMPTY, false);
+        Maps(VersionLookup current) {
+            this(current, EMPTY, false);
         }
 
         boolean isSafeAccessMode() {
@@ -143,40 +215,24 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
          * Builds a new map for the refresh transition this should be called in beforeRefresh()
          */
         Maps buildTransitionMap() {
-            return new Maps(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(current.size())), current,
-                shouldInheritSafeAccess());
+            return new Maps(current.newLookup(current.size()), current, shouldInheritSafeAccess());
         }
 
         /**
          * builds a new map that invalidates the old map but maintains the current. This should be called in afterRefresh()
          */
         Maps invalidateOldMap() {
-            return new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess);
-        }
-
-        void put(BytesRef uid, VersionValue version) {
-            long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
-            long ramAccounting = BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed;
-            VersionValue previousValue = current.put(uid, version);
-            ramAccounting += previousValue == null ? 0 : -(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed);
-            adjustRam(ramAccounting);
+            return new Maps(current, EMPTY, previousMapsNeededSafeAccess);
         }
 
-        void adjustRam(long value) {
-            if (value != 0) {
-                long v = current.ramBytesUsed.addAndGet(value);
-                assert v >= 0 : "bytes=" + v;
-            }
+        void put(BytesRef uid, IndexVersionValue version) {
+            current.put(uid, version);
         }
 
         void remove(BytesRef uid, DeleteVersionValue deleted) {
-            VersionValue previousValue = current.remove(uid);
+            current.remove(uid);
             current.updateMinDeletedTimestamp(deleted);
-            if (previousValue != null) {
-                long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
-                adjustRam(-(BASE_BYTES_PER_CHM_ENTRY + previousValue.ramBytesUsed() + uidRAMBytesUsed));
-            }
-            if (old != VersionLookup.EMPTY) {
+            if (old != EMPTY) {
                 // we also need to remove it from the old map here to make sure we don't read this stale value while
                 // we are in the middle of a refresh. Most of the time the old map is an empty map so we can skip it there.
                 old.remove(uid);
@@ -191,10 +247,33 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
     // All deletes also go here, and delete "tombstones" are retained after refresh:
     private final Map<BytesRef, DeleteVersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
-    private volatile Maps maps = new Maps();
+    private final boolean compact;
+    private volatile Maps maps;
     // we maintain a second map that only receives the updates that we skip on the actual map (unsafe ops)
     // this map is only maintained if assertions are enabled
-    private volatile Maps unsafeKeysMap = new Maps();
+    private volatile Maps unsafeKeysMap;
+
+    LiveVersionMap() {
+        this(false);
+    }
+
+    /**
+     * @param compact whether the versions of each refresh cycle are kept in a {@link CompactVersionLookup} rather than in a map of
+     *                {@link VersionValue}s
+     */
+    LiveVersionMap(boolean compact) {
+        this.compact = compact;
+        this.maps = newMaps();
+        this.unsafeKeysMap = newMaps();
+    }
+
+    private Maps newMaps() {
+        if (compact) {
+            return new Maps(new CompactVersionLookup(0));
+        } else {
+            return new Maps(new MapVersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency()));
+        }
+    }
 
     /**
      * Bytes consumed for each BytesRef UID:
@@ -415,7 +494,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Called when this index is closed.
      */
     synchronized void clear() {
-        maps = new Maps();
+        maps = newMaps();
         tombstones.clear();
         // NOTE: we can't zero this here, because a refresh thread could be calling InternalEngine.pruneDeletedTombstones at the same time,
         // and this will lead to an assert trip.  Presumably it's fine if our ramBytesUsedTombstones is non-zero after clear since the
@@ -425,7 +504,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
 
     @Override
     public long ramBytesUsed() {
-        return maps.current.ramBytesUsed.get() + ramBytesUsedTombstones.get();
+        return maps.current.ramBytesUsed() + ramBytesUsedTombstones.get();
     }
 
     /**
@@ -433,7 +512,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * don't clear on refresh.
      */
     long ramBytesUsedForRefresh() {
-        return maps.current.ramBytesUsed.get();
+        return maps.current.ramBytesUsed();
     }
 
     /**
@@ -441,7 +520,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * except does not include tombstones because they don't clear on refresh.
      */
     long getRefreshingBytes() {
-        return maps.old.ramBytesUsed.get();
+        return maps.old.ramBytesUsed();
     }
 
     @Override
@@ -454,7 +533,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Returns the current internal versions as a point in time snapshot
      */
     Map<BytesRef, VersionValue> getAllCurrent() {
-        return maps.current.map;
+        return maps.current.asMap();
     }
 
     /** Iterates over all deleted versions, including new ones (not yet exposed via reader) and old ones
@@ -0,0 +1,102 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.index.IndexWriter;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.translog.Translog;
+
+import java.io.IOException;
+
+/**
+ * An engine for the replicas of an index that uses segment replication. Replicated operations are only recorded in the translog
+ * and marked as processed, they never reach Lucene. The segments of the replica are instead copied from the primary, after which
+ * the shard opens a new engine on the copied commit, which replays the operations of the translog above the local checkpoint of
+ * that commit. Since the Lucene index of the replica is a copy of the index of the primary, this engine never writes to it: it
+ * neither adds no-op tombstones nor commits nor merges.
+ * <p>
+ * A segment replica that is promoted to primary replaces this engine with a regular {@link InternalEngine}, which indexes the
+ * operations of the translog that are not in the copied commit yet.
+ */
+public final class SegmentReplicaEngine extends InternalEngine {
+
+    public SegmentReplicaEngine(final EngineConfig engineConfig) {
+        super(validateEngineConfig(engineConfig));
+    }
+
+    private static EngineConfig validateEngineConfig(final EngineConfig engineConfig) {
+        if (engineConfig.getIndexSettings().isSegmentReplication() == false) {
+            throw new IllegalArgumentException("a segment replica engine can not be constructed for an index that replicates documents");
+        }
+        if (engineConfig.getIndexSettings().isSoftDeleteEnabled() == false) {
+            throw new IllegalArgumentException("a segment replica engine requires soft deletes to be enabled");
+        }
+        return engineConfig;
+    }
+
+    @Override
+    protected IndexingStrategy indexingStrategyForOperation(final Index index) throws IOException {
+        assert index.origin() != Operation.Origin.PRIMARY : "segment replica received a primary operation " + index;
+        return IndexingStrategy.processButSkipLucene(false, index.version());
+    }
+
+    @Override
+    protected DeletionStrategy deletionStrategyForOperation(final Delete delete) throws IOException {
+        assert delete.origin() != Operation.Origin.PRIMARY : "segment replica received a primary operation " + delete;
+        return DeletionStrategy.processButSkipLucene(false, delete.version());
+    }
+
+    @Override
+    protected boolean addNoOpTombstoneToLucene(final NoOp noOp) {
+        return false;
+    }
+
+    @Override
+    protected void commitIndexWriter(final IndexWriter writer, final Translog translog, @Nullable final String syncId) {
+        // the commits of a segment replica are copied from the primary
+    }
+
+    @Override
+    public boolean shouldPeriodicallyFlush() {
+        // flushing can't trim the translog since nothing is committed, the translog is trimmed when copied segments are opened
+        return false;
+    }
+
+    @Override
+    public SyncedFlushResult syncFlush(String syncId, CommitId expectedCommitId) {
+        return SyncedFlushResult.COMMIT_MISMATCH;
+    }
+
+    @Override
+    public void forceMerge(final boolean flush, int maxNumSegments, boolean onlyExpungeDeletes,
+                           final boolean upgrade, final boolean upgradeOnlyAncientSegments) {
+        // the merged segments of the primary are copied with its next commit
+    }
+
+    /**
+     * Returns the generation of the translog of this engine from which on the operations above the given local checkpoint of a
+     * commit copied from the primary have to be replayed.
+     */
+    public Translog.TranslogGeneration getTranslogGenerationForCommit(long localCheckpoint) throws IOException {
+        final Translog translog = getTranslog();
+        translog.sync();
+        return translog.getMinGenerationForSeqNo(localCheckpoint + 1);
+    }
+}
@@ -22,6 +22,9 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.util.Accountable;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.index.fielddata.ordinals.IncrementalOrdinalMap;
 import org.elasticsearch.index.shard.ShardId;
 
 /**
@@ -44,6 +47,23 @@ public interface IndexFieldDataCache {
      */
     void clear(String fieldName);
 
+    /**
+     * Returns the incremental global ordinals that were last built for a reader of the provided shard that is still open,
+     * or null if there are none or if this cache does not keep them.
+     */
+    @Nullable
+    default IncrementalOrdinalMap getLastOrdinalMap(ShardId shardId) {
+        return null;
+    }
+
+    /**
+     * Keeps the incremental global ordinals that were built for the provided reader until the reader is closed, in order
+     * to build the global ordinals of the next reader of the shard from them. The retained memory is accounted in the
+     * provided <code>breaker</code> and the ordinals are not kept if that would trip it.
+     */
+    default void setLastOrdinalMap(DirectoryReader indexReader, IncrementalOrdinalMap ordinalMap, CircuitBreaker breaker) {
+    }
+
     interface Listener {
 
         /**
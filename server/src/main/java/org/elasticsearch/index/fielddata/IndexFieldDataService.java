@@ -52,6 +52,12 @@ public class IndexFieldDataService extends AbstractIndexComponent implements Clo
                     throw new IllegalArgumentException("failed to parse [" + s + "] must be one of [node,none]");
             }
         }, Property.IndexScope);
+    /**
+     * Whether the global ordinals of a new reader of a shard are built from the global ordinals of the previous reader,
+     * only merging the terms of the new segments, instead of merging the terms of all the segments.
+     */
+    public static final Setting<Boolean> INDEX_FIELDDATA_INCREMENTAL_GLOBAL_ORDINALS_SETTING =
+        Setting.boolSetting("index.fielddata.global_ordinals.incremental", false, Property.Dynamic, Property.IndexScope);
 
     private final CircuitBreakerService circuitBreakerService;
 
@@ -22,6 +22,7 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.util.LongValues;
 
 
 /**
@@ -48,6 +49,15 @@ public interface IndexOrdinalsFieldData extends IndexFieldData.Global<AtomicOrdi
      */
     OrdinalMap getOrdinalMap();
 
+    /**
+     * Returns the mapping from the ordinals of the segment at the provided index to the global ordinals
+     * or null if global ordinals are not needed (constant value or single segment).
+     */
+    default LongValues getGlobalOrds(int segmentIndex) {
+        final OrdinalMap ordinalMap = getOrdinalMap();
+        return ordinalMap == null ? null : ordinalMap.getGlobalOrds(segmentIndex);
+    }
+
     /**
      * Whether this field data is able to provide a mapping between global and segment ordinals,
      * by returning the underlying {@link OrdinalMap}. If this method returns false, then calling
@@ -19,7 +19,6 @@
 
 package org.elasticsearch.index.fielddata.ordinals;
 
-import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.BytesRef;
@@ -33,11 +32,11 @@ import java.io.IOException;
 final class GlobalOrdinalMapping extends SortedSetDocValues {
 
     private final SortedSetDocValues values;
-    private final OrdinalMap ordinalMap;
+    private final OrdinalMapping ordinalMap;
     private final LongValues mapping;
     private final TermsEnum[] lookups;
 
-    GlobalOrdinalMapping(OrdinalMap ordinalMap, SortedSetDocValues values, TermsEnum[] lookups, int segmentIndex) {
+    GlobalOrdinalMapping(OrdinalMapping ordinalMap, SortedSetDocValues values, TermsEnum[] lookups, int segmentIndex) {
         super();
         this.values = values;
         this.lookups = lookups;
@@ -22,10 +22,12 @@ package org.elasticsearch.index.fielddata.ordinals;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.IndexSettings;
@@ -79,6 +81,44 @@ public enum GlobalOrdinalsBuilder {
         );
     }
 
+    /**
+     * Build global ordinals for the provided {@link IndexReader} from the global ordinals of a previous reader of the same shard,
+     * see {@link IncrementalOrdinalMap}.
+     */
+    public static GlobalOrdinalsIndexFieldData buildIncremental(final IndexReader indexReader, IndexOrdinalsFieldData indexFieldData,
+            @Nullable IncrementalOrdinalMap previous, IndexSettings indexSettings, CircuitBreakerService breakerService, Logger logger,
+            Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) throws IOException {
+        assert indexReader.leaves().size() > 1;
+        long startTimeNS = System.nanoTime();
+
+        final AtomicOrdinalsFieldData[] atomicFD = new AtomicOrdinalsFieldData[indexReader.leaves().size()];
+        final SortedSetDocValues[] subs = new SortedSetDocValues[indexReader.leaves().size()];
+        final IndexReader.CacheKey[] segmentKeys = new IndexReader.CacheKey[indexReader.leaves().size()];
+        for (int i = 0; i < indexReader.leaves().size(); ++i) {
+            final LeafReader leafReader = indexReader.leaves().get(i).reader();
+            atomicFD[i] = indexFieldData.load(indexReader.leaves().get(i));
+            subs[i] = atomicFD[i].getOrdinalsValues();
+            segmentKeys[i] = leafReader.getCoreCacheHelper().getKey();
+        }
+        final IncrementalOrdinalMap ordinalMap = IncrementalOrdinalMap.build(previous, segmentKeys, subs);
+        final long memorySizeInBytes = ordinalMap.ramBytesUsed();
+        breakerService.getBreaker(CircuitBreaker.FIELDDATA).addWithoutBreaking(memorySizeInBytes);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(
+                    "incremental global-ordinals [{}][{}] reused [{}/{}] segments and took [{}]",
+                    indexFieldData.getFieldName(),
+                    ordinalMap.getValueCount(),
+                    IncrementalOrdinalMap.countReusedSegments(previous, segmentKeys),
+                    segmentKeys.length,
+                    new TimeValue(System.nanoTime() - startTimeNS, TimeUnit.NANOSECONDS)
+            );
+        }
+        return new GlobalOrdinalsIndexFieldData(indexSettings, indexFieldData.getFieldName(),
+                atomicFD, ordinalMap, memorySizeInBytes, scriptFunction
+        );
+    }
+
     public static IndexOrdinalsFieldData buildEmpty(IndexSettings indexSettings, final IndexReader indexReader,
             IndexOrdinalsFieldData indexFieldData) throws IOException {
         assert indexReader.leaves().size() > 1;
@@ -25,6 +25,8 @@ import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.IndexSettings;
@@ -55,9 +57,11 @@ public final class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent i
     private final String fieldName;
     private final long memorySizeInBytes;
 
-    private final OrdinalMap ordinalMap;
+    private final OrdinalMapping ordinalMapping;
     private final AtomicOrdinalsFieldData[] segmentAfd;
     private final Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction;
+    // the lucene ordinal map, lazily created from the segments if the global ordinals were built incrementally
+    private volatile OrdinalMap ordinalMap;
 
     protected GlobalOrdinalsIndexFieldData(IndexSettings indexSettings,
                                            String fieldName,
@@ -69,10 +73,33 @@ public final class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent i
         this.fieldName = fieldName;
         this.memorySizeInBytes = memorySizeInBytes;
         this.ordinalMap = ordinalMap;
+        this.ordinalMapping = OrdinalMapping.of(ordinalMap);
         this.segmentAfd = segmentAfd;
         this.scriptFunction = scriptFunction;
     }
 
+    GlobalOrdinalsIndexFieldData(IndexSettings indexSettings,
+                                 String fieldName,
+                                 AtomicOrdinalsFieldData[] segmentAfd,
+                                 IncrementalOrdinalMap ordinalMap,
+                                 long memorySizeInBytes,
+                                 Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) {
+        super(indexSettings);
+        this.fieldName = fieldName;
+        this.memorySizeInBytes = memorySizeInBytes;
+        this.ordinalMapping = ordinalMap;
+        this.segmentAfd = segmentAfd;
+        this.scriptFunction = scriptFunction;
+    }
+
+    /**
+     * Returns the incrementally built mapping of these global ordinals, or <code>null</code> if they are backed by an {@link OrdinalMap}.
+     */
+    @Nullable
+    public IncrementalOrdinalMap getIncrementalOrdinalMap() {
+        return ordinalMapping instanceof IncrementalOrdinalMap ? (IncrementalOrdinalMap) ordinalMapping : null;
+    }
+
     public IndexOrdinalsFieldData newConsumer(DirectoryReader source) {
         return new Consumer(source, indexSettings);
     }
@@ -123,7 +150,29 @@ public final class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent i
 
     @Override
     public OrdinalMap getOrdinalMap() {
-        return ordinalMap;
+        OrdinalMap map = ordinalMap;
+        if (map == null) {
+            synchronized (this) {
+                map = ordinalMap;
+                if (map == null) {
+                    final SortedSetDocValues[] subs = new SortedSetDocValues[segmentAfd.length];
+                    for (int i = 0; i < segmentAfd.length; i++) {
+                        subs[i] = segmentAfd[i].getOrdinalsValues();
+                    }
+                    try {
+                        ordinalMap = map = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to build ordinal map", e);
+                    }
+                }
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public LongValues getGlobalOrds(int segmentIndex) {
+        return ordinalMapping.getGlobalOrds(segmentIndex);
     }
 
     @Override
@@ -206,12 +255,12 @@ public final class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent i
                 @Override
                 public SortedSetDocValues getOrdinalsValues() {
                     final SortedSetDocValues values = segmentAfd[context.ord].getOrdinalsValues();
-                    if (values.getValueCount() == ordinalMap.getValueCount()) {
+                    if (values.getValueCount() == ordinalMapping.getValueCount()) {
                         // segment ordinals match global ordinals
                         return values;
                     }
                     final TermsEnum[] atomicLookups = getOrLoadTermsEnums();
-                    return new GlobalOrdinalMapping(ordinalMap, values, atomicLookups, context.ord);
+                    return new GlobalOrdinalMapping(ordinalMapping, values, atomicLookups, context.ord);
                 }
 
                 @Override
@@ -237,7 +286,12 @@ public final class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent i
 
         @Override
         public OrdinalMap getOrdinalMap() {
-            return ordinalMap;
+            return GlobalOrdinalsIndexFieldData.this.getOrdinalMap();
+        }
+
+        @Override
+        public LongValues getGlobalOrds(int segmentIndex) {
+            return ordinalMapping.getGlobalOrds(segmentIndex);
         }
 
     }
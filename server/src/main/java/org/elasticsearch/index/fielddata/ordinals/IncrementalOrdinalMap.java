@@ -0,0 +1,273 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+import org.elasticsearch.common.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link OrdinalMapping} that can be built incrementally from the mapping of a previous reader of the same shard.
+ * <p>
+ * The term dictionary of a segment never changes, so the segments of the new reader that were already part of the previous
+ * reader (same core cache key) are not merged again: their previous mapping is composed with the (monotonic) mapping from the
+ * previous global ordinals to the new ones. The terms of the previous global ordinals are read once, from the first segment
+ * of the new reader that contains them, and merged with the terms of the new segments only. The previous global ordinals that
+ * are not part of any segment of the new reader anymore (because their segments were merged away) are dropped.
+ */
+public final class IncrementalOrdinalMap implements OrdinalMapping, Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(IncrementalOrdinalMap.class);
+
+    private final IndexReader.CacheKey[] segmentKeys;
+    private final PackedLongValues[] segmentToGlobalOrds;
+    private final PackedLongValues firstSegments;
+    private final PackedLongValues firstSegmentOrds;
+    private final long ramBytesUsed;
+
+    private IncrementalOrdinalMap(IndexReader.CacheKey[] segmentKeys, PackedLongValues[] segmentToGlobalOrds,
+                                  PackedLongValues firstSegments, PackedLongValues firstSegmentOrds) {
+        this.segmentKeys = segmentKeys;
+        this.segmentToGlobalOrds = segmentToGlobalOrds;
+        this.firstSegments = firstSegments;
+        this.firstSegmentOrds = firstSegmentOrds;
+        long ramBytesUsed = BASE_RAM_BYTES_USED + RamUsageEstimator.shallowSizeOf(segmentKeys)
+            + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds) + firstSegments.ramBytesUsed() + firstSegmentOrds.ramBytesUsed();
+        for (PackedLongValues values : segmentToGlobalOrds) {
+            ramBytesUsed += values.ramBytesUsed();
+        }
+        this.ramBytesUsed = ramBytesUsed;
+    }
+
+    /**
+     * Builds the mapping of the provided segments.
+     *
+     * @param previous    the mapping of a previous reader of the same shard or <code>null</code> to merge all the segments
+     * @param segmentKeys the core cache keys of the segments
+     * @param subs        the ordinals of the segments
+     */
+    public static IncrementalOrdinalMap build(@Nullable IncrementalOrdinalMap previous, IndexReader.CacheKey[] segmentKeys,
+                                              SortedSetDocValues[] subs) throws IOException {
+        assert segmentKeys.length == subs.length;
+        if (previous != null && previous.getValueCount() >= ArrayUtil.MAX_ARRAY_LENGTH) {
+            // the previous global ordinals are tracked in arrays
+            previous = null;
+        }
+        final Map<IndexReader.CacheKey, Integer> previousSegments = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.segmentKeys.length; i++) {
+                previousSegments.put(previous.segmentKeys[i], i);
+            }
+        }
+        final int previousValueCount = previous == null ? 0 : (int) previous.getValueCount();
+        final int[] previousSegmentIndices = new int[subs.length];
+
+        // find the previous global ordinals that are still used and the first segment that contains them
+        final LongBitSet live = new LongBitSet(Math.max(1, previousValueCount));
+        final int[] firstSegmentOfPrevious = new int[previousValueCount];
+        final long[] firstSegmentOrdOfPrevious = new long[previousValueCount];
+        for (int i = 0; i < subs.length; i++) {
+            final Integer previousIndex = previousSegments.get(segmentKeys[i]);
+            previousSegmentIndices[i] = previousIndex == null ? -1 : previousIndex;
+            if (previousIndex == null) {
+                continue;
+            }
+            final PackedLongValues previousMapping = previous.segmentToGlobalOrds[previousIndex];
+            assert previousMapping.size() == subs[i].getValueCount();
+            for (long segmentOrd = 0; segmentOrd < previousMapping.size(); segmentOrd++) {
+                final int globalOrd = (int) previousMapping.get(segmentOrd);
+                if (live.get(globalOrd) == false) {
+                    live.set(globalOrd);
+                    firstSegmentOfPrevious[globalOrd] = i;
+                    firstSegmentOrdOfPrevious[globalOrd] = segmentOrd;
+                }
+            }
+        }
+
+        // merge the live previous terms with the terms of the new segments
+        final TermsEnum[] termsEnums = new TermsEnum[subs.length];
+        final PackedLongValues.Builder[] newSegmentBuilders = new PackedLongValues.Builder[subs.length];
+        final PriorityQueue<SegmentTerms> queue = new PriorityQueue<SegmentTerms>(subs.length) {
+            @Override
+            protected boolean lessThan(SegmentTerms a, SegmentTerms b) {
+                return a.term.compareTo(b.term) < 0;
+            }
+        };
+        for (int i = 0; i < subs.length; i++) {
+            termsEnums[i] = subs[i].termsEnum();
+            if (previousSegmentIndices[i] == -1) {
+                newSegmentBuilders[i] = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+                final BytesRef term = termsEnums[i].next();
+                if (term != null) {
+                    queue.add(new SegmentTerms(i, termsEnums[i], term));
+                }
+            }
+        }
+        final long[] previousToGlobalOrd = new long[previousValueCount];
+        final PackedLongValues.Builder firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        final PackedLongValues.Builder firstSegmentOrds = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        int previousOrd = nextLive(live, 0, previousValueCount);
+        BytesRef previousTerm = previousOrd < previousValueCount
+            ? lookup(termsEnums, firstSegmentOfPrevious[previousOrd], firstSegmentOrdOfPrevious[previousOrd]) : null;
+        long globalOrd = 0;
+        while (previousTerm != null || queue.size() > 0) {
+            final int cmp;
+            if (previousTerm == null) {
+                cmp = 1;
+            } else if (queue.size() == 0) {
+                cmp = -1;
+            } else {
+                cmp = previousTerm.compareTo(queue.top().term);
+            }
+            int firstSegment = Integer.MAX_VALUE;
+            long firstSegmentOrd = -1;
+            if (cmp <= 0) {
+                previousToGlobalOrd[previousOrd] = globalOrd;
+                firstSegment = firstSegmentOfPrevious[previousOrd];
+                firstSegmentOrd = firstSegmentOrdOfPrevious[previousOrd];
+            }
+            if (cmp >= 0) {
+                // the smallest term comes from the new segments, consume it from all of them
+                final BytesRef term = BytesRef.deepCopyOf(queue.top().term);
+                while (queue.size() > 0 && queue.top().term.equals(term)) {
+                    final SegmentTerms top = queue.top();
+                    newSegmentBuilders[top.segment].add(globalOrd);
+                    if (top.segment < firstSegment) {
+                        firstSegment = top.segment;
+                        firstSegmentOrd = top.termsEnum.ord();
+                    }
+                    top.term = top.termsEnum.next();
+                    if (top.term == null) {
+                        queue.pop();
+                    } else {
+                        queue.updateTop();
+                    }
+                }
+            }
+            if (cmp <= 0) {
+                previousOrd = nextLive(live, previousOrd + 1, previousValueCount);
+                previousTerm = previousOrd < previousValueCount
+                    ? lookup(termsEnums, firstSegmentOfPrevious[previousOrd], firstSegmentOrdOfPrevious[previousOrd]) : null;
+            }
+            firstSegments.add(firstSegment);
+            firstSegmentOrds.add(firstSegmentOrd);
+            globalOrd++;
+        }
+
+        // compose the mappings of the previous segments with the new global ordinals
+        final PackedLongValues[] segmentToGlobalOrds = new PackedLongValues[subs.length];
+        for (int i = 0; i < subs.length; i++) {
+            if (previousSegmentIndices[i] == -1) {
+                segmentToGlobalOrds[i] = newSegmentBuilders[i].build();
+            } else {
+                final PackedLongValues previousMapping = previous.segmentToGlobalOrds[previousSegmentIndices[i]];
+                final PackedLongValues.Builder builder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+                for (long segmentOrd = 0; segmentOrd < previousMapping.size(); segmentOrd++) {
+                    builder.add(previousToGlobalOrd[(int) previousMapping.get(segmentOrd)]);
+                }
+                segmentToGlobalOrds[i] = builder.build();
+            }
+        }
+        return new IncrementalOrdinalMap(segmentKeys.clone(), segmentToGlobalOrds, firstSegments.build(), firstSegmentOrds.build());
+    }
+
+    private static int nextLive(LongBitSet live, int from, int valueCount) {
+        if (from >= valueCount) {
+            return valueCount;
+        }
+        final long next = live.nextSetBit(from);
+        return next == -1 || next >= valueCount ? valueCount : (int) next;
+    }
+
+    private static BytesRef lookup(TermsEnum[] termsEnums, int segment, long segmentOrd) throws IOException {
+        termsEnums[segment].seekExact(segmentOrd);
+        return termsEnums[segment].term();
+    }
+
+    private static final class SegmentTerms {
+        final int segment;
+        final TermsEnum termsEnum;
+        BytesRef term;
+
+        SegmentTerms(int segment, TermsEnum termsEnum, BytesRef term) {
+            this.segment = segment;
+            this.termsEnum = termsEnum;
+            this.term = term;
+        }
+    }
+
+    /**
+     * Returns the number of segments of the new reader that were mapped from the previous reader.
+     */
+    static int countReusedSegments(@Nullable IncrementalOrdinalMap previous, IndexReader.CacheKey[] segmentKeys) {
+        if (previous == null) {
+            return 0;
+        }
+        int count = 0;
+        for (IndexReader.CacheKey key : segmentKeys) {
+            for (IndexReader.CacheKey previousKey : previous.segmentKeys) {
+                if (key == previousKey) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getValueCount() {
+        return firstSegments.size();
+    }
+
+    @Override
+    public LongValues getGlobalOrds(int segmentIndex) {
+        return segmentToGlobalOrds[segmentIndex];
+    }
+
+    @Override
+    public int getFirstSegmentNumber(long globalOrd) {
+        return (int) firstSegments.get(globalOrd);
+    }
+
+    @Override
+    public long getFirstSegmentOrd(long globalOrd) {
+        return firstSegmentOrds.get(globalOrd);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.util.LongValues;
+
+/**
+ * The mapping between the ordinals of the segments of a reader and the global ordinals,
+ * either backed by an {@link OrdinalMap} or by an {@link IncrementalOrdinalMap}.
+ */
+interface OrdinalMapping {
+
+    /**
+     * Returns the number of global ordinals.
+     */
+    long getValueCount();
+
+    /**
+     * Returns the mapping from the ordinals of the segment at the provided index to the global ordinals.
+     */
+    LongValues getGlobalOrds(int segmentIndex);
+
+    /**
+     * Returns the index of a segment that contains the term of the provided global ordinal.
+     */
+    int getFirstSegmentNumber(long globalOrd);
+
+    /**
+     * Returns the ordinal of the term of the provided global ordinal in the segment returned by {@link #getFirstSegmentNumber(long)}.
+     */
+    long getFirstSegmentOrd(long globalOrd);
+
+    static OrdinalMapping of(OrdinalMap ordinalMap) {
+        return new OrdinalMapping() {
+            @Override
+            public long getValueCount() {
+                return ordinalMap.getValueCount();
+            }
+
+            @Override
+            public LongValues getGlobalOrds(int segmentIndex) {
+                return ordinalMap.getGlobalOrds(segmentIndex);
+            }
+
+            @Override
+            public int getFirstSegmentNumber(long globalOrd) {
+                return ordinalMap.getFirstSegmentNumber(globalOrd);
+            }
+
+            @Override
+            public long getFirstSegmentOrd(long globalOrd) {
+                return ordinalMap.getFirstSegmentOrd(globalOrd);
+            }
+        };
+    }
+}
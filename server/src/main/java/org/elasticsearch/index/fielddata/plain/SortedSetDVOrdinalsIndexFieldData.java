@@ -30,15 +30,19 @@ import org.apache.lucene.search.SortedSetSelector;
 import org.apache.lucene.search.SortedSetSortField;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.fielddata.AtomicOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldData.XFieldComparatorSource.Nested;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.ScriptDocValues;
 import org.elasticsearch.index.fielddata.fieldcomparator.BytesRefFieldComparatorSource;
 import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
 import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsBuilder;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardUtils;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.search.MultiValueMode;
 
@@ -139,6 +143,13 @@ public class SortedSetDVOrdinalsIndexFieldData extends DocValuesIndexFieldData i
 
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
+        final ShardId shardId = ShardUtils.extractShardId(indexReader);
+        if (shardId != null && indexSettings.getValue(IndexFieldDataService.INDEX_FIELDDATA_INCREMENTAL_GLOBAL_ORDINALS_SETTING)) {
+            final GlobalOrdinalsIndexFieldData fieldData = GlobalOrdinalsBuilder.buildIncremental(indexReader, this,
+                cache.getLastOrdinalMap(shardId), indexSettings, breakerService, logger, scriptFunction);
+            cache.setLastOrdinalMap(indexReader, fieldData.getIncrementalOrdinalMap(), breakerService.getBreaker(CircuitBreaker.FIELDDATA));
+            return fieldData;
+        }
         return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger, scriptFunction);
     }
 
@@ -54,6 +54,7 @@ import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.RoutingFieldMapper;
 import org.elasticsearch.index.mapper.SourceFieldMapper;
 import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.mapper.SyntheticSource;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.IndexShard;
@@ -224,6 +225,14 @@ public final class ShardGetService extends AbstractIndexShardComponent {
                 throw new ElasticsearchException("Failed to get id [" + id + "]", e);
             }
             source = fieldVisitor.source();
+            final SyntheticSource syntheticSource = docMapper.syntheticSource();
+            if (source == null && syntheticSource != null && get.isFromTranslog() == false && fetchSourceContext.fetchSource()) {
+                try {
+                    source = syntheticSource.leaf(docIdAndVersion.reader).source(docIdAndVersion.docId);
+                } catch (IOException e) {
+                    throw new ElasticsearchException("Failed to load synthetic source of id [" + id + "]", e);
+                }
+            }
 
             // in case we read from translog, some extra steps are needed to make _source consistent and to load stored fields
             if (get.isFromTranslog()) {
@@ -231,7 +240,10 @@ public final class ShardGetService extends AbstractIndexShardComponent {
                 // just make source consistent by reapplying source filters from mapping (possibly also nulling the source)
                 if (forceSourceForComputingTranslogStoredFields == false) {
                     try {
-                        source = indexShard.mapperService().documentMapper().sourceMapper().applyFilters(source, null);
+                        // a synthetic source isn't stored, the source from the translog is returned as is
+                        if (docMapper.sourceMapper().isSynthetic() == false) {
+                            source = docMapper.sourceMapper().applyFilters(source, null);
+                        }
                     } catch (IOException e) {
                         throw new ElasticsearchException("Failed to reapply filters for [" + id + "] after reading from translog", e);
                     }
@@ -268,7 +280,10 @@ public final class ShardGetService extends AbstractIndexShardComponent {
                         }
                     }
                     // retrieve source (with possible transformations, e.g. source filters
-                    source = fieldVisitor.source();
+                    // a synthetic source isn't stored, the source from the translog is returned as is
+                    if (docMapper.sourceMapper().isSynthetic() == false) {
+                        source = fieldVisitor.source();
+                    }
                 }
             }
 
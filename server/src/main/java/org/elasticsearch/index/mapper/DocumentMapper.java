@@ -28,6 +28,7 @@ import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchGenerationException;
 import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.settings.Settings;
@@ -130,6 +131,10 @@ public class DocumentMapper implements ToXContentFragment {
 
     private final Map<String, ObjectMapper> objectMappers;
 
+    private final DocumentParsePlan parsePlan;
+
+    private final SyntheticSource syntheticSource;
+
     private final boolean hasNestedObjects;
     private final MetadataFieldMapper[] deleteTombstoneMetadataFieldMappers;
     private final MetadataFieldMapper[] noopTombstoneMetadataFieldMappers;
@@ -177,6 +182,10 @@ public class DocumentMapper implements ToXContentFragment {
             }
         }
         this.hasNestedObjects = hasNestedObjects;
+        this.parsePlan = new DocumentParsePlan(mapping.root);
+        final SourceFieldMapper sourceMapper = sourceMapper();
+        this.syntheticSource = sourceMapper != null && sourceMapper.isSynthetic()
+            ? SyntheticSource.build(newFieldMappers, newObjectMappers) : null;
 
         try {
             mappingSource = new CompressedXContent(this, XContentType.JSON, ToXContent.EMPTY_PARAMS);
@@ -226,6 +235,14 @@ public class DocumentMapper implements ToXContentFragment {
         return metadataMapper(SourceFieldMapper.class);
     }
 
+    /**
+     * Returns the rebuilder of the source of documents if the source of this mapping is synthetic, {@code null} otherwise.
+     */
+    @Nullable
+    public SyntheticSource syntheticSource() {
+        return syntheticSource;
+    }
+
     public IdFieldMapper idFieldMapper() {
         return metadataMapper(IdFieldMapper.class);
     }
@@ -250,6 +267,13 @@ public class DocumentMapper implements ToXContentFragment {
         return this.objectMappers;
     }
 
+    /**
+     * The mappers of this mapping, resolved ahead of time for the field names that documents are expected to contain.
+     */
+    DocumentParsePlan parsePlan() {
+        return this.parsePlan;
+    }
+
     public ParsedDocument parse(SourceToParse source) throws MapperParsingException {
         return documentParser.parseDocument(source, mapping.metadataMappers);
     }
@@ -0,0 +1,119 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.mapper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The mappers of a {@link Mapping}, resolved ahead of time for the field names that documents are expected to contain.
+ * <p>
+ * For every object of the mapping, the plan maps the names under which its mapped descendants can appear in a document, including
+ * dotted names that expand to objects, to their already resolved {@link Mapper}. When the {@link DocumentParser} encounters one of
+ * these names it can skip splitting the name, validating it and walking the object tree, and only falls back to the full resolution
+ * logic, including the dynamic mapping checks, for names that are not part of the plan. A plan is compiled once per
+ * {@link DocumentMapper}, so once per mapping version, and is immutable.
+ */
+final class DocumentParsePlan {
+
+    /**
+     * A field name whose mapper is known.
+     */
+    static final class KnownField {
+        private final String[] paths;
+        private final Mapper mapper;
+
+        private KnownField(String[] paths, Mapper mapper) {
+            this.paths = paths;
+            this.mapper = mapper;
+        }
+
+        /**
+         * The field name split on dots.
+         */
+        String[] paths() {
+            return paths;
+        }
+
+        /**
+         * The mapper that the field name resolves to.
+         */
+        Mapper mapper() {
+            return mapper;
+        }
+    }
+
+    private final Map<ObjectMapper, Map<String, KnownField>> knownFields;
+
+    DocumentParsePlan(RootObjectMapper root) {
+        final Map<ObjectMapper, Map<String, KnownField>> knownFields = new IdentityHashMap<>();
+        compile(root, "", knownFields);
+        this.knownFields = Collections.unmodifiableMap(knownFields);
+    }
+
+    private static void compile(ObjectMapper objectMapper, String pathPrefix,
+                                Map<ObjectMapper, Map<String, KnownField>> knownFields) {
+        final Map<String, KnownField> fields = new HashMap<>();
+        addDescendants(objectMapper, pathPrefix, null, fields);
+        knownFields.put(objectMapper, fields.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(fields));
+        for (Mapper child : objectMapper) {
+            if (child instanceof ObjectMapper) {
+                compile((ObjectMapper) child, pathPrefix + child.simpleName() + ".", knownFields);
+            }
+        }
+    }
+
+    private static void addDescendants(ObjectMapper objectMapper, String pathPrefix, String[] parentPaths,
+                                       Map<String, KnownField> fields) {
+        for (Mapper child : objectMapper) {
+            final String name = child.simpleName();
+            if (MapperService.isMetadataField(pathPrefix + name)) {
+                // must be rejected by the parser
+                continue;
+            }
+            final String[] paths;
+            if (parentPaths == null) {
+                paths = new String[] { name };
+            } else {
+                paths = new String[parentPaths.length + 1];
+                System.arraycopy(parentPaths, 0, paths, 0, parentPaths.length);
+                paths[parentPaths.length] = name;
+            }
+            fields.put(String.join(".", paths), new KnownField(paths, child));
+            if (child instanceof ObjectMapper) {
+                final ObjectMapper childObject = (ObjectMapper) child;
+                // dotted names can't go through disabled objects, which are skipped, or nested objects, which are rejected
+                if (childObject.isEnabled() && childObject.nested().isNested() == false) {
+                    addDescendants(childObject, pathPrefix + name + ".", paths, fields);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the known fields of the given object, keyed by the name they have in the documents. Objects that are not part of the
+     * mapping this plan was compiled from, like objects that were just added by dynamic mappings, have no known fields.
+     */
+    Map<String, KnownField> knownFields(ObjectMapper objectMapper) {
+        return knownFields.getOrDefault(objectMapper, Collections.emptyMap());
+    }
+}
@@ -41,6 +41,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /** A parser for documents, given mappings from a DocumentMapper */
 final class DocumentParser {
@@ -386,29 +387,40 @@ final class DocumentParser {
     private static void innerParseObject(ParseContext context, ObjectMapper mapper, XContentParser parser,
                                          String currentFieldName, XContentParser.Token token) throws IOException {
         assert token == XContentParser.Token.FIELD_NAME || token == XContentParser.Token.END_OBJECT;
+        final Map<String, DocumentParsePlan.KnownField> knownFields = context.docMapper().parsePlan().knownFields(mapper);
         String[] paths = null;
+        Mapper fieldMapper = null;
         while (token != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.FIELD_NAME) {
                 currentFieldName = parser.currentName();
-                paths = splitAndValidatePath(currentFieldName);
-                if (MapperService.isMetadataField(context.path().pathAsText(currentFieldName))) {
-                    throw new MapperParsingException("Field [" + currentFieldName + "] is a metadata field and cannot be added inside"
-                        + " a document. Use the index API request parameters.");
-                } else if (containsDisabledObjectMapper(mapper, paths)) {
-                    parser.nextToken();
-                    parser.skipChildren();
+                final DocumentParsePlan.KnownField knownField = knownFields.get(currentFieldName);
+                if (knownField != null) {
+                    // the name of a mapped field has already been validated and resolved
+                    paths = knownField.paths();
+                    fieldMapper = knownField.mapper();
+                } else {
+                    paths = splitAndValidatePath(currentFieldName);
+                    if (MapperService.isMetadataField(context.path().pathAsText(currentFieldName))) {
+                        throw new MapperParsingException("Field [" + currentFieldName + "] is a metadata field and cannot be added"
+                            + " inside a document. Use the index API request parameters.");
+                    } else if (containsDisabledObjectMapper(mapper, paths)) {
+                        parser.nextToken();
+                        parser.skipChildren();
+                    } else {
+                        fieldMapper = getMapper(mapper, currentFieldName, paths);
+                    }
                 }
             } else if (token == XContentParser.Token.START_OBJECT) {
-                parseObject(context, mapper, currentFieldName, paths);
+                parseObject(context, mapper, currentFieldName, paths, fieldMapper);
             } else if (token == XContentParser.Token.START_ARRAY) {
-                parseArray(context, mapper, currentFieldName, paths);
+                parseArray(context, mapper, currentFieldName, paths, fieldMapper);
             } else if (token == XContentParser.Token.VALUE_NULL) {
-                parseNullValue(context, mapper, currentFieldName, paths);
+                parseNullValue(context, mapper, currentFieldName, fieldMapper);
             } else if (token == null) {
                 throw new MapperParsingException("object mapping for [" + mapper.name() + "] tried to parse field [" + currentFieldName
                     + "] as object, but got EOF, has a concrete value been provided to it?");
             } else if (token.isValue()) {
-                parseValue(context, mapper, currentFieldName, token, paths);
+                parseValue(context, mapper, currentFieldName, token, paths, fieldMapper);
             }
             token = parser.nextToken();
         }
@@ -480,10 +492,9 @@ final class DocumentParser {
     }
 
     private static void parseObject(final ParseContext context, ObjectMapper mapper, String currentFieldName,
-                                    String[] paths) throws IOException {
+                                    String[] paths, Mapper objectMapper) throws IOException {
         assert currentFieldName != null;
 
-        Mapper objectMapper = getMapper(mapper, currentFieldName, paths);
         if (objectMapper != null) {
             context.path().add(currentFieldName);
             parseObjectOrField(context, objectMapper);
@@ -517,10 +528,9 @@ final class DocumentParser {
     }
 
     private static void parseArray(ParseContext context, ObjectMapper parentMapper, String lastFieldName,
-                                   String[] paths) throws IOException {
+                                   String[] paths, Mapper mapper) throws IOException {
         String arrayFieldName = lastFieldName;
 
-        Mapper mapper = getMapper(parentMapper, lastFieldName, paths);
         if (mapper != null) {
             // There is a concrete mapper for this field already. Need to check if the mapper
             // expects an array, if so we pass the context straight to the mapper and if not
@@ -570,30 +580,31 @@ final class DocumentParser {
         XContentParser parser = context.parser();
         XContentParser.Token token;
         final String[] paths = splitAndValidatePath(lastFieldName);
+        // dynamic mappers are only merged once the document is parsed, all the elements of the array resolve to the same mapper
+        final Mapper fieldMapper = getMapper(mapper, lastFieldName, paths);
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                parseObject(context, mapper, lastFieldName, paths);
+                parseObject(context, mapper, lastFieldName, paths, fieldMapper);
             } else if (token == XContentParser.Token.START_ARRAY) {
-                parseArray(context, mapper, lastFieldName, paths);
+                parseArray(context, mapper, lastFieldName, paths, fieldMapper);
             } else if (token == XContentParser.Token.VALUE_NULL) {
-                parseNullValue(context, mapper, lastFieldName, paths);
+                parseNullValue(context, mapper, lastFieldName, fieldMapper);
             } else if (token == null) {
                 throw new MapperParsingException("object mapping for [" + mapper.name() + "] with array for [" + arrayFieldName
                     + "] tried to parse as array, but got EOF, is there a mismatch in types for the same field?");
             } else {
                 assert token.isValue();
-                parseValue(context, mapper, lastFieldName, token, paths);
+                parseValue(context, mapper, lastFieldName, token, paths, fieldMapper);
             }
         }
     }
 
-    private static void parseValue(final ParseContext context, ObjectMapper parentMapper,
-                                   String currentFieldName, XContentParser.Token token, String[] paths) throws IOException {
+    private static void parseValue(final ParseContext context, ObjectMapper parentMapper, String currentFieldName,
+                                   XContentParser.Token token, String[] paths, Mapper mapper) throws IOException {
         if (currentFieldName == null) {
             throw new MapperParsingException("object mapping [" + parentMapper.name() + "] trying to serialize a value with"
                 + " no field associated with it, current value [" + context.parser().textOrNull() + "]");
         }
-        Mapper mapper = getMapper(parentMapper, currentFieldName, paths);
         if (mapper != null) {
             parseObjectOrField(context, mapper);
         } else {
@@ -608,9 +619,8 @@ final class DocumentParser {
     }
 
     private static void parseNullValue(ParseContext context, ObjectMapper parentMapper, String lastFieldName,
-                                       String[] paths) throws IOException {
+                                       Mapper mapper) throws IOException {
         // we can only handle null values if we have mappings for them
-        Mapper mapper = getMapper(parentMapper, lastFieldName, paths);
         if (mapper != null) {
             // TODO: passing null to an object seems bogus?
             parseObjectOrField(context, mapper);
@@ -20,6 +20,7 @@
 package org.elasticsearch.index.mapper;
 
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
@@ -454,6 +455,15 @@ public abstract class MappedFieldType extends FieldType {
         this.eagerGlobalOrdinals = eagerGlobalOrdinals;
     }
 
+    /**
+     * Returns the {@link DocValuesFormat} that the codec uses to write the doc values of this field, or <code>null</code>
+     * to use the default format of the codec.
+     */
+    @Nullable
+    public DocValuesFormat docValuesFormat() {
+        return null;
+    }
+
     /** Return a {@link DocValueFormat} that can be used to display and parse
      *  values as returned by the fielddata API.
      *  The default implementation returns a {@link DocValueFormat#RAW}. */
@@ -54,11 +54,14 @@ public class SourceFieldMapper extends MetadataFieldMapper {
     public static final String RECOVERY_SOURCE_NAME = "_recovery_source";
 
     public static final String CONTENT_TYPE = "_source";
+    private static final String MODE_STORED = "stored";
+    private static final String MODE_SYNTHETIC = "synthetic";
     private final Function<Map<String, ?>, Map<String, Object>> filter;
 
     public static class Defaults {
         public static final String NAME = SourceFieldMapper.NAME;
         public static final boolean ENABLED = true;
+        public static final boolean SYNTHETIC = false;
 
         public static final MappedFieldType FIELD_TYPE = new SourceFieldType();
 
@@ -78,6 +81,8 @@ public class SourceFieldMapper extends MetadataFieldMapper {
 
         private boolean enabled = Defaults.ENABLED;
 
+        private boolean synthetic = Defaults.SYNTHETIC;
+
         private String[] includes = null;
         private String[] excludes = null;
 
@@ -90,6 +95,11 @@ public class SourceFieldMapper extends MetadataFieldMapper {
             return this;
         }
 
+        public Builder synthetic(boolean synthetic) {
+            this.synthetic = synthetic;
+            return this;
+        }
+
         public Builder includes(String[] includes) {
             this.includes = includes;
             return this;
@@ -102,7 +112,10 @@ public class SourceFieldMapper extends MetadataFieldMapper {
 
         @Override
         public SourceFieldMapper build(BuilderContext context) {
-            return new SourceFieldMapper(enabled, includes, excludes, context.indexSettings());
+            if (synthetic && (enabled == false || includes != null || excludes != null)) {
+                throw new MapperParsingException("[" + NAME + "] can't be synthetic if it is disabled or filtered");
+            }
+            return new SourceFieldMapper(enabled, synthetic, includes, excludes, context.indexSettings());
         }
     }
 
@@ -119,6 +132,17 @@ public class SourceFieldMapper extends MetadataFieldMapper {
                 if (fieldName.equals("enabled")) {
                     builder.enabled(XContentMapValues.nodeBooleanValue(fieldNode, name + ".enabled"));
                     iterator.remove();
+                } else if (fieldName.equals("mode")) {
+                    String mode = fieldNode.toString();
+                    if (mode.equals(MODE_SYNTHETIC)) {
+                        builder.synthetic(true);
+                    } else if (mode.equals(MODE_STORED)) {
+                        builder.synthetic(false);
+                    } else {
+                        throw new MapperParsingException("unknown [" + name + ".mode] [" + mode + "], expected [" + MODE_STORED
+                            + "] or [" + MODE_SYNTHETIC + "]");
+                    }
+                    iterator.remove();
                 } else if (fieldName.equals("includes")) {
                     List<Object> values = (List<Object>) fieldNode;
                     String[] includes = new String[values.size()];
@@ -178,6 +202,9 @@ public class SourceFieldMapper extends MetadataFieldMapper {
 
     private final boolean enabled;
 
+    /** indicates whether the source is rebuilt from doc values rather than stored */
+    private final boolean synthetic;
+
     /** indicates whether the source will always exist and be complete, for use by features like the update API */
     private final boolean complete;
 
@@ -185,12 +212,13 @@ public class SourceFieldMapper extends MetadataFieldMapper {
     private final String[] excludes;
 
     private SourceFieldMapper(Settings indexSettings) {
-        this(Defaults.ENABLED, null, null, indexSettings);
+        this(Defaults.ENABLED, Defaults.SYNTHETIC, null, null, indexSettings);
     }
 
-    private SourceFieldMapper(boolean enabled, String[] includes, String[] excludes, Settings indexSettings) {
+    private SourceFieldMapper(boolean enabled, boolean synthetic, String[] includes, String[] excludes, Settings indexSettings) {
         super(NAME, Defaults.FIELD_TYPE.clone(), Defaults.FIELD_TYPE, indexSettings); // Only stored.
         this.enabled = enabled;
+        this.synthetic = synthetic;
         this.includes = includes;
         this.excludes = excludes;
         final boolean filtered = (includes != null && includes.length > 0) || (excludes != null && excludes.length > 0);
@@ -202,6 +230,13 @@ public class SourceFieldMapper extends MetadataFieldMapper {
         return enabled;
     }
 
+    /**
+     * Whether the source isn't stored but rebuilt from the doc values of the fields of documents, see {@link SyntheticSource}.
+     */
+    public boolean isSynthetic() {
+        return synthetic;
+    }
+
     public String[] excludes() {
         return this.excludes != null ? this.excludes : Strings.EMPTY_ARRAY;
 
@@ -246,7 +281,7 @@ public class SourceFieldMapper extends MetadataFieldMapper {
 
     @Nullable
     public BytesReference applyFilters(@Nullable BytesReference originalSource, @Nullable XContentType contentType) throws IOException {
-        if (enabled && fieldType().stored() && originalSource != null) {
+        if (enabled && synthetic == false && fieldType().stored() && originalSource != null) {
             // Percolate and tv APIs may not set the source and that is ok, because these APIs will not index any data
             if (filter != null) {
                 // we don't update the context source if we filter, we want to keep it as is...
@@ -276,13 +311,16 @@ public class SourceFieldMapper extends MetadataFieldMapper {
         boolean includeDefaults = params.paramAsBoolean("include_defaults", false);
 
         // all are defaults, no need to write it at all
-        if (!includeDefaults && enabled == Defaults.ENABLED && includes == null && excludes == null) {
+        if (!includeDefaults && enabled == Defaults.ENABLED && synthetic == Defaults.SYNTHETIC && includes == null && excludes == null) {
             return builder;
         }
         builder.startObject(contentType());
         if (includeDefaults || enabled != Defaults.ENABLED) {
             builder.field("enabled", enabled);
         }
+        if (includeDefaults || synthetic != Defaults.SYNTHETIC) {
+            builder.field("mode", synthetic ? MODE_SYNTHETIC : MODE_STORED);
+        }
 
         if (includes != null) {
             builder.array("includes", includes);
@@ -307,6 +345,9 @@ public class SourceFieldMapper extends MetadataFieldMapper {
         if (this.enabled != sourceMergeWith.enabled) {
             conflicts.add("Cannot update enabled setting for [_source]");
         }
+        if (this.synthetic != sourceMergeWith.synthetic) {
+            conflicts.add("Cannot update mode setting for [_source]");
+        }
         if (Arrays.equals(includes(), sourceMergeWith.includes()) == false) {
             conflicts.add("Cannot update includes setting for [_source]");
         }
@@ -0,0 +1,278 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.mapper;
+
+import org.apache.lucene.document.HalfFloatPoint;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.search.DocValueFormat;
+
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Rebuilds the {@code _source} of documents from the doc values of their fields, for mappings that don't store the
+ * {@code _source} because it is {@link SourceFieldMapper#isSynthetic() synthetic}. Only {@code long}, {@code integer},
+ * {@code short}, {@code byte}, {@code double}, {@code float}, {@code half_float}, {@code keyword}, {@code ip}, {@code date},
+ * {@code date_nanos} and {@code boolean} fields with doc values are supported, which is validated when the mapping is built.
+ * <p>
+ * The rebuilt source holds the fields in the order of their names. Since doc values are sorted, arrays come back sorted, and
+ * the duplicate values of {@code keyword} and {@code ip} arrays are removed. Dates are formatted with the format of their field.
+ */
+public final class SyntheticSource {
+
+    private final FieldLoader[] fields;
+
+    private SyntheticSource(FieldLoader[] fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Builds the synthetic source of the given mappers, failing if any of them can't be rebuilt from doc values.
+     */
+    static SyntheticSource build(Collection<FieldMapper> fieldMappers, Collection<ObjectMapper> objectMappers) {
+        for (ObjectMapper objectMapper : objectMappers) {
+            if (objectMapper.nested().isNested()) {
+                throw new IllegalArgumentException("[" + SourceFieldMapper.NAME + "] can't be synthetic with nested field ["
+                    + objectMapper.fullPath() + "]");
+            }
+            if (objectMapper.isEnabled() == false) {
+                throw new IllegalArgumentException("[" + SourceFieldMapper.NAME + "] can't be synthetic with disabled object field ["
+                    + objectMapper.fullPath() + "]");
+            }
+        }
+        // multi-fields index the value of their parent field, they don't appear in the source
+        final Set<Mapper> multiFields = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FieldMapper fieldMapper : fieldMappers) {
+            for (Mapper multiField : fieldMapper) {
+                multiFields.add(multiField);
+            }
+        }
+        final List<FieldLoader> fields = new ArrayList<>();
+        for (FieldMapper fieldMapper : fieldMappers) {
+            if (fieldMapper instanceof MetadataFieldMapper || multiFields.contains(fieldMapper)) {
+                continue;
+            }
+            fields.add(fieldLoader(fieldMapper));
+        }
+        fields.sort(Comparator.comparing(field -> field.name));
+        return new SyntheticSource(fields.toArray(new FieldLoader[0]));
+    }
+
+    private static FieldLoader fieldLoader(FieldMapper fieldMapper) {
+        final MappedFieldType fieldType = fieldMapper.fieldType();
+        final String name = fieldType.name();
+        if (fieldType.hasDocValues() == false) {
+            throw unsupported(name, "it has no doc values");
+        }
+        if (fieldMapper.copyTo() != null && fieldMapper.copyTo().copyToFields().isEmpty() == false) {
+            throw unsupported(name, "it is copied to other fields");
+        }
+        if (fieldMapper instanceof NumberFieldMapper) {
+            switch (((NumberFieldMapper.NumberFieldType) fieldType).numericType()) {
+                case HALF_FLOAT:
+                    return new NumericFieldLoader(name, value -> HalfFloatPoint.sortableShortToHalfFloat((short) value));
+                case FLOAT:
+                    return new NumericFieldLoader(name, value -> NumericUtils.sortableIntToFloat((int) value));
+                case DOUBLE:
+                    return new NumericFieldLoader(name, NumericUtils::sortableLongToDouble);
+                default:
+                    return new NumericFieldLoader(name, value -> value);
+            }
+        } else if (fieldMapper instanceof DateFieldMapper) {
+            final DateFieldMapper.DateFieldType dateFieldType = (DateFieldMapper.DateFieldType) fieldType;
+            final DocValueFormat format = new DocValueFormat.DateTime(dateFieldType.dateTimeFormatter(), ZoneOffset.UTC,
+                dateFieldType.resolution());
+            return new NumericFieldLoader(name, format::format);
+        } else if (fieldMapper instanceof BooleanFieldMapper) {
+            return new NumericFieldLoader(name, value -> value == 1);
+        } else if (fieldMapper instanceof IpFieldMapper) {
+            return new OrdinalsFieldLoader(name, DocValueFormat.IP::format);
+        } else if (fieldMapper instanceof KeywordFieldMapper) {
+            final KeywordFieldMapper keywordFieldMapper = (KeywordFieldMapper) fieldMapper;
+            if (keywordFieldMapper.fieldType().normalizer() != null) {
+                throw unsupported(name, "it has a normalizer");
+            }
+            if (keywordFieldMapper.ignoreAbove() != KeywordFieldMapper.Defaults.IGNORE_ABOVE) {
+                throw unsupported(name, "it ignores values above a length");
+            }
+            return new OrdinalsFieldLoader(name, BytesRef::utf8ToString);
+        }
+        throw unsupported(name, "fields of type [" + fieldType.typeName() + "] are not supported");
+    }
+
+    private static IllegalArgumentException unsupported(String field, String reason) {
+        return new IllegalArgumentException("[" + SourceFieldMapper.NAME + "] can't be synthetic with field [" + field + "] because "
+            + reason);
+    }
+
+    /**
+     * Returns a loader of the source of the documents of the given segment.
+     */
+    public Leaf leaf(LeafReader reader) {
+        return new Leaf(reader);
+    }
+
+    /**
+     * Loads the source of the documents of a single segment.
+     */
+    public final class Leaf {
+        private final LeafReader reader;
+        private LeafValues[] values;
+        private int lastDocId = -1;
+
+        private Leaf(LeafReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Rebuilds the source of the given document as JSON.
+         */
+        public BytesReference source(int docId) throws IOException {
+            if (values == null || docId <= lastDocId) {
+                // doc values only move forward, going back to an earlier document requires new ones
+                values = new LeafValues[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    values[i] = fields[i].leaf(reader);
+                }
+            }
+            lastDocId = docId;
+            final Map<String, Object> source = new LinkedHashMap<>();
+            for (int i = 0; i < fields.length; i++) {
+                final Object value = values[i].values(docId);
+                if (value != null) {
+                    final String[] path = fields[i].path;
+                    Map<String, Object> object = source;
+                    for (int j = 0; j < path.length - 1; j++) {
+                        object = objectValue(object, path[j]);
+                    }
+                    object.put(path[path.length - 1], value);
+                }
+            }
+            try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+                builder.map(source);
+                return BytesReference.bytes(builder);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> objectValue(Map<String, Object> object, String name) {
+        return (Map<String, Object>) object.computeIfAbsent(name, k -> new LinkedHashMap<>());
+    }
+
+    private abstract static class FieldLoader {
+        final String name;
+        final String[] path;
+
+        FieldLoader(String name) {
+            this.name = name;
+            this.path = name.split("\\.");
+        }
+
+        abstract LeafValues leaf(LeafReader reader) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface LeafValues {
+        /**
+         * Returns the value of the field in the given document, a list if it has more than one, or {@code null} if it has none.
+         */
+        @Nullable
+        Object values(int docId) throws IOException;
+    }
+
+    private static final class NumericFieldLoader extends FieldLoader {
+        private final LongFunction<Object> decoder;
+
+        NumericFieldLoader(String name, LongFunction<Object> decoder) {
+            super(name);
+            this.decoder = decoder;
+        }
+
+        @Override
+        LeafValues leaf(LeafReader reader) throws IOException {
+            final SortedNumericDocValues docValues = DocValues.getSortedNumeric(reader, name);
+            return docId -> {
+                if (docValues.advanceExact(docId) == false) {
+                    return null;
+                }
+                final int count = docValues.docValueCount();
+                if (count == 1) {
+                    return decoder.apply(docValues.nextValue());
+                }
+                final List<Object> values = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    values.add(decoder.apply(docValues.nextValue()));
+                }
+                return values;
+            };
+        }
+    }
+
+    private static final class OrdinalsFieldLoader extends FieldLoader {
+        private final Function<BytesRef, Object> decoder;
+
+        OrdinalsFieldLoader(String name, Function<BytesRef, Object> decoder) {
+            super(name);
+            this.decoder = decoder;
+        }
+
+        @Override
+        LeafValues leaf(LeafReader reader) throws IOException {
+            final SortedSetDocValues docValues = DocValues.getSortedSet(reader, name);
+            return docId -> {
+                if (docValues.advanceExact(docId) == false) {
+                    return null;
+                }
+                final Object first = decoder.apply(docValues.lookupOrd(docValues.nextOrd()));
+                long ord = docValues.nextOrd();
+                if (ord == SortedSetDocValues.NO_MORE_ORDS) {
+                    return first;
+                }
+                final List<Object> values = new ArrayList<>();
+                values.add(first);
+                for (; ord != SortedSetDocValues.NO_MORE_ORDS; ord = docValues.nextOrd()) {
+                    values.add(decoder.apply(docValues.lookupOrd(ord)));
+                }
+                return values;
+            };
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.elasticsearch.index.shard;
 import com.carrotsearch.hppc.ObjectLongMap;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.index.CheckIndex;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FilterDirectoryReader;
@@ -96,6 +97,7 @@ import org.elasticsearch.index.engine.EngineFactory;
 import org.elasticsearch.index.engine.ReadOnlyEngine;
 import org.elasticsearch.index.engine.RefreshFailedEngineException;
 import org.elasticsearch.index.engine.SafeCommitInfo;
+import org.elasticsearch.index.engine.SegmentReplicaEngine;
 import org.elasticsearch.index.engine.Segment;
 import org.elasticsearch.index.engine.SegmentsStats;
 import org.elasticsearch.index.fielddata.FieldDataStats;
@@ -110,8 +112,10 @@ import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.Mapping;
 import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.RootObjectMapper;
+import org.elasticsearch.index.mapper.SeqNoFieldMapper;
 import org.elasticsearch.index.mapper.SourceToParse;
 import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.VersionFieldMapper;
 import org.elasticsearch.index.merge.MergeStats;
 import org.elasticsearch.index.recovery.RecoveryStats;
 import org.elasticsearch.index.refresh.RefreshStats;
@@ -137,6 +141,7 @@ import org.elasticsearch.index.warmer.ShardIndexWarmerService;
 import org.elasticsearch.index.warmer.WarmerStats;
 import org.elasticsearch.indices.IndexingMemoryController;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.TranslogSyncScheduler;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService;
 import org.elasticsearch.indices.recovery.PeerRecoveryTargetService;
@@ -178,6 +183,7 @@ import java.util.function.Function;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static org.elasticsearch.index.seqno.RetentionLeaseActions.RETAIN_ALL;
@@ -272,6 +278,10 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     private final AtomicReference<Translog.Location> pendingRefreshLocation = new AtomicReference<>();
     private volatile boolean useRetentionLeasesInPeerRecovery;
 
+    // the metadata of the last commit that this segment replica copied from its primary, see #openCopiedSegments
+    @Nullable
+    private volatile Store.MetadataSnapshot lastCopiedSegmentsMetaData;
+
     public IndexShard(
             final ShardRouting shardRouting,
             final IndexSettings indexSettings,
@@ -291,7 +301,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             final List<IndexingOperationListener> listeners,
             final Runnable globalCheckpointSyncer,
             final RetentionLeaseSyncer retentionLeaseSyncer,
-            final CircuitBreakerService circuitBreakerService) throws IOException {
+            final CircuitBreakerService circuitBreakerService,
+            final @Nullable TranslogSyncScheduler translogSyncScheduler) throws IOException {
         super(shardRouting.shardId(), indexSettings);
         assert shardRouting.initializing();
         this.shardRouting = shardRouting;
@@ -306,6 +317,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         this.indexEventListener = indexEventListener;
         this.threadPool = threadPool;
         this.translogSyncProcessor = createTranslogSyncProcessor(logger, threadPool.getThreadContext(), this::getEngine);
+        this.translogSyncScheduler = translogSyncScheduler;
+        this.translogSyncer = createTranslogSyncer(logger, this::getEngine);
         this.mapperService = mapperService;
         this.indexCache = indexCache;
         this.internalIndexingStats = new InternalIndexingStats();
@@ -538,6 +551,9 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                                 ", current routing: " + currentRouting + ", new routing: " + newRouting;
                             assert getOperationPrimaryTerm() == newPrimaryTerm;
                             try {
+                                if (getEngine() instanceof SegmentReplicaEngine) {
+                                    promoteSegmentReplicaEngine();
+                                }
                                 replicationTracker.activatePrimaryMode(getLocalCheckpoint());
                                 ensurePeerRecoveryRetentionLeasesExist();
                                 /*
@@ -736,29 +752,69 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                                                            long ifSeqNo, long ifPrimaryTerm, long autoGeneratedTimestamp,
                                                            boolean isRetry)
         throws IOException {
+        return applyIndexOperationOnPrimary(version, versionType, sourceToParse, ifSeqNo, ifPrimaryTerm, autoGeneratedTimestamp,
+            isRetry, null);
+    }
+
+    /**
+     * Same as {@link #applyIndexOperationOnPrimary(long, VersionType, SourceToParse, long, long, long, boolean)} but uses the given
+     * document, which was parsed from the same source by {@link #preParse(SourceToParse)}, unless the mapping changed since then.
+     */
+    public Engine.IndexResult applyIndexOperationOnPrimary(long version, VersionType versionType, SourceToParse sourceToParse,
+                                                           long ifSeqNo, long ifPrimaryTerm, long autoGeneratedTimestamp,
+                                                           boolean isRetry, @Nullable PreParsedDocument preParsedDocument)
+        throws IOException {
         assert versionType.validateVersionForWrites(version);
         return applyIndexOperation(getEngine(), UNASSIGNED_SEQ_NO, getOperationPrimaryTerm(), version, versionType, ifSeqNo,
-            ifPrimaryTerm, autoGeneratedTimestamp, isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse);
+            ifPrimaryTerm, autoGeneratedTimestamp, isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse, preParsedDocument);
     }
 
     public Engine.IndexResult applyIndexOperationOnReplica(long seqNo, long opPrimaryTerm, long version, long autoGeneratedTimeStamp,
         boolean isRetry, SourceToParse sourceToParse)
         throws IOException {
         return applyIndexOperation(getEngine(), seqNo, opPrimaryTerm, version, null, UNASSIGNED_SEQ_NO, 0,
-            autoGeneratedTimeStamp, isRetry, Engine.Operation.Origin.REPLICA, sourceToParse);
+            autoGeneratedTimeStamp, isRetry, Engine.Operation.Origin.REPLICA, sourceToParse, null);
+    }
+
+    /**
+     * Parses the given source with the current mapping of this shard, so that the potentially expensive parsing can happen
+     * concurrently ahead of indexing the document. Returns {@code null} if the shard has no mapping yet, and throws if the document
+     * can't be parsed.
+     */
+    public PreParsedDocument preParse(SourceToParse sourceToParse) {
+        final DocumentMapperForType docMapper = docMapper();
+        if (docMapper.getMapping() != null) {
+            // the mapping is about to be created, the document will require a mapping update anyway
+            return null;
+        }
+        final DocumentMapper documentMapper = docMapper.getDocumentMapper();
+        return new PreParsedDocument(documentMapper, documentMapper.parse(sourceToParse));
     }
 
     private Engine.IndexResult applyIndexOperation(Engine engine, long seqNo, long opPrimaryTerm, long version,
                                                    @Nullable VersionType versionType, long ifSeqNo, long ifPrimaryTerm,
                                                    long autoGeneratedTimeStamp, boolean isRetry, Engine.Operation.Origin origin,
-                                                   SourceToParse sourceToParse) throws IOException {
+                                                   SourceToParse sourceToParse, @Nullable PreParsedDocument preParsedDocument)
+        throws IOException {
         assert opPrimaryTerm <= getOperationPrimaryTerm()
                 : "op term [ " + opPrimaryTerm + " ] > shard term [" + getOperationPrimaryTerm() + "]";
         ensureWriteAllowed(origin);
         Engine.Index operation;
         try {
-            operation = prepareIndex(docMapper(), sourceToParse,
-                seqNo, opPrimaryTerm, version, versionType, origin, autoGeneratedTimeStamp, isRetry, ifSeqNo, ifPrimaryTerm);
+            final DocumentMapperForType docMapper = docMapper();
+            if (engine instanceof SegmentReplicaEngine) {
+                // segment replicas only record the operation in their translog, its document reaches them with the primary's segments
+                operation = prepareIndex(unparsedDocument(sourceToParse), seqNo, opPrimaryTerm, version, versionType, origin,
+                    System.nanoTime(), autoGeneratedTimeStamp, isRetry, ifSeqNo, ifPrimaryTerm);
+            } else if (preParsedDocument != null && docMapper.getMapping() == null
+                && preParsedDocument.documentMapper == docMapper.getDocumentMapper()) {
+                assert preParsedDocument.parsedDocument.id().equals(sourceToParse.id());
+                operation = prepareIndex(preParsedDocument.parsedDocument, seqNo, opPrimaryTerm, version, versionType, origin,
+                    System.nanoTime(), autoGeneratedTimeStamp, isRetry, ifSeqNo, ifPrimaryTerm);
+            } else {
+                operation = prepareIndex(docMapper, sourceToParse,
+                    seqNo, opPrimaryTerm, version, versionType, origin, autoGeneratedTimeStamp, isRetry, ifSeqNo, ifPrimaryTerm);
+            }
             Mapping update = operation.parsedDoc().dynamicMappingsUpdate();
             if (update != null) {
                 return new Engine.IndexResult(update);
@@ -784,11 +840,23 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         if (docMapper.getMapping() != null) {
             doc.addDynamicMappingsUpdate(docMapper.getMapping());
         }
+        return prepareIndex(doc, seqNo, primaryTerm, version, versionType, origin, startTime, autoGeneratedIdTimestamp, isRetry,
+            ifSeqNo, ifPrimaryTerm);
+    }
+
+    private static Engine.Index prepareIndex(ParsedDocument doc, long seqNo, long primaryTerm, long version, VersionType versionType,
+                                             Engine.Operation.Origin origin, long startTime, long autoGeneratedIdTimestamp,
+                                             boolean isRetry, long ifSeqNo, long ifPrimaryTerm) {
         Term uid = new Term(IdFieldMapper.NAME, Uid.encodeId(doc.id()));
         return new Engine.Index(uid, doc, seqNo, primaryTerm, version, versionType, origin, startTime, autoGeneratedIdTimestamp, isRetry,
             ifSeqNo, ifPrimaryTerm);
     }
 
+    private static ParsedDocument unparsedDocument(SourceToParse source) {
+        return new ParsedDocument(new NumericDocValuesField(VersionFieldMapper.NAME, -1L), SeqNoFieldMapper.SequenceIDFields.emptySeqID(),
+            source.id(), source.routing(), Collections.emptyList(), source.source(), source.getXContentType(), null);
+    }
+
     private Engine.IndexResult index(Engine engine, Engine.Index index) throws IOException {
         active.set(true);
         final Engine.IndexResult result;
@@ -1237,6 +1305,14 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         }
     }
 
+    /**
+     * Applies the reader wrapper of this shard to a searcher acquired with {@link #acquireSearcherNoWrap(String)}.
+     * Closing the returned searcher closes the provided one.
+     */
+    public Engine.Searcher wrapSearcher(Engine.Searcher searcher) throws IOException {
+        return readerWrapper == null ? searcher : wrapSearcher(searcher, readerWrapper);
+    }
+
     static Engine.Searcher wrapSearcher(Engine.Searcher engineSearcher,
                                         CheckedFunction<DirectoryReader, DirectoryReader, IOException> readerWrapper) throws IOException {
         assert readerWrapper != null;
@@ -1475,7 +1551,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                 result = applyIndexOperation(engine, index.seqNo(), index.primaryTerm(), index.version(),
                     versionType, UNASSIGNED_SEQ_NO, 0, index.getAutoGeneratedIdTimestamp(), true, origin,
                     new SourceToParse(shardId.getIndexName(), index.id(), index.source(),
-                        XContentHelper.xContentType(index.source()), index.routing()));
+                        XContentHelper.xContentType(index.source()), index.routing()), null);
                 break;
             case DELETE:
                 final Translog.Delete delete = (Translog.Delete) operation;
@@ -1589,7 +1665,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             assert currentEngineReference.get() == null : "engine is running";
             verifyNotClosed();
             // we must create a new engine under mutex (see IndexShard#snapshotStoreMetadata).
-            final Engine newEngine = engineFactory.newReadWriteEngine(config);
+            final Engine newEngine = createEngine(config);
             onNewEngine(newEngine);
             currentEngineReference.set(newEngine);
             // We set active because we are now writing operations to the engine; this way,
@@ -1616,6 +1692,13 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return true;
     }
 
+    private Engine createEngine(EngineConfig config) {
+        if (indexSettings.isSegmentReplication() && shardRouting.primary() == false) {
+            return new SegmentReplicaEngine(config);
+        }
+        return engineFactory.newReadWriteEngine(config);
+    }
+
     private void onNewEngine(Engine newEngine) {
         assert Thread.holdsLock(engineMutex);
         refreshListeners.setCurrentRefreshLocationSupplier(newEngine::getTranslogLastWriteLocation);
@@ -3020,37 +3103,55 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     }
 
     private final AsyncIOProcessor<Translog.Location> translogSyncProcessor;
+    @Nullable
+    private final TranslogSyncScheduler translogSyncScheduler;
+    private final TranslogSyncScheduler.Syncer translogSyncer;
 
     private static AsyncIOProcessor<Translog.Location> createTranslogSyncProcessor(Logger logger, ThreadContext threadContext,
                                                                                    Supplier<Engine> engineSupplier) {
         return new AsyncIOProcessor<>(logger, 1024, threadContext) {
             @Override
             protected void write(List<Tuple<Translog.Location, Consumer<Exception>>> candidates) throws IOException {
-                try {
-                    engineSupplier.get().ensureTranslogSynced(candidates.stream().map(Tuple::v1));
-                } catch (AlreadyClosedException ex) {
-                    // that's fine since we already synced everything on engine close - this also is conform with the methods
-                    // documentation
-                } catch (IOException ex) { // if this fails we are in deep shit - fail the request
-                    logger.debug("failed to sync translog", ex);
-                    throw ex;
-                }
+                ensureTranslogSynced(logger, engineSupplier, candidates.stream().map(Tuple::v1));
             }
         };
     }
 
+    private static TranslogSyncScheduler.Syncer createTranslogSyncer(Logger logger, Supplier<Engine> engineSupplier) {
+        return locations -> ensureTranslogSynced(logger, engineSupplier, locations.stream());
+    }
+
+    private static void ensureTranslogSynced(Logger logger, Supplier<Engine> engineSupplier,
+                                             Stream<Translog.Location> locations) throws IOException {
+        try {
+            engineSupplier.get().ensureTranslogSynced(locations);
+        } catch (AlreadyClosedException ex) {
+            // that's fine since we already synced everything on engine close - this also is conform with the methods
+            // documentation
+        } catch (IOException ex) { // if this fails we are in deep shit - fail the request
+            logger.debug("failed to sync translog", ex);
+            throw ex;
+        }
+    }
+
     /**
      * Syncs the given location with the underlying storage unless already synced. This method might return immediately without
      * actually fsyncing the location until the sync listener is called. Yet, unless there is already another thread fsyncing
      * the transaction log the caller thread will be hijacked to run the fsync for all pending fsync operations.
      * This method allows indexing threads to continue indexing without blocking on fsync calls. We ensure that there is only
      * one thread blocking on the sync an all others can continue indexing.
+     * If group commits are enabled on the node's {@link TranslogSyncScheduler}, the sync is instead batched with the syncs of all other
+     * shards that share this shard's data path.
      * NOTE: if the syncListener throws an exception when it's processed the exception will only be logged. Users should make sure that the
      * listener handles all exception cases internally.
      */
     public final void sync(Translog.Location location, Consumer<Exception> syncListener) {
         verifyNotClosed();
-        translogSyncProcessor.put(location, syncListener);
+        if (translogSyncScheduler != null && translogSyncScheduler.isEnabled()) {
+            translogSyncScheduler.sync(path.getRootDataPath(), translogSyncer, location, syncListener);
+        } else {
+            translogSyncProcessor.put(location, syncListener);
+        }
     }
 
     public void sync() throws IOException {
@@ -3154,6 +3255,19 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             externalRefreshMetric);
     }
 
+    /**
+     * A document that was parsed by {@link #preParse(SourceToParse)}, along with the mapping it was parsed with.
+     */
+    public static final class PreParsedDocument {
+        private final DocumentMapper documentMapper;
+        private final ParsedDocument parsedDocument;
+
+        private PreParsedDocument(DocumentMapper documentMapper, ParsedDocument parsedDocument) {
+            this.documentMapper = documentMapper;
+            this.parsedDocument = parsedDocument;
+        }
+    }
+
     /**
      * Simple struct encapsulating a shard failure
      *
@@ -3347,9 +3461,74 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         // flush to make sure the latest commit, which will be opened by the read-only engine, includes all operations.
         flush(new FlushRequest().waitIfOngoing(true));
 
-        SetOnce<Engine> newEngineReference = new SetOnce<>();
         final long globalCheckpoint = getLastKnownGlobalCheckpoint();
         assert globalCheckpoint == getLastSyncedGlobalCheckpoint();
+        replaceEngine(seqNoStats, translogStats, () -> {}, globalCheckpoint, "reset_engine");
+    }
+
+    /**
+     * Replaces the engine of a segment replica that is being promoted to primary with a read-write engine, which indexes the operations
+     * of the local translog that the segments copied from the previous primary don't contain.
+     */
+    private void promoteSegmentReplicaEngine() throws IOException {
+        assert shardRouting.primary() : "promoting a segment replica engine of a replica " + shardRouting;
+        sync(); // persist the global checkpoint to disk
+        replaceEngine(seqNoStats(), translogStats(), () -> {}, Long.MAX_VALUE, "promote_segment_replica");
+    }
+
+    /**
+     * Opens the segments that this segment replica copied from its primary. Operations are blocked while the engine of the replica is
+     * replaced with one on the copied commit, which replays the operations of the local translog that the commit doesn't contain.
+     *
+     * @param sourceMetaData the metadata of the copied commit
+     * @param installFiles   moves the copied files to their final names, runs once the current engine is closed
+     */
+    public void openCopiedSegments(Store.MetadataSnapshot sourceMetaData, CheckedRunnable<IOException> installFiles)
+        throws IOException, InterruptedException, TimeoutException {
+        assert Thread.holdsLock(mutex) == false : "opening copied segments under mutex";
+        indexShardOperationPermits.blockOperations(30, TimeUnit.MINUTES, () -> {
+            if (state != IndexShardState.STARTED) {
+                throw new IndexShardNotStartedException(shardId, state);
+            }
+            final Engine engine = getEngine();
+            if (engine instanceof SegmentReplicaEngine == false) {
+                throw new IllegalIndexShardStateException(shardId, state, "only segment replicas can open copied segments");
+            }
+            final long localCheckpoint = SequenceNumbers.loadSeqNoInfoFromLuceneCommit(
+                sourceMetaData.getCommitUserData().entrySet()).localCheckpoint;
+            // the copied commit refers to the translog of the primary, point it to the operations of the local translog instead
+            final Translog.TranslogGeneration translogGeneration =
+                ((SegmentReplicaEngine) engine).getTranslogGenerationForCommit(localCheckpoint);
+            sync(); // persist the global checkpoint to disk
+            lastCopiedSegmentsMetaData = null;
+            replaceEngine(seqNoStats(), translogStats(), () -> {
+                installFiles.run();
+                store.cleanupAndVerify("open segments copied from the primary", sourceMetaData);
+                store.associateIndexWithExistingTranslog(translogGeneration.translogUUID, translogGeneration.translogFileGeneration);
+            }, Long.MAX_VALUE, "segment_replication");
+            lastCopiedSegmentsMetaData = sourceMetaData;
+        });
+    }
+
+    /**
+     * Returns the metadata of the last commit that this segment replica copied from its primary, or null if it did not copy any commit
+     * yet. The last commit of the replica is the copied commit rewritten to point to the local translog: it has the same segments but
+     * not the same segments file, so the segments that are missing on the replica must be computed from the copied commit.
+     */
+    @Nullable
+    public Store.MetadataSnapshot getLastCopiedSegmentsMetaData() {
+        return lastCopiedSegmentsMetaData;
+    }
+
+    /**
+     * Replaces the current engine with a new engine on the last commit, which replays the local translog up to the given sequence
+     * number. A read-only engine serves reads in the meantime. Operations must be blocked.
+     *
+     * @param onEngineClosed runs once the current engine is closed, before the new engine is opened
+     */
+    private void replaceEngine(SeqNoStats seqNoStats, TranslogStats translogStats, CheckedRunnable<IOException> onEngineClosed,
+                               long recoverUpToSeqNo, String source) throws IOException {
+        SetOnce<Engine> newEngineReference = new SetOnce<>();
         synchronized (engineMutex) {
             verifyNotClosed();
             // we must create both new read-only engine and new read-write engine under engineMutex to ensure snapshotStoreMetadata,
@@ -3390,15 +3569,16 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                     }
                 };
             IOUtils.close(currentEngineReference.getAndSet(readOnlyEngine));
-            newEngineReference.set(engineFactory.newReadWriteEngine(newEngineConfig(replicationTracker)));
+            onEngineClosed.run();
+            newEngineReference.set(createEngine(newEngineConfig(replicationTracker)));
             onNewEngine(newEngineReference.get());
         }
         final Engine.TranslogRecoveryRunner translogRunner = (engine, snapshot) -> runTranslogRecovery(
             engine, snapshot, Engine.Operation.Origin.LOCAL_RESET, () -> {
                 // TODO: add a dedicate recovery stats for the reset translog
             });
-        newEngineReference.get().recoverFromTranslog(translogRunner, globalCheckpoint);
-        newEngineReference.get().refresh("reset_engine");
+        newEngineReference.get().recoverFromTranslog(translogRunner, recoverUpToSeqNo);
+        newEngineReference.get().refresh(source);
         synchronized (engineMutex) {
             verifyNotClosed();
             IOUtils.close(currentEngineReference.getAndSet(newEngineReference.get()));
@@ -1458,6 +1458,22 @@ public class Store extends AbstractIndexShardComponent implements Closeable, Ref
         }
     }
 
+    /**
+     * Associates the last commit, which was copied from the primary by a segment replica, with the existing translog of this shard.
+     * The operations of the translog are replayed from the given generation on.
+     */
+    public void associateIndexWithExistingTranslog(final String translogUUID, final long translogGeneration) throws IOException {
+        metadataLock.writeLock().lock();
+        try (IndexWriter writer = newAppendingIndexWriter(directory, null)) {
+            final Map<String, String> map = new HashMap<>();
+            map.put(Translog.TRANSLOG_GENERATION_KEY, Long.toString(translogGeneration));
+            map.put(Translog.TRANSLOG_UUID_KEY, translogUUID);
+            updateCommitData(writer, map);
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Keeping existing unsafe commits when opening an engine can be problematic because these commits are not safe
      * at the recovering time but they can suddenly become safe in the future.
@@ -113,7 +113,8 @@ public abstract class BaseTranslogReader implements Comparable<BaseTranslogReade
     }
 
     protected Translog.Operation read(BufferedChecksumStreamInput inStream) throws IOException {
-        final Translog.Operation op = Translog.readOperation(inStream);
+        final Translog.Operation op =
+            Translog.readOperation(header.compressedOperations() ? TranslogCompressor.decompress(inStream) : inStream);
         if (op.primaryTerm() > getPrimaryTerm() && getPrimaryTerm() != SequenceNumbers.UNASSIGNED_PRIMARY_TERM) {
             throw new TranslogCorruptedException(
                     path.toString(),
@@ -184,7 +184,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             // For this to happen we must have already copied the translog.ckp file into translog-gen.ckp so we first check if that
             // file exists. If not we don't even try to clean it up and wait until we fail creating it
             assert Files.exists(nextTranslogFile) == false ||
-                    Files.size(nextTranslogFile) <= TranslogHeader.headerSizeInBytes(translogUUID) :
+                    Files.size(nextTranslogFile) <= TranslogHeader.headerSizeInBytes(translogUUID, true) :
                         "unexpected translog file: [" + nextTranslogFile + "]";
             if (Files.exists(currentCheckpointFile) // current checkpoint is already copied
                 && Files.deleteIfExists(nextTranslogFile)) { // delete it and log a warning
@@ -510,7 +510,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
                 config.getBufferSize(),
                 initialMinTranslogGen, initialGlobalCheckpoint,
                 globalCheckpointSupplier, this::getMinFileGeneration, primaryTermSupplier.getAsLong(), tragedy,
-                persistedSequenceNumberConsumer);
+                persistedSequenceNumberConsumer, indexSettings.isTranslogCompressEnabled());
         } catch (final IOException e) {
             throw new TranslogException(shardId, "failed to create new translog file", e);
         }
@@ -1866,7 +1866,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             location.resolve(getFilename(1)), channelFactory,
             new ByteSizeValue(10), 1, initialGlobalCheckpoint,
             () -> { throw new UnsupportedOperationException(); }, () -> { throw new UnsupportedOperationException(); }, primaryTerm,
-                new TragicExceptionHolder(), seqNo -> { throw new UnsupportedOperationException(); });
+                new TragicExceptionHolder(), seqNo -> { throw new UnsupportedOperationException(); }, false);
         writer.close();
         return translogUUID;
     }
@@ -0,0 +1,168 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.translog;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the operations of the translog files whose header has {@link TranslogHeader#compressedOperations()} set.
+ * <p>
+ * Operations are compressed one at a time so that a {@link Translog.Location} still points to a single operation. A compressed
+ * operation is written as {@code [size][format][payload][checksum]} where the checksum covers the format and the payload, and
+ * the payload is either the uncompressed operation ({@link #STORED}, for operations that don't shrink, like deletes) or the
+ * uncompressed length followed by the deflated operation ({@link #DEFLATED}). The uncompressed operation keeps its own
+ * checksum, which is verified again once it is inflated.
+ */
+final class TranslogCompressor {
+
+    static final byte STORED = 0;
+    static final byte DEFLATED = 1;
+
+    // deflaters and inflaters hold native memory that is expensive to allocate per operation, so they are reused per thread
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private TranslogCompressor() {}
+
+    /**
+     * Compresses an operation serialized as {@code [size][operation][checksum]}, and returns it in the same framing.
+     */
+    static BytesReference compress(BytesReference operation) throws IOException {
+        final BytesRef uncompressed = operation.slice(Integer.BYTES, operation.length() - Integer.BYTES).toBytesRef();
+        final BytesStreamOutput out = new BytesStreamOutput(Integer.BYTES + Byte.BYTES + uncompressed.length + Integer.BYTES);
+        out.skip(Integer.BYTES);
+        final BufferedChecksumStreamOutput checksumOut = new BufferedChecksumStreamOutput(out);
+        checksumOut.resetDigest();
+        checksumOut.writeByte(DEFLATED);
+        checksumOut.writeVInt(uncompressed.length);
+        final Deflater deflater = DEFLATER.get();
+        final byte[] buffer = BUFFER.get();
+        deflater.reset();
+        deflater.setInput(uncompressed.bytes, uncompressed.offset, uncompressed.length);
+        deflater.finish();
+        while (deflater.finished() == false && out.position() < Integer.BYTES + Byte.BYTES + uncompressed.length) {
+            final int length = deflater.deflate(buffer);
+            checksumOut.writeBytes(buffer, 0, length);
+        }
+        if (deflater.finished() == false) {
+            // the operation does not shrink, store it as is
+            out.seek(Integer.BYTES);
+            checksumOut.resetDigest();
+            checksumOut.writeByte(STORED);
+            checksumOut.writeBytes(uncompressed.bytes, uncompressed.offset, uncompressed.length);
+        }
+        checksumOut.writeInt((int) checksumOut.getChecksum());
+        final int end = (int) out.position();
+        out.seek(0);
+        out.writeInt(end - Integer.BYTES);
+        out.seek(end);
+        return out.bytes();
+    }
+
+    /**
+     * Reads a compressed operation from the given stream, verifies its checksum, and returns a stream to read the
+     * uncompressed operation with {@link Translog#readOperation(BufferedChecksumStreamInput)}.
+     */
+    static BufferedChecksumStreamInput decompress(BufferedChecksumStreamInput in) throws IOException {
+        try {
+            final int size = in.readInt();
+            if (size < Byte.BYTES + Integer.BYTES) {
+                throw new TranslogCorruptedException(in.getSource(), "compressed operation size must be at least 5 but was: " + size);
+            }
+            in.resetDigest(); // size is not part of the checksum!
+            final byte format = in.readByte();
+            final byte[] uncompressed;
+            if (format == STORED) {
+                uncompressed = new byte[Integer.BYTES + size - Byte.BYTES - Integer.BYTES];
+                in.readBytes(uncompressed, Integer.BYTES, uncompressed.length - Integer.BYTES);
+            } else if (format == DEFLATED) {
+                final int length = in.readVInt();
+                final int compressedLength = size - Byte.BYTES - vIntLength(length) - Integer.BYTES;
+                if (length < 0 || compressedLength < 0) {
+                    throw new TranslogCorruptedException(in.getSource(), "compressed operation lengths are corrupted");
+                }
+                final byte[] compressed = new byte[compressedLength];
+                in.readBytes(compressed, 0, compressed.length);
+                Translog.verifyChecksum(in);
+                uncompressed = new byte[Integer.BYTES + length];
+                inflate(in.getSource(), compressed, uncompressed);
+                return wrap(in.getSource(), uncompressed);
+            } else {
+                throw new TranslogCorruptedException(in.getSource(), "unknown compressed operation format [" + format + "]");
+            }
+            Translog.verifyChecksum(in);
+            return wrap(in.getSource(), uncompressed);
+        } catch (EOFException e) {
+            throw new TruncatedTranslogException(in.getSource(), "reached premature end of file, translog is truncated", e);
+        }
+    }
+
+    private static void inflate(String source, byte[] compressed, byte[] uncompressed) throws IOException {
+        final Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int offset = Integer.BYTES;
+            while (offset < uncompressed.length) {
+                final int length = inflater.inflate(uncompressed, offset, uncompressed.length - offset);
+                if (length == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset != uncompressed.length || inflater.finished() == false) {
+                throw new TranslogCorruptedException(source, "compressed operation has an unexpected length");
+            }
+        } catch (DataFormatException e) {
+            throw new TranslogCorruptedException(source, "failed to inflate operation", e);
+        }
+    }
+
+    /**
+     * Prepends the size of the uncompressed operation, as expected by {@link Translog#readOperation(BufferedChecksumStreamInput)}.
+     */
+    private static BufferedChecksumStreamInput wrap(String source, byte[] uncompressed) {
+        final int size = uncompressed.length - Integer.BYTES;
+        uncompressed[0] = (byte) (size >> 24);
+        uncompressed[1] = (byte) (size >> 16);
+        uncompressed[2] = (byte) (size >> 8);
+        uncompressed[3] = (byte) size;
+        return new BufferedChecksumStreamInput(StreamInput.wrap(uncompressed), source);
+    }
+
+    private static int vIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
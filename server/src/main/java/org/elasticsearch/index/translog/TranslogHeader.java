@@ -44,10 +44,15 @@ final class TranslogHeader {
     public static final int VERSION_CHECKSUMS    = 1; // pre-2.0 - unsupported
     public static final int VERSION_CHECKPOINTS  = 2; // added checkpoints
     public static final int VERSION_PRIMARY_TERM = 3; // added primary term
-    public static final int CURRENT_VERSION = VERSION_PRIMARY_TERM;
+    public static final int VERSION_COMPRESSED_OPERATIONS = 4; // added the format of the operations
+    public static final int CURRENT_VERSION = VERSION_COMPRESSED_OPERATIONS;
+
+    static final byte OPERATIONS_UNCOMPRESSED = 0;
+    static final byte OPERATIONS_COMPRESSED = 1;
 
     private final String translogUUID;
     private final long primaryTerm;
+    private final boolean compressedOperations;
     private final int headerSizeInBytes;
 
     /**
@@ -59,13 +64,23 @@ final class TranslogHeader {
      *                     All operations' terms in this translog file are enforced to be at most this term.
      */
     TranslogHeader(String translogUUID, long primaryTerm) {
-        this(translogUUID, primaryTerm, headerSizeInBytes(translogUUID));
+        this(translogUUID, primaryTerm, false);
+    }
+
+    /**
+     * Creates a new translog header with the given uuid and primary term.
+     *
+     * @param compressedOperations whether the operations of this translog file are compressed, see {@link TranslogCompressor}
+     */
+    TranslogHeader(String translogUUID, long primaryTerm, boolean compressedOperations) {
+        this(translogUUID, primaryTerm, compressedOperations, headerSizeInBytes(translogUUID, compressedOperations));
         assert primaryTerm >= 0 : "Primary term must be non-negative; term [" + primaryTerm + "]";
     }
 
-    private TranslogHeader(String translogUUID, long primaryTerm, int headerSizeInBytes) {
+    private TranslogHeader(String translogUUID, long primaryTerm, boolean compressedOperations, int headerSizeInBytes) {
         this.translogUUID = translogUUID;
         this.primaryTerm = primaryTerm;
+        this.compressedOperations = compressedOperations;
         this.headerSizeInBytes = headerSizeInBytes;
     }
 
@@ -81,6 +96,13 @@ final class TranslogHeader {
         return primaryTerm;
     }
 
+    /**
+     * Returns <code>true</code> if the operations of this translog file are compressed.
+     */
+    public boolean compressedOperations() {
+        return compressedOperations;
+    }
+
     /**
      * Returns the header size in bytes. This value can be used as the offset of the first translog operation.
      * See {@link BaseTranslogReader#getFirstOperationOffset()}
@@ -90,7 +112,11 @@ final class TranslogHeader {
     }
 
     static int headerSizeInBytes(String translogUUID) {
-        return headerSizeInBytes(CURRENT_VERSION, new BytesRef(translogUUID).length);
+        return headerSizeInBytes(translogUUID, false);
+    }
+
+    static int headerSizeInBytes(String translogUUID, boolean compressedOperations) {
+        return headerSizeInBytes(version(compressedOperations), new BytesRef(translogUUID).length);
     }
 
     private static int headerSizeInBytes(int version, int uuidLength) {
@@ -100,9 +126,20 @@ final class TranslogHeader {
             size += Long.BYTES;    // primary term
             size += Integer.BYTES; // checksum
         }
+        if (version >= VERSION_COMPRESSED_OPERATIONS) {
+            size += Byte.BYTES;    // operations format
+        }
         return size;
     }
 
+    /**
+     * Translog files with uncompressed operations are still written with the previous version so that they can be read by
+     * older nodes.
+     */
+    private static int version(boolean compressedOperations) {
+        return compressedOperations ? VERSION_COMPRESSED_OPERATIONS : VERSION_PRIMARY_TERM;
+    }
+
     /**
      * Read a translog header from the given path and file channel
      */
@@ -115,7 +152,7 @@ final class TranslogHeader {
                     path.toString());
             final int version;
             try {
-                version = CodecUtil.checkHeader(new InputStreamDataInput(in), TRANSLOG_CODEC, VERSION_CHECKSUMS, VERSION_PRIMARY_TERM);
+                version = CodecUtil.checkHeader(new InputStreamDataInput(in), TRANSLOG_CODEC, VERSION_CHECKSUMS, CURRENT_VERSION);
             } catch (CorruptIndexException | IndexFormatTooOldException | IndexFormatTooNewException e) {
                 tryReportOldVersionError(path, channel);
                 throw new TranslogCorruptedException(path.toString(), "translog header corrupted", e);
@@ -138,8 +175,19 @@ final class TranslogHeader {
             uuid.length = uuidLen;
             in.read(uuid.bytes, uuid.offset, uuid.length);
             // Read the primary term
-            assert version == VERSION_PRIMARY_TERM;
+            assert version == VERSION_PRIMARY_TERM || version == VERSION_COMPRESSED_OPERATIONS;
             final long primaryTerm = in.readLong();
+            // Read the format of the operations
+            final boolean compressedOperations;
+            if (version >= VERSION_COMPRESSED_OPERATIONS) {
+                final byte format = in.readByte();
+                if (format != OPERATIONS_UNCOMPRESSED && format != OPERATIONS_COMPRESSED) {
+                    throw new TranslogCorruptedException(path.toString(), "unknown format of the operations [" + format + "]");
+                }
+                compressedOperations = format == OPERATIONS_COMPRESSED;
+            } else {
+                compressedOperations = false;
+            }
             // Verify the checksum
             Translog.verifyChecksum(in);
             assert primaryTerm >= 0 : "Primary term must be non-negative [" + primaryTerm + "]; translog path [" + path + "]";
@@ -157,7 +205,7 @@ final class TranslogHeader {
                         " this translog file belongs to a different translog");
             }
 
-            return new TranslogHeader(translogUUID, primaryTerm, headerSizeInBytes);
+            return new TranslogHeader(translogUUID, primaryTerm, compressedOperations, headerSizeInBytes);
         } catch (EOFException e) {
             throw new TranslogCorruptedException(path.toString(), "translog header truncated", e);
         }
@@ -190,13 +238,18 @@ final class TranslogHeader {
         @SuppressWarnings({"IOResourceOpenedButNotSafelyClosed", "resource"})
         final BufferedChecksumStreamOutput out = new BufferedChecksumStreamOutput(
             new OutputStreamStreamOutput(java.nio.channels.Channels.newOutputStream(channel)));
-        CodecUtil.writeHeader(new OutputStreamDataOutput(out), TRANSLOG_CODEC, CURRENT_VERSION);
+        final int version = version(compressedOperations);
+        CodecUtil.writeHeader(new OutputStreamDataOutput(out), TRANSLOG_CODEC, version);
         // Write uuid
         final BytesRef uuid = new BytesRef(translogUUID);
         out.writeInt(uuid.length);
         out.writeBytes(uuid.bytes, uuid.offset, uuid.length);
         // Write primary term
         out.writeLong(primaryTerm);
+        if (version >= VERSION_COMPRESSED_OPERATIONS) {
+            // Write the format of the operations
+            out.writeByte(compressedOperations ? OPERATIONS_COMPRESSED : OPERATIONS_UNCOMPRESSED);
+        }
         // Checksum header
         out.writeInt((int) out.getChecksum());
         out.flush();
@@ -115,11 +115,12 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
     public static TranslogWriter create(ShardId shardId, String translogUUID, long fileGeneration, Path file, ChannelFactory channelFactory,
                                         ByteSizeValue bufferSize, final long initialMinTranslogGen, long initialGlobalCheckpoint,
                                         final LongSupplier globalCheckpointSupplier, final LongSupplier minTranslogGenerationSupplier,
-                                        final long primaryTerm, TragicExceptionHolder tragedy, LongConsumer persistedSequenceNumberConsumer)
+                                        final long primaryTerm, TragicExceptionHolder tragedy, LongConsumer persistedSequenceNumberConsumer,
+                                        final boolean compressOperations)
         throws IOException {
         final FileChannel channel = channelFactory.open(file);
         try {
-            final TranslogHeader header = new TranslogHeader(translogUUID, primaryTerm);
+            final TranslogHeader header = new TranslogHeader(translogUUID, primaryTerm, compressOperations);
             header.write(channel);
             final Checkpoint checkpoint = Checkpoint.emptyTranslogCheckpoint(header.sizeInBytes(), fileGeneration,
                 initialGlobalCheckpoint, initialMinTranslogGen);
@@ -167,16 +168,25 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
      * @return the location the bytes were written to
      * @throws IOException if writing to the translog resulted in an I/O exception
      */
-    public synchronized Translog.Location add(final BytesReference data, final long seqNo) throws IOException {
+    public Translog.Location add(final BytesReference data, final long seqNo) throws IOException {
+        if (header.compressedOperations()) {
+            // compress outside of the lock so that concurrent writers only serialize on the write of the compressed bytes
+            return add(data, TranslogCompressor.compress(data), seqNo);
+        }
+        return add(data, data, seqNo);
+    }
+
+    private synchronized Translog.Location add(final BytesReference data, final BytesReference encoded, final long seqNo)
+        throws IOException {
         ensureOpen();
         final long offset = totalOffset;
         try {
-            data.writeTo(outputStream);
+            encoded.writeTo(outputStream);
         } catch (final Exception ex) {
             closeWithTragicEvent(ex);
             throw ex;
         }
-        totalOffset += data.length();
+        totalOffset += encoded.length();
 
         if (minSeqNo == SequenceNumbers.NO_OPS_PERFORMED) {
             assert operationCounter == 0;
@@ -194,7 +204,7 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
 
         assert assertNoSeqNumberConflict(seqNo, data);
 
-        return new Translog.Location(generation, offset, data.length());
+        return new Translog.Location(generation, offset, encoded.length());
     }
 
     private synchronized boolean assertNoSeqNumberConflict(long seqNo, BytesReference data) throws IOException {
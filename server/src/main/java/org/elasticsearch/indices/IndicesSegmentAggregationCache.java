@@ -0,0 +1,476 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import com.carrotsearch.hppc.ObjectHashSet;
+import com.carrotsearch.hppc.ObjectSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.cache.RemovalListener;
+import org.elasticsearch.common.cache.RemovalNotification;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexShardState;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+import org.elasticsearch.search.aggregations.AggregationInitializationException;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.BucketCollector;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
+import org.elasticsearch.search.aggregations.MultiBucketCollector;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.internal.ShardSearchRequest;
+import org.elasticsearch.search.query.QueryPhase;
+import org.elasticsearch.search.query.QuerySearchResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of the shard level aggregation results of a single segment. Unlike the {@link IndicesRequestCache}, that is keyed
+ * by the top level reader and is invalidated by every refresh that changes the shard, the entries of this cache are keyed
+ * by the reader of each segment. A refresh only creates new segments (or new readers for the segments that have new deletes),
+ * so a request that is repeated after a refresh only needs to collect the new segments and can reuse the partial results
+ * of the others. The partial results of all the segments of the shard are then reduced into the result of the shard.
+ * <p>
+ * The cache is bounded by {@link #INDICES_SEGMENT_AGGS_CACHE_SIZE} and the size of its entries is accounted in the
+ * {@link CircuitBreaker#ACCOUNTING accounting} circuit breaker: a result that would trip the breaker is not cached.
+ * It can only be opted in with the {@link #INDEX_SEGMENT_AGGS_CACHE_ENABLED_SETTING index level setting} and is
+ * restricted to the requests that only compute aggregations (size is 0, no post filter, no global aggregation, ...).
+ * The aggregations that prune their buckets on each shard (like the <code>terms</code> aggregation) are not cached
+ * since the reduction of their per-segment results would not be equal to the result of the shard, see
+ * {@link org.elasticsearch.search.aggregations.AggregatorFactories.Builder#supportsExactPartialReduce()}.
+ */
+public final class IndicesSegmentAggregationCache implements RemovalListener<IndicesSegmentAggregationCache.Key, BytesReference>,
+        Closeable {
+
+    private static final Logger logger = LogManager.getLogger(IndicesSegmentAggregationCache.class);
+
+    /**
+     * A setting to enable or disable the per-segment caching of aggregations on an index level.
+     */
+    public static final Setting<Boolean> INDEX_SEGMENT_AGGS_CACHE_ENABLED_SETTING =
+        Setting.boolSetting("index.requests.cache.segment_aggs.enable", false, Property.Dynamic, Property.IndexScope);
+    public static final Setting<ByteSizeValue> INDICES_SEGMENT_AGGS_CACHE_SIZE =
+        Setting.memorySizeSetting("indices.requests.cache.segment_aggs.size", "1%", Property.NodeScope);
+
+    private static final String BREAKER_LABEL = "<segment_aggs_cache>";
+
+    private final ConcurrentMap<CleanupKey, Boolean> registeredClosedListeners = ConcurrentCollections.newConcurrentMap();
+    private final Set<CleanupKey> keysToClean = ConcurrentCollections.newConcurrentSet();
+    private final CircuitBreakerService circuitBreakerService;
+    private final Cache<Key, BytesReference> cache;
+
+    IndicesSegmentAggregationCache(Settings settings, CircuitBreakerService circuitBreakerService) {
+        this.circuitBreakerService = circuitBreakerService;
+        this.cache = CacheBuilder.<Key, BytesReference>builder()
+            .setMaximumWeight(INDICES_SEGMENT_AGGS_CACHE_SIZE.get(settings).getBytes())
+            .weigher(IndicesSegmentAggregationCache::weight)
+            .removalListener(this)
+            .build();
+    }
+
+    @Override
+    public void close() {
+        cache.invalidateAll();
+    }
+
+    void clear(IndexShard indexShard) {
+        keysToClean.add(new CleanupKey(indexShard, null));
+        cleanCache();
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<Key, BytesReference> notification) {
+        final long weight = weight(notification.getKey(), notification.getValue());
+        circuitBreakerService.getBreaker(CircuitBreaker.ACCOUNTING).addWithoutBreaking(-weight);
+        notification.getKey().indexShard.requestCache().onSegmentRemoval(weight,
+            notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED);
+    }
+
+    private static long weight(Key key, BytesReference value) {
+        return key.ramBytesUsed() + value.ramBytesUsed();
+    }
+
+    /**
+     * Can the aggregations of the shard request be computed per segment and cached?
+     */
+    static boolean canCache(ShardSearchRequest request, SearchContext context) {
+        if (context.indexShard().indexSettings().getValue(INDEX_SEGMENT_AGGS_CACHE_ENABLED_SETTING) == false) {
+            return false;
+        }
+        // same restrictions as the shard level request cache, see IndicesService#canCache
+        if (request.scroll() != null || context.searchType() != SearchType.QUERY_THEN_FETCH
+                || Boolean.FALSE.equals(request.requestCache())) {
+            return false;
+        }
+        if (request.source() == null || request.source().profile() || request.source().aggregations() == null
+                || context.aggregations() == null) {
+            return false;
+        }
+        // the global aggregations run their own search on all documents
+        if (request.source().aggregations().getAggregatorFactories().stream().anyMatch(a -> a instanceof GlobalAggregationBuilder)) {
+            return false;
+        }
+        // the reduction of the per-segment results must be equal to the result of the shard
+        if (request.source().aggregations().supportsExactPartialReduce() == false) {
+            return false;
+        }
+        // only the requests that collect all the matching documents in the aggregations can be split per segment
+        if (context.size() != 0 || context.parsedPostFilter() != null || context.minimumScore() != null
+                || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER
+                || context.suggest() != null || context.rescore().isEmpty() == false) {
+            return false;
+        }
+        if (context.getQueryShardContext().isCacheable() == false) {
+            return false;
+        }
+        // a reader wrapper (e.g. document level security) can change the content of the segments without changing their keys
+        if (context.searcher().getDirectoryReader() instanceof ElasticsearchDirectoryReader == false) {
+            return false;
+        }
+        final List<LeafReaderContext> leaves = context.searcher().getIndexReader().leaves();
+        if (leaves.isEmpty()) {
+            return false;
+        }
+        for (LeafReaderContext leaf : leaves) {
+            if (leaf.reader().getReaderCacheHelper() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the aggregations and the total hits of the request and sets them on the
+     * {@link SearchContext#queryResult() context's query result}. The segments that have a cached partial result are
+     * not collected, the others are collected in a single pass with one set of aggregators per segment. The collection
+     * runs with the timeout and cancellation checks of the query phase and nothing is cached if it times out.
+     */
+    void loadIntoContext(ShardSearchRequest request, SearchContext context, NamedWriteableRegistry namedWriteableRegistry,
+                         ScriptService scriptService) throws IOException {
+        assert canCache(request, context);
+        final IndexShard indexShard = context.indexShard();
+        final BytesReference requestKey = request.cacheKey();
+        final List<LeafReaderContext> leaves = context.searcher().getIndexReader().leaves();
+        final long[] hitCounts = new long[leaves.size()];
+        final InternalAggregations[] partials = new InternalAggregations[leaves.size()];
+        final Aggregator[][] aggregators = new Aggregator[leaves.size()][];
+        final BucketCollector[] collectors = new BucketCollector[leaves.size()];
+        final QuerySearchResult queryResult = context.queryResult();
+        queryResult.searchTimedOut(false);
+        // the buckets of all the segments count towards the limit of the shard, whether they are cached or collected
+        context.aggregations().resetBucketMultiConsumer();
+        final MultiBucketConsumer bucketConsumer = context.aggregations().multiBucketConsumer();
+        boolean hasMisses = false;
+        for (LeafReaderContext leaf : leaves) {
+            final BytesReference cached = cache.get(new Key(indexShard, leaf.reader().getReaderCacheHelper().getKey(), requestKey));
+            if (cached != null) {
+                indexShard.requestCache().onSegmentHit();
+                try (StreamInput in = new NamedWriteableAwareStreamInput(cached.streamInput(), namedWriteableRegistry)) {
+                    hitCounts[leaf.ord] = in.readVLong();
+                    partials[leaf.ord] = new InternalAggregations(in);
+                }
+                for (Aggregation aggregation : partials[leaf.ord]) {
+                    bucketConsumer.accept(InternalMultiBucketAggregation.countInnerBucket(aggregation));
+                }
+            } else {
+                indexShard.requestCache().onSegmentMiss();
+                try {
+                    aggregators[leaf.ord] = context.aggregations().factories().createTopLevelAggregators(context);
+                    collectors[leaf.ord] = MultiBucketCollector.wrap(Arrays.asList(aggregators[leaf.ord]));
+                    collectors[leaf.ord].preCollection();
+                } catch (IOException e) {
+                    throw new AggregationInitializationException("Could not initialize aggregators", e);
+                }
+                hasMisses = true;
+            }
+        }
+
+        if (hasMisses) {
+            final boolean completed = QueryPhase.searchWithCancellationChecks(context, new PerSegmentCollector(collectors, hitCounts));
+            for (LeafReaderContext leaf : leaves) {
+                if (aggregators[leaf.ord] == null) {
+                    continue;
+                }
+                final List<InternalAggregation> aggregations = new ArrayList<>(aggregators[leaf.ord].length);
+                for (Aggregator aggregator : aggregators[leaf.ord]) {
+                    try {
+                        aggregator.postCollection();
+                        aggregations.add(aggregator.buildAggregation(0));
+                    } catch (IOException e) {
+                        throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
+                    }
+                }
+                partials[leaf.ord] = new InternalAggregations(aggregations);
+                if (completed == false) {
+                    // the segments may only be partially collected
+                    continue;
+                }
+                try (BytesStreamOutput out = new BytesStreamOutput(512)) {
+                    out.writeVLong(hitCounts[leaf.ord]);
+                    partials[leaf.ord].writeTo(out);
+                    // copy the bytes to avoid retaining the unused part of the last page
+                    put(new Key(indexShard, leaf.reader().getReaderCacheHelper().getKey(), requestKey), leaf,
+                        new BytesArray(BytesReference.toBytes(out.bytes())));
+                }
+            }
+        }
+
+        long totalHits = 0;
+        for (long hitCount : hitCounts) {
+            totalHits += hitCount;
+        }
+        final InternalAggregation.ReduceContext reduceContext =
+            new InternalAggregation.ReduceContext(context.bigArrays(), scriptService, false);
+        final InternalAggregations reduced = InternalAggregations.reduce(Arrays.asList(partials), reduceContext);
+        final List<InternalAggregation> aggregations = new ArrayList<>();
+        reduced.forEach(agg -> aggregations.add((InternalAggregation) agg));
+
+        queryResult.from(context.from());
+        queryResult.size(context.size());
+        final TotalHits hits = context.trackTotalHitsUpTo() == SearchContext.TRACK_TOTAL_HITS_DISABLED
+            // for bwc hit count is set to 0, it will be converted to -1 by the coordinating node
+            ? new TotalHits(0, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO)
+            : new TotalHits(totalHits, TotalHits.Relation.EQUAL_TO);
+        queryResult.topDocs(new TopDocsAndMaxScore(new TopDocs(hits, Lucene.EMPTY_SCORE_DOCS), Float.NaN), null);
+        queryResult.aggregations(new InternalAggregations(aggregations, AggregationPhase.createSiblingPipelineAggregators(context)));
+    }
+
+    private void put(Key key, LeafReaderContext leaf, BytesReference value) {
+        final long weight = weight(key, value);
+        try {
+            circuitBreakerService.getBreaker(CircuitBreaker.ACCOUNTING).addEstimateBytesAndMaybeBreak(weight, BREAKER_LABEL);
+        } catch (CircuitBreakingException e) {
+            // the result is still returned, it is only not cached
+            logger.trace("skipping the caching of the aggregations of a segment of [{}]: {}", key.indexShard.shardId(), e.getMessage());
+            return;
+        }
+        // see if its the first time we see this segment, and make sure to register a cleanup key
+        final CleanupKey cleanupKey = new CleanupKey(key.indexShard, key.readerCacheKey);
+        if (registeredClosedListeners.putIfAbsent(cleanupKey, Boolean.TRUE) == null) {
+            leaf.reader().getReaderCacheHelper().addClosedListener(cleanupKey);
+        }
+        key.indexShard.requestCache().onSegmentCached(weight);
+        cache.put(key, value);
+    }
+
+    /**
+     * Collects the documents of each segment that has no cached result in its own set of aggregators
+     * and counts the matching documents of these segments.
+     */
+    private static class PerSegmentCollector implements Collector {
+        private final BucketCollector[] collectors;
+        private final long[] hitCounts;
+        private final ScoreMode scoreMode;
+
+        PerSegmentCollector(BucketCollector[] collectors, long[] hitCounts) {
+            this.collectors = collectors;
+            this.hitCounts = hitCounts;
+            // all the collectors are created from the same factories
+            this.scoreMode = Arrays.stream(collectors).filter(Objects::nonNull).findFirst().get().scoreMode();
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+            final int ord = context.ord;
+            if (collectors[ord] == null) {
+                // the result of this segment is cached
+                throw new CollectionTerminatedException();
+            }
+            LeafCollector aggsCollector;
+            try {
+                aggsCollector = collectors[ord].getLeafCollector(context);
+            } catch (CollectionTerminatedException e) {
+                aggsCollector = null;
+            }
+            final LeafCollector in = aggsCollector;
+            return new LeafCollector() {
+                private boolean aggsTerminated = in == null;
+
+                @Override
+                public void setScorer(Scorable scorer) throws IOException {
+                    if (in != null) {
+                        in.setScorer(scorer);
+                    }
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    // the hits must be counted even if the aggregations don't need more documents
+                    hitCounts[ord]++;
+                    if (aggsTerminated == false) {
+                        try {
+                            in.collect(doc);
+                        } catch (CollectionTerminatedException e) {
+                            aggsTerminated = true;
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return scoreMode;
+        }
+    }
+
+    static class Key {
+        private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
+
+        final IndexShard indexShard; // use as identity equality
+        final IndexReader.CacheKey readerCacheKey;
+        final BytesReference requestKey;
+
+        Key(IndexShard indexShard, IndexReader.CacheKey readerCacheKey, BytesReference requestKey) {
+            this.indexShard = indexShard;
+            this.readerCacheKey = Objects.requireNonNull(readerCacheKey);
+            this.requestKey = requestKey;
+        }
+
+        long ramBytesUsed() {
+            return BASE_RAM_BYTES_USED + requestKey.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return indexShard == key.indexShard && readerCacheKey.equals(key.readerCacheKey) && requestKey.equals(key.requestKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(indexShard);
+            result = 31 * result + readerCacheKey.hashCode();
+            result = 31 * result + requestKey.hashCode();
+            return result;
+        }
+    }
+
+    private class CleanupKey implements IndexReader.ClosedListener {
+        final IndexShard indexShard;
+        final IndexReader.CacheKey readerCacheKey;
+
+        private CleanupKey(IndexShard indexShard, IndexReader.CacheKey readerCacheKey) {
+            this.indexShard = indexShard;
+            this.readerCacheKey = readerCacheKey;
+        }
+
+        @Override
+        public void onClose(IndexReader.CacheKey cacheKey) {
+            Boolean remove = registeredClosedListeners.remove(this);
+            if (remove != null) {
+                keysToClean.add(this);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CleanupKey that = (CleanupKey) o;
+            return indexShard == that.indexShard && Objects.equals(readerCacheKey, that.readerCacheKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(indexShard) + Objects.hashCode(readerCacheKey);
+        }
+    }
+
+    synchronized void cleanCache() {
+        final ObjectSet<CleanupKey> currentKeysToClean = new ObjectHashSet<>();
+        final Set<IndexShard> currentFullClean = new HashSet<>();
+        for (Iterator<CleanupKey> iterator = keysToClean.iterator(); iterator.hasNext(); ) {
+            CleanupKey cleanupKey = iterator.next();
+            iterator.remove();
+            if (cleanupKey.readerCacheKey == null || cleanupKey.indexShard.state() == IndexShardState.CLOSED) {
+                // null indicates full cleanup, as does a closed shard
+                currentFullClean.add(cleanupKey.indexShard);
+            } else {
+                currentKeysToClean.add(cleanupKey);
+            }
+        }
+        if (currentKeysToClean.isEmpty() == false || currentFullClean.isEmpty() == false) {
+            for (Iterator<Key> iterator = cache.keys().iterator(); iterator.hasNext(); ) {
+                Key key = iterator.next();
+                if (currentFullClean.contains(key.indexShard)
+                        || currentKeysToClean.contains(new CleanupKey(key.indexShard, key.readerCacheKey))) {
+                    iterator.remove();
+                }
+            }
+        }
+        cache.refresh();
+    }
+
+    /**
+     * Returns the current number of entries of the cache
+     */
+    int count() {
+        return cache.count();
+    }
+}
@@ -211,8 +211,10 @@ public class IndicesService extends AbstractLifecycleComponent
     private final MapperRegistry mapperRegistry;
     private final NamedWriteableRegistry namedWriteableRegistry;
     private final IndexingMemoryController indexingMemoryController;
+    private final TranslogSyncScheduler translogSyncScheduler;
     private final TimeValue cleanInterval;
     final IndicesRequestCache indicesRequestCache; // pkg-private for testing
+    final IndicesSegmentAggregationCache indicesSegmentAggregationCache; // pkg-private for testing
     private final IndicesQueryCache indicesQueryCache;
     private final MetaStateService metaStateService;
     private final Collection<Function<IndexSettings, Optional<EngineFactory>>> engineFactoryProviders;
@@ -249,6 +251,7 @@ public class IndicesService extends AbstractLifecycleComponent
         this.analysisRegistry = analysisRegistry;
         this.indexNameExpressionResolver = indexNameExpressionResolver;
         this.indicesRequestCache = new IndicesRequestCache(settings);
+        this.indicesSegmentAggregationCache = new IndicesSegmentAggregationCache(settings, circuitBreakerService);
         this.indicesQueryCache = new IndicesQueryCache(settings);
         this.mapperRegistry = mapperRegistry;
         this.namedWriteableRegistry = namedWriteableRegistry;
@@ -261,6 +264,7 @@ public class IndicesService extends AbstractLifecycleComponent
         this.scriptService = scriptService;
         this.clusterService = clusterService;
         this.client = client;
+        this.translogSyncScheduler = new TranslogSyncScheduler(settings, clusterService.getClusterSettings(), threadPool);
         this.idFieldDataEnabled = INDICES_ID_FIELD_DATA_ENABLED_SETTING.get(clusterService.getSettings());
         clusterService.getClusterSettings().addSettingsUpdateConsumer(INDICES_ID_FIELD_DATA_ENABLED_SETTING, this::setIdFieldDataEnabled);
         this.indicesFieldDataCache = new IndicesFieldDataCache(settings, new IndexFieldDataCache.Listener() {
@@ -272,7 +276,8 @@ public class IndicesService extends AbstractLifecycleComponent
             }
         });
         this.cleanInterval = INDICES_CACHE_CLEAN_INTERVAL_SETTING.get(settings);
-        this.cacheCleaner = new CacheCleaner(indicesFieldDataCache, indicesRequestCache,  logger, threadPool, this.cleanInterval);
+        this.cacheCleaner = new CacheCleaner(indicesFieldDataCache, indicesRequestCache, indicesSegmentAggregationCache,
+            logger, threadPool, this.cleanInterval);
         this.metaStateService = metaStateService;
         this.engineFactoryProviders = engineFactoryProviders;
 
@@ -299,6 +304,7 @@ public class IndicesService extends AbstractLifecycleComponent
                             indicesFieldDataCache,
                             cacheCleaner,
                             indicesRequestCache,
+                            indicesSegmentAggregationCache,
                             indicesQueryCache);
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
@@ -609,7 +615,8 @@ public class IndicesService extends AbstractLifecycleComponent
                 mapperRegistry,
                 indicesFieldDataCache,
                 namedWriteableRegistry,
-                this::isIdFieldDataEnabled
+                this::isIdFieldDataEnabled,
+                translogSyncScheduler
         );
     }
 
@@ -1219,14 +1226,17 @@ public class IndicesService extends AbstractLifecycleComponent
         private final TimeValue interval;
         private final AtomicBoolean closed = new AtomicBoolean(false);
         private final IndicesRequestCache requestCache;
+        private final IndicesSegmentAggregationCache segmentAggregationCache;
 
         CacheCleaner(IndicesFieldDataCache cache,
                      IndicesRequestCache requestCache,
+                     IndicesSegmentAggregationCache segmentAggregationCache,
                      Logger logger,
                      ThreadPool threadPool,
                      TimeValue interval) {
             this.cache = cache;
             this.requestCache = requestCache;
+            this.segmentAggregationCache = segmentAggregationCache;
             this.logger = logger;
             this.threadPool = threadPool;
             this.interval = interval;
@@ -1253,6 +1263,11 @@ public class IndicesService extends AbstractLifecycleComponent
             } catch (Exception e) {
                 logger.warn("Exception during periodic request cache cleanup:", e);
             }
+            try {
+                this.segmentAggregationCache.cleanCache();
+            } catch (Exception e) {
+                logger.warn("Exception during periodic segment aggregation cache cleanup:", e);
+            }
             // Reschedule itself to run again if not closed
             if (closed.get() == false) {
                 threadPool.scheduleUnlessShuttingDown(interval, ThreadPool.Names.SAME, this);
@@ -1316,6 +1331,21 @@ public class IndicesService extends AbstractLifecycleComponent
     }
 
 
+    /**
+     * Can the aggregations of the shard request be computed per segment and cached in the {@link IndicesSegmentAggregationCache}?
+     */
+    public boolean canCacheSegmentAggregations(ShardSearchRequest request, SearchContext context) {
+        return IndicesSegmentAggregationCache.canCache(request, context);
+    }
+
+    /**
+     * Computes the aggregations of the request from the cached results of the segments, collecting only the segments
+     * that have no cached result, and sets them on the {@link SearchContext#queryResult() context's query result}.
+     */
+    public void loadSegmentAggregationsIntoContext(ShardSearchRequest request, SearchContext context) throws IOException {
+        indicesSegmentAggregationCache.loadIntoContext(request, context, namedWriteableRegistry, scriptService);
+    }
+
     /**
      * Loads the cache result, computing it if needed by executing the query phase and otherwise deserializing the cached
      * value into the {@link SearchContext#queryResult() context's query result}. The combination of load + compute allows
@@ -1330,7 +1360,11 @@ public class IndicesService extends AbstractLifecycleComponent
         BytesReference bytesReference = cacheShardLevelResult(context.indexShard(), directoryReader, request.cacheKey(),
             () -> "Shard: " + request.shardId() + "\nSource:\n" + request.source(),
             out -> {
-            queryPhase.execute(context);
+            if (canCacheSegmentAggregations(request, context)) {
+                loadSegmentAggregationsIntoContext(request, context);
+            } else {
+                queryPhase.execute(context);
+            }
             try {
                 context.queryResult().writeToNoId(out);
 
@@ -1362,6 +1396,10 @@ public class IndicesService extends AbstractLifecycleComponent
         }
     }
 
+    public TranslogSyncScheduler getTranslogSyncScheduler() {
+        return translogSyncScheduler;
+    }
+
     public ByteSizeValue getTotalIndexingBufferBytes() {
         return indexingMemoryController.indexingBufferSize();
     }
@@ -1468,6 +1506,7 @@ public class IndicesService extends AbstractLifecycleComponent
             final boolean clearedAtLeastOne = service.clearCaches(queryCache, fieldDataCache, fields);
             if ((requestCache || (clearedAtLeastOne == false && fields.length == 0)) && shard != null) {
                 indicesRequestCache.clear(new IndexShardCacheEntity(shard));
+                indicesSegmentAggregationCache.clear(shard);
             }
         }
     }
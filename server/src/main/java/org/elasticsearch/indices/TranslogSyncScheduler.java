@@ -0,0 +1,265 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Group-commits the translog syncs that shards with {@link Translog.Durability#REQUEST request} durability need before they can
+ * acknowledge a write. Sync requests are batched per data path: the first request for a path opens a window of
+ * {@link #GROUP_COMMIT_INTERVAL_SETTING} and every request that arrives within that window, from any shard on the same path, is
+ * completed by a single pass that syncs each affected translog once. The window is closed early once
+ * {@link #GROUP_COMMIT_MAX_BATCH_SIZE_SETTING} requests are pending on a path.
+ * <p>
+ * The scheduler is disabled by default, in which case each shard only coalesces its own overlapping sync requests.
+ */
+public class TranslogSyncScheduler {
+
+    private static final Logger logger = LogManager.getLogger(TranslogSyncScheduler.class);
+
+    /** How long sync requests may wait for other requests on the same data path, or {@code 0} to disable group commits. */
+    public static final Setting<TimeValue> GROUP_COMMIT_INTERVAL_SETTING =
+        Setting.timeSetting("indices.translog.group_commit.interval", TimeValue.ZERO, TimeValue.ZERO, TimeValue.timeValueSeconds(1),
+            Property.NodeScope, Property.Dynamic);
+
+    /** The number of pending sync requests on a data path that triggers a group commit before the interval elapsed. */
+    public static final Setting<Integer> GROUP_COMMIT_MAX_BATCH_SIZE_SETTING =
+        Setting.intSetting("indices.translog.group_commit.max_batch_size", 1024, 1, Property.NodeScope, Property.Dynamic);
+
+    /**
+     * Syncs the translog of a single shard.
+     */
+    @FunctionalInterface
+    public interface Syncer {
+        /**
+         * Ensures that all the given locations are synced to disk. Implementations are expected to issue at most one fsync.
+         */
+        void sync(List<Translog.Location> locations) throws IOException;
+    }
+
+    private final ThreadPool threadPool;
+    private final ConcurrentMap<Path, PathGroup> groups = ConcurrentCollections.newConcurrentMap();
+    private volatile TimeValue interval;
+    private volatile int maxBatchSize;
+
+    public TranslogSyncScheduler(Settings settings, ClusterSettings clusterSettings, ThreadPool threadPool) {
+        this.threadPool = threadPool;
+        this.interval = GROUP_COMMIT_INTERVAL_SETTING.get(settings);
+        this.maxBatchSize = GROUP_COMMIT_MAX_BATCH_SIZE_SETTING.get(settings);
+        clusterSettings.addSettingsUpdateConsumer(GROUP_COMMIT_INTERVAL_SETTING, this::setInterval);
+        clusterSettings.addSettingsUpdateConsumer(GROUP_COMMIT_MAX_BATCH_SIZE_SETTING, this::setMaxBatchSize);
+    }
+
+    private void setInterval(TimeValue interval) {
+        this.interval = interval;
+    }
+
+    private void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns <code>true</code> if sync requests should be routed through this scheduler.
+     */
+    public boolean isEnabled() {
+        return interval.nanos() > 0;
+    }
+
+    /**
+     * Registers a request to sync the translog of a shard up to the given location. The listener is notified, with
+     * <code>null</code> on success, once the group commit of the given data path that includes this request has completed.
+     * The calling thread might be used to run the group commit if this request fills up the batch.
+     *
+     * @param dataPath the data path that holds the translog of the shard
+     * @param syncer   the syncer of the shard, requests with the same syncer are merged into a single sync
+     * @param location the location to sync
+     * @param listener the listener to notify once the location is synced
+     */
+    public void sync(Path dataPath, Syncer syncer, Translog.Location location, Consumer<Exception> listener) {
+        Objects.requireNonNull(dataPath, "dataPath must not be null");
+        Objects.requireNonNull(syncer, "syncer must not be null");
+        Objects.requireNonNull(location, "location must not be null");
+        Objects.requireNonNull(listener, "listener must not be null");
+        final PathGroup group = groups.computeIfAbsent(dataPath, PathGroup::new);
+        group.add(new PendingSync(syncer, location, preserveContext(listener)));
+    }
+
+    public TranslogSyncStats stats() {
+        final List<TranslogSyncStats.PathStats> pathStats = new ArrayList<>(groups.size());
+        for (PathGroup group : groups.values()) {
+            pathStats.add(group.stats());
+        }
+        return new TranslogSyncStats(pathStats);
+    }
+
+    private Consumer<Exception> preserveContext(Consumer<Exception> consumer) {
+        final Supplier<ThreadContext.StoredContext> restorableContext = threadPool.getThreadContext().newRestorableContext(false);
+        return e -> {
+            try (ThreadContext.StoredContext ignore = restorableContext.get()) {
+                consumer.accept(e);
+            }
+        };
+    }
+
+    private static final class PendingSync {
+        private final Syncer syncer;
+        private final Translog.Location location;
+        private final Consumer<Exception> listener;
+
+        private PendingSync(Syncer syncer, Translog.Location location, Consumer<Exception> listener) {
+            this.syncer = syncer;
+            this.location = location;
+            this.listener = listener;
+        }
+    }
+
+    private final class PathGroup {
+        private final Path path;
+        /* the count is the number of group commits and the sum the number of requests they completed */
+        private final MeanMetric batches = new MeanMetric();
+        /* the count is the number of translog syncs and the sum the time spent in them */
+        private final MeanMetric syncs = new MeanMetric();
+        private List<PendingSync> pending = new ArrayList<>(); // guarded by this
+        private boolean scheduled; // guarded by this
+
+        private PathGroup(Path path) {
+            this.path = path;
+        }
+
+        void add(PendingSync sync) {
+            List<PendingSync> batch = null;
+            boolean schedule = false;
+            synchronized (this) {
+                pending.add(sync);
+                if (pending.size() >= maxBatchSize) {
+                    batch = drain();
+                } else if (scheduled == false) {
+                    scheduled = true;
+                    schedule = true;
+                }
+            }
+            if (batch != null) {
+                // the batch is full, there is no point in waiting for the window to close
+                commit(batch);
+            } else if (schedule) {
+                // don't leak the context of the request that opened the window into the group commit
+                try (ThreadContext.StoredContext ignore = threadPool.getThreadContext().stashContext()) {
+                    threadPool.schedule(new AbstractRunnable() {
+                        @Override
+                        protected void doRun() {
+                            final List<PendingSync> batch;
+                            synchronized (PathGroup.this) {
+                                scheduled = false;
+                                batch = drain();
+                            }
+                            commit(batch);
+                        }
+
+                        @Override
+                        public void onRejection(Exception e) {
+                            // the node is shutting down, sync on the current thread rather than leaving the requests hanging
+                            doRun();
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            logger.warn(new ParameterizedMessage("failed to group commit translog syncs on [{}]", path), e);
+                        }
+
+                        @Override
+                        public boolean isForceExecution() {
+                            return true;
+                        }
+                    }, interval, ThreadPool.Names.GENERIC);
+                }
+            }
+        }
+
+        private List<PendingSync> drain() {
+            assert Thread.holdsLock(this);
+            final List<PendingSync> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        }
+
+        private void commit(List<PendingSync> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            batches.inc(batch.size());
+            final Map<Syncer, List<PendingSync>> bySyncer = new LinkedHashMap<>();
+            for (PendingSync sync : batch) {
+                bySyncer.computeIfAbsent(sync.syncer, k -> new ArrayList<>()).add(sync);
+            }
+            for (Map.Entry<Syncer, List<PendingSync>> entry : bySyncer.entrySet()) {
+                final List<Translog.Location> locations = new ArrayList<>(entry.getValue().size());
+                for (PendingSync sync : entry.getValue()) {
+                    locations.add(sync.location);
+                }
+                Exception exception = null;
+                final long startTimeNanos = System.nanoTime();
+                try {
+                    entry.getKey().sync(locations);
+                } catch (Exception ex) {
+                    // failures are scoped to the shard that failed, the other shards of the batch are not affected
+                    logger.debug("failed to sync translog", ex);
+                    exception = ex;
+                }
+                syncs.inc(System.nanoTime() - startTimeNanos);
+                for (PendingSync sync : entry.getValue()) {
+                    try {
+                        sync.listener.accept(exception);
+                    } catch (Exception ex) {
+                        logger.warn("failed to notify callback", ex);
+                    }
+                }
+            }
+        }
+
+        TranslogSyncStats.PathStats stats() {
+            return new TranslogSyncStats.PathStats(path.toAbsolutePath().toString(), batches.count(), batches.sum(), syncs.count(),
+                syncs.sum());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time snapshot of the per data path counters tracked by {@link TranslogSyncScheduler}.
+ */
+public class TranslogSyncStats implements Writeable, ToXContentFragment {
+
+    private final List<PathStats> paths;
+
+    public TranslogSyncStats(List<PathStats> paths) {
+        this.paths = paths;
+    }
+
+    public TranslogSyncStats(StreamInput in) throws IOException {
+        paths = in.readList(PathStats::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeList(paths);
+    }
+
+    public List<PathStats> getPaths() {
+        return paths;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.TRANSLOG_SYNC);
+        builder.startArray(Fields.PATHS);
+        for (PathStats path : paths) {
+            path.toXContent(builder, params);
+        }
+        builder.endArray();
+        builder.endObject();
+        return builder;
+    }
+
+    public static class PathStats implements Writeable, ToXContentFragment {
+
+        private final String path;
+        private final long batches;
+        private final long requests;
+        private final long syncs;
+        private final long syncTimeInNanos;
+
+        public PathStats(String path, long batches, long requests, long syncs, long syncTimeInNanos) {
+            this.path = path;
+            this.batches = batches;
+            this.requests = requests;
+            this.syncs = syncs;
+            this.syncTimeInNanos = syncTimeInNanos;
+        }
+
+        public PathStats(StreamInput in) throws IOException {
+            path = in.readString();
+            batches = in.readVLong();
+            requests = in.readVLong();
+            syncs = in.readVLong();
+            syncTimeInNanos = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(path);
+            out.writeVLong(batches);
+            out.writeVLong(requests);
+            out.writeVLong(syncs);
+            out.writeVLong(syncTimeInNanos);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * The number of group commits that ran on this path.
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * The number of sync requests that were completed by the group commits of this path.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * The number of translog syncs that were issued by the group commits of this path.
+         */
+        public long getSyncs() {
+            return syncs;
+        }
+
+        public long getSyncTimeInNanos() {
+            return syncTimeInNanos;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field(Fields.PATH, path);
+            builder.field(Fields.BATCHES, batches);
+            builder.field(Fields.REQUESTS, requests);
+            builder.field(Fields.AVG_BATCH_SIZE, batches == 0 ? 0.0 : requests / (double) batches);
+            builder.field(Fields.SYNCS, syncs);
+            builder.humanReadableField(Fields.SYNC_TIME_IN_MILLIS, Fields.SYNC_TIME,
+                new TimeValue(syncTimeInNanos, TimeUnit.NANOSECONDS));
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    static final class Fields {
+        static final String TRANSLOG_SYNC = "translog_sync";
+        static final String PATHS = "paths";
+        static final String PATH = "path";
+        static final String BATCHES = "batches";
+        static final String REQUESTS = "requests";
+        static final String AVG_BATCH_SIZE = "avg_batch_size";
+        static final String SYNCS = "syncs";
+        static final String SYNC_TIME = "sync_time";
+        static final String SYNC_TIME_IN_MILLIS = "sync_time_in_millis";
+    }
+}
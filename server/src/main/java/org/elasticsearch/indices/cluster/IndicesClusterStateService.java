@@ -73,6 +73,7 @@ import org.elasticsearch.indices.recovery.PeerRecoverySourceService;
 import org.elasticsearch.indices.recovery.PeerRecoveryTargetService;
 import org.elasticsearch.indices.recovery.RecoveryFailedException;
 import org.elasticsearch.indices.recovery.RecoveryState;
+import org.elasticsearch.indices.replication.SegmentReplicationSourceService;
 import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.snapshots.SnapshotShardsService;
@@ -137,6 +138,7 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
             final SearchService searchService,
             final SyncedFlushService syncedFlushService,
             final PeerRecoverySourceService peerRecoverySourceService,
+            final SegmentReplicationSourceService segmentReplicationSourceService,
             final SnapshotShardsService snapshotShardsService,
             final PrimaryReplicaSyncer primaryReplicaSyncer,
             final RetentionLeaseSyncer retentionLeaseSyncer,
@@ -153,6 +155,7 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
                 searchService,
                 syncedFlushService,
                 peerRecoverySourceService,
+                segmentReplicationSourceService,
                 snapshotShardsService,
                 primaryReplicaSyncer,
                 retentionLeaseSyncer,
@@ -172,12 +175,14 @@ public class IndicesClusterStateService extends AbstractLifecycleComponent imple
             final SearchService searchService,
             final SyncedFlushService syncedFlushService,
             final PeerRecoverySourceService peerRecoverySourceService,
+            final SegmentReplicationSourceService segmentReplicationSourceService,
             final SnapshotShardsService snapshotShardsService,
             final PrimaryReplicaSyncer primaryReplicaSyncer,
             final RetentionLeaseSyncer retentionLeaseSyncer,
             final NodeClient client) {
         this.settings = settings;
-        this.buildInIndexListener = Arrays.asList(peerRecoverySourceService, recoveryTargetService, searchService, snapshotShardsService);
+        this.buildInIndexListener = Arrays.asList(peerRecoverySourceService, segmentReplicationSourceService, recoveryTargetService,
+            searchService, snapshotShardsService);
         this.indicesService = indicesService;
         this.clusterService = clusterService;
         this.threadPool = threadPool;
@@ -27,6 +27,8 @@ import org.apache.lucene.index.IndexReader.CacheKey;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.util.Accountable;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.cache.Cache;
 import org.elasticsearch.common.cache.CacheBuilder;
 import org.elasticsearch.common.cache.RemovalListener;
@@ -37,16 +39,20 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.fielddata.AtomicFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.fielddata.ordinals.IncrementalOrdinalMap;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.ShardUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.ToLongBiFunction;
 
 public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCache.Key, Accountable>, Releasable{
@@ -118,6 +124,9 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
         final String fieldName;
         private final Cache<Key, Accountable> cache;
         private final Listener[] listeners;
+        // the incremental global ordinals of the open readers, keyed by the cache key of the reader they were built for
+        private final Map<CacheKey, LastOrdinalMap> lastOrdinalMaps = ConcurrentCollections.newConcurrentMap();
+        private final AtomicLong lastOrdinalMapsVersion = new AtomicLong();
 
         IndexFieldCache(Logger logger,final Cache<Key, Accountable> cache, Index index, String fieldName, Listener... listeners) {
             this.logger = logger;
@@ -181,10 +190,53 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
             return (IFD) accountable;
         }
 
+        @Override
+        public IncrementalOrdinalMap getLastOrdinalMap(ShardId shardId) {
+            LastOrdinalMap last = null;
+            for (LastOrdinalMap candidate : lastOrdinalMaps.values()) {
+                if (candidate.shardId.equals(shardId) && (last == null || candidate.version > last.version)) {
+                    last = candidate;
+                }
+            }
+            return last == null ? null : last.ordinalMap;
+        }
+
+        @Override
+        public void setLastOrdinalMap(DirectoryReader indexReader, IncrementalOrdinalMap ordinalMap, CircuitBreaker breaker) {
+            final ShardId shardId = ShardUtils.extractShardId(indexReader);
+            final long bytes = ordinalMap.ramBytesUsed();
+            try {
+                breaker.addEstimateBytesAndMaybeBreak(bytes, "incremental_global_ordinals");
+            } catch (CircuitBreakingException e) {
+                // the global ordinals of the next reader will be built from scratch
+                logger.debug("not keeping the incremental global ordinals of [{}] for {}: {}", fieldName, shardId, e.getMessage());
+                return;
+            }
+            // the reader close listener is registered when the global ordinals of the reader are loaded in the cache
+            final LastOrdinalMap previous = lastOrdinalMaps.put(indexReader.getReaderCacheHelper().getKey(),
+                new LastOrdinalMap(shardId, ordinalMap, breaker, bytes, lastOrdinalMapsVersion.incrementAndGet()));
+            if (previous != null) {
+                previous.release();
+            }
+        }
+
         @Override
         public void onClose(CacheKey key) {
             cache.invalidate(new Key(this, key, null));
             // don't call cache.cleanUp here as it would have bad performance implications
+            final LastOrdinalMap lastOrdinalMap = lastOrdinalMaps.remove(key);
+            if (lastOrdinalMap != null) {
+                lastOrdinalMap.release();
+            }
+        }
+
+        private void clearLastOrdinalMaps() {
+            for (CacheKey key : lastOrdinalMaps.keySet()) {
+                final LastOrdinalMap lastOrdinalMap = lastOrdinalMaps.remove(key);
+                if (lastOrdinalMap != null) {
+                    lastOrdinalMap.release();
+                }
+            }
         }
 
         @Override
@@ -194,6 +246,7 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
                     cache.invalidate(key);
                 }
             }
+            clearLastOrdinalMaps();
             // force eviction
             cache.refresh();
         }
@@ -207,6 +260,9 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
                     }
                 }
             }
+            if (this.fieldName.equals(fieldName)) {
+                clearLastOrdinalMaps();
+            }
             // we call refresh because this is a manual operation, should happen
             // rarely and probably means the user wants to see memory returned as
             // soon as possible
@@ -214,6 +270,29 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
         }
     }
 
+    /**
+     * The incremental global ordinals that were built for a reader, and the breaker their memory is accounted in.
+     */
+    private static final class LastOrdinalMap {
+        final ShardId shardId;
+        final IncrementalOrdinalMap ordinalMap;
+        final CircuitBreaker breaker;
+        final long bytes;
+        final long version;
+
+        private LastOrdinalMap(ShardId shardId, IncrementalOrdinalMap ordinalMap, CircuitBreaker breaker, long bytes, long version) {
+            this.shardId = shardId;
+            this.ordinalMap = ordinalMap;
+            this.breaker = breaker;
+            this.bytes = bytes;
+            this.version = version;
+        }
+
+        void release() {
+            breaker.addWithoutBreaking(-bytes);
+        }
+    }
+
     public static class Key {
         public final IndexFieldCache indexCache;
         public final IndexReader.CacheKey readerKey;
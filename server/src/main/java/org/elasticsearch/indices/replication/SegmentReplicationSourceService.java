@@ -0,0 +1,558 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.replication;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.elasticsearch.action.admin.indices.flush.FlushRequest;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.store.StoreFileMetaData;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.Scheduler.Cancellable;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestHandler;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the files of the last commit of primary shards to the replicas of indices that use segment replication. A replica starts a
+ * copy session with the metadata of the last commit it copied, which acquires the last commit of the primary and returns the files of
+ * that commit that the replica doesn't have yet. The replica then fetches these files chunk by chunk and finishes the session, which
+ * releases the commit.
+ * <p>
+ * A replica that already has the last commit of the primary gets an empty response without a session. The primary is then flushed, at
+ * most once per {@link #SEGMENT_REPLICATION_FLUSH_INTERVAL_SETTING}, so that the next round copies the changes that were only
+ * refreshed or are still in the indexing buffer.
+ * <p>
+ * Sessions hold a reference to the store and to the commit of the primary. They are released when the primary is closed, and when
+ * they did not receive a request for {@link #SESSION_TIMEOUT}, which is checked every {@link #SESSION_EXPIRY_INTERVAL}.
+ *
+ * @see SegmentReplicationTargetService
+ */
+public class SegmentReplicationSourceService extends AbstractLifecycleComponent implements IndexEventListener {
+
+    private static final Logger logger = LogManager.getLogger(SegmentReplicationSourceService.class);
+
+    public static class Actions {
+        public static final String START = "internal:index/shard/segment_replication/start";
+        public static final String FILE_CHUNK = "internal:index/shard/segment_replication/file_chunk";
+        public static final String FINISH = "internal:index/shard/segment_replication/finish";
+    }
+
+    /**
+     * Sessions that did not receive a request for this long are released, since their target has likely gone.
+     */
+    static final TimeValue SESSION_TIMEOUT = TimeValue.timeValueMinutes(5);
+
+    /** How often the sessions that timed out are released. */
+    static final TimeValue SESSION_EXPIRY_INTERVAL = TimeValue.timeValueMinutes(1);
+
+    /** The minimum time between two flushes of a primary that are triggered by replicas that are up to date with its last commit. */
+    public static final Setting<TimeValue> SEGMENT_REPLICATION_FLUSH_INTERVAL_SETTING =
+        Setting.timeSetting("indices.replication.segment.flush_interval", TimeValue.timeValueSeconds(5), TimeValue.ZERO,
+            Property.NodeScope, Property.Dynamic);
+
+    /** The session id of the responses that don't start a session, since the replica already has the last commit of the primary. */
+    static final long NO_SESSION = 0L;
+
+    private final IndicesService indicesService;
+    private final ThreadPool threadPool;
+    private final AtomicLong sessionIdGenerator = new AtomicLong(NO_SESSION);
+    private final Map<Long, CopySession> sessions = ConcurrentCollections.newConcurrentMap();
+    // the relative time in millis of the last flush of each primary that was triggered by an up to date replica
+    private final Map<ShardId, Long> lastFlushTimes = ConcurrentCollections.newConcurrentMap();
+    private volatile TimeValue flushInterval;
+    private volatile Cancellable sessionReaper;
+
+    public SegmentReplicationSourceService(Settings settings, ClusterSettings clusterSettings, TransportService transportService,
+                                           IndicesService indicesService, ThreadPool threadPool) {
+        this.indicesService = indicesService;
+        this.threadPool = threadPool;
+        this.flushInterval = SEGMENT_REPLICATION_FLUSH_INTERVAL_SETTING.get(settings);
+        clusterSettings.addSettingsUpdateConsumer(SEGMENT_REPLICATION_FLUSH_INTERVAL_SETTING, this::setFlushInterval);
+        transportService.registerRequestHandler(Actions.START, ThreadPool.Names.GENERIC, StartRequest::new, new StartHandler());
+        transportService.registerRequestHandler(Actions.FILE_CHUNK, ThreadPool.Names.GENERIC, FileChunkRequest::new,
+            new FileChunkHandler());
+        transportService.registerRequestHandler(Actions.FINISH, ThreadPool.Names.SAME, FinishRequest::new, new FinishHandler());
+    }
+
+    @Override
+    protected void doStart() {
+        sessionReaper = threadPool.scheduleWithFixedDelay(this::releaseTimedOutSessions, SESSION_EXPIRY_INTERVAL,
+            ThreadPool.Names.GENERIC);
+    }
+
+    @Override
+    protected void doStop() {
+        final Cancellable sessionReaper = this.sessionReaper;
+        if (sessionReaper != null) {
+            sessionReaper.cancel();
+        }
+    }
+
+    @Override
+    protected void doClose() {
+        for (CopySession session : sessions.values()) {
+            session.close();
+        }
+    }
+
+    private void setFlushInterval(TimeValue flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void beforeIndexShardClosed(ShardId shardId, @Nullable IndexShard indexShard, Settings indexSettings) {
+        for (CopySession session : sessions.values()) {
+            if (session.shardId.equals(shardId)) {
+                session.close();
+            }
+        }
+        lastFlushTimes.remove(shardId);
+    }
+
+    private StartResponse start(StartRequest request) throws IOException {
+        return start(indicesService.indexServiceSafe(request.shardId().getIndex()).getShard(request.shardId().id()), request);
+    }
+
+    StartResponse start(IndexShard shard, StartRequest request) throws IOException {
+        final ShardRouting routingEntry = shard.routingEntry();
+        if (routingEntry.primary() == false || routingEntry.active() == false) {
+            throw new IllegalStateException("source shard [" + routingEntry + "] is not an active primary");
+        }
+        if (shard.indexSettings().isSegmentReplication() == false) {
+            throw new IllegalStateException("index " + shard.shardId().getIndex() + " does not use segment replication");
+        }
+        releaseSessions(request.shardId(), request.targetAllocationId());
+
+        final Store store = shard.store();
+        store.incRef();
+        Engine.IndexCommitRef commitRef = null;
+        boolean success = false;
+        try {
+            commitRef = shard.acquireLastIndexCommit(false);
+            if (hasCommit(store, commitRef.getIndexCommit(), request.metadataSnapshot())) {
+                if (shouldFlush(request.shardId()) == false) {
+                    logger.trace("{} [{}] is up to date", request.shardId(), request.targetAllocationId());
+                    return StartResponse.upToDate();
+                }
+                // turns the changes that were refreshed or only exist in the indexing buffer into a commit the replica can copy, this
+                // is a no-op if the shard has no uncommitted changes
+                IOUtils.close(commitRef);
+                commitRef = null;
+                shard.flush(new FlushRequest().waitIfOngoing(false));
+                commitRef = shard.acquireLastIndexCommit(false);
+                if (hasCommit(store, commitRef.getIndexCommit(), request.metadataSnapshot())) {
+                    logger.trace("{} [{}] is up to date after flush", request.shardId(), request.targetAllocationId());
+                    return StartResponse.upToDate();
+                }
+            }
+            final Store.MetadataSnapshot metadata = store.getMetadata(commitRef.getIndexCommit());
+            final Store.RecoveryDiff diff = metadata.recoveryDiff(request.metadataSnapshot());
+            final List<StoreFileMetaData> files = new ArrayList<>(diff.different.size() + diff.missing.size());
+            files.addAll(diff.different);
+            files.addAll(diff.missing);
+            if (files.isEmpty()) {
+                return StartResponse.upToDate();
+            }
+            final CopySession session = new CopySession(sessionIdGenerator.incrementAndGet(), request.shardId(),
+                request.targetAllocationId(), store, commitRef, files);
+            sessions.put(session.id, session);
+            logger.trace("{} started segment copy session [{}] to [{}] with {} files", request.shardId(), session.id,
+                request.targetAllocationId(), files.size());
+            success = true;
+            return new StartResponse(session.id, metadata, files);
+        } finally {
+            if (success == false) {
+                try {
+                    IOUtils.close(commitRef);
+                } finally {
+                    store.decRef();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the segments file of the given commit is the one of the last commit that the replica copied, in which case the
+     * replica has all the files of the commit.
+     */
+    private static boolean hasCommit(Store store, IndexCommit commit, Store.MetadataSnapshot targetMetadata) throws IOException {
+        final StoreFileMetaData targetSegmentsFile = targetMetadata.getSegmentsFile();
+        if (targetSegmentsFile == null || targetSegmentsFile.name().equals(commit.getSegmentsFileName()) == false) {
+            return false;
+        }
+        try (IndexInput input = store.directory().openInput(commit.getSegmentsFileName(), IOContext.READONCE)) {
+            return targetSegmentsFile.length() == input.length()
+                && targetSegmentsFile.checksum().equals(Store.digestToString(CodecUtil.retrieveChecksum(input)));
+        }
+    }
+
+    /**
+     * Returns whether an up to date replica should flush the given primary, and records the flush if so. This also forgets the flushes
+     * that are older than the flush interval, which don't matter anymore.
+     */
+    private boolean shouldFlush(ShardId shardId) {
+        final long now = threadPool.relativeTimeInMillis();
+        final long interval = flushInterval.millis();
+        lastFlushTimes.values().removeIf(lastFlushTime -> now - lastFlushTime >= interval);
+        return lastFlushTimes.putIfAbsent(shardId, now) == null;
+    }
+
+    FileChunkResponse readFileChunk(FileChunkRequest request) throws IOException {
+        final CopySession session = getSession(request.sessionId());
+        if (session.files.contains(request.name()) == false) {
+            throw new IllegalArgumentException("file [" + request.name() + "] is not part of segment copy session [" + session.id + "]");
+        }
+        final byte[] content = new byte[request.length()];
+        try (IndexInput input = session.store.directory().openInput(request.name(), IOContext.READONCE)) {
+            input.seek(request.position());
+            input.readBytes(content, 0, content.length);
+        }
+        return new FileChunkResponse(new BytesArray(content));
+    }
+
+    private CopySession getSession(long sessionId) {
+        final CopySession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new IllegalStateException("segment copy session [" + sessionId + "] does not exist");
+        }
+        session.lastAccessTime = threadPool.relativeTimeInMillis();
+        return session;
+    }
+
+    void finish(FinishRequest request) {
+        final CopySession session = sessions.get(request.sessionId());
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * Releases the previous sessions of the given target, which are abandoned once it starts a new one.
+     */
+    private void releaseSessions(ShardId shardId, String targetAllocationId) {
+        for (CopySession session : sessions.values()) {
+            if (session.shardId.equals(shardId) && session.targetAllocationId.equals(targetAllocationId)) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Releases the sessions that did not receive a request for {@link #SESSION_TIMEOUT}, since their target has likely gone.
+     */
+    void releaseTimedOutSessions() {
+        final long now = threadPool.relativeTimeInMillis();
+        for (CopySession session : sessions.values()) {
+            if (now - session.lastAccessTime > SESSION_TIMEOUT.millis()) {
+                logger.debug("{} releasing segment copy session [{}] to [{}] that timed out", session.shardId, session.id,
+                    session.targetAllocationId);
+                session.close();
+            }
+        }
+    }
+
+    // exposed for testing
+    int numberOfSessions() {
+        return sessions.size();
+    }
+
+    private final class CopySession {
+        final long id;
+        final ShardId shardId;
+        final String targetAllocationId;
+        final Store store;
+        final Engine.IndexCommitRef commitRef;
+        final List<String> files;
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile long lastAccessTime;
+
+        CopySession(long id, ShardId shardId, String targetAllocationId, Store store, Engine.IndexCommitRef commitRef,
+                    List<StoreFileMetaData> files) {
+            this.id = id;
+            this.shardId = shardId;
+            this.targetAllocationId = targetAllocationId;
+            this.store = store;
+            this.commitRef = commitRef;
+            this.files = new ArrayList<>(files.size());
+            for (StoreFileMetaData file : files) {
+                this.files.add(file.name());
+            }
+            this.lastAccessTime = threadPool.relativeTimeInMillis();
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                sessions.remove(id, this);
+                try {
+                    commitRef.close();
+                } catch (Exception e) {
+                    logger.debug(() -> new ParameterizedMessage(
+                        "{} failed to release the commit of segment copy session [{}]", shardId, id), e);
+                } finally {
+                    store.decRef();
+                }
+            }
+        }
+    }
+
+    class StartHandler implements TransportRequestHandler<StartRequest> {
+        @Override
+        public void messageReceived(StartRequest request, TransportChannel channel, Task task) throws Exception {
+            channel.sendResponse(start(request));
+        }
+    }
+
+    class FileChunkHandler implements TransportRequestHandler<FileChunkRequest> {
+        @Override
+        public void messageReceived(FileChunkRequest request, TransportChannel channel, Task task) throws Exception {
+            channel.sendResponse(readFileChunk(request));
+        }
+    }
+
+    class FinishHandler implements TransportRequestHandler<FinishRequest> {
+        @Override
+        public void messageReceived(FinishRequest request, TransportChannel channel, Task task) throws Exception {
+            finish(request);
+            channel.sendResponse(TransportResponse.Empty.INSTANCE);
+        }
+    }
+
+    /**
+     * Starts a segment copy session for a replica, given the metadata of its store.
+     */
+    public static final class StartRequest extends TransportRequest {
+        private final ShardId shardId;
+        private final String targetAllocationId;
+        private final Store.MetadataSnapshot metadataSnapshot;
+
+        public StartRequest(ShardId shardId, String targetAllocationId, Store.MetadataSnapshot metadataSnapshot) {
+            this.shardId = shardId;
+            this.targetAllocationId = targetAllocationId;
+            this.metadataSnapshot = metadataSnapshot;
+        }
+
+        public StartRequest(StreamInput in) throws IOException {
+            super(in);
+            shardId = new ShardId(in);
+            targetAllocationId = in.readString();
+            metadataSnapshot = new Store.MetadataSnapshot(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            shardId.writeTo(out);
+            out.writeString(targetAllocationId);
+            metadataSnapshot.writeTo(out);
+        }
+
+        public ShardId shardId() {
+            return shardId;
+        }
+
+        public String targetAllocationId() {
+            return targetAllocationId;
+        }
+
+        public Store.MetadataSnapshot metadataSnapshot() {
+            return metadataSnapshot;
+        }
+    }
+
+    /**
+     * The metadata of the commit that a segment copy session copies and the files of that commit that the replica is missing, which are
+     * empty if the replica is up to date, in which case no session was started.
+     */
+    public static final class StartResponse extends TransportResponse {
+        private final long sessionId;
+        private final Store.MetadataSnapshot metadataSnapshot;
+        private final List<StoreFileMetaData> files;
+
+        StartResponse(long sessionId, Store.MetadataSnapshot metadataSnapshot, List<StoreFileMetaData> files) {
+            this.sessionId = sessionId;
+            this.metadataSnapshot = metadataSnapshot;
+            this.files = files;
+        }
+
+        static StartResponse upToDate() {
+            return new StartResponse(NO_SESSION, Store.MetadataSnapshot.EMPTY, Collections.emptyList());
+        }
+
+        public StartResponse(StreamInput in) throws IOException {
+            super(in);
+            sessionId = in.readVLong();
+            metadataSnapshot = new Store.MetadataSnapshot(in);
+            files = in.readList(StoreFileMetaData::new);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(sessionId);
+            metadataSnapshot.writeTo(out);
+            out.writeList(files);
+        }
+
+        public long sessionId() {
+            return sessionId;
+        }
+
+        public Store.MetadataSnapshot metadataSnapshot() {
+            return metadataSnapshot;
+        }
+
+        public List<StoreFileMetaData> files() {
+            return files;
+        }
+    }
+
+    /**
+     * Reads a chunk of one of the files of a segment copy session.
+     */
+    public static final class FileChunkRequest extends TransportRequest {
+        private final long sessionId;
+        private final String name;
+        private final long position;
+        private final int length;
+
+        public FileChunkRequest(long sessionId, String name, long position, int length) {
+            this.sessionId = sessionId;
+            this.name = name;
+            this.position = position;
+            this.length = length;
+        }
+
+        public FileChunkRequest(StreamInput in) throws IOException {
+            super(in);
+            sessionId = in.readVLong();
+            name = in.readString();
+            position = in.readVLong();
+            length = in.readVInt();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeVLong(sessionId);
+            out.writeString(name);
+            out.writeVLong(position);
+            out.writeVInt(length);
+        }
+
+        public long sessionId() {
+            return sessionId;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long position() {
+            return position;
+        }
+
+        public int length() {
+            return length;
+        }
+    }
+
+    public static final class FileChunkResponse extends TransportResponse {
+        private final BytesReference content;
+
+        FileChunkResponse(BytesReference content) {
+            this.content = content;
+        }
+
+        public FileChunkResponse(StreamInput in) throws IOException {
+            super(in);
+            content = in.readBytesReference();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeBytesReference(content);
+        }
+
+        public BytesReference content() {
+            return content;
+        }
+    }
+
+    /**
+     * Finishes a segment copy session, which releases the commit it copies.
+     */
+    public static final class FinishRequest extends TransportRequest {
+        private final long sessionId;
+
+        public FinishRequest(long sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        public FinishRequest(StreamInput in) throws IOException {
+            super(in);
+            sessionId = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeVLong(sessionId);
+        }
+
+        public long sessionId() {
+            return sessionId;
+        }
+    }
+}
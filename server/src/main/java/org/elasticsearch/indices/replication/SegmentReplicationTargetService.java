@@ -0,0 +1,311 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.replication;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionListenerResponseHandler;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractAsyncTask;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.shard.IllegalIndexShardStateException;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexShardClosedException;
+import org.elasticsearch.index.shard.IndexShardState;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.store.StoreFileMetaData;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.recovery.MultiFileWriter;
+import org.elasticsearch.indices.recovery.RecoverySettings;
+import org.elasticsearch.indices.recovery.RecoveryState;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Periodically brings the replicas of indices that use segment replication up to date with their primary. For every started replica
+ * on this node, it starts a copy session on the node of the primary, fetches the files of the primary's last commit that the replica
+ * is missing into temporary files, and then lets the shard swap its engine for one that is opened on the copied commit.
+ * <p>
+ * The files are copied with the {@link MultiFileWriter} of peer recoveries, in chunks of {@link RecoverySettings#getChunkSize()}. A
+ * shard copies at most one commit at a time, and a round that finds the replica up to date neither copies files nor opens a new engine.
+ *
+ * @see SegmentReplicationSourceService
+ */
+public class SegmentReplicationTargetService extends AbstractLifecycleComponent {
+
+    private static final Logger logger = LogManager.getLogger(SegmentReplicationTargetService.class);
+
+    /** How often replicas of indices that use segment replication copy the last commit of their primary. */
+    public static final Setting<TimeValue> SEGMENT_REPLICATION_INTERVAL_SETTING =
+        Setting.timeSetting("indices.replication.segment.interval", TimeValue.timeValueSeconds(1), TimeValue.timeValueMillis(100),
+            Property.NodeScope, Property.Dynamic);
+
+    private static final String TEMP_FILE_PREFIX = "segment_replication.";
+
+    private final ThreadPool threadPool;
+    private final TransportService transportService;
+    private final ClusterService clusterService;
+    private final IndicesService indicesService;
+    private final RecoverySettings recoverySettings;
+    private final CopyTask copyTask;
+    private final Set<ShardId> ongoingCopies = ConcurrentCollections.newConcurrentSet();
+
+    public SegmentReplicationTargetService(Settings settings, ThreadPool threadPool, TransportService transportService,
+                                           ClusterService clusterService, IndicesService indicesService,
+                                           RecoverySettings recoverySettings) {
+        this.threadPool = threadPool;
+        this.transportService = transportService;
+        this.clusterService = clusterService;
+        this.indicesService = indicesService;
+        this.recoverySettings = recoverySettings;
+        this.copyTask = new CopyTask(SEGMENT_REPLICATION_INTERVAL_SETTING.get(settings));
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(SEGMENT_REPLICATION_INTERVAL_SETTING, copyTask::setInterval);
+    }
+
+    @Override
+    protected void doStart() {
+        copyTask.rescheduleIfNecessary();
+    }
+
+    @Override
+    protected void doStop() {
+        copyTask.cancel();
+    }
+
+    @Override
+    protected void doClose() {
+        copyTask.close();
+    }
+
+    private void copyFromPrimaries() {
+        for (IndexService indexService : indicesService) {
+            if (indexService.getIndexSettings().isSegmentReplication() == false) {
+                continue;
+            }
+            for (IndexShard shard : indexService) {
+                if (shard.routingEntry().primary() || shard.state() != IndexShardState.STARTED) {
+                    continue;
+                }
+                final ShardId shardId = shard.shardId();
+                if (ongoingCopies.add(shardId)) {
+                    final ActionListener<Void> listener = ActionListener.runAfter(ActionListener.wrap(r -> {},
+                        e -> logger.debug(() -> new ParameterizedMessage("{} failed to copy segments from the primary", shardId), e)),
+                        () -> ongoingCopies.remove(shardId));
+                    try {
+                        copyFromPrimary(shard, listener);
+                    } catch (Exception e) {
+                        listener.onFailure(e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the files of the last commit of the primary of the given replica that the replica is missing and opens them.
+     */
+    void copyFromPrimary(IndexShard shard, ActionListener<Void> listener) {
+        final ShardId shardId = shard.shardId();
+        final ClusterState state = clusterService.state();
+        final ShardRouting primary = state.routingTable().shardRoutingTable(shardId).primaryShard();
+        final DiscoveryNode primaryNode = primary == null || primary.active() == false ? null : state.nodes().get(primary.currentNodeId());
+        if (primaryNode == null) {
+            logger.trace("{} skipping segment copy, primary is not active", shardId);
+            listener.onResponse(null);
+            return;
+        }
+        copyFromPrimary(shard, primaryNode, listener);
+    }
+
+    void copyFromPrimary(IndexShard shard, DiscoveryNode primaryNode, ActionListener<Void> listener) {
+        final ShardId shardId = shard.shardId();
+        final Store store = shard.store();
+        if (store.tryIncRef() == false) {
+            listener.onResponse(null);
+            return;
+        }
+        final ActionListener<Void> releasingListener = ActionListener.runAfter(listener, store::decRef);
+        // the last commit of the replica is the copied commit rewritten for the local translog, whose segments file never matches the
+        // one of the primary, so the missing files are computed from the copied commit, and from the local store before the first copy
+        Store.MetadataSnapshot localMetadata = shard.getLastCopiedSegmentsMetaData();
+        if (localMetadata == null) {
+            try {
+                localMetadata = shard.snapshotStoreMetadata();
+            } catch (Exception e) {
+                releasingListener.onFailure(e);
+                return;
+            }
+        }
+        final SegmentReplicationSourceService.StartRequest request = new SegmentReplicationSourceService.StartRequest(shardId,
+            shard.routingEntry().allocationId().getId(), localMetadata);
+        transportService.sendRequest(primaryNode, SegmentReplicationSourceService.Actions.START, request,
+            new ActionListenerResponseHandler<>(ActionListener.wrap(
+                response -> {
+                    if (response.files().isEmpty()) {
+                        // the replica is up to date, the primary did not start a session
+                        releasingListener.onResponse(null);
+                    } else {
+                        new CopyContext(shard, primaryNode, response, releasingListener).copyNextChunk();
+                    }
+                },
+                releasingListener::onFailure),
+                SegmentReplicationSourceService.StartResponse::new, ThreadPool.Names.GENERIC));
+    }
+
+    private void finishSession(DiscoveryNode primaryNode, long sessionId) {
+        transportService.sendRequest(primaryNode, SegmentReplicationSourceService.Actions.FINISH,
+            new SegmentReplicationSourceService.FinishRequest(sessionId),
+            new ActionListenerResponseHandler<>(ActionListener.wrap(r -> {}, e -> logger.debug(
+                () -> new ParameterizedMessage("failed to finish segment copy session [{}] on [{}]", sessionId, primaryNode), e)),
+                in -> TransportResponse.Empty.INSTANCE, ThreadPool.Names.SAME));
+    }
+
+    /**
+     * The state of the copy of a single commit, whose files are fetched one chunk at a time.
+     */
+    private final class CopyContext {
+        private final IndexShard shard;
+        private final DiscoveryNode primaryNode;
+        private final SegmentReplicationSourceService.StartResponse session;
+        private final ActionListener<Void> listener;
+        private final MultiFileWriter writer;
+        private final int chunkSize;
+        private int fileIndex = 0;
+        private long position = 0;
+
+        CopyContext(IndexShard shard, DiscoveryNode primaryNode, SegmentReplicationSourceService.StartResponse session,
+                    ActionListener<Void> listener) {
+            this.shard = shard;
+            this.primaryNode = primaryNode;
+            this.session = session;
+            this.listener = listener;
+            this.chunkSize = Math.toIntExact(recoverySettings.getChunkSize().getBytes());
+            final RecoveryState.Index indexState = new RecoveryState.Index();
+            for (StoreFileMetaData file : session.files()) {
+                indexState.addFileDetail(file.name(), file.length(), false);
+            }
+            this.writer = new MultiFileWriter(shard.store(), indexState, TEMP_FILE_PREFIX + UUIDs.randomBase64UUID() + ".", logger,
+                this::ensureOpen);
+        }
+
+        private void ensureOpen() {
+            if (shard.state() == IndexShardState.CLOSED) {
+                throw new IndexShardClosedException(shard.shardId());
+            }
+        }
+
+        void copyNextChunk() {
+            final List<StoreFileMetaData> files = session.files();
+            while (fileIndex < files.size() && position >= files.get(fileIndex).length()) {
+                fileIndex++;
+                position = 0;
+            }
+            if (fileIndex == files.size()) {
+                threadPool.generic().execute(this::openCopiedSegments);
+                return;
+            }
+            final StoreFileMetaData file = files.get(fileIndex);
+            final long chunkPosition = position;
+            final int length = Math.toIntExact(Math.min(chunkSize, file.length() - chunkPosition));
+            transportService.sendRequest(primaryNode, SegmentReplicationSourceService.Actions.FILE_CHUNK,
+                new SegmentReplicationSourceService.FileChunkRequest(session.sessionId(), file.name(), chunkPosition, length),
+                new ActionListenerResponseHandler<>(ActionListener.wrap(
+                    response -> {
+                        final boolean lastChunk = chunkPosition + length == file.length();
+                        writer.writeFileChunk(file, chunkPosition, response.content(), lastChunk);
+                        position = chunkPosition + length;
+                        copyNextChunk();
+                    },
+                    this::onFailure),
+                    SegmentReplicationSourceService.FileChunkResponse::new, ThreadPool.Names.GENERIC));
+        }
+
+        private void openCopiedSegments() {
+            // the copied files don't depend on the commit of the primary anymore
+            finishSession(primaryNode, session.sessionId());
+            try {
+                shard.openCopiedSegments(session.metadataSnapshot(), writer::renameAllTempFiles);
+                logger.trace("{} opened {} files copied from the primary", shard.shardId(), session.files().size());
+                writer.close();
+                listener.onResponse(null);
+            } catch (IllegalIndexShardStateException | AlreadyClosedException | TimeoutException | InterruptedException e) {
+                // the shard was closed or promoted concurrently, or could not block operations, it kept its engine
+                writer.close();
+                listener.onFailure(e);
+            } catch (Exception e) {
+                writer.close();
+                shard.failShard("failed to open segments copied from the primary", e);
+                listener.onFailure(e);
+            }
+        }
+
+        private void onFailure(Exception e) {
+            finishSession(primaryNode, session.sessionId());
+            writer.close();
+            listener.onFailure(e);
+        }
+    }
+
+    private final class CopyTask extends AbstractAsyncTask {
+
+        CopyTask(TimeValue interval) {
+            super(logger, threadPool, interval, true);
+        }
+
+        @Override
+        protected boolean mustReschedule() {
+            return true;
+        }
+
+        @Override
+        protected void runInternal() {
+            copyFromPrimaries();
+        }
+
+        @Override
+        protected String getThreadPool() {
+            return ThreadPool.Names.GENERIC;
+        }
+
+        @Override
+        public String toString() {
+            return "segment_replication";
+        }
+    }
+}
@@ -195,9 +195,25 @@ public class RestController implements HttpServerTransport.Dispatcher {
         }
     }
 
+    @Override
+    public boolean supportsIncrementalContent(RestRequest.Method method, String uri) {
+        final int pathEndPos = uri.indexOf('?');
+        final String rawPath = pathEndPos < 0 ? uri : uri.substring(0, pathEndPos);
+        final Iterator<MethodHandlers> allHandlers = getAllHandlers(null, rawPath);
+        while (allHandlers.hasNext()) {
+            final MethodHandlers handlers = allHandlers.next();
+            final RestHandler handler = handlers == null ? null : handlers.getHandler(method);
+            if (handler != null) {
+                // this is the handler that the request will be dispatched to
+                return handler.supportsIncrementalContent();
+            }
+        }
+        return false;
+    }
+
     private void dispatchRequest(RestRequest request, RestChannel channel, RestHandler handler) throws Exception {
         final int contentLength = request.contentLength();
-        if (contentLength > 0) {
+        if (contentLength > 0 || request.isContentStreamed()) {
             final XContentType xContentType = request.getXContentType();
             if (xContentType == null) {
                 sendContentTypeErrorMessage(request.getAllHeaderValues("Content-Type"), channel);
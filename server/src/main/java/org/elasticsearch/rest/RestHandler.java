@@ -48,6 +48,16 @@ public interface RestHandler {
         return false;
     }
 
+    /**
+     * Indicates if the RestHandler consumes the content of requests incrementally, as it is received. The http transport may then
+     * dispatch requests before their content has been received, in which case {@link RestRequest#isContentStreamed()} is set and
+     * the content must be consumed from {@link RestRequest#contentStream()}. Handlers must still support requests whose content
+     * was received before they were dispatched.
+     */
+    default boolean supportsIncrementalContent() {
+        return false;
+    }
+
     /**
      * Indicates if the RestHandler supports working with pooled buffers. If the request handler will not escape the return
      * {@link RestRequest#content()} or any buffers extracted from it then there is no need to make a copies of any pooled buffers in the
@@ -36,6 +36,7 @@ import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.http.HttpChannel;
+import org.elasticsearch.http.HttpContentStream;
 import org.elasticsearch.http.HttpRequest;
 
 import java.io.IOException;
@@ -208,6 +209,26 @@ public class RestRequest implements ToXContent.Params {
         return httpRequest.content();
     }
 
+    /**
+     * Whether the content of this request is received incrementally through {@link #contentStream()} rather than being available
+     * from {@link #content()}. This is only the case for handlers that {@link RestHandler#supportsIncrementalContent() support it}.
+     */
+    public boolean isContentStreamed() {
+        return httpRequest.contentStream() != null;
+    }
+
+    /**
+     * Returns the stream over which the content of this request is received, see {@link #isContentStreamed()}.
+     */
+    public HttpContentStream contentStream() {
+        final HttpContentStream contentStream = httpRequest.contentStream();
+        if (contentStream == null) {
+            throw new IllegalStateException("the content of the request isn't streamed");
+        }
+        this.contentConsumed = true;
+        return contentStream;
+    }
+
     /**
      * @return content of the request body or throw an exception if the body or content type is missing
      */
@@ -17,7 +17,7 @@
  * under the License.
  */
 
-package org.elasticsearch.rest.action.search;
+package org.elasticsearch.rest.action;
 
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
@@ -26,7 +26,7 @@ import org.elasticsearch.action.ActionType;
 import org.elasticsearch.action.admin.cluster.node.tasks.cancel.CancelTasksRequest;
 import org.elasticsearch.action.admin.cluster.node.tasks.cancel.CancelTasksResponse;
 import org.elasticsearch.action.support.ContextPreservingActionListener;
-import org.elasticsearch.client.Client;
+import org.elasticsearch.client.FilterClient;
 import org.elasticsearch.client.node.NodeClient;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.http.HttpChannel;
@@ -40,31 +40,60 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * This class executes a request and associates the corresponding {@link Task} with the {@link HttpChannel} that it was originated from,
- * so that the tasks associated with a certain channel get cancelled when the underlying connection gets closed.
+ * A {@linkplain org.elasticsearch.client.Client} that cancels the tasks of the actions it executes, along with their
+ * child tasks, when the {@link HttpChannel} that the request was received on gets closed. REST handlers that execute
+ * potentially long-running actions on behalf of a client should wrap their {@link NodeClient} with this client so
+ * that the work is not carried on after the client went away.
  */
-public final class HttpChannelTaskHandler {
+public class RestCancellableNodeClient extends FilterClient {
+    private static final Map<HttpChannel, CloseListener> httpChannels = new ConcurrentHashMap<>();
 
-    public static final HttpChannelTaskHandler INSTANCE = new HttpChannelTaskHandler();
-    //package private for testing
-    final Map<HttpChannel, CloseListener> httpChannels = new ConcurrentHashMap<>();
+    private final NodeClient client;
+    private final HttpChannel httpChannel;
 
-    private HttpChannelTaskHandler() {
+    public RestCancellableNodeClient(NodeClient client, HttpChannel httpChannel) {
+        super(client);
+        this.client = client;
+        this.httpChannel = httpChannel;
     }
 
-    <Response extends ActionResponse> void execute(NodeClient client, HttpChannel httpChannel, ActionRequest request,
-                                                   ActionType<Response> actionType, ActionListener<Response> listener) {
+    /**
+     * Returns the number of channels tracked globally.
+     */
+    public static int getNumChannels() {
+        return httpChannels.size();
+    }
+
+    /**
+     * Returns the number of tasks tracked globally.
+     */
+    static int getNumTasks() {
+        return httpChannels.values().stream()
+            .mapToInt(CloseListener::getNumTasks)
+            .sum();
+    }
+
+    /**
+     * Returns the number of tasks tracked by the provided {@link HttpChannel}.
+     */
+    static int getNumTasks(HttpChannel channel) {
+        CloseListener listener = httpChannels.get(channel);
+        return listener == null ? 0 : listener.getNumTasks();
+    }
 
-        CloseListener closeListener = httpChannels.computeIfAbsent(httpChannel, channel -> new CloseListener(client));
+    @Override
+    protected <Request extends ActionRequest, Response extends ActionResponse> void doExecute(
+            ActionType<Response> action, Request request, ActionListener<Response> listener) {
+        CloseListener closeListener = httpChannels.computeIfAbsent(httpChannel, channel -> new CloseListener());
         TaskHolder taskHolder = new TaskHolder();
-        Task task = client.executeLocally(actionType, request,
+        Task task = client.executeLocally(action, request,
             new ActionListener<>() {
                 @Override
-                public void onResponse(Response searchResponse) {
+                public void onResponse(Response response) {
                     try {
                         closeListener.unregisterTask(taskHolder);
                     } finally {
-                        listener.onResponse(searchResponse);
+                        listener.onResponse(response);
                     }
                 }
 
@@ -81,20 +110,29 @@ public final class HttpChannelTaskHandler {
         closeListener.maybeRegisterChannel(httpChannel);
     }
 
-    public int getNumChannels() {
-        return httpChannels.size();
+    private void cancelTask(TaskId taskId) {
+        ThreadContext threadContext = client.threadPool().getThreadContext();
+        try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+            // we stash any context here since this is an internal execution and should not leak any existing context information
+            threadContext.markAsSystemContext();
+            ContextPreservingActionListener<CancelTasksResponse> contextPreservingListener = new ContextPreservingActionListener<>(
+                threadContext.newRestorableContext(false), ActionListener.wrap(r -> {}, e -> {}));
+            CancelTasksRequest cancelTasksRequest = new CancelTasksRequest();
+            cancelTasksRequest.setTaskId(taskId);
+            cancelTasksRequest.setReason("channel closed");
+            // we don't wait for cancel tasks to come back. Task cancellation is just best effort.
+            client.admin().cluster().cancelTasks(cancelTasksRequest, contextPreservingListener);
+        }
     }
 
-    final class CloseListener implements ActionListener<Void> {
-        private final Client client;
+    private class CloseListener implements ActionListener<Void> {
         private final AtomicReference<HttpChannel> channel = new AtomicReference<>();
         private final Set<TaskId> taskIds = new HashSet<>();
 
-        CloseListener(Client client) {
-            this.client = client;
+        CloseListener() {
         }
 
-        int getNumTasks() {
+        synchronized int getNumTasks() {
             return taskIds.size();
         }
 
@@ -102,7 +140,7 @@ public final class HttpChannelTaskHandler {
             if (channel.compareAndSet(null, httpChannel)) {
                 //In case the channel is already closed when we register the listener, the listener will be immediately executed which will
                 //remove the channel from the map straight-away. That is why we first create the CloseListener and later we associate it
-                //with the channel. This guarantees that the close listener is already in the map when the it gets registered to its
+                //with the channel. This guarantees that the close listener is already in the map when it gets registered to its
                 //corresponding channel, hence it is always found in the map when it gets invoked if the channel gets closed.
                 httpChannel.addCloseListener(this);
             }
@@ -123,22 +161,19 @@ public final class HttpChannelTaskHandler {
         }
 
         @Override
-        public synchronized void onResponse(Void aVoid) {
-            //When the channel gets closed it won't be reused: we can remove it from the map and forget about it.
-            CloseListener closeListener = httpChannels.remove(channel.get());
+        public void onResponse(Void aVoid) {
+            final HttpChannel httpChannel = channel.get();
+            assert httpChannel != null : "channel not registered";
+            // when the channel gets closed it won't be reused: we can remove it from the map and forget about it.
+            CloseListener closeListener = httpChannels.remove(httpChannel);
             assert closeListener != null : "channel not found in the map of tracked channels";
-            for (TaskId taskId : taskIds) {
-                ThreadContext threadContext = client.threadPool().getThreadContext();
-                try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
-                    // we stash any context here since this is an internal execution and should not leak any existing context information
-                    threadContext.markAsSystemContext();
-                    ContextPreservingActionListener<CancelTasksResponse> contextPreservingListener = new ContextPreservingActionListener<>(
-                        threadContext.newRestorableContext(false),  ActionListener.wrap(r -> {}, e -> {}));
-                    CancelTasksRequest cancelTasksRequest = new CancelTasksRequest();
-                    cancelTasksRequest.setTaskId(taskId);
-                    //We don't wait for cancel tasks to come back. Task cancellation is just best effort.
-                    client.admin().cluster().cancelTasks(cancelTasksRequest, contextPreservingListener);
-                }
+            final Set<TaskId> toCancel;
+            synchronized (this) {
+                toCancel = new HashSet<>(taskIds);
+                taskIds.clear();
+            }
+            for (TaskId taskId : toCancel) {
+                cancelTask(taskId);
             }
         }
 
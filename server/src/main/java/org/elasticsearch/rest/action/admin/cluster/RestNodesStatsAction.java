@@ -68,7 +68,9 @@ public class RestNodesStatsAction extends BaseRestHandler {
             entry("script", r -> r.script(true)),
             entry("discovery", r -> r.discovery(true)),
             entry("ingest", r -> r.ingest(true)),
-            entry("adaptive_selection", r -> r.adaptiveSelection(true)));
+            entry("adaptive_selection", r -> r.adaptiveSelection(true)),
+            entry("indexing_pressure", r -> r.indexingPressure(true)),
+            entry("translog_sync", r -> r.translogSync(true)));
 
     static final Map<String, Consumer<CommonStatsFlags>> FLAGS;
 
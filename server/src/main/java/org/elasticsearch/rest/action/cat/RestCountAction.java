@@ -31,6 +31,7 @@ import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.rest.action.RestActions;
+import org.elasticsearch.rest.action.RestCancellableNodeClient;
 import org.elasticsearch.rest.action.RestResponseListener;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 
@@ -75,13 +76,16 @@ public class RestCountAction extends AbstractCatAction {
         } catch (IOException e) {
             throw new ElasticsearchException("Couldn't parse query", e);
         }
-        return channel -> client.search(countRequest, new RestResponseListener<SearchResponse>(channel) {
-            @Override
-            public RestResponse buildResponse(SearchResponse countResponse) throws Exception {
-                assert countResponse.getHits().getTotalHits().relation == TotalHits.Relation.EQUAL_TO;
-                return RestTable.buildResponse(buildTable(request, countResponse), channel);
-            }
-        });
+        return channel -> {
+            RestCancellableNodeClient cancelClient = new RestCancellableNodeClient(client, request.getHttpChannel());
+            cancelClient.search(countRequest, new RestResponseListener<SearchResponse>(channel) {
+                @Override
+                public RestResponse buildResponse(SearchResponse countResponse) throws Exception {
+                    assert countResponse.getHits().getTotalHits().relation == TotalHits.Relation.EQUAL_TO;
+                    return RestTable.buildResponse(buildTable(request, countResponse), channel);
+                }
+            });
+        };
     }
 
     @Override
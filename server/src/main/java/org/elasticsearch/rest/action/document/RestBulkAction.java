@@ -19,20 +19,50 @@
 
 package org.elasticsearch.rest.action.document;
 
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkRequestParser;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.bulk.BulkShardRequest;
 import org.elasticsearch.action.support.ActiveShardCount;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.http.HttpContentStream;
 import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.rest.action.RestStatusToXContentListener;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import static java.util.Collections.singletonMap;
+import static org.elasticsearch.ElasticsearchException.REST_EXCEPTION_SKIP_STACK_TRACE;
+import static org.elasticsearch.ElasticsearchException.REST_EXCEPTION_SKIP_STACK_TRACE_DEFAULT;
 import static org.elasticsearch.rest.RestRequest.Method.POST;
 import static org.elasticsearch.rest.RestRequest.Method.PUT;
 
@@ -47,7 +77,27 @@ import static org.elasticsearch.rest.RestRequest.Method.PUT;
  */
 public class RestBulkAction extends BaseRestHandler {
 
+    /**
+     * Whether the items of bulk requests are executed as their content is received, in batches, rather than once the whole content
+     * has been received. Each batch is a separate bulk request and the in-flight requests circuit breaker does not account for the
+     * streamed content. See {@link StreamedBulk} for how this changes the outcome of a request with a malformed item.
+     */
+    public static final Setting<Boolean> STREAM_CONTENT_SETTING =
+        Setting.boolSetting("rest.action.bulk.stream_content", false, Property.NodeScope);
+
+    /**
+     * The size of the batches in which the items of a streamed bulk request are executed.
+     */
+    static final long STREAMED_BATCH_SIZE_IN_BYTES = new ByteSizeValue(5, ByteSizeUnit.MB).getBytes();
+
+    /**
+     * The maximum number of batches of a streamed bulk request that are executed concurrently before reading the rest of the
+     * content is paused.
+     */
+    static final int STREAMED_MAX_IN_FLIGHT_BATCHES = 2;
+
     private final boolean allowExplicitIndex;
+    private final boolean streamContent;
 
     public RestBulkAction(Settings settings, RestController controller) {
         controller.registerHandler(POST, "/_bulk", this);
@@ -56,6 +106,7 @@ public class RestBulkAction extends BaseRestHandler {
         controller.registerHandler(PUT, "/{index}/_bulk", this);
 
         this.allowExplicitIndex = MULTI_ALLOW_EXPLICIT_INDEX.get(settings);
+        this.streamContent = STREAM_CONTENT_SETTING.get(settings);
     }
 
     @Override
@@ -65,17 +116,36 @@ public class RestBulkAction extends BaseRestHandler {
 
     @Override
     public RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
-        BulkRequest bulkRequest = Requests.bulkRequest();
         String defaultIndex = request.param("index");
         String defaultRouting = request.param("routing");
         FetchSourceContext defaultFetchSourceContext = FetchSourceContext.parseFromRestRequest(request);
         String defaultPipeline = request.param("pipeline");
         String waitForActiveShards = request.param("wait_for_active_shards");
-        if (waitForActiveShards != null) {
-            bulkRequest.waitForActiveShards(ActiveShardCount.parseString(waitForActiveShards));
+        ActiveShardCount activeShardCount = waitForActiveShards == null ? null : ActiveShardCount.parseString(waitForActiveShards);
+        TimeValue timeout = request.paramAsTime("timeout", BulkShardRequest.DEFAULT_TIMEOUT);
+        String refresh = request.param("refresh");
+        Supplier<BulkRequest> bulkRequestSupplier = () -> {
+            BulkRequest bulkRequest = Requests.bulkRequest();
+            if (activeShardCount != null) {
+                bulkRequest.waitForActiveShards(activeShardCount);
+            }
+            bulkRequest.timeout(timeout);
+            bulkRequest.setRefreshPolicy(refresh);
+            return bulkRequest;
+        };
+
+        if (request.isContentStreamed()) {
+            HttpContentStream contentStream = request.contentStream();
+            XContentType xContentType = request.getXContentType();
+            Function<Consumer<DocWriteRequest<?>>, BulkRequestParser.IncrementalParser> parserFactory = itemConsumer ->
+                new BulkRequestParser(true).incrementalParser(defaultIndex, defaultRouting, defaultFetchSourceContext, defaultPipeline,
+                    allowExplicitIndex, xContentType, (indexRequest, type) -> itemConsumer.accept(indexRequest), itemConsumer::accept,
+                    itemConsumer::accept);
+            return channel -> contentStream.setHandler(
+                new StreamedBulk(client, channel, contentStream, bulkRequestSupplier, parserFactory));
         }
-        bulkRequest.timeout(request.paramAsTime("timeout", BulkShardRequest.DEFAULT_TIMEOUT));
-        bulkRequest.setRefreshPolicy(request.param("refresh"));
+
+        BulkRequest bulkRequest = bulkRequestSupplier.get();
         bulkRequest.add(request.requiredContent(), defaultIndex, defaultRouting,
             defaultFetchSourceContext, defaultPipeline, allowExplicitIndex, request.getXContentType());
 
@@ -87,8 +157,230 @@ public class RestBulkAction extends BaseRestHandler {
         return true;
     }
 
+    @Override
+    public boolean supportsIncrementalContent() {
+        return streamContent;
+    }
+
     @Override
     public boolean allowsUnsafeBuffers() {
         return true;
     }
+
+    /**
+     * Executes a bulk request whose content is streamed. Items are parsed as the content is received and executed in batches of
+     * {@link #STREAMED_BATCH_SIZE_IN_BYTES}, so that indexing starts before the whole content has been received and only the items
+     * of the batches in flight are held in memory. Reading the content is paused while {@link #STREAMED_MAX_IN_FLIGHT_BATCHES}
+     * batches are executing. The responses of the batches are merged into a single response once the last one has completed.
+     * <p>
+     * Unlike a bulk request whose content is received at once, a malformed item only fails the request after the items of the
+     * batches before it may have been executed. The request then fails once these batches have completed, and the error response
+     * lists the items that were executed.
+     */
+    static final class StreamedBulk implements HttpContentStream.Handler {
+
+        private final NodeClient client;
+        private final RestChannel channel;
+        private final HttpContentStream contentStream;
+        private final Supplier<BulkRequest> bulkRequestSupplier;
+        private final BulkRequestParser.IncrementalParser parser;
+        private final Supplier<ThreadContext.StoredContext> threadContextSupplier;
+        private final long startTimeNanos = System.nanoTime();
+
+        // the items of each batch, or null while it is executing
+        private final List<BulkItemResponse[]> batchResponses = new ArrayList<>();
+        private BulkRequest batch;
+        private long ingestTookInMillis = BulkResponse.NO_INGEST_TOOK;
+        private int inFlightBatches;
+        private boolean readingPaused;
+        private boolean lastChunkReceived;
+        // the failure to receive or parse the content, which fails the request once the batches in flight have completed
+        private Exception contentFailure;
+        private boolean done;
+
+        StreamedBulk(NodeClient client, RestChannel channel, HttpContentStream contentStream, Supplier<BulkRequest> bulkRequestSupplier,
+                     Function<Consumer<DocWriteRequest<?>>, BulkRequestParser.IncrementalParser> parserFactory) {
+            this.client = client;
+            this.channel = channel;
+            this.contentStream = contentStream;
+            this.bulkRequestSupplier = bulkRequestSupplier;
+            this.parser = parserFactory.apply(item -> batch.add(item));
+            // chunks are received on network threads, so the batches must be executed in the context of the request
+            this.threadContextSupplier = client.threadPool().getThreadContext().newRestorableContext(false);
+            this.batch = bulkRequestSupplier.get();
+        }
+
+        @Override
+        public void onChunk(BytesReference chunk, boolean isLast) {
+            BulkRequest toExecute = null;
+            int slot = -1;
+            boolean parseFailed = false;
+            synchronized (this) {
+                if (done || contentFailure != null) {
+                    return;
+                }
+                try {
+                    parser.parse(chunk, isLast);
+                } catch (Exception e) {
+                    // the items of the current batch are not executed
+                    contentFailure = e;
+                    parseFailed = true;
+                }
+                lastChunkReceived = isLast;
+                if (parseFailed == false && ((isLast && (batch.numberOfActions() > 0 || batchResponses.isEmpty()))
+                        || batch.estimatedSizeInBytes() >= STREAMED_BATCH_SIZE_IN_BYTES)) {
+                    toExecute = batch;
+                    slot = batchResponses.size();
+                    batchResponses.add(null);
+                    batch = bulkRequestSupplier.get();
+                    if (++inFlightBatches >= STREAMED_MAX_IN_FLIGHT_BATCHES && isLast == false && readingPaused == false) {
+                        readingPaused = true;
+                        contentStream.pauseReading();
+                    }
+                }
+            }
+            if (toExecute != null) {
+                executeBatch(slot, toExecute);
+            } else if (parseFailed || isLast) {
+                // the request completes with the batches that are already executing
+                maybeRespond();
+            }
+        }
+
+        private void executeBatch(int slot, BulkRequest request) {
+            try (ThreadContext.StoredContext ignore = threadContextSupplier.get()) {
+                client.bulk(request, ActionListener.wrap(
+                    response -> onBatchCompleted(slot, request, response, null),
+                    e -> onBatchCompleted(slot, request, null, e)));
+            }
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            synchronized (this) {
+                if (done || contentFailure != null) {
+                    return;
+                }
+                contentFailure = e;
+            }
+            maybeRespond();
+        }
+
+        private void onBatchCompleted(int slot, BulkRequest request, BulkResponse response, Exception failure) {
+            boolean requestFailed = false;
+            synchronized (this) {
+                inFlightBatches--;
+                if (done) {
+                    return;
+                }
+                if (failure == null) {
+                    batchResponses.set(slot, response.getItems());
+                    ingestTookInMillis = Math.max(ingestTookInMillis, response.getIngestTookInMillis());
+                } else if (lastChunkReceived && contentFailure == null && batchResponses.size() == 1) {
+                    // all items were executed at once, so the request fails like a bulk request whose content isn't streamed
+                    done = true;
+                    requestFailed = true;
+                } else {
+                    batchResponses.set(slot, failedItems(request, failure));
+                }
+                if (readingPaused && inFlightBatches < STREAMED_MAX_IN_FLIGHT_BATCHES) {
+                    readingPaused = false;
+                    contentStream.resumeReading();
+                }
+            }
+            if (requestFailed) {
+                sendFailure(failure);
+            } else {
+                maybeRespond();
+            }
+        }
+
+        private void maybeRespond() {
+            final BulkResponse response;
+            final Exception failure;
+            synchronized (this) {
+                if (done || (lastChunkReceived == false && contentFailure == null) || inFlightBatches > 0) {
+                    return;
+                }
+                done = true;
+                response = mergeResponses();
+                failure = contentFailure;
+            }
+            // sending a response discards the rest of the content, which synchronizes on the content stream, so it is done
+            // outside of the lock
+            if (failure == null) {
+                new RestStatusToXContentListener<BulkResponse>(channel).onResponse(response);
+            } else if (response.getItems().length == 0) {
+                sendFailure(failure);
+            } else {
+                sendFailure(failure, response);
+            }
+        }
+
+        private void sendFailure(Exception e) {
+            new RestStatusToXContentListener<BulkResponse>(channel).onFailure(e);
+        }
+
+        /**
+         * Fails the request with an error response that also lists the items of the batches that were executed before it failed.
+         */
+        private void sendFailure(Exception e, BulkResponse executed) {
+            final RestStatus status = ExceptionsHelper.status(e);
+            ToXContent.Params params = channel.request();
+            if (params.paramAsBoolean("error_trace", !REST_EXCEPTION_SKIP_STACK_TRACE_DEFAULT)) {
+                params = new ToXContent.DelegatingMapParams(singletonMap(REST_EXCEPTION_SKIP_STACK_TRACE, "false"), params);
+            }
+            try {
+                XContentBuilder builder = channel.newErrorBuilder().startObject();
+                ElasticsearchException.generateFailureXContent(builder, params, e, channel.detailedErrorsEnabled());
+                builder.field("status", status.getStatus());
+                builder.field("took", executed.getTook().getMillis());
+                builder.startArray("items");
+                for (BulkItemResponse item : executed) {
+                    item.toXContent(builder, params);
+                }
+                builder.endArray();
+                builder.endObject();
+                channel.sendResponse(new BytesRestResponse(status, builder));
+            } catch (Exception inner) {
+                inner.addSuppressed(e);
+                sendFailure(inner);
+            }
+        }
+
+        private BulkResponse mergeResponses() {
+            assert Thread.holdsLock(this);
+            int numItems = 0;
+            for (BulkItemResponse[] items : batchResponses) {
+                numItems += items.length;
+            }
+            final BulkItemResponse[] responses = new BulkItemResponse[numItems];
+            int offset = 0;
+            for (BulkItemResponse[] items : batchResponses) {
+                for (BulkItemResponse item : items) {
+                    // item ids are relative to the batch, they are made relative to the whole request
+                    final int id = offset + item.getItemId();
+                    if (offset == 0) {
+                        responses[id] = item;
+                    } else if (item.isFailed()) {
+                        responses[id] = new BulkItemResponse(id, item.getOpType(), item.getFailure());
+                    } else {
+                        responses[id] = new BulkItemResponse(id, item.getOpType(), (DocWriteResponse) item.getResponse());
+                    }
+                }
+                offset += items.length;
+            }
+            return new BulkResponse(responses, TimeValue.nsecToMSec(System.nanoTime() - startTimeNanos), ingestTookInMillis);
+        }
+
+        private static BulkItemResponse[] failedItems(BulkRequest request, Exception e) {
+            final BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+            for (int i = 0; i < items.length; i++) {
+                final DocWriteRequest<?> itemRequest = request.requests().get(i);
+                items[i] = new BulkItemResponse(i, itemRequest.opType(),
+                    new BulkItemResponse.Failure(itemRequest.index(), itemRequest.id(), e));
+            }
+            return items;
+        }
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.search;
+
+import org.elasticsearch.action.search.ClosePointInTimeAction;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestStatusToXContentListener;
+
+import java.io.IOException;
+
+import static org.elasticsearch.rest.RestRequest.Method.DELETE;
+
+public class RestClosePointInTimeAction extends BaseRestHandler {
+    public RestClosePointInTimeAction(RestController controller) {
+        controller.registerHandler(DELETE, "/_pit", this);
+    }
+
+    @Override
+    public String getName() {
+        return "close_point_in_time";
+    }
+
+    @Override
+    public RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
+        String id = null;
+        try (XContentParser parser = request.contentOrSourceParamParser()) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new IllegalArgumentException("Malformed content, must start with an object");
+            }
+            XContentParser.Token token;
+            while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                if (token == XContentParser.Token.FIELD_NAME && "id".equals(parser.currentName())) {
+                    parser.nextToken();
+                    id = parser.text();
+                } else if (token == XContentParser.Token.FIELD_NAME) {
+                    throw new IllegalArgumentException("Unknown parameter [" + parser.currentName() + "] in request body");
+                }
+            }
+        }
+        final ClosePointInTimeRequest closeRequest = new ClosePointInTimeRequest(id);
+        return channel -> client.execute(ClosePointInTimeAction.INSTANCE, closeRequest, new RestStatusToXContentListener<>(channel));
+    }
+}
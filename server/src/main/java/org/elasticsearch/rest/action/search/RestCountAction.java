@@ -32,6 +32,7 @@ import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.rest.action.RestActions;
+import org.elasticsearch.rest.action.RestCancellableNodeClient;
 import org.elasticsearch.rest.action.RestBuilderListener;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 
@@ -86,21 +87,24 @@ public class RestCountAction extends BaseRestHandler {
         } else if (terminateAfter > 0) {
             searchSourceBuilder.terminateAfter(terminateAfter);
         }
-        return channel -> client.search(countRequest, new RestBuilderListener<SearchResponse>(channel) {
-            @Override
-            public RestResponse buildResponse(SearchResponse response, XContentBuilder builder) throws Exception {
-                builder.startObject();
-                if (terminateAfter != DEFAULT_TERMINATE_AFTER) {
-                    builder.field("terminated_early", response.isTerminatedEarly());
-                }
-                builder.field("count", response.getHits().getTotalHits().value);
-                buildBroadcastShardsHeader(builder, request, response.getTotalShards(), response.getSuccessfulShards(),
-                    0, response.getFailedShards(), response.getShardFailures());
+        return channel -> {
+            RestCancellableNodeClient cancelClient = new RestCancellableNodeClient(client, request.getHttpChannel());
+            cancelClient.search(countRequest, new RestBuilderListener<SearchResponse>(channel) {
+                @Override
+                public RestResponse buildResponse(SearchResponse response, XContentBuilder builder) throws Exception {
+                    builder.startObject();
+                    if (terminateAfter != DEFAULT_TERMINATE_AFTER) {
+                        builder.field("terminated_early", response.isTerminatedEarly());
+                    }
+                    builder.field("count", response.getHits().getTotalHits().value);
+                    buildBroadcastShardsHeader(builder, request, response.getTotalShards(), response.getSuccessfulShards(),
+                        0, response.getFailedShards(), response.getShardFailures());
 
-                builder.endObject();
-                return new BytesRestResponse(response.status(), builder);
-            }
-        });
+                    builder.endObject();
+                    return new BytesRestResponse(response.status(), builder);
+                }
+            });
+        };
     }
 
 }
@@ -58,6 +58,7 @@ import org.elasticsearch.index.query.Rewriteable;
 import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.SearchOperationListener;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
 import org.elasticsearch.node.ResponseCollectorService;
@@ -82,6 +83,7 @@ import org.elasticsearch.search.fetch.subphase.ScriptFieldsContext.ScriptField;
 import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.InternalScrollSearchRequest;
+import org.elasticsearch.search.internal.ReaderContext;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.SearchContext.Lifetime;
@@ -143,6 +145,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     public static final Setting<Boolean> LOW_LEVEL_CANCELLATION_SETTING =
         Setting.boolSetting("search.low_level_cancellation", true, Property.Dynamic, Property.NodeScope);
 
+    /**
+     * Enables concurrent collection of the segments of a shard on the {@link Names#SEARCH_WORKER} thread pool for the parts of the
+     * query phase that support it. Profiled searches are always executed sequentially.
+     */
+    public static final Setting<Boolean> CONCURRENT_SEGMENT_SEARCH_SETTING =
+        Setting.boolSetting("search.concurrent_segment_search.enabled", false, Property.Dynamic, Property.NodeScope);
+
     public static final TimeValue NO_TIMEOUT = timeValueMillis(-1);
     public static final Setting<TimeValue> DEFAULT_SEARCH_TIMEOUT_SETTING =
         Setting.timeSetting("search.default_search_timeout", NO_TIMEOUT, Property.Dynamic, Property.NodeScope);
@@ -183,6 +192,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
     private volatile boolean lowLevelCancellation;
 
+    private volatile boolean concurrentSegmentSearch;
+
     private volatile int maxOpenScrollContext;
 
     private final Cancellable keepAliveReaper;
@@ -191,6 +202,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
     private final ConcurrentMapLong<SearchContext> activeContexts = ConcurrentCollections.newConcurrentMapLongWithAggressiveConcurrency();
 
+    private final ConcurrentMapLong<ReaderContext> activeReaders = ConcurrentCollections.newConcurrentMapLongWithAggressiveConcurrency();
+
     private final MultiBucketConsumerService multiBucketConsumerService;
 
     private final AtomicInteger openScrollContexts = new AtomicInteger();
@@ -229,6 +242,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
         lowLevelCancellation = LOW_LEVEL_CANCELLATION_SETTING.get(settings);
         clusterService.getClusterSettings().addSettingsUpdateConsumer(LOW_LEVEL_CANCELLATION_SETTING, this::setLowLevelCancellation);
+
+        concurrentSegmentSearch = CONCURRENT_SEGMENT_SEARCH_SETTING.get(settings);
+        clusterService.getClusterSettings().addSettingsUpdateConsumer(CONCURRENT_SEGMENT_SEARCH_SETTING, this::setConcurrentSegmentSearch);
     }
 
     private void validateKeepAlives(TimeValue defaultKeepAlive, TimeValue maxKeepAlive) {
@@ -265,6 +281,10 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         this.lowLevelCancellation = lowLevelCancellation;
     }
 
+    private void setConcurrentSegmentSearch(boolean concurrentSegmentSearch) {
+        this.concurrentSegmentSearch = concurrentSegmentSearch;
+    }
+
     @Override
     public void afterIndexRemoved(Index index, IndexSettings indexSettings, IndexRemovalReason reason) {
         // once an index is removed due to deletion or closing, we can just clean up all the pending search context information
@@ -296,6 +316,48 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         for (final SearchContext context : activeContexts.values()) {
             freeContext(context.id());
         }
+        for (final ReaderContext reader : activeReaders.values()) {
+            freeReaderContext(reader.id());
+        }
+    }
+
+    /**
+     * Opens a point in time reader context on the provided shard. The context pins the current reader of the shard
+     * until it is freed with {@link #freeReaderContext(long)} or until it is not accessed for longer than the
+     * provided keep alive.
+     */
+    public void openReaderContext(ShardId shardId, TimeValue keepAlive, ActionListener<Long> listener) {
+        try {
+            checkKeepAliveLimit(keepAlive.millis(), "point in time");
+            final IndexService indexService = indicesService.indexServiceSafe(shardId.getIndex());
+            final IndexShard shard = indexService.getShard(shardId.id());
+            // make sure that pending refreshes of search idle shards are applied before pinning the reader
+            shard.awaitShardSearchActive(ignored -> getExecutor(shard).execute(ActionRunnable.supply(listener, () -> {
+                final Engine.Searcher searcher = shard.acquireSearcherNoWrap("point_in_time");
+                final ReaderContext reader =
+                    new ReaderContext(idGenerator.incrementAndGet(), shard, searcher, keepAlive.millis(), threadPool::relativeTimeInMillis);
+                shard.getSearchOperationListener().onNewReaderContext(reader);
+                final ReaderContext previous = activeReaders.put(reader.id(), reader);
+                assert previous == null;
+                return reader.id();
+            })));
+        } catch (Exception exc) {
+            listener.onFailure(exc);
+        }
+    }
+
+    /**
+     * Frees the point in time reader context with the provided id. The pinned reader is released once the
+     * searches that are currently using it complete.
+     */
+    public boolean freeReaderContext(long id) {
+        try (ReaderContext reader = activeReaders.remove(id)) {
+            return reader != null;
+        }
+    }
+
+    public int getActiveReaderContexts() {
+        return activeReaders.size();
     }
 
     @Override
@@ -334,6 +396,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         context.getQueryShardContext().freezeContext();
         if (canCache) {
             indicesService.loadIntoContext(request, context, queryPhase);
+        } else if (indicesService.canCacheSegmentAggregations(request, context)) {
+            indicesService.loadSegmentAggregationsIntoContext(request, context);
         } else {
             queryPhase.execute(context);
         }
@@ -629,13 +693,14 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         IndexShard indexShard = indexService.getShard(request.shardId().getId());
         SearchShardTarget shardTarget = new SearchShardTarget(clusterService.localNode().getId(),
                 indexShard.shardId(), request.getClusterAlias(), OriginalIndices.NONE);
-        Engine.Searcher searcher = indexShard.acquireSearcher(source);
+        Engine.Searcher searcher = request.readerId() == -1L ? indexShard.acquireSearcher(source) : acquireReaderSearcher(request, source);
 
         boolean success = false;
         DefaultSearchContext searchContext = null;
         try {
             searchContext = new DefaultSearchContext(idGenerator.incrementAndGet(), request, shardTarget,
-                searcher, clusterService, indexService, indexShard, bigArrays, threadPool::relativeTimeInMillis, timeout, fetchPhase);
+                searcher, clusterService, indexService, indexShard, bigArrays, threadPool::relativeTimeInMillis, timeout, fetchPhase,
+                concurrentSegmentSearch ? threadPool.executor(Names.SEARCH_WORKER) : null);
             // we clone the query shard context here just for rewriting otherwise we
             // might end up with incorrect state since we are using now() or script services
             // during rewrite and normalized / evaluate templates etc.
@@ -656,6 +721,23 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return searchContext;
     }
 
+    /**
+     * Acquires a searcher over the point in time reader context targeted by the provided request and extends
+     * the keep alive of the context if requested.
+     */
+    private Engine.Searcher acquireReaderSearcher(ShardSearchRequest request, String source) throws IOException {
+        final ReaderContext reader = activeReaders.get(request.readerId());
+        if (reader == null || reader.indexShard().shardId().equals(request.shardId()) == false) {
+            throw new SearchContextMissingException(request.readerId());
+        }
+        reader.indexShard().getSearchOperationListener().validateReaderContext(reader, request);
+        if (request.readerKeepAlive() != null) {
+            checkKeepAliveLimit(request.readerKeepAlive().millis(), "point in time");
+            reader.keepAlive(request.readerKeepAlive().millis());
+        }
+        return reader.acquireSearcher(source);
+    }
+
     private void freeAllContextForIndex(Index index) {
         assert index != null;
         for (SearchContext ctx : activeContexts.values()) {
@@ -663,6 +745,11 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                 freeContext(ctx.id());
             }
         }
+        for (ReaderContext reader : activeReaders.values()) {
+            if (index.equals(reader.indexShard().shardId().getIndex())) {
+                freeReaderContext(reader.id());
+            }
+        }
     }
 
 
@@ -695,13 +782,17 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     }
 
     private void contextScrollKeepAlive(SearchContext context, long keepAlive) {
+        checkKeepAliveLimit(keepAlive, "scroll");
+        context.keepAlive(keepAlive);
+    }
+
+    private void checkKeepAliveLimit(long keepAlive, String type) {
         if (keepAlive > maxKeepAlive) {
             throw new IllegalArgumentException(
-                "Keep alive for scroll (" + TimeValue.timeValueMillis(keepAlive) + ") is too large. " +
+                "Keep alive for " + type + " (" + TimeValue.timeValueMillis(keepAlive) + ") is too large. " +
                     "It must be less than (" + TimeValue.timeValueMillis(maxKeepAlive) + "). " +
                     "This limit can be set by changing the [" + MAX_KEEPALIVE_SETTING.getKey() + "] cluster level setting.");
         }
-        context.keepAlive(keepAlive);
     }
 
     private void contextProcessing(SearchContext context) {
@@ -1005,6 +1096,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                     freeContext(context.id());
                 }
             }
+            for (ReaderContext reader : activeReaders.values()) {
+                if (reader.isExpired(time)) {
+                    logger.debug("freeing reader context [{}], time [{}], lastAccessTime [{}], keepAlive [{}]", reader.id(), time,
+                        reader.lastAccessTime(), reader.keepAlive());
+                    freeReaderContext(reader.id());
+                }
+            }
         }
     }
 
@@ -1019,6 +1117,10 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
      */
     public CanMatchResponse canMatch(ShardSearchRequest request) throws IOException {
         assert request.searchType() == SearchType.QUERY_THEN_FETCH : "unexpected search type: " + request.searchType();
+        if (request.readerId() != -1L) {
+            // the current reader of the shard may differ from the pinned one so we cannot use it to skip the shard
+            return new CanMatchResponse(true, null);
+        }
         IndexService indexService = indicesService.indexServiceSafe(request.shardId().getIndex());
         IndexShard indexShard = indexService.getShard(request.shardId().getId());
         // we don't want to use the reader wrapper since it could run costly operations
@@ -132,6 +132,17 @@ public class AggregationPhase implements SearchPhase {
                 throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
             }
         }
+        context.queryResult().aggregations(new InternalAggregations(aggregations, createSiblingPipelineAggregators(context)));
+
+        // disable aggregations so that they don't run on next pages in case of scrolling
+        context.aggregations(null);
+        context.queryCollectors().remove(AggregationPhase.class);
+    }
+
+    /**
+     * Creates the top level pipeline aggregators of the request, which must all be sibling pipeline aggregators.
+     */
+    public static List<SiblingPipelineAggregator> createSiblingPipelineAggregators(SearchContext context) {
         List<PipelineAggregator> pipelineAggregators = context.aggregations().factories().createPipelineAggregators();
         List<SiblingPipelineAggregator> siblingPipelineAggregators = new ArrayList<>(pipelineAggregators.size());
         for (PipelineAggregator pipelineAggregator : pipelineAggregators) {
@@ -143,11 +154,7 @@ public class AggregationPhase implements SearchPhase {
                     + "allowed at the top level");
             }
         }
-        context.queryResult().aggregations(new InternalAggregations(aggregations, siblingPipelineAggregators));
-
-        // disable aggregations so that they don't run on next pages in case of scrolling
-        context.aggregations(null);
-        context.queryCollectors().remove(AggregationPhase.class);
+        return siblingPipelineAggregators;
     }
 
 }
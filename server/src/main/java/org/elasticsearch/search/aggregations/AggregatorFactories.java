@@ -28,8 +28,22 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.FiltersAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.HistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.missing.MissingAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.DateRangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.AvgAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.ExtendedStatsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.MinAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.StatsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.SumAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.ValueCountAggregationBuilder;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.AggregationPath;
 import org.elasticsearch.search.aggregations.support.AggregationPath.PathElement;
@@ -280,7 +294,40 @@ public class AggregatorFactories {
             return false;
         }
 
+        /**
+         * Returns whether the shard level results of these aggregations, computed on disjoint sets of segments of a shard, can
+         * be reduced into exactly the result of collecting all the segments at once. This excludes the aggregations that prune
+         * their buckets (like <code>terms</code>), the approximate ones (like <code>percentiles</code>) and the global
+         * aggregations that run their own search. Since the slices of a shard create their aggregators from the same factories,
+         * the state that these factories build lazily (like the weights of <code>filter</code> and <code>filters</code>) must be
+         * thread-safe.
+         */
+        public boolean supportsExactPartialReduce() {
+            for (AggregationBuilder builder : aggregationBuilders) {
+                if (supportsExactPartialReduce(builder) == false) {
+                    return false;
+                }
+            }
+            return true;
+        }
 
+        private static boolean supportsExactPartialReduce(AggregationBuilder builder) {
+            if (builder instanceof MinAggregationBuilder || builder instanceof MaxAggregationBuilder
+                    || builder instanceof SumAggregationBuilder || builder instanceof AvgAggregationBuilder
+                    || builder instanceof ValueCountAggregationBuilder || builder instanceof StatsAggregationBuilder
+                    || builder instanceof ExtendedStatsAggregationBuilder || builder instanceof FilterAggregationBuilder
+                    || builder instanceof FiltersAggregationBuilder || builder instanceof MissingAggregationBuilder
+                    || builder instanceof RangeAggregationBuilder || builder instanceof DateRangeAggregationBuilder
+                    || builder instanceof HistogramAggregationBuilder || builder instanceof DateHistogramAggregationBuilder) {
+                for (AggregationBuilder subAggregation : builder.getSubAggregations()) {
+                    if (supportsExactPartialReduce(subAggregation) == false) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
 
         public Builder addAggregator(AggregationBuilder factory) {
             if (!names.add(factory.name)) {
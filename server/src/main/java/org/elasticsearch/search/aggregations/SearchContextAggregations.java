@@ -62,7 +62,7 @@ public class SearchContextAggregations {
         return multiBucketConsumer;
     }
 
-    void resetBucketMultiConsumer() {
+    public void resetBucketMultiConsumer() {
         multiBucketConsumer.reset();
     }
 }
@@ -38,7 +38,7 @@ import java.util.Map;
 
 public class FilterAggregatorFactory extends AggregatorFactory {
 
-    private Weight weight;
+    private volatile Weight weight;
     private Query filter;
 
     public FilterAggregatorFactory(String name, QueryBuilder filterBuilder, QueryShardContext queryShardContext,
@@ -52,17 +52,24 @@ public class FilterAggregatorFactory extends AggregatorFactory {
      * necessary. This is done lazily so that the {@link Weight} is only created
      * if the aggregation collects documents reducing the overhead of the
      * aggregation in the case where no documents are collected.
-     * 
-     * Note that as aggregations are initialsed and executed in a serial manner,
-     * no concurrency considerations are necessary here.
+     *
+     * Note that the slices of a search whose segments are collected concurrently
+     * share this factory, so the {@link Weight} is created at most once.
      */
     public Weight getWeight() {
+        Weight weight = this.weight;
         if (weight == null) {
-            IndexSearcher contextSearcher = queryShardContext.searcher();
-            try {
-                weight = contextSearcher.createWeight(contextSearcher.rewrite(filter), ScoreMode.COMPLETE_NO_SCORES, 1f);
-            } catch (IOException e) {
-                throw new AggregationInitializationException("Failed to initialse filter", e);
+            synchronized (this) {
+                weight = this.weight;
+                if (weight == null) {
+                    IndexSearcher contextSearcher = queryShardContext.searcher();
+                    try {
+                        weight = contextSearcher.createWeight(contextSearcher.rewrite(filter), ScoreMode.COMPLETE_NO_SCORES, 1f);
+                    } catch (IOException e) {
+                        throw new AggregationInitializationException("Failed to initialse filter", e);
+                    }
+                    this.weight = weight;
+                }
             }
         }
         return weight;
@@ -40,7 +40,7 @@ public class FiltersAggregatorFactory extends AggregatorFactory {
 
     private final String[] keys;
     private final Query[] filters;
-    private Weight[] weights;
+    private volatile Weight[] weights;
     private final boolean keyed;
     private final boolean otherBucket;
     private final String otherBucketKey;
@@ -66,20 +66,29 @@ public class FiltersAggregatorFactory extends AggregatorFactory {
      * necessary. This is done lazily so that the {@link Weight}s are only
      * created if the aggregation collects documents reducing the overhead of
      * the aggregation in the case where no documents are collected.
-     * 
-     * Note that as aggregations are initialsed and executed in a serial manner,
-     * no concurrency considerations are necessary here.
+     *
+     * Note that the slices of a search whose segments are collected concurrently
+     * share this factory, so the {@link Weight}s are only published once they
+     * are all created.
      */
     public Weight[] getWeights(SearchContext searchContext) {
+        Weight[] weights = this.weights;
         if (weights == null) {
-            try {
-                IndexSearcher contextSearcher = searchContext.searcher();
-                weights = new Weight[filters.length];
-                for (int i = 0; i < filters.length; ++i) {
-                    this.weights[i] = contextSearcher.createWeight(contextSearcher.rewrite(filters[i]), ScoreMode.COMPLETE_NO_SCORES, 1);
+            synchronized (this) {
+                weights = this.weights;
+                if (weights == null) {
+                    try {
+                        IndexSearcher contextSearcher = searchContext.searcher();
+                        weights = new Weight[filters.length];
+                        for (int i = 0; i < filters.length; ++i) {
+                            weights[i] = contextSearcher.createWeight(contextSearcher.rewrite(filters[i]),
+                                ScoreMode.COMPLETE_NO_SCORES, 1);
+                        }
+                    } catch (IOException e) {
+                        throw new AggregationInitializationException("Failed to initialse filters for aggregation [" + name() + "]", e);
+                    }
+                    this.weights = weights;
                 }
-            } catch (IOException e) {
-                throw new AggregationInitializationException("Failed to initialse filters for aggregation [" + name() + "]", e);
             }
         }
         return weights;
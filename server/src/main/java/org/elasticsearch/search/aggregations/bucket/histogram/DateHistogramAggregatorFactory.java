@@ -102,8 +102,11 @@ public final class DateHistogramAggregatorFactory
     private Aggregator createAggregator(ValuesSource.Numeric valuesSource, SearchContext searchContext,
                                         Aggregator parent, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
+        // count the buckets from the points of the field rather than by collecting the documents when possible
+        DateHistogramPointCounter pointCounter = valuesSource == null ? null
+            : DateHistogramPointCounter.create(searchContext, parent, factories, config, shardRounding);
         return new DateHistogramAggregator(name, factories, rounding, shardRounding, order, keyed, minDocCount, extendedBounds,
-                valuesSource, config.format(), searchContext, parent, pipelineAggregators, metaData);
+                valuesSource, config.format(), pointCounter, searchContext, parent, pipelineAggregators, metaData);
     }
 
     private Aggregator createRangeAggregator(ValuesSource.Range valuesSource,
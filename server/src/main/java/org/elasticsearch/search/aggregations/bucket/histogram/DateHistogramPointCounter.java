@@ -0,0 +1,197 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.histogram;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+
+/**
+ * Counts the documents of the buckets of a {@code date_histogram} from the points of its field, without reading the doc values of
+ * the matching documents. A single traversal of the BKD tree of a segment counts all buckets: the documents of the cells whose
+ * values round to the same bucket are counted without being decoded and only the values of the cells that span several buckets are
+ * rounded one by one.
+ * <p>
+ * This is only possible when the documents that the aggregation collects are exactly the documents whose value is in a range, that
+ * is for top-level aggregations without sub-aggregations under a {@code match_all} query or a {@code range} query on the same field,
+ * and for segments without deleted documents where the field has a single value per document.
+ */
+final class DateHistogramPointCounter {
+
+    /**
+     * Consumes the number of documents of a bucket, identified by its rounded key.
+     */
+    @FunctionalInterface
+    interface BucketCountConsumer {
+        void accept(long key, int count);
+    }
+
+    private final String field;
+    private final Rounding rounding;
+    private final long lower;
+    private final long upper;
+
+    private DateHistogramPointCounter(String field, Rounding rounding, long lower, long upper) {
+        this.field = field;
+        this.rounding = rounding;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * Returns a counter for the aggregation if its buckets can be counted from points, or {@code null} otherwise.
+     */
+    @Nullable
+    static DateHistogramPointCounter create(SearchContext context, Aggregator parent, AggregatorFactories factories,
+                                            ValuesSourceConfig<?> config, Rounding rounding) {
+        if (parent != null || factories.countAggregators() > 0) {
+            return null;
+        }
+        if (context.minimumScore() != null || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            // the aggregation doesn't collect all the documents that match the query
+            return null;
+        }
+        if (config.fieldContext() == null || config.script() != null || config.missing() != null) {
+            return null;
+        }
+        final MappedFieldType fieldType = config.fieldContext().fieldType();
+        if (fieldType instanceof DateFieldMapper.DateFieldType == false || fieldType.indexOptions() == IndexOptions.NONE
+                || ((DateFieldMapper.DateFieldType) fieldType).resolution() != DateFieldMapper.Resolution.MILLISECONDS) {
+            return null;
+        }
+        final String field = config.fieldContext().field();
+        Query query = context.query();
+        while (true) {
+            if (query instanceof BoostQuery) {
+                query = ((BoostQuery) query).getQuery();
+            } else if (query instanceof ConstantScoreQuery) {
+                query = ((ConstantScoreQuery) query).getQuery();
+            } else if (query instanceof IndexOrDocValuesQuery) {
+                query = ((IndexOrDocValuesQuery) query).getIndexQuery();
+            } else {
+                break;
+            }
+        }
+        if (query == null || query.getClass() == MatchAllDocsQuery.class) {
+            return new DateHistogramPointCounter(field, rounding, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        if (query instanceof PointRangeQuery) {
+            final PointRangeQuery rangeQuery = (PointRangeQuery) query;
+            if (rangeQuery.getField().equals(field) && rangeQuery.getNumDims() == 1 && rangeQuery.getBytesPerDim() == Long.BYTES) {
+                return new DateHistogramPointCounter(field, rounding, LongPoint.decodeDimension(rangeQuery.getLowerPoint(), 0),
+                    LongPoint.decodeDimension(rangeQuery.getUpperPoint(), 0));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts the documents of the buckets of the given segment, returning {@code false} without counting any document if the
+     * segment can't be counted from points.
+     */
+    boolean count(LeafReader reader, BucketCountConsumer consumer) throws IOException {
+        if (reader.getLiveDocs() != null) {
+            return false;
+        }
+        final PointValues pointValues = reader.getPointValues(field);
+        if (pointValues == null || pointValues.size() != pointValues.getDocCount() || pointValues.getBytesPerDimension() != Long.BYTES) {
+            return false;
+        }
+        final CountingVisitor visitor = new CountingVisitor(consumer);
+        pointValues.intersect(visitor);
+        visitor.flush();
+        return true;
+    }
+
+    /**
+     * Counts the runs of documents of the same bucket. The documents of a cell that is entirely in a bucket are visited right after
+     * the cell was compared, and the values of a leaf of the tree are visited in ascending order.
+     */
+    private final class CountingVisitor implements PointValues.IntersectVisitor {
+        private final BucketCountConsumer consumer;
+        private long key;
+        private int count;
+
+        CountingVisitor(BucketCountConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void visit(int docID) {
+            count++;
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+            final long value = LongPoint.decodeDimension(packedValue, 0);
+            if (value < lower || value > upper) {
+                return;
+            }
+            final long rounded = rounding.round(value);
+            if (count == 0 || rounded != key) {
+                flush();
+                key = rounded;
+            }
+            count++;
+        }
+
+        @Override
+        public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            final long min = LongPoint.decodeDimension(minPackedValue, 0);
+            final long max = LongPoint.decodeDimension(maxPackedValue, 0);
+            if (max < lower || min > upper) {
+                return PointValues.Relation.CELL_OUTSIDE_QUERY;
+            }
+            if (min >= lower && max <= upper) {
+                final long rounded = rounding.round(min);
+                if (rounded == rounding.round(max)) {
+                    flush();
+                    key = rounded;
+                    return PointValues.Relation.CELL_INSIDE_QUERY;
+                }
+            }
+            return PointValues.Relation.CELL_CROSSES_QUERY;
+        }
+
+        void flush() {
+            if (count > 0) {
+                consumer.accept(key, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.elasticsearch.search.collapse;
 
 import org.apache.lucene.index.IndexOptions;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.ParsingException;
 import org.elasticsearch.common.Strings;
@@ -49,12 +50,14 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
     public static final ParseField FIELD_FIELD = new ParseField("field");
     public static final ParseField INNER_HITS_FIELD = new ParseField("inner_hits");
     public static final ParseField MAX_CONCURRENT_GROUP_REQUESTS_FIELD = new ParseField("max_concurrent_group_searches");
+    public static final ParseField BATCHED_EXPANSION_FIELD = new ParseField("batched_expansion");
     private static final ObjectParser<CollapseBuilder, Void> PARSER =
         new ObjectParser<>("collapse", CollapseBuilder::new);
 
     static {
         PARSER.declareString(CollapseBuilder::setField, FIELD_FIELD);
         PARSER.declareInt(CollapseBuilder::setMaxConcurrentGroupRequests, MAX_CONCURRENT_GROUP_REQUESTS_FIELD);
+        PARSER.declareBoolean(CollapseBuilder::setBatchedExpansion, BATCHED_EXPANSION_FIELD);
         PARSER.declareField((parser, builder, context) -> {
             XContentParser.Token currentToken = parser.currentToken();
             if (currentToken == XContentParser.Token.START_OBJECT) {
@@ -77,6 +80,7 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
     private String field;
     private List<InnerHitBuilder> innerHits = Collections.emptyList();
     private int maxConcurrentGroupRequests = 0;
+    private boolean batchedExpansion = false;
 
     private CollapseBuilder() {}
 
@@ -93,6 +97,9 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
         this.field = in.readString();
         this.maxConcurrentGroupRequests = in.readVInt();
         this.innerHits = in.readList(InnerHitBuilder::new);
+        if (in.getVersion().onOrAfter(Version.V_8_0_0)) {
+            this.batchedExpansion = in.readBoolean();
+        }
     }
 
     @Override
@@ -100,6 +107,9 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
         out.writeString(field);
         out.writeVInt(maxConcurrentGroupRequests);
         out.writeList(innerHits);
+        if (out.getVersion().onOrAfter(Version.V_8_0_0)) {
+            out.writeBoolean(batchedExpansion);
+        }
     }
 
     public static CollapseBuilder fromXContent(XContentParser parser) {
@@ -133,6 +143,15 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
         return this;
     }
 
+    /**
+     * Sets whether the inner hits of all collapsed hits are expanded with a single search per inner hit definition, rather than
+     * with a search per collapsed hit and inner hit definition.
+     */
+    public CollapseBuilder setBatchedExpansion(boolean batchedExpansion) {
+        this.batchedExpansion = batchedExpansion;
+        return this;
+    }
+
     /**
      * The name of the field to collapse against
      */
@@ -154,6 +173,13 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
         return maxConcurrentGroupRequests;
     }
 
+    /**
+     * Returns whether the inner hits of all collapsed hits are expanded with a single search per inner hit definition.
+     */
+    public boolean isBatchedExpansion() {
+        return batchedExpansion;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, ToXContent.Params params) throws IOException {
         builder.startObject();
@@ -167,6 +193,9 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
         if (maxConcurrentGroupRequests > 0) {
             builder.field(MAX_CONCURRENT_GROUP_REQUESTS_FIELD.getPreferredName(), maxConcurrentGroupRequests);
         }
+        if (batchedExpansion) {
+            builder.field(BATCHED_EXPANSION_FIELD.getPreferredName(), batchedExpansion);
+        }
         if (innerHits.isEmpty() == false) {
             if (innerHits.size() == 1) {
                 builder.field(INNER_HITS_FIELD.getPreferredName(), innerHits.get(0));
@@ -188,6 +217,7 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
         CollapseBuilder that = (CollapseBuilder) o;
 
         if (maxConcurrentGroupRequests != that.maxConcurrentGroupRequests) return false;
+        if (batchedExpansion != that.batchedExpansion) return false;
         if (!field.equals(that.field)) return false;
         return Objects.equals(innerHits, that.innerHits);
     }
@@ -196,6 +226,7 @@ public class CollapseBuilder implements Writeable, ToXContentObject {
     public int hashCode() {
         int result = Objects.hash(field, innerHits);
         result = 31 * result + maxConcurrentGroupRequests;
+        result = 31 * result + Boolean.hashCode(batchedExpansion);
         return result;
     }
 
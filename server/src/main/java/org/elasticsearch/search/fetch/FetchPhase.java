@@ -216,6 +216,14 @@ public class FetchPhase implements SearchPhase {
         sourceLookup.setSegmentAndDocument(subReaderContext, subDocId);
         if (fieldsVisitor.source() != null) {
             sourceLookup.setSource(fieldsVisitor.source());
+        } else if (context.sourceRequested()) {
+            // the mapping may rebuild the source from doc values instead of storing it
+            try {
+                sourceLookup.loadSyntheticSource();
+            } catch (IOException e) {
+                throw new FetchPhaseExecutionException(context.shardTarget(),
+                    "Failed to load synthetic source of doc id [" + docId + "]", e);
+            }
         }
         return searchHit;
     }
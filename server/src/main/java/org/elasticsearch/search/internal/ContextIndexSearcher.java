@@ -49,6 +49,8 @@ import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.CombinedBitSet;
 import org.apache.lucene.util.SparseFixedBitSet;
+import org.elasticsearch.common.CheckedRunnable;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.dfs.AggregatedDfs;
@@ -62,8 +64,13 @@ import org.elasticsearch.search.query.QuerySearchResult;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Context-aware extension of {@link IndexSearcher}.
@@ -75,15 +82,34 @@ public class ContextIndexSearcher extends IndexSearcher {
      */
     private static int CHECK_CANCELLED_SCORER_INTERVAL = 1 << 11;
 
+    /**
+     * Slices of leaves that are collected concurrently are closed once they reach this number of documents or
+     * {@link #MAX_SEGMENTS_PER_SLICE} segments, leaves with more documents than this get a slice of their own.
+     */
+    static final int MAX_DOCS_PER_SLICE = 250_000;
+    static final int MAX_SEGMENTS_PER_SLICE = 5;
+
+    private final Executor executor;
     private AggregatedDfs aggregatedDfs;
     private QueryProfiler profiler;
     private Runnable checkCancelled;
 
     public ContextIndexSearcher(IndexReader reader, Similarity similarity, QueryCache queryCache, QueryCachingPolicy queryCachingPolicy) {
+        this(reader, similarity, queryCache, queryCachingPolicy, null);
+    }
+
+    /**
+     * Creates a searcher that partitions the leaves into slices and collects them concurrently on the provided {@code executor}
+     * for searches that go through a {@link CollectorManager}. Searches with a single {@link Collector} and profiled searches are
+     * always executed sequentially on the calling thread.
+     */
+    public ContextIndexSearcher(IndexReader reader, Similarity similarity, QueryCache queryCache, QueryCachingPolicy queryCachingPolicy,
+                                @Nullable Executor executor) {
         super(reader);
         setSimilarity(similarity);
         setQueryCache(queryCache);
         setQueryCachingPolicy(queryCachingPolicy);
+        this.executor = executor;
     }
 
     public void setProfiler(QueryProfiler profiler) {
@@ -145,14 +171,41 @@ public class ContextIndexSearcher extends IndexSearcher {
         }
     }
 
+    /**
+     * Returns whether searches that go through a {@link CollectorManager} collect their slices concurrently.
+     */
+    public boolean isConcurrentSearchEnabled() {
+        return executor != null && profiler == null;
+    }
+
     @SuppressWarnings({"unchecked", "rawtypes"})
     public void search(List<LeafReaderContext> leaves, Weight weight, CollectorManager manager,
             QuerySearchResult result, DocValueFormat[] formats, TotalHits totalHits) throws IOException {
         final List<Collector> collectors = new ArrayList<>(leaves.size());
-        for (LeafReaderContext ctx : leaves) {
-            final Collector collector = manager.newCollector();
-            searchLeaf(ctx, weight, collector);
-            collectors.add(collector);
+        final List<List<LeafReaderContext>> slices = isConcurrentSearchEnabled() ? computeSlices(leaves) : null;
+        if (slices == null || slices.size() <= 1) {
+            for (LeafReaderContext ctx : leaves) {
+                final Collector collector = manager.newCollector();
+                searchLeaf(ctx, weight, collector);
+                collectors.add(collector);
+            }
+        } else {
+            // collectors are created upfront since the manager is not required to be thread-safe
+            for (int i = 0; i < leaves.size(); i++) {
+                collectors.add(manager.newCollector());
+            }
+            final List<CheckedRunnable<IOException>> tasks = new ArrayList<>(slices.size());
+            int leafIndex = 0;
+            for (List<LeafReaderContext> slice : slices) {
+                final List<Collector> sliceCollectors = collectors.subList(leafIndex, leafIndex + slice.size());
+                leafIndex += slice.size();
+                tasks.add(() -> {
+                    for (int i = 0; i < slice.size(); i++) {
+                        searchLeaf(slice.get(i), weight, sliceCollectors.get(i));
+                    }
+                });
+            }
+            executeConcurrently(tasks);
         }
         TopFieldDocs mergedTopDocs = (TopFieldDocs) manager.reduce(collectors);
         // Lucene sets shards indexes during merging of topDocs from different collectors
@@ -166,6 +219,117 @@ public class ContextIndexSearcher extends IndexSearcher {
         result.topDocs(new TopDocsAndMaxScore(mergedTopDocs, Float.NaN), formats);
     }
 
+    @Override
+    public <C extends Collector, T> T search(Query query, CollectorManager<C, T> collectorManager) throws IOException {
+        final List<List<LeafReaderContext>> slices = isConcurrentSearchEnabled() ? computeSlices(getIndexReader().leaves()) : null;
+        if (slices == null || slices.size() <= 1) {
+            return super.search(query, collectorManager);
+        }
+        final List<C> collectors = new ArrayList<>(slices.size());
+        ScoreMode scoreMode = null;
+        for (int i = 0; i < slices.size(); i++) {
+            final C collector = collectorManager.newCollector();
+            if (scoreMode == null) {
+                scoreMode = collector.scoreMode();
+            } else if (scoreMode != collector.scoreMode()) {
+                throw new IllegalStateException("CollectorManager does not always produce collectors with the same score mode");
+            }
+            collectors.add(collector);
+        }
+        final Weight weight = createWeight(rewrite(query), scoreMode, 1);
+        final List<CheckedRunnable<IOException>> tasks = new ArrayList<>(slices.size());
+        for (int i = 0; i < slices.size(); i++) {
+            final List<LeafReaderContext> slice = slices.get(i);
+            final C collector = collectors.get(i);
+            tasks.add(() -> search(slice, weight, collector));
+        }
+        executeConcurrently(tasks);
+        return collectorManager.reduce(collectors);
+    }
+
+    /**
+     * Partitions the provided leaves into slices that can be collected concurrently. The order of the leaves is preserved, both
+     * across and within slices, so that callers that sort the leaves to terminate early still visit the most competitive
+     * leaves first.
+     */
+    static List<List<LeafReaderContext>> computeSlices(List<LeafReaderContext> leaves) {
+        final List<List<LeafReaderContext>> slices = new ArrayList<>();
+        List<LeafReaderContext> current = new ArrayList<>();
+        long currentDocs = 0;
+        for (LeafReaderContext ctx : leaves) {
+            final int maxDoc = ctx.reader().maxDoc();
+            if (maxDoc > MAX_DOCS_PER_SLICE) {
+                slices.add(Collections.singletonList(ctx));
+                continue;
+            }
+            current.add(ctx);
+            currentDocs += maxDoc;
+            if (currentDocs > MAX_DOCS_PER_SLICE || current.size() >= MAX_SEGMENTS_PER_SLICE) {
+                slices.add(current);
+                current = new ArrayList<>();
+                currentDocs = 0;
+            }
+        }
+        if (current.isEmpty() == false) {
+            slices.add(current);
+        }
+        return slices;
+    }
+
+    /**
+     * Runs all tasks but the last one on the executor and the last one on the calling thread, then waits for all of them to
+     * complete. The first failure is rethrown as is, so that timeouts and cancellations that are detected on a worker thread
+     * surface the same way as they do when searching sequentially.
+     */
+    private void executeConcurrently(List<CheckedRunnable<IOException>> tasks) throws IOException {
+        final List<FutureTask<Void>> futures = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            final CheckedRunnable<IOException> task = tasks.get(i);
+            final FutureTask<Void> future = new FutureTask<>(() -> {
+                task.run();
+                return null;
+            });
+            futures.add(future);
+            if (i == tasks.size() - 1) {
+                future.run();
+            } else {
+                try {
+                    executor.execute(future);
+                } catch (RejectedExecutionException e) {
+                    // the worker pool is saturated, the slice is collected on the calling thread instead
+                    future.run();
+                }
+            }
+        }
+        Exception failure = null;
+        // wait for all slices even on failure, the readers must not be released while they are still being collected
+        for (FutureTask<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("concurrent search got interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                final Exception cause = (Exception) e.getCause();
+                if (failure == null) {
+                    failure = cause;
+                } else if (failure != cause) {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("concurrent search failed", failure);
+        }
+    }
+
     @Override
     protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
         for (LeafReaderContext ctx : leaves) { // search each subreader
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.internal;
+
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.search.SearchContextMissingException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds an {@link Engine.Searcher} of a shard that is pinned for the lifetime of a point in time. Unlike a scroll context, a
+ * reader context is not tied to a single search request: any number of searches, with different queries and sorts, can
+ * acquire a searcher over the pinned reader. The pinned reader is released when the context is freed (explicitly or because
+ * its keep alive expired) and all the searchers that were acquired from it are closed.
+ */
+public class ReaderContext extends AbstractRefCounted implements Releasable {
+    private final long id;
+    private final IndexShard indexShard;
+    private final Engine.Searcher searcher;
+    private final LongSupplier relativeTimeInMillis;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private volatile long keepAlive;
+    private volatile long lastAccessTime;
+    // set when the context is opened, before it is published to other threads
+    private Map<String, Object> context = null;
+
+    /**
+     * @param id the unique id of the context on this node
+     * @param indexShard the shard that the searcher was acquired from
+     * @param searcher a searcher acquired without the reader wrapper of the shard, see {@link IndexShard#acquireSearcherNoWrap(String)}
+     * @param keepAlive the time in milliseconds to keep the context alive after its last access
+     * @param relativeTimeInMillis the clock used to track the last access
+     */
+    public ReaderContext(long id, IndexShard indexShard, Engine.Searcher searcher, long keepAlive, LongSupplier relativeTimeInMillis) {
+        super("reader_context");
+        this.id = id;
+        this.indexShard = indexShard;
+        this.searcher = searcher;
+        this.keepAlive = keepAlive;
+        this.relativeTimeInMillis = relativeTimeInMillis;
+        this.lastAccessTime = relativeTimeInMillis.getAsLong();
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public IndexShard indexShard() {
+        return indexShard;
+    }
+
+    /**
+     * Returns a new searcher over the pinned reader, wrapped with the reader wrapper of the shard. The pinned
+     * reader is not released until the returned searcher is closed, even if this context is freed in the meantime.
+     *
+     * @throws SearchContextMissingException if this context was already freed
+     */
+    public Engine.Searcher acquireSearcher(String source) throws IOException {
+        if (tryIncRef() == false) {
+            throw new SearchContextMissingException(id);
+        }
+        boolean success = false;
+        try {
+            accessed();
+            final Engine.Searcher newSearcher = new Engine.Searcher(source, searcher.getIndexReader(), searcher.getSimilarity(),
+                searcher.getQueryCache(), searcher.getQueryCachingPolicy(), () -> {
+                    accessed();
+                    decRef();
+                });
+            final Engine.Searcher wrapped = indexShard.wrapSearcher(newSearcher);
+            success = true;
+            return wrapped;
+        } finally {
+            if (success == false) {
+                decRef();
+            }
+        }
+    }
+
+    /**
+     * Sets the keep alive of this context in milliseconds, the keep alive is extended by each search that targets it.
+     */
+    public void keepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public long keepAlive() {
+        return keepAlive;
+    }
+
+    public long lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Returns the object or <code>null</code> if the given key does not have a
+     * value in the context
+     */
+    @SuppressWarnings("unchecked") // (T)object
+    public <T> T getFromContext(String key) {
+        return context != null ? (T) context.get(key) : null;
+    }
+
+    /**
+     * Puts the object into the context. This must only be called when the context is opened, see
+     * {@link org.elasticsearch.index.shard.SearchOperationListener#onNewReaderContext(ReaderContext)}.
+     */
+    public void putInContext(String key, Object value) {
+        if (context == null) {
+            context = new HashMap<>();
+        }
+        context.put(key, value);
+    }
+
+    private void accessed() {
+        lastAccessTime = relativeTimeInMillis.getAsLong();
+    }
+
+    /**
+     * Returns <code>true</code> if this context was not accessed within its keep alive and is not in use by any search.
+     */
+    public boolean isExpired(long nowInMillis) {
+        // the context holds one reference, any additional reference is held by a running search
+        return refCount() <= 1 && nowInMillis - lastAccessTime > keepAlive;
+    }
+
+    /**
+     * Frees this context. The pinned reader is released once all the searchers acquired from it are closed.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            decRef();
+        }
+    }
+
+    @Override
+    protected void closeInternal() {
+        searcher.close();
+    }
+}
@@ -21,8 +21,10 @@ package org.elasticsearch.search.lookup;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.mapper.DocumentMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.SyntheticSource;
 
 import java.util.function.Function;
 
@@ -36,10 +38,18 @@ public class SearchLookup {
 
     public SearchLookup(MapperService mapperService, Function<MappedFieldType, IndexFieldData<?>> fieldDataLookup) {
         docMap = new DocLookup(mapperService, fieldDataLookup);
-        sourceLookup = new SourceLookup();
+        sourceLookup = new SourceLookup(syntheticSource(mapperService));
         fieldsLookup = new FieldsLookup(mapperService);
     }
 
+    private static SyntheticSource syntheticSource(MapperService mapperService) {
+        if (mapperService == null) {
+            return null;
+        }
+        final DocumentMapper documentMapper = mapperService.documentMapper();
+        return documentMapper == null ? null : documentMapper.syntheticSource();
+    }
+
     public LeafSearchLookup getLeafSearchLookup(LeafReaderContext context) {
         return new LeafSearchLookup(context,
                 docMap.getLeafDocLookup(context),
@@ -21,14 +21,18 @@ package org.elasticsearch.search.lookup;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
+import org.elasticsearch.index.mapper.SourceFieldMapper;
+import org.elasticsearch.index.mapper.SyntheticSource;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +42,10 @@ import static java.util.Collections.emptyMap;
 
 public class SourceLookup implements Map<String, Object> {
 
+    @Nullable
+    private final SyntheticSource syntheticSource;
+    private SyntheticSource.Leaf syntheticSourceLeaf;
+
     private LeafReader reader;
 
     private int docId = -1;
@@ -46,6 +54,17 @@ public class SourceLookup implements Map<String, Object> {
     private Map<String, Object> source;
     private XContentType sourceContentType;
 
+    public SourceLookup() {
+        this(null);
+    }
+
+    /**
+     * Creates a lookup that rebuilds the source of documents with the given synthetic source if they have no stored source.
+     */
+    public SourceLookup(@Nullable SyntheticSource syntheticSource) {
+        this.syntheticSource = syntheticSource;
+    }
+
     public Map<String, Object> source() {
         return source;
     }
@@ -68,6 +87,9 @@ public class SourceLookup implements Map<String, Object> {
             FieldsVisitor sourceFieldVisitor = new FieldsVisitor(true);
             reader.document(docId, sourceFieldVisitor);
             BytesReference source = sourceFieldVisitor.source();
+            if (source == null) {
+                source = loadSyntheticSource();
+            }
             if (source == null) {
                 this.source = emptyMap();
                 this.sourceContentType = null;
@@ -82,6 +104,22 @@ public class SourceLookup implements Map<String, Object> {
         return this.source;
     }
 
+    /**
+     * Rebuilds the source of the current document from doc values if the mapping doesn't store it, see
+     * {@link SourceFieldMapper#isSynthetic()}. Returns {@code null} if the source isn't synthetic.
+     */
+    @Nullable
+    public BytesReference loadSyntheticSource() throws IOException {
+        if (syntheticSource == null) {
+            return null;
+        }
+        if (syntheticSourceLeaf == null) {
+            syntheticSourceLeaf = syntheticSource.leaf(reader);
+        }
+        sourceAsBytes = syntheticSourceLeaf.source(docId);
+        return sourceAsBytes;
+    }
+
     public static Tuple<XContentType, Map<String, Object>> sourceAsMapAndType(BytesReference source) throws ElasticsearchParseException {
         return XContentHelper.convertToMap(source, false);
     }
@@ -95,6 +133,9 @@ public class SourceLookup implements Map<String, Object> {
             // if we are called with the same document, don't invalidate source
             return;
         }
+        if (this.reader != context.reader()) {
+            this.syntheticSourceLeaf = null;
+        }
         this.reader = context.reader();
         this.source = null;
         this.sourceAsBytes = null;
@@ -0,0 +1,492 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.FilterWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.DocIdSetBuilder;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.mapper.DateFieldMapper.DateFieldType;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.NumberFieldMapper.NumberFieldType;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static org.elasticsearch.search.profile.query.CollectorResult.REASON_SEARCH_TOP_HITS;
+
+/**
+ * Skips the documents that can't make it into the top hits of a search sorted by a numeric or date field that is indexed with points
+ * and has doc values. Once as many documents as the top hits were collected, only the documents whose sort value is at least as good
+ * as the worst of the best values collected so far, the bottom, are competitive. The iterator of the query is then intersected with
+ * the documents whose points are in the competitive range, which is read from the BKD tree of the segment and narrowed when the bottom
+ * moves enough to skip significantly more documents.
+ * <p>
+ * Documents whose value is equal to the bottom stay competitive for the tie breaks of the other sort fields. Documents are only
+ * skipped once the number of hits to track accurately was collected, after which the total hit count is a lower bound.
+ */
+final class NumericSortPruner {
+
+    // a competitive range is only read from the BKD tree if it matches less than 1/8th of the documents that the current one matches
+    private static final int MIN_SKIP_RATIO = 8;
+    // past this number of changes of the bottom in a segment, the competitive range is only updated every 32 changes
+    private static final int MAX_UPDATES_BEFORE_SAMPLING = 256;
+
+    private final String field;
+    private final boolean reverse;
+    @Nullable
+    private final SortedNumericSelector.Type selector;
+    private final long missingValue;
+    private final int hitsThreshold;
+    private final boolean countsHits;
+    // a min-heap of the keys of the best values collected so far, the key of a value grows as the value gets better for the sort
+    private final long[] heap;
+    private int heapSize;
+    private long collectedDocs;
+    // incremented every time the bottom changes
+    private int bottomVersion;
+    private boolean skippedDocs;
+
+    private NumericSortPruner(String field, boolean reverse, @Nullable SortedNumericSelector.Type selector, long missingValue,
+                              int numHits, int hitsThreshold, boolean countsHits) {
+        this.field = field;
+        this.reverse = reverse;
+        this.selector = selector;
+        this.missingValue = missingValue;
+        this.hitsThreshold = hitsThreshold;
+        this.countsHits = countsHits;
+        this.heap = new long[numHits];
+    }
+
+    /**
+     * Returns a pruner for the given primary sort field, or {@code null} if the field doesn't allow to skip documents.
+     *
+     * @param numHits the number of top hits
+     * @param hitsThreshold the number of hits to collect before documents can be skipped
+     * @param countsHits whether the total hit count is computed by the collector, in which case it becomes a lower bound
+     */
+    @Nullable
+    static NumericSortPruner create(@Nullable MapperService mapperService, SortField sortField, int numHits, int hitsThreshold,
+                                    boolean countsHits) {
+        final SortedNumericSelector.Type selector;
+        if (sortField instanceof SortedNumericSortField) {
+            if (((SortedNumericSortField) sortField).getNumericType() != SortField.Type.LONG) {
+                return null;
+            }
+            selector = ((SortedNumericSortField) sortField).getSelector();
+        } else if (sortField.getType() == SortField.Type.LONG) {
+            // single-valued numeric doc values
+            selector = null;
+        } else {
+            // custom comparators may sort on another value than the one of the points, like the average of the values
+            return null;
+        }
+        if (mapperService == null) {
+            return null;
+        }
+        final MappedFieldType fieldType = mapperService.fullName(sortField.getField());
+        if (fieldType == null || fieldType.hasDocValues() == false || fieldType.indexOptions() == IndexOptions.NONE) {
+            return null;
+        }
+        if (fieldType instanceof NumberFieldType) {
+            final IndexNumericFieldData.NumericType type = ((NumberFieldType) fieldType).numericType();
+            if (type != IndexNumericFieldData.NumericType.LONG && type != IndexNumericFieldData.NumericType.INT
+                    && type != IndexNumericFieldData.NumericType.SHORT && type != IndexNumericFieldData.NumericType.BYTE) {
+                return null;
+            }
+        } else if (fieldType instanceof DateFieldType == false) {
+            return null;
+        }
+        final long missingValue = sortField.getMissingValue() == null ? 0L : ((Number) sortField.getMissingValue()).longValue();
+        return new NumericSortPruner(sortField.getField(), sortField.getReverse(), selector, missingValue, numHits, hitsThreshold,
+            countsHits);
+    }
+
+    /**
+     * Wraps the query so that its documents are only iterated while they are competitive.
+     */
+    Query wrapQuery(Query query) {
+        return new CompetitiveQuery(query, this);
+    }
+
+    /**
+     * Creates the collector context that tracks the best values of the collected documents. It must wrap the top docs collector.
+     */
+    QueryCollectorContext createCollectorContext() {
+        return new QueryCollectorContext(REASON_SEARCH_TOP_HITS) {
+            @Override
+            Collector create(Collector in) {
+                return new FilterCollector(in) {
+                    @Override
+                    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+                        final NumericDocValues values = sortValues(context.reader());
+                        return new FilterLeafCollector(super.getLeafCollector(context)) {
+                            @Override
+                            public void collect(int doc) throws IOException {
+                                collectedDocs++;
+                                add(values.advanceExact(doc) ? values.longValue() : missingValue);
+                                super.collect(doc);
+                            }
+                        };
+                    }
+                };
+            }
+
+            @Override
+            void postProcess(QuerySearchResult result) {
+                if (skippedDocs && countsHits) {
+                    final TopDocs topDocs = result.topDocs().topDocs;
+                    topDocs.totalHits = new TotalHits(topDocs.totalHits.value, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
+                }
+            }
+        };
+    }
+
+    private NumericDocValues sortValues(LeafReader reader) throws IOException {
+        if (selector == null) {
+            return DocValues.getNumeric(reader, field);
+        }
+        return SortedNumericSelector.wrap(DocValues.getSortedNumeric(reader, field), selector, SortField.Type.LONG);
+    }
+
+    private long key(long value) {
+        return reverse ? value : ~value;
+    }
+
+    private void add(long value) {
+        final long key = key(value);
+        if (heapSize < heap.length) {
+            heap[heapSize] = key;
+            siftUp(heapSize++);
+            if (heapSize == heap.length) {
+                bottomVersion++;
+            }
+        } else if (key > heap[0]) {
+            heap[0] = key;
+            siftDown();
+            bottomVersion++;
+        }
+    }
+
+    private void siftUp(int i) {
+        final long key = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private void siftDown() {
+        final long key = heap[0];
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < heapSize) {
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    /**
+     * Whether documents can be skipped, which requires the top hits to be full and the hits to track to be collected.
+     */
+    private boolean canSkip() {
+        return heapSize == heap.length && collectedDocs > hitsThreshold;
+    }
+
+    private long bottom() {
+        return reverse ? heap[0] : ~heap[0];
+    }
+
+    private boolean isCompetitive(long value) {
+        return key(value) >= heap[0];
+    }
+
+    /**
+     * Iterates over the documents of the query of a segment, skipping the ones that aren't competitive anymore.
+     */
+    private final class CompetitiveIterator extends DocIdSetIterator {
+        private final DocIdSetIterator in;
+        private final LeafReader reader;
+        @Nullable
+        private final PointValues pointValues;
+        // the documents whose points are in the competitive range, or null if all documents are competitive
+        private DocIdSetIterator competitive;
+        private long competitiveCost;
+        private int seenBottomVersion = -1;
+        private int updates;
+        private int doc = -1;
+
+        CompetitiveIterator(DocIdSetIterator in, LeafReader reader) throws IOException {
+            this.in = in;
+            this.reader = reader;
+            this.pointValues = reader.getPointValues(field);
+            this.competitiveCost = in.cost();
+        }
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return advance(doc + 1);
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            updateCompetitive();
+            int next = in.advance(target);
+            while (next != NO_MORE_DOCS && competitive != null) {
+                final int competitiveDoc = competitive.docID() >= next ? competitive.docID() : competitive.advance(next);
+                if (competitiveDoc == next) {
+                    break;
+                }
+                next = competitiveDoc == NO_MORE_DOCS ? NO_MORE_DOCS : in.advance(competitiveDoc);
+            }
+            return doc = next;
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+
+        private void updateCompetitive() throws IOException {
+            if (seenBottomVersion == bottomVersion || canSkip() == false) {
+                return;
+            }
+            seenBottomVersion = bottomVersion;
+            if (++updates > MAX_UPDATES_BEFORE_SAMPLING && (updates & 0x1f) != 0x1f) {
+                return;
+            }
+            if (isCompetitive(missingValue) && (pointValues == null || pointValues.getDocCount() < reader.maxDoc())) {
+                // the documents without a value are competitive
+                return;
+            }
+            if (pointValues == null) {
+                // no document of the segment has a value, none is competitive
+                competitive = DocIdSetIterator.empty();
+                competitiveCost = 0;
+                skippedDocs = true;
+                return;
+            }
+            final int bytesPerDim = pointValues.getBytesPerDimension();
+            final byte[] lower = new byte[bytesPerDim];
+            final byte[] upper = new byte[bytesPerDim];
+            encode(reverse ? bottom() : Long.MIN_VALUE, lower);
+            encode(reverse ? Long.MAX_VALUE : bottom(), upper);
+            final int minDoc = doc;
+            final DocIdSetBuilder[] builder = new DocIdSetBuilder[1];
+            final PointValues.IntersectVisitor visitor = new PointValues.IntersectVisitor() {
+                DocIdSetBuilder.BulkAdder adder;
+
+                @Override
+                public void grow(int count) {
+                    adder = builder[0].grow(count);
+                }
+
+                @Override
+                public void visit(int docID) {
+                    // the documents up to the current one were already iterated
+                    if (docID > minDoc) {
+                        adder.add(docID);
+                    }
+                }
+
+                @Override
+                public void visit(int docID, byte[] packedValue) {
+                    if (docID > minDoc
+                            && Arrays.compareUnsigned(packedValue, 0, bytesPerDim, lower, 0, bytesPerDim) >= 0
+                            && Arrays.compareUnsigned(packedValue, 0, bytesPerDim, upper, 0, bytesPerDim) <= 0) {
+                        adder.add(docID);
+                    }
+                }
+
+                @Override
+                public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+                    if (Arrays.compareUnsigned(minPackedValue, 0, bytesPerDim, upper, 0, bytesPerDim) > 0
+                            || Arrays.compareUnsigned(maxPackedValue, 0, bytesPerDim, lower, 0, bytesPerDim) < 0) {
+                        return PointValues.Relation.CELL_OUTSIDE_QUERY;
+                    }
+                    if (Arrays.compareUnsigned(minPackedValue, 0, bytesPerDim, lower, 0, bytesPerDim) >= 0
+                            && Arrays.compareUnsigned(maxPackedValue, 0, bytesPerDim, upper, 0, bytesPerDim) <= 0) {
+                        return PointValues.Relation.CELL_INSIDE_QUERY;
+                    }
+                    return PointValues.Relation.CELL_CROSSES_QUERY;
+                }
+            };
+            // reading the range costs about as much as iterating over its documents, it must skip most of the current ones
+            if (pointValues.estimatePointCount(visitor) >= competitiveCost / MIN_SKIP_RATIO) {
+                return;
+            }
+            builder[0] = new DocIdSetBuilder(reader.maxDoc(), pointValues, field);
+            pointValues.intersect(visitor);
+            competitive = builder[0].build().iterator();
+            competitiveCost = competitive.cost();
+            skippedDocs = true;
+        }
+
+        /**
+         * Encodes the given value as a point of the segment. Values out of the range of integer points are clamped, which only
+         * makes the competitive range wider than needed.
+         */
+        private void encode(long value, byte[] packed) {
+            if (packed.length == Long.BYTES) {
+                NumericUtils.longToSortableBytes(value, packed, 0);
+            } else {
+                assert packed.length == Integer.BYTES : "unexpected point size [" + packed.length + "] for field [" + field + "]";
+                NumericUtils.intToSortableBytes((int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value)), packed, 0);
+            }
+        }
+    }
+
+    private static final class CompetitiveScorer extends Scorer {
+        private final Scorer in;
+        private final DocIdSetIterator iterator;
+
+        CompetitiveScorer(Weight weight, Scorer in, DocIdSetIterator iterator) {
+            super(weight);
+            this.in = in;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public int docID() {
+            return iterator.docID();
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return iterator;
+        }
+
+        @Override
+        public float score() throws IOException {
+            return in.score();
+        }
+
+        @Override
+        public float getMaxScore(int upTo) throws IOException {
+            return in.getMaxScore(upTo);
+        }
+    }
+
+    /**
+     * A query that only matches the competitive documents of another query. It depends on the state of the collection and can't be
+     * cached.
+     */
+    private static final class CompetitiveQuery extends Query {
+        private final Query in;
+        private final NumericSortPruner pruner;
+
+        CompetitiveQuery(Query in, NumericSortPruner pruner) {
+            this.in = in;
+            this.pruner = pruner;
+        }
+
+        @Override
+        public Query rewrite(IndexReader reader) throws IOException {
+            final Query rewritten = in.rewrite(reader);
+            return rewritten == in ? this : new CompetitiveQuery(rewritten, pruner);
+        }
+
+        @Override
+        public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+            return new FilterWeight(this, in.createWeight(searcher, scoreMode, boost)) {
+                @Override
+                public Scorer scorer(LeafReaderContext context) throws IOException {
+                    final Scorer scorer = in.scorer(context);
+                    if (scorer == null) {
+                        return null;
+                    }
+                    final DocIdSetIterator iterator = pruner.new CompetitiveIterator(scorer.iterator(), context.reader());
+                    return new CompetitiveScorer(this, scorer, iterator);
+                }
+
+                @Override
+                public boolean isCacheable(LeafReaderContext ctx) {
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        public void visit(QueryVisitor visitor) {
+            in.visit(visitor.getSubVisitor(BooleanClause.Occur.MUST, this));
+        }
+
+        @Override
+        public String toString(String field) {
+            return "CompetitiveQuery(" + in.toString(field) + ")";
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return sameClassAs(other)
+                && in.equals(((CompetitiveQuery) other).in)
+                && pruner == ((CompetitiveQuery) other).pruner;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(classHash(), in, System.identityHashCode(pruner));
+        }
+    }
+}
@@ -130,12 +130,16 @@ public class QueryPhase implements SearchPhase {
         // request, preProcess is called on the DFS phase phase, this is why we pre-process them
         // here to make sure it happens during the QUERY phase
         aggregationPhase.preProcess(searchContext);
+        // the request may have been waiting in the search queue while the search was cancelled
+        checkCancelled(searchContext);
         boolean rescore = executeInternal(searchContext);
 
         if (rescore) { // only if we do a regular search
             rescorePhase.execute(searchContext);
         }
         suggestPhase.execute(searchContext);
+        // global aggregations run a new search over all the documents of the shard
+        checkCancelled(searchContext);
         aggregationPhase.execute(searchContext);
 
         if (searchContext.getProfilers() != null) {
@@ -145,6 +149,12 @@ public class QueryPhase implements SearchPhase {
         }
     }
 
+    private static void checkCancelled(SearchContext searchContext) {
+        if (searchContext.isCancelled()) {
+            throw new TaskCancelledException("cancelled");
+        }
+    }
+
     /**
      * In a package-private method so that it can be tested without having to
      * wire everything (mapperService, etc.)
@@ -245,51 +255,26 @@ public class QueryPhase implements SearchPhase {
                 }
             }
 
-            boolean timeoutSet = scrollContext == null && searchContext.timeout() != null &&
-                searchContext.timeout().equals(SearchService.NO_TIMEOUT) == false;
-
-            final Runnable timeoutRunnable;
-            if (timeoutSet) {
-                final long startTime = searchContext.getRelativeTimeInMillis();
-                final long timeout = searchContext.timeout().millis();
-                final long maxTime = startTime + timeout;
-                timeoutRunnable = () -> {
-                    final long time = searchContext.getRelativeTimeInMillis();
-                    if (time > maxTime) {
-                        throw new TimeExceededException();
-                    }
-                };
-            } else {
-                timeoutRunnable = null;
+            // the numeric sort pruner is shared by all the segments so it can't be used when collecting them concurrently
+            final boolean collectConcurrently = QueryPhaseCollectorManager.canCollectConcurrently(searchContext);
+            if (sortAndFormatsForRewrittenNumericSort == null && collectors.isEmpty() && SYS_PROP_REWRITE_SORT
+                    && collectConcurrently == false) {
+                // skip the documents that aren't competitive for a numeric or date sort anymore
+                NumericSortPruner sortPruner = tryCreateSortPruner(searchContext, reader, query);
+                if (sortPruner != null) {
+                    query = sortPruner.wrapQuery(query);
+                    collectors.add(sortPruner.createCollectorContext());
+                }
             }
 
-            final Runnable cancellationRunnable;
-            if (searchContext.lowLevelCancellation()) {
-                SearchShardTask task = searchContext.getTask();
-                cancellationRunnable = () -> { if (task.isCancelled()) throw new TaskCancelledException("cancelled"); };
-            } else {
-                cancellationRunnable = null;
-            }
-
-            final Runnable checkCancelled;
-            if (timeoutRunnable != null && cancellationRunnable != null) {
-                checkCancelled = () -> {
-                    timeoutRunnable.run();
-                    cancellationRunnable.run();
-                };
-            } else if (timeoutRunnable != null) {
-                checkCancelled = timeoutRunnable;
-            } else if (cancellationRunnable != null) {
-                checkCancelled = cancellationRunnable;
-            } else {
-                checkCancelled = null;
-            }
-            searcher.setCheckCancelled(checkCancelled);
+            final boolean timeoutSet = setCheckCancelled(searchContext);
 
             boolean shouldRescore;
             // if we are optimizing sort and there are no other collectors
             if (sortAndFormatsForRewrittenNumericSort != null && collectors.size() == 0 && searchContext.getProfilers() == null) {
                 shouldRescore = searchWithCollectorManager(searchContext, searcher, query, leafSorter, timeoutSet);
+            } else if (collectConcurrently) {
+                shouldRescore = searchConcurrently(searchContext, searcher, query, hasFilterCollector, timeoutSet);
             } else {
                 shouldRescore = searchWithCollector(searchContext, searcher, query, collectors, hasFilterCollector, timeoutSet);
             }
@@ -316,6 +301,82 @@ public class QueryPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Installs the timeout and the low level cancellation checks of the request on the searcher of the context.
+     *
+     * @return whether a timeout is set
+     */
+    private static boolean setCheckCancelled(SearchContext searchContext) {
+        boolean timeoutSet = searchContext.scrollContext() == null && searchContext.timeout() != null &&
+            searchContext.timeout().equals(SearchService.NO_TIMEOUT) == false;
+
+        final Runnable timeoutRunnable;
+        if (timeoutSet) {
+            final long startTime = searchContext.getRelativeTimeInMillis();
+            final long timeout = searchContext.timeout().millis();
+            final long maxTime = startTime + timeout;
+            timeoutRunnable = () -> {
+                final long time = searchContext.getRelativeTimeInMillis();
+                if (time > maxTime) {
+                    throw new TimeExceededException();
+                }
+            };
+        } else {
+            timeoutRunnable = null;
+        }
+
+        final Runnable cancellationRunnable;
+        if (searchContext.lowLevelCancellation()) {
+            SearchShardTask task = searchContext.getTask();
+            cancellationRunnable = () -> { if (task.isCancelled()) throw new TaskCancelledException("cancelled"); };
+        } else {
+            cancellationRunnable = null;
+        }
+
+        final Runnable checkCancelled;
+        if (timeoutRunnable != null && cancellationRunnable != null) {
+            checkCancelled = () -> {
+                timeoutRunnable.run();
+                cancellationRunnable.run();
+            };
+        } else if (timeoutRunnable != null) {
+            checkCancelled = timeoutRunnable;
+        } else if (cancellationRunnable != null) {
+            checkCancelled = cancellationRunnable;
+        } else {
+            checkCancelled = null;
+        }
+        searchContext.searcher().setCheckCancelled(checkCancelled);
+        return timeoutSet;
+    }
+
+    /**
+     * Collects the documents that match the query of the request in the provided <code>collector</code> with the same
+     * timeout and cancellation checks as the main query of this phase. This is used to compute the query result of a
+     * request without executing this phase, see {@link org.elasticsearch.indices.IndicesSegmentAggregationCache}.
+     *
+     * @return <code>false</code> if the search timed out, in which case the collector only saw a subset of the documents
+     */
+    public static boolean searchWithCancellationChecks(SearchContext searchContext, Collector collector) throws IOException {
+        // the request may have been waiting in the search queue while the search was cancelled
+        checkCancelled(searchContext);
+        final boolean timeoutSet = setCheckCancelled(searchContext);
+        try {
+            searchContext.searcher().search(searchContext.query(), collector);
+        } catch (TimeExceededException e) {
+            assert timeoutSet : "TimeExceededException thrown even though timeout wasn't set";
+            if (searchContext.request().allowPartialSearchResults() == false) {
+                // Can't rethrow TimeExceededException because not serializable
+                throw new QueryPhaseExecutionException(searchContext.shardTarget(), "Time exceeded");
+            }
+            searchContext.queryResult().searchTimedOut(true);
+            return false;
+        } finally {
+            searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+        }
+        return true;
+    }
+
     private static boolean searchWithCollector(SearchContext searchContext, ContextIndexSearcher searcher, Query query,
             LinkedList<QueryCollectorContext> collectors, boolean hasFilterCollector, boolean timeoutSet) throws IOException {
         // create the top docs collector last when the other collectors are known
@@ -355,6 +416,29 @@ public class QueryPhase implements SearchPhase {
         return topDocsFactory.shouldRescore();
     }
 
+    /**
+     * Collects the slices of segments of the shard concurrently, each with its own collector chain, and merges their results.
+     */
+    private static boolean searchConcurrently(SearchContext searchContext, ContextIndexSearcher searcher, Query query,
+            boolean hasFilterCollector, boolean timeoutSet) throws IOException {
+        final QueryPhaseCollectorManager collectorManager = new QueryPhaseCollectorManager(searchContext, hasFilterCollector);
+        QuerySearchResult queryResult = searchContext.queryResult();
+        try {
+            searcher.search(query, collectorManager);
+        } catch (TimeExceededException e) {
+            assert timeoutSet : "TimeExceededException thrown even though timeout wasn't set";
+            if (searchContext.request().allowPartialSearchResults() == false) {
+                // Can't rethrow TimeExceededException because not serializable
+                throw new QueryPhaseExecutionException(searchContext.shardTarget(), "Time exceeded");
+            }
+            queryResult.searchTimedOut(true);
+        } finally {
+            searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+        }
+        // the searcher waits for all the slices even on failure, so the results of the slices are complete up to the timeout
+        collectorManager.postProcess(queryResult);
+        return collectorManager.shouldRescore();
+    }
 
     /*
      * We use collectorManager during sort optimization, where
@@ -490,6 +574,37 @@ public class QueryPhase implements SearchPhase {
         return rewrittenQuery;
     }
 
+    private static NumericSortPruner tryCreateSortPruner(SearchContext searchContext, IndexReader reader, Query query) throws IOException {
+        if (searchContext.sort() == null || searchContext.size() == 0) return null;
+        if (searchContext.searchAfter() != null) return null;
+        if (searchContext.scrollContext() != null) return null;
+        if (searchContext.collapse() != null) return null;
+        if (searchContext.trackScores()) return null;
+        if (searchContext.getProfilers() != null) return null;
+        if (canEarlyTerminate(reader, searchContext.sort())) {
+            // collection already terminates early when the index sort matches the query sort
+            return null;
+        }
+        final int hitsThreshold;
+        final boolean countsHits;
+        if (searchContext.trackTotalHitsUpTo() == SearchContext.TRACK_TOTAL_HITS_DISABLED) {
+            hitsThreshold = 0;
+            countsHits = false;
+        } else if (shortcutTotalHitCount(reader, query) != -1) {
+            hitsThreshold = 0;
+            countsHits = false;
+        } else if (searchContext.trackTotalHitsUpTo() == SearchContext.TRACK_TOTAL_HITS_ACCURATE) {
+            // all hits must be counted, none can be skipped
+            return null;
+        } else {
+            hitsThreshold = searchContext.trackTotalHitsUpTo();
+            countsHits = true;
+        }
+        final int numHits = Math.min(searchContext.from() + searchContext.size(), Math.max(1, reader.numDocs()));
+        return NumericSortPruner.create(searchContext.mapperService(), searchContext.sort().sort.getSort()[0], numHits,
+            hitsThreshold, countsHits);
+    }
+
     /**
      * Creates a sorter of {@link LeafReaderContext} that orders leaves depending on the minimum
      * value and the sort order of the provided <code>sortField</code>.
@@ -0,0 +1,211 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+import org.elasticsearch.search.aggregations.AggregationInitializationException;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.BucketCollector;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.MultiBucketCollector;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.sort.SortAndFormats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.elasticsearch.search.query.QueryCollectorContext.createFilteredCollectorContext;
+import static org.elasticsearch.search.query.QueryCollectorContext.createMinScoreCollectorContext;
+import static org.elasticsearch.search.query.QueryCollectorContext.createMultiCollectorContext;
+import static org.elasticsearch.search.query.TopDocsCollectorContext.createTopDocsCollectorContext;
+import static org.elasticsearch.search.query.TopDocsCollectorContext.shortcutTotalHitCount;
+
+/**
+ * A {@link CollectorManager} for the main query of the requests whose segments are collected concurrently. Each slice of
+ * segments gets its own collector chain, with its own top docs collector and its own aggregators, so that no collector is
+ * shared between threads. The results of the slices are merged by {@link #postProcess(QuerySearchResult)} rather than by
+ * {@link #reduce(Collection)} so that the partial results of a search that timed out can be returned as well.
+ */
+final class QueryPhaseCollectorManager implements CollectorManager<Collector, Void> {
+
+    private final SearchContext searchContext;
+    private final boolean hasFilterCollector;
+    private final List<TopDocsCollectorContext> topDocsContexts = new ArrayList<>();
+    private final List<Aggregator[]> aggregators = new ArrayList<>();
+
+    /**
+     * @param hasFilterCollector True if the collector chain contains at least one collector that can filter documents
+     */
+    QueryPhaseCollectorManager(SearchContext searchContext, boolean hasFilterCollector) {
+        this.searchContext = searchContext;
+        this.hasFilterCollector = hasFilterCollector;
+    }
+
+    /**
+     * Returns whether the main query of the request can be collected concurrently with this manager. The request must not
+     * need a collector that sees all the documents of the shard (scroll, collapse, terminate_after) and the shard level
+     * results of its aggregations, if any, must reduce exactly across slices.
+     */
+    static boolean canCollectConcurrently(SearchContext searchContext) {
+        if (searchContext.searcher().isConcurrentSearchEnabled() == false) {
+            return false;
+        }
+        if (searchContext.scrollContext() != null || searchContext.collapse() != null
+                || searchContext.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return false;
+        }
+        if (searchContext.aggregations() != null) {
+            return searchContext.request().source() != null && searchContext.request().source().aggregations() != null
+                && searchContext.request().source().aggregations().supportsExactPartialReduce();
+        }
+        return searchContext.queryCollectors().isEmpty();
+    }
+
+    @Override
+    public Collector newCollector() throws IOException {
+        final TopDocsCollectorContext topDocsContext = createTopDocsCollectorContext(searchContext, hasFilterCollector);
+        final List<QueryCollectorContext> collectors = new ArrayList<>();
+        collectors.add(topDocsContext);
+        if (searchContext.parsedPostFilter() != null) {
+            collectors.add(createFilteredCollectorContext(searchContext.searcher(), searchContext.parsedPostFilter().query()));
+        }
+        if (searchContext.aggregations() != null) {
+            final Aggregator[] sliceAggregators;
+            final BucketCollector bucketCollector;
+            try {
+                sliceAggregators = searchContext.aggregations().factories().createTopLevelAggregators(searchContext);
+                bucketCollector = MultiBucketCollector.wrap(Arrays.asList(sliceAggregators));
+                bucketCollector.preCollection();
+            } catch (IOException e) {
+                throw new AggregationInitializationException("Could not initialize aggregators", e);
+            }
+            aggregators.add(sliceAggregators);
+            collectors.add(createMultiCollectorContext(Collections.singletonList(bucketCollector)));
+        }
+        if (searchContext.minimumScore() != null) {
+            collectors.add(createMinScoreCollectorContext(searchContext.minimumScore()));
+        }
+        topDocsContexts.add(topDocsContext);
+        return QueryCollectorContext.createQueryCollector(collectors);
+    }
+
+    @Override
+    public Void reduce(Collection<Collector> collectors) {
+        // the results are merged by postProcess, which is also called when the search timed out
+        return null;
+    }
+
+    /**
+     * Returns true if the top docs should be re-scored after initial search
+     */
+    boolean shouldRescore() {
+        return topDocsContexts.get(0).shouldRescore();
+    }
+
+    /**
+     * Merges the top docs and the aggregations of all the slices into the provided <code>result</code>.
+     */
+    void postProcess(QuerySearchResult result) throws IOException {
+        final SortAndFormats sortAndFormats = searchContext.sort();
+        result.topDocs(mergeTopDocs(), sortAndFormats == null || searchContext.size() == 0 ? null : sortAndFormats.formats);
+        if (searchContext.aggregations() != null) {
+            result.aggregations(reduceAggregations());
+        }
+    }
+
+    private TopDocsAndMaxScore mergeTopDocs() throws IOException {
+        final TopDocsCollectorContext first = topDocsContexts.get(0);
+        if (topDocsContexts.size() == 1) {
+            return first.newTopDocs();
+        }
+        final SortAndFormats sortAndFormats = searchContext.sort();
+        final boolean sorted = sortAndFormats != null && first.numHits() > 0;
+        final TopDocs[] topDocs = sorted ? new TopFieldDocs[topDocsContexts.size()] : new TopDocs[topDocsContexts.size()];
+        float maxScore = Float.NaN;
+        for (int i = 0; i < topDocs.length; i++) {
+            final TopDocsAndMaxScore sliceTopDocs = topDocsContexts.get(i).newTopDocs();
+            topDocs[i] = sliceTopDocs.topDocs;
+            if (Float.isNaN(maxScore) || sliceTopDocs.maxScore > maxScore) {
+                maxScore = sliceTopDocs.maxScore;
+            }
+        }
+        // slices are made of consecutive segments so ties are broken in the same order as when the shard is searched sequentially
+        final TopDocs merged = sorted
+            ? TopDocs.merge(sortAndFormats.sort, 0, first.numHits(), (TopFieldDocs[]) topDocs, true)
+            : TopDocs.merge(0, first.numHits(), topDocs, true);
+        // the shard index is set by the coordinating node
+        for (ScoreDoc scoreDoc : merged.scoreDocs) {
+            scoreDoc.shardIndex = -1;
+        }
+        if (searchContext.trackTotalHitsUpTo() == SearchContext.TRACK_TOTAL_HITS_DISABLED) {
+            // for bwc hit count is set to 0, it will be converted to -1 by the coordinating node
+            merged.totalHits = new TotalHits(0, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
+        } else if (hasFilterCollector == false) {
+            // each slice reports the hit count of the whole shard when it can be computed without collecting the documents
+            final int hitCount = shortcutTotalHitCount(searchContext.searcher().getIndexReader(), searchContext.query());
+            if (hitCount != -1) {
+                merged.totalHits = new TotalHits(hitCount, TotalHits.Relation.EQUAL_TO);
+            }
+        }
+        return new TopDocsAndMaxScore(merged, maxScore);
+    }
+
+    private InternalAggregations reduceAggregations() {
+        final List<InternalAggregations> sliceAggregations = new ArrayList<>(aggregators.size());
+        // the buckets of all slices count towards the limit of the shard
+        searchContext.aggregations().resetBucketMultiConsumer();
+        for (Aggregator[] sliceAggregators : aggregators) {
+            final List<InternalAggregation> aggregations = new ArrayList<>(sliceAggregators.length);
+            for (Aggregator aggregator : sliceAggregators) {
+                try {
+                    aggregator.postCollection();
+                    aggregations.add(aggregator.buildAggregation(0));
+                } catch (IOException e) {
+                    throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
+                }
+            }
+            sliceAggregations.add(new InternalAggregations(aggregations));
+        }
+        final List<InternalAggregation> aggregations = new ArrayList<>();
+        if (sliceAggregations.size() == 1) {
+            sliceAggregations.get(0).forEach(agg -> aggregations.add((InternalAggregation) agg));
+        } else {
+            // a partial reduce, like between the shards of a node, which is exact for the aggregations that support concurrent
+            // collection and never runs scripts
+            final InternalAggregation.ReduceContext reduceContext =
+                new InternalAggregation.ReduceContext(searchContext.bigArrays(), null, false);
+            InternalAggregations.reduce(sliceAggregations, reduceContext).forEach(agg -> aggregations.add((InternalAggregation) agg));
+        }
+        return new InternalAggregations(aggregations, AggregationPhase.createSiblingPipelineAggregators(searchContext));
+    }
+}
@@ -98,6 +98,11 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
         return false;
     }
 
+    /**
+     * Returns the top docs collected by this context, used to merge the top docs of the slices that are collected concurrently
+     */
+    abstract TopDocsAndMaxScore newTopDocs() throws IOException;
+
     static class EmptyTopDocsCollectorContext extends TopDocsCollectorContext {
         private final Collector collector;
         private final Supplier<TotalHits> hitCountSupplier;
@@ -145,9 +150,14 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
         }
 
         @Override
-        void postProcess(QuerySearchResult result) {
+        TopDocsAndMaxScore newTopDocs() {
             final TotalHits totalHitCount = hitCountSupplier.get();
-            result.topDocs(new TopDocsAndMaxScore(new TopDocs(totalHitCount, Lucene.EMPTY_SCORE_DOCS), Float.NaN), null);
+            return new TopDocsAndMaxScore(new TopDocs(totalHitCount, Lucene.EMPTY_SCORE_DOCS), Float.NaN);
+        }
+
+        @Override
+        void postProcess(QuerySearchResult result) {
+            result.topDocs(newTopDocs(), null);
         }
     }
 
@@ -190,9 +200,14 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
         }
 
         @Override
-        void postProcess(QuerySearchResult result) throws IOException {
+        TopDocsAndMaxScore newTopDocs() throws IOException {
             CollapseTopFieldDocs topDocs = topDocsCollector.getTopDocs();
-            result.topDocs(new TopDocsAndMaxScore(topDocs, maxScoreSupplier.get()), sortFmt);
+            return new TopDocsAndMaxScore(topDocs, maxScoreSupplier.get());
+        }
+
+        @Override
+        void postProcess(QuerySearchResult result) throws IOException {
+            result.topDocs(newTopDocs(), sortFmt);
         }
     }
 
@@ -290,6 +305,7 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             return collector;
         }
 
+        @Override
         TopDocsAndMaxScore newTopDocs() {
             TopDocs in = topDocsSupplier.get();
             float maxScore = maxScoreSupplier.get();
@@ -26,6 +26,8 @@ import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.cluster.coordination.PendingClusterStateStats;
 import org.elasticsearch.cluster.coordination.PublishClusterStateStats;
 import org.elasticsearch.http.HttpStats;
+import org.elasticsearch.index.IndexingPressureStats;
+import org.elasticsearch.indices.TranslogSyncStats;
 import org.elasticsearch.indices.breaker.AllCircuitBreakerStats;
 import org.elasticsearch.indices.breaker.CircuitBreakerStats;
 import org.elasticsearch.ingest.IngestStats;
@@ -311,6 +313,45 @@ public class NodeStatsTests extends ESTestCase {
                         assertEquals(aStats.responseTime, bStats.responseTime, 0.01);
                     });
                 }
+                IndexingPressureStats indexingPressureStats = nodeStats.getIndexingPressureStats();
+                IndexingPressureStats deserializedIndexingPressureStats = deserializedNodeStats.getIndexingPressureStats();
+                if (indexingPressureStats == null) {
+                    assertNull(deserializedIndexingPressureStats);
+                } else {
+                    assertEquals(indexingPressureStats.getCurrentCombinedCoordinatingAndPrimaryBytes(),
+                        deserializedIndexingPressureStats.getCurrentCombinedCoordinatingAndPrimaryBytes());
+                    assertEquals(indexingPressureStats.getCurrentCoordinatingBytes(),
+                        deserializedIndexingPressureStats.getCurrentCoordinatingBytes());
+                    assertEquals(indexingPressureStats.getCurrentPrimaryBytes(),
+                        deserializedIndexingPressureStats.getCurrentPrimaryBytes());
+                    assertEquals(indexingPressureStats.getCurrentReplicaBytes(),
+                        deserializedIndexingPressureStats.getCurrentReplicaBytes());
+                    assertEquals(indexingPressureStats.getTotalCoordinatingBytes(),
+                        deserializedIndexingPressureStats.getTotalCoordinatingBytes());
+                    assertEquals(indexingPressureStats.getTotalPrimaryBytes(), deserializedIndexingPressureStats.getTotalPrimaryBytes());
+                    assertEquals(indexingPressureStats.getTotalReplicaBytes(), deserializedIndexingPressureStats.getTotalReplicaBytes());
+                    assertEquals(indexingPressureStats.getCoordinatingRejections(),
+                        deserializedIndexingPressureStats.getCoordinatingRejections());
+                    assertEquals(indexingPressureStats.getPrimaryRejections(), deserializedIndexingPressureStats.getPrimaryRejections());
+                    assertEquals(indexingPressureStats.getReplicaRejections(), deserializedIndexingPressureStats.getReplicaRejections());
+                    assertEquals(indexingPressureStats.getMemoryLimit(), deserializedIndexingPressureStats.getMemoryLimit());
+                }
+                TranslogSyncStats translogSyncStats = nodeStats.getTranslogSyncStats();
+                TranslogSyncStats deserializedTranslogSyncStats = deserializedNodeStats.getTranslogSyncStats();
+                if (translogSyncStats == null) {
+                    assertNull(deserializedTranslogSyncStats);
+                } else {
+                    assertEquals(translogSyncStats.getPaths().size(), deserializedTranslogSyncStats.getPaths().size());
+                    for (int i = 0; i < translogSyncStats.getPaths().size(); i++) {
+                        TranslogSyncStats.PathStats pathStats = translogSyncStats.getPaths().get(i);
+                        TranslogSyncStats.PathStats deserializedPathStats = deserializedTranslogSyncStats.getPaths().get(i);
+                        assertEquals(pathStats.getPath(), deserializedPathStats.getPath());
+                        assertEquals(pathStats.getBatches(), deserializedPathStats.getBatches());
+                        assertEquals(pathStats.getRequests(), deserializedPathStats.getRequests());
+                        assertEquals(pathStats.getSyncs(), deserializedPathStats.getSyncs());
+                        assertEquals(pathStats.getSyncTimeInNanos(), deserializedPathStats.getSyncTimeInNanos());
+                    }
+                }
             }
         }
     }
@@ -485,10 +526,26 @@ public class NodeStatsTests extends ESTestCase {
             }
             adaptiveSelectionStats = new AdaptiveSelectionStats(nodeConnections, nodeStats);
         }
+        IndexingPressureStats indexingPressureStats = null;
+        if (frequently()) {
+            indexingPressureStats = new IndexingPressureStats(randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(),
+                randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(),
+                randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+        }
+        TranslogSyncStats translogSyncStats = null;
+        if (frequently()) {
+            int numPaths = randomIntBetween(0, 3);
+            List<TranslogSyncStats.PathStats> pathStats = new ArrayList<>(numPaths);
+            for (int i = 0; i < numPaths; i++) {
+                pathStats.add(new TranslogSyncStats.PathStats(randomAlphaOfLengthBetween(3, 10), randomNonNegativeLong(),
+                    randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong()));
+            }
+            translogSyncStats = new TranslogSyncStats(pathStats);
+        }
         //TODO NodeIndicesStats are not tested here, way too complicated to create, also they need to be migrated to Writeable yet
         return new NodeStats(node, randomNonNegativeLong(), null, osStats, processStats, jvmStats, threadPoolStats,
                 fsInfo, transportStats, httpStats, allCircuitBreakerStats, scriptStats, discoveryStats,
-                ingestStats, adaptiveSelectionStats);
+                ingestStats, adaptiveSelectionStats, indexingPressureStats, translogSyncStats);
     }
 
     private IngestStats.Stats getPipelineStats(List<IngestStats.PipelineStat> pipelineStats, String id) {
@@ -20,10 +20,13 @@
 package org.elasticsearch.action.bulk;
 
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BulkRequestParserTests extends ESTestCase {
@@ -109,4 +112,79 @@ public class BulkRequestParserTests extends ESTestCase {
         assertTrue(parsed.get());
     }
 
+    public void testIncrementalParserRetainsIncompleteItems() throws IOException {
+        BulkRequestParser parser = new BulkRequestParser(randomBoolean());
+        List<String> ids = new ArrayList<>();
+        BulkRequestParser.IncrementalParser incrementalParser = parser.incrementalParser("foo", null, null, null, false,
+            XContentType.JSON, (indexRequest, type) -> ids.add(indexRequest.id()), req -> fail(), req -> ids.add(req.id()));
+
+        incrementalParser.parse(new BytesArray("{ \"index\":{ \"_id\": \"bar\" } }\n{ \"fie"), false);
+        assertTrue(ids.isEmpty());
+        assertEquals(35, incrementalParser.pendingBytes());
+
+        incrementalParser.parse(new BytesArray("ld\": \"value\" }\n{ \"delete\":{ \"_id\": \"baz\" } }\n{ \"ind"), false);
+        assertEquals(List.of("bar", "baz"), ids);
+        assertEquals(6, incrementalParser.pendingBytes());
+
+        incrementalParser.parse(new BytesArray("ex\":{ \"_id\": \"qux\" } }\n{}\n"), true);
+        assertEquals(List.of("bar", "baz", "qux"), ids);
+        assertEquals(0, incrementalParser.pendingBytes());
+
+        expectThrows(IllegalStateException.class, () -> incrementalParser.parse(new BytesArray("{}\n"), randomBoolean()));
+    }
+
+    public void testIncrementalParserMatchesParse() throws IOException {
+        StringBuilder body = new StringBuilder();
+        int numItems = randomIntBetween(1, 20);
+        for (int i = 0; i < numItems; i++) {
+            switch (randomIntBetween(0, 2)) {
+                case 0:
+                    body.append("{ \"index\":{ \"_id\": \"").append(i).append("\" } }\n{ \"field\": \"")
+                        .append(randomAlphaOfLength(between(1, 50))).append("\" }\n");
+                    break;
+                case 1:
+                    body.append("{ \"update\":{ \"_id\": \"").append(i).append("\" } }\n{ \"doc\": { \"field\": \"")
+                        .append(randomAlphaOfLength(between(1, 50))).append("\" } }\n");
+                    break;
+                default:
+                    body.append("{ \"delete\":{ \"_id\": \"").append(i).append("\" } }\n");
+                    break;
+            }
+        }
+        BytesReference data = new BytesArray(body.toString());
+        BulkRequestParser parser = new BulkRequestParser(randomBoolean());
+
+        List<String> expected = new ArrayList<>();
+        parser.parse(data, "foo", null, null, null, false, XContentType.JSON,
+            (indexRequest, type) -> expected.add("index:" + indexRequest.id() + ":" + indexRequest.source().utf8ToString()),
+            updateRequest -> expected.add("update:" + updateRequest.id()),
+            deleteRequest -> expected.add("delete:" + deleteRequest.id()));
+        assertEquals(numItems, expected.size());
+
+        List<String> actual = new ArrayList<>();
+        BulkRequestParser.IncrementalParser incrementalParser = parser.incrementalParser("foo", null, null, null, false,
+            XContentType.JSON,
+            (indexRequest, type) -> actual.add("index:" + indexRequest.id() + ":" + indexRequest.source().utf8ToString()),
+            updateRequest -> actual.add("update:" + updateRequest.id()),
+            deleteRequest -> actual.add("delete:" + deleteRequest.id()));
+        int from = 0;
+        while (from < data.length()) {
+            int length = randomIntBetween(1, data.length() - from);
+            incrementalParser.parse(data.slice(from, length), from + length == data.length());
+            from += length;
+        }
+        assertEquals(expected, actual);
+        assertEquals(0, incrementalParser.pendingBytes());
+    }
+
+    public void testIncrementalParserBarfOnLackOfTrailingNewline() throws IOException {
+        BulkRequestParser parser = new BulkRequestParser(randomBoolean());
+        BulkRequestParser.IncrementalParser incrementalParser = parser.incrementalParser("foo", null, null, null, false,
+            XContentType.JSON, (req, type) -> fail(), req -> fail(), req -> fail());
+        incrementalParser.parse(new BytesArray("{ \"index\":{ \"_id\": \"bar\" } }\n"), false);
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> incrementalParser.parse(new BytesArray("{}"), true));
+        assertEquals("The bulk request must be terminated by a newline [\\n]", e.getMessage());
+    }
+
 }
@@ -28,6 +28,7 @@ import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.IndexSettings.AutoIdLayout;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.shard.ShardId;
@@ -123,6 +124,17 @@ public class IndexRequestTests extends ESTestCase {
         assertEquals(IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, request.getAutoGeneratedTimestamp());
     }
 
+    public void testAutoGenIdLayout() {
+        IndexRequest first = new IndexRequest("index");
+        first.process(Version.CURRENT, null, "index", AutoIdLayout.TIME_ORDERED);
+        IndexRequest second = new IndexRequest("index");
+        second.process(Version.CURRENT, null, "index", AutoIdLayout.TIME_ORDERED);
+        assertNotNull(first.id());
+        assertNotEquals(first.id(), second.id());
+        // the leading bytes of time ordered ids are the time they were generated at
+        assertEquals(first.id().substring(0, 4), second.id().substring(0, 4));
+    }
+
     public void testIndexResponse() {
         ShardId shardId = new ShardId(randomAlphaOfLengthBetween(3, 10), randomAlphaOfLengthBetween(3, 10), randomIntBetween(0, 1000));
         String id = randomAlphaOfLengthBetween(3, 10);
@@ -19,15 +19,25 @@
 
 package org.elasticsearch.action.search;
 
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.InnerHitBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.InternalTopHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.collapse.CollapseBuilder;
 import org.elasticsearch.search.internal.InternalSearchResponse;
@@ -36,8 +46,11 @@ import org.hamcrest.Matchers;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -200,6 +213,87 @@ public class ExpandSearchPhaseTests extends ESTestCase {
         assertNotNull(mockSearchPhaseContext.searchResponse.get());
     }
 
+    public void testBatchedExpansion() throws IOException {
+        AtomicBoolean executedMultiSearch = new AtomicBoolean(false);
+        List<String> collapseValues = Arrays.asList("a", "b", "c");
+        Map<String, SearchHits> groupHits = new HashMap<>();
+        List<StringTerms.Bucket> buckets = new ArrayList<>();
+        for (String collapseValue : collapseValues) {
+            SearchHits hits = new SearchHits(new SearchHit[]{new SearchHit(1, collapseValue + "1", Collections.emptyMap()),
+                new SearchHit(2, collapseValue + "2", Collections.emptyMap())}, new TotalHits(2, TotalHits.Relation.EQUAL_TO), 1.0F);
+            groupHits.put(collapseValue, hits);
+            InternalTopHits topHits = new InternalTopHits(ExpandSearchPhase.TOP_HITS_AGGREGATION_NAME, 0, 2,
+                new TopDocsAndMaxScore(new TopDocs(new TotalHits(2, TotalHits.Relation.EQUAL_TO), new ScoreDoc[0]), 1.0F), hits,
+                Collections.emptyList(), Collections.emptyMap());
+            buckets.add(new StringTerms.Bucket(new BytesRef(collapseValue), 2,
+                new InternalAggregations(Collections.singletonList(topHits)), false, 0, DocValueFormat.RAW));
+        }
+        // the documents of the last group were deleted before the expansion
+        buckets.remove(buckets.size() - 1);
+        StringTerms terms = new StringTerms(ExpandSearchPhase.GROUPS_AGGREGATION_NAME, BucketOrder.count(false), collapseValues.size(), 1,
+            Collections.emptyList(), Collections.emptyMap(), DocValueFormat.RAW, collapseValues.size(), false, 0, buckets, 0);
+
+        MockSearchPhaseContext mockSearchPhaseContext = new MockSearchPhaseContext(1);
+        QueryBuilder originalQuery = randomBoolean() ? null : QueryBuilders.termQuery("foo", "bar");
+        QueryBuilder postFilter = randomBoolean() ? null : QueryBuilders.existsQuery("foo");
+        mockSearchPhaseContext.getRequest().source(new SearchSourceBuilder()
+            .query(originalQuery)
+            .postFilter(postFilter)
+            .collapse(new CollapseBuilder("someField")
+                .setBatchedExpansion(true)
+                .setInnerHits(new InnerHitBuilder().setName("foobarbaz").setSize(2))));
+        mockSearchPhaseContext.searchTransport = new SearchTransportService(null, null) {
+            @Override
+            void sendExecuteMultiSearch(MultiSearchRequest request, SearchTask task, ActionListener<MultiSearchResponse> listener) {
+                assertTrue(executedMultiSearch.compareAndSet(false, true));
+                // a single search expands all the collapsed hits
+                assertEquals(1, request.requests().size());
+                SearchSourceBuilder source = request.requests().get(0).source();
+                assertEquals(0, source.size());
+                assertNull(source.postFilter());
+                BoolQueryBuilder query = (BoolQueryBuilder) source.query();
+                BoolQueryBuilder groupsQuery = (BoolQueryBuilder) query.filter().get(0);
+                assertThat(groupsQuery.should(), Matchers.contains(QueryBuilders.termsQuery("someField", collapseValues)));
+                if (originalQuery != null) {
+                    assertThat(query.must(), Matchers.contains(originalQuery));
+                }
+                if (postFilter != null) {
+                    assertThat(query.filter(), Matchers.hasItem(postFilter));
+                }
+                assertEquals(1, source.aggregations().count());
+                TermsAggregationBuilder groups = (TermsAggregationBuilder) source.aggregations().getAggregatorFactories().iterator().next();
+                assertEquals(ExpandSearchPhase.GROUPS_AGGREGATION_NAME, groups.getName());
+                assertEquals("someField", groups.field());
+                assertEquals(collapseValues.size(), groups.size());
+
+                InternalSearchResponse internalSearchResponse = new InternalSearchResponse(SearchHits.empty(false),
+                    new InternalAggregations(Collections.singletonList(terms)), null, null, false, null, 1);
+                SearchResponse searchResponse = new SearchResponse(internalSearchResponse, null, 1, 1, 0, 0,
+                    ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+                listener.onResponse(new MultiSearchResponse(
+                    new MultiSearchResponse.Item[]{new MultiSearchResponse.Item(searchResponse, null)}, randomIntBetween(1, 10000)));
+            }
+        };
+
+        SearchHit[] collapsedHits = new SearchHit[collapseValues.size()];
+        for (int i = 0; i < collapsedHits.length; i++) {
+            collapsedHits[i] = new SearchHit(i, "ID" + i, Collections.singletonMap("someField",
+                new DocumentField("someField", Collections.singletonList(collapseValues.get(i)))));
+        }
+        SearchHits hits = new SearchHits(collapsedHits, new TotalHits(collapsedHits.length, TotalHits.Relation.EQUAL_TO), 1.0F);
+        InternalSearchResponse internalSearchResponse = new InternalSearchResponse(hits, null, null, null, false, null, 1);
+        ExpandSearchPhase phase = new ExpandSearchPhase(mockSearchPhaseContext, internalSearchResponse, null);
+        phase.run();
+        mockSearchPhaseContext.assertNoFailure();
+        assertTrue(executedMultiSearch.get());
+        SearchResponse theResponse = mockSearchPhaseContext.searchResponse.get();
+        assertNotNull(theResponse);
+        SearchHit[] expandedHits = theResponse.getHits().getHits();
+        assertSame(groupHits.get("a"), expandedHits[0].getInnerHits().get("foobarbaz"));
+        assertSame(groupHits.get("b"), expandedHits[1].getInnerHits().get("foobarbaz"));
+        assertEquals(0, expandedHits[2].getInnerHits().get("foobarbaz").getHits().length);
+    }
+
     public void testExpandRequestOptions() throws IOException {
         MockSearchPhaseContext mockSearchPhaseContext = new MockSearchPhaseContext(1);
         boolean version = randomBoolean();
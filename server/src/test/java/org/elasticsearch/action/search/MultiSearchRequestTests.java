@@ -34,6 +34,9 @@ import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.action.search.RestMultiSearchAction;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.tasks.CancellableTask;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.StreamsUtils;
 import org.elasticsearch.test.rest.FakeRestRequest;
@@ -84,6 +87,14 @@ public class MultiSearchRequestTests extends ESTestCase {
         assertThat(request.requests().get(7).indices(), is(Strings.EMPTY_ARRAY));
     }
 
+    public void testCreateCancellableTask() {
+        MultiSearchRequest request = new MultiSearchRequest();
+        request.add(new SearchRequest("index"));
+        Task task = request.createTask(1L, "transport", MultiSearchAction.NAME, new TaskId("node", 2L), Collections.emptyMap());
+        assertThat(task, instanceOf(CancellableTask.class));
+        assertTrue(((CancellableTask) task).shouldCancelChildrenOnCancellation());
+    }
+
     public void testFailWithUnknownKey() {
         final String requestContent = "{\"index\":\"test\", \"ignore_unavailable\" : true, \"unknown_key\" : \"open,closed\"}}\r\n" +
             "{\"query\" : {\"match_all\" :{}}}\r\n";
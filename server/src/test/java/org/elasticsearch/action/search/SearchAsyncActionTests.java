@@ -25,15 +25,25 @@ import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.RecoverySource;
 import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.routing.TestShardRouting;
 import org.elasticsearch.cluster.routing.UnassignedInfo;
+import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.Transport;
 import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportRequest;
@@ -41,9 +51,11 @@ import org.elasticsearch.transport.TransportRequestOptions;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -468,6 +480,229 @@ public class SearchAsyncActionTests extends ESTestCase {
         assertThat(numFailReplicas.get(), greaterThanOrEqualTo(1));
     }
 
+    public void testHedgeSlowShardRequests() throws Exception {
+        SearchRequest request = new SearchRequest();
+        request.allowPartialSearchResults(true);
+        int numShards = randomIntBetween(1, 10);
+        // slow requests must not hold back the requests of other shards
+        request.setMaxConcurrentShardRequests(numShards);
+        ActionListener<SearchResponse> responseListener = ActionListener.wrap(response -> {},
+            (e) -> { throw new AssertionError("unexpected", e);});
+        DiscoveryNode slowNode = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        DiscoveryNode fastNode = new DiscoveryNode("node_2", buildNewFakeTransportAddress(), Version.CURRENT);
+        GroupShardsIterator<SearchShardIterator> shardsIter = getShardsIter("idx",
+            new OriginalIndices(new String[]{"idx"}, SearchRequest.DEFAULT_INDICES_OPTIONS),
+            numShards, true, slowNode, fastNode);
+
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ClusterSettings clusterSettings = new ClusterSettings(Settings.builder()
+                .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+                .put(ShardRequestHedging.HEDGING_MIN_DELAY_SETTING.getKey(), "1ms")
+                .put(ShardRequestHedging.HEDGING_MAX_IN_FLIGHT_PER_NODE_SETTING.getKey(), numShards)
+                .build(), ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+            ResponseCollectorService responseCollectorService =
+                new ResponseCollectorService(new ClusterService(Settings.EMPTY, clusterSettings, threadPool));
+            // only the slow node has statistics, so only the requests that are sent to it first are hedged
+            responseCollectorService.addNodeStatistics(slowNode.getId(), 1, 1000, 1000);
+            ShardRequestHedging hedging = new ShardRequestHedging(clusterSettings, threadPool, responseCollectorService);
+
+            AtomicInteger contextIdGenerator = new AtomicInteger(0);
+            Set<Long> freedContexts = newConcurrentSet();
+            SearchTransportService transportService = new SearchTransportService(null, null) {
+                @Override
+                public void sendFreeContext(Transport.Connection connection, long contextId, OriginalIndices originalIndices) {
+                    assertEquals(slowNode, connection.getNode());
+                    assertTrue(freedContexts.add(contextId));
+                }
+            };
+            Map<String, Transport.Connection> lookup = new HashMap<>();
+            lookup.put(slowNode.getId(), new MockConnection(slowNode));
+            lookup.put(fastNode.getId(), new MockConnection(fastNode));
+            Map<String, AliasFilter> aliasFilters = Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY));
+            List<Runnable> slowResponses = Collections.synchronizedList(new ArrayList<>());
+            AtomicReference<SearchPhaseResults<TestSearchPhaseResult>> phaseResults = new AtomicReference<>();
+            CountDownLatch latch = new CountDownLatch(1);
+            AbstractSearchAsyncAction<TestSearchPhaseResult> asyncAction =
+                new AbstractSearchAsyncAction<TestSearchPhaseResult>(
+                    "test",
+                    logger,
+                    transportService,
+                    (cluster, node) -> {
+                        assert cluster == null : "cluster was not null: " + cluster;
+                        return lookup.get(node); },
+                    aliasFilters,
+                    Collections.emptyMap(),
+                    Collections.emptyMap(),
+                    null,
+                    request,
+                    responseListener,
+                    shardsIter,
+                    new TransportSearchAction.SearchTimeProvider(0, 0, () -> 0),
+                    0,
+                    null,
+                    new ArraySearchPhaseResults<>(shardsIter.size()),
+                    request.getMaxConcurrentShardRequests(),
+                    SearchResponse.Clusters.EMPTY,
+                    hedging) {
+
+                    @Override
+                    protected void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
+                                                       SearchActionListener<TestSearchPhaseResult> listener) {
+                        DiscoveryNode node = getConnection(null, shard.currentNodeId()).getNode();
+                        TestSearchPhaseResult result = new TestSearchPhaseResult(contextIdGenerator.incrementAndGet(), node);
+                        if (node.equals(slowNode)) {
+                            slowResponses.add(() -> listener.onResponse(result));
+                        } else {
+                            new Thread(() -> listener.onResponse(result)).start();
+                        }
+                    }
+
+                    @Override
+                    protected SearchPhase getNextPhase(SearchPhaseResults<TestSearchPhaseResult> results,
+                                                       SearchPhaseContext context) {
+                        return new SearchPhase("test") {
+                            @Override
+                            public void run() {
+                                phaseResults.set(results);
+                                latch.countDown();
+                            }
+                        };
+                    }
+                };
+            asyncAction.start();
+            latch.await();
+            for (int i = 0; i < numShards; i++) {
+                assertEquals(fastNode, phaseResults.get().getAtomicArray().get(i).node);
+            }
+            SearchResponse searchResponse = asyncAction.buildSearchResponse(null, null, asyncAction.buildShardFailures());
+            assertEquals(numShards, searchResponse.getSuccessfulShards());
+            assertEquals(0, searchResponse.getFailedShards());
+
+            // the requests that lost answer late, their search contexts are released
+            List<Runnable> lostRequests = new ArrayList<>(slowResponses);
+            lostRequests.forEach(Runnable::run);
+            assertEquals(lostRequests.size(), freedContexts.size());
+            assertBusy(() -> assertEquals(0, hedging.inFlight(fastNode.getId())));
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    public void testDoesNotHedgeTheRetryOfAFailedRequest() throws Exception {
+        SearchRequest request = new SearchRequest();
+        request.allowPartialSearchResults(true);
+        ActionListener<SearchResponse> responseListener = ActionListener.wrap(response -> {},
+            (e) -> { throw new AssertionError("unexpected", e);});
+        DiscoveryNode failingNode = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        DiscoveryNode retryNode = new DiscoveryNode("node_2", buildNewFakeTransportAddress(), Version.CURRENT);
+        DiscoveryNode otherNode = new DiscoveryNode("node_3", buildNewFakeTransportAddress(), Version.CURRENT);
+        ShardId shardId = new ShardId(new Index("idx", "_na_"), 0);
+        OriginalIndices originalIndices = new OriginalIndices(new String[]{"idx"}, SearchRequest.DEFAULT_INDICES_OPTIONS);
+        GroupShardsIterator<SearchShardIterator> shardsIter = new GroupShardsIterator<>(Collections.singletonList(
+            new SearchShardIterator(null, shardId, Arrays.asList(
+                TestShardRouting.newShardRouting(shardId, failingNode.getId(), true, ShardRoutingState.STARTED),
+                TestShardRouting.newShardRouting(shardId, retryNode.getId(), false, ShardRoutingState.STARTED),
+                TestShardRouting.newShardRouting(shardId, otherNode.getId(), false, ShardRoutingState.STARTED)), originalIndices)));
+
+        List<Runnable> hedges = Collections.synchronizedList(new ArrayList<>());
+        List<Scheduler.ScheduledCancellable> hedgeTasks = Collections.synchronizedList(new ArrayList<>());
+        ThreadPool threadPool = new TestThreadPool(getTestName()) {
+            @Override
+            public ScheduledCancellable schedule(Runnable command, TimeValue delay, String executor) {
+                // the hedges are run by the test, as if their delay expired
+                hedges.add(command);
+                ScheduledCancellable hedgeTask = super.schedule(() -> {}, TimeValue.timeValueHours(1), executor);
+                hedgeTasks.add(hedgeTask);
+                return hedgeTask;
+            }
+        };
+        try {
+            ClusterSettings clusterSettings = new ClusterSettings(Settings.builder()
+                .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+                .put(ShardRequestHedging.HEDGING_MIN_DELAY_SETTING.getKey(), "1ms")
+                .build(), ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+            ResponseCollectorService responseCollectorService =
+                new ResponseCollectorService(new ClusterService(Settings.EMPTY, clusterSettings, threadPool));
+            responseCollectorService.addNodeStatistics(failingNode.getId(), 1, 1000, 1000);
+            ShardRequestHedging hedging = new ShardRequestHedging(clusterSettings, threadPool, responseCollectorService);
+
+            Map<String, Transport.Connection> lookup = new HashMap<>();
+            lookup.put(failingNode.getId(), new MockConnection(failingNode));
+            lookup.put(retryNode.getId(), new MockConnection(retryNode));
+            lookup.put(otherNode.getId(), new MockConnection(otherNode));
+            Map<String, AliasFilter> aliasFilters = Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY));
+            List<DiscoveryNode> requestedNodes = Collections.synchronizedList(new ArrayList<>());
+            AtomicReference<Runnable> retryResponse = new AtomicReference<>();
+            CountDownLatch retried = new CountDownLatch(1);
+            AtomicReference<SearchPhaseResults<TestSearchPhaseResult>> phaseResults = new AtomicReference<>();
+            CountDownLatch latch = new CountDownLatch(1);
+            AbstractSearchAsyncAction<TestSearchPhaseResult> asyncAction =
+                new AbstractSearchAsyncAction<TestSearchPhaseResult>(
+                    "test",
+                    logger,
+                    new SearchTransportService(null, null),
+                    (cluster, node) -> {
+                        assert cluster == null : "cluster was not null: " + cluster;
+                        return lookup.get(node); },
+                    aliasFilters,
+                    Collections.emptyMap(),
+                    Collections.emptyMap(),
+                    null,
+                    request,
+                    responseListener,
+                    shardsIter,
+                    new TransportSearchAction.SearchTimeProvider(0, 0, () -> 0),
+                    0,
+                    null,
+                    new ArraySearchPhaseResults<>(shardsIter.size()),
+                    request.getMaxConcurrentShardRequests(),
+                    SearchResponse.Clusters.EMPTY,
+                    hedging) {
+
+                    @Override
+                    protected void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
+                                                       SearchActionListener<TestSearchPhaseResult> listener) {
+                        DiscoveryNode node = getConnection(null, shard.currentNodeId()).getNode();
+                        requestedNodes.add(node);
+                        if (node.equals(failingNode)) {
+                            new Thread(() -> listener.onFailure(new RuntimeException("boom"))).start();
+                        } else {
+                            retryResponse.set(() -> listener.onResponse(new TestSearchPhaseResult(1, node)));
+                            retried.countDown();
+                        }
+                    }
+
+                    @Override
+                    protected SearchPhase getNextPhase(SearchPhaseResults<TestSearchPhaseResult> results,
+                                                       SearchPhaseContext context) {
+                        return new SearchPhase("test") {
+                            @Override
+                            public void run() {
+                                phaseResults.set(results);
+                                latch.countDown();
+                            }
+                        };
+                    }
+                };
+            asyncAction.start();
+            retried.await();
+            assertEquals(Arrays.asList(failingNode, retryNode), requestedNodes);
+            // the hedge of the first request is cancelled by its failure and doesn't hedge the retry if its delay expires anyway
+            assertEquals(1, hedges.size());
+            assertTrue(hedgeTasks.get(0).isCancelled());
+            hedges.get(0).run();
+            assertEquals(Arrays.asList(failingNode, retryNode), requestedNodes);
+            assertEquals(0, hedging.inFlight(otherNode.getId()));
+
+            retryResponse.get().run();
+            latch.await();
+            assertEquals(retryNode, phaseResults.get().getAtomicArray().get(0).node);
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
     static GroupShardsIterator<SearchShardIterator> getShardsIter(String index, OriginalIndices originalIndices, int numShards,
                                                      boolean doReplicas, DiscoveryNode primaryNode, DiscoveryNode replicaNode) {
         ArrayList<SearchShardIterator> list = new ArrayList<>();
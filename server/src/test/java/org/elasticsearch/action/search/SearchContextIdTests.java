@@ -0,0 +1,57 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SearchContextIdTests extends ESTestCase {
+
+    public void testEncodeAndDecode() {
+        int numIndices = randomIntBetween(1, 5);
+        String[] indices = new String[numIndices];
+        Map<ShardId, SearchContextId.ReaderIdForNode> shards = new HashMap<>();
+        for (int i = 0; i < numIndices; i++) {
+            indices[i] = randomAlphaOfLengthBetween(5, 10) + i;
+            String uuid = randomAlphaOfLength(10);
+            int numShards = randomIntBetween(1, 5);
+            for (int j = 0; j < numShards; j++) {
+                shards.put(new ShardId(indices[i], uuid, j),
+                    new SearchContextId.ReaderIdForNode(randomAlphaOfLength(8), randomNonNegativeLong()));
+            }
+        }
+        Version version = VersionUtils.randomCompatibleVersion(random(), Version.CURRENT);
+        String id = SearchContextId.encode(indices, shards, version);
+        SearchContextId decoded = SearchContextId.decode(id);
+        assertArrayEquals(indices, decoded.indices());
+        assertEquals(shards, decoded.shards());
+    }
+
+    public void testDecodeInvalidId() {
+        IllegalArgumentException exc = expectThrows(IllegalArgumentException.class, () -> SearchContextId.decode("invalid"));
+        assertEquals("Cannot parse point in time id", exc.getMessage());
+        exc = expectThrows(IllegalArgumentException.class, () -> SearchContextId.decode("AAAA"));
+        assertEquals("Cannot parse point in time id", exc.getMessage());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.node.ResponseCollectorService;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ShardRequestHedgingTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+    private ClusterSettings clusterSettings;
+    private ResponseCollectorService responseCollectorService;
+    private ShardRequestHedging hedging;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getTestName());
+        clusterSettings = new ClusterSettings(Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+            .build(), ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+        responseCollectorService = new ResponseCollectorService(new ClusterService(Settings.EMPTY, clusterSettings, threadPool));
+        hedging = new ShardRequestHedging(clusterSettings, threadPool, responseCollectorService);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        terminate(threadPool);
+    }
+
+    public void testHedgeDelayNanos() {
+        // the median of an exponential distribution is ln(2) times its mean
+        assertThat(ShardRequestHedging.hedgeDelayNanos(1_000_000, 50, 0), equalTo((long) Math.ceil(Math.log(2) * 1_000_000)));
+        // the 95th percentile is about three times the mean
+        assertThat(ShardRequestHedging.hedgeDelayNanos(1_000_000, 95, 0), equalTo(2_995_733L));
+        assertThat(ShardRequestHedging.hedgeDelayNanos(1_000, 95, 10_000_000), equalTo(10_000_000L));
+    }
+
+    public void testHedgeDelay() {
+        assertThat(hedging.hedgeDelay("node_1"), nullValue());
+        responseCollectorService.addNodeStatistics("node_1", 1, 100_000_000, 100_000_000);
+        assertThat(hedging.hedgeDelay("node_1"), equalTo(TimeValue.timeValueNanos(299_573_228)));
+
+        clusterSettings.applySettings(Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+            .put(ShardRequestHedging.HEDGING_PERCENTILE_SETTING.getKey(), 50)
+            .put(ShardRequestHedging.HEDGING_MIN_DELAY_SETTING.getKey(), "1s")
+            .build());
+        assertThat(hedging.hedgeDelay("node_1"), equalTo(TimeValue.timeValueSeconds(1)));
+
+        clusterSettings.applySettings(Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), false)
+            .build());
+        assertFalse(hedging.isEnabled());
+        assertThat(hedging.hedgeDelay("node_1"), nullValue());
+    }
+
+    public void testBudget() {
+        int maxInFlight = randomIntBetween(0, 10);
+        clusterSettings.applySettings(Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+            .put(ShardRequestHedging.HEDGING_MAX_IN_FLIGHT_PER_NODE_SETTING.getKey(), maxInFlight)
+            .build());
+        for (int i = 0; i < maxInFlight; i++) {
+            assertTrue(hedging.tryAcquire("node_1"));
+        }
+        assertFalse(hedging.tryAcquire("node_1"));
+        assertThat(hedging.inFlight("node_1"), equalTo(maxInFlight));
+        // the budget is per node
+        if (maxInFlight > 0) {
+            assertTrue(hedging.tryAcquire("node_2"));
+            hedging.release("node_2");
+            hedging.release("node_1");
+            assertTrue(hedging.tryAcquire("node_1"));
+        }
+        for (int i = 0; i < maxInFlight; i++) {
+            hedging.release("node_1");
+        }
+        assertThat(hedging.inFlight("node_1"), equalTo(0));
+        assertThat(hedging.inFlight("node_2"), equalTo(0));
+    }
+}
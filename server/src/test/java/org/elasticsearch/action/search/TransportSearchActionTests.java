@@ -29,6 +29,9 @@ import org.elasticsearch.action.OriginalIndicesTests;
 import org.elasticsearch.action.admin.cluster.shards.ClusterSearchShardsGroup;
 import org.elasticsearch.action.admin.cluster.shards.ClusterSearchShardsResponse;
 import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.IndexTimestampRange;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.GroupShardsIteratorTests;
@@ -44,12 +47,14 @@ import org.elasticsearch.common.transport.TransportAddress;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.query.InnerHitBuilder;
 import org.elasticsearch.index.query.MatchAllQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.TermsQueryBuilder;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
@@ -789,6 +794,57 @@ public class TransportSearchActionTests extends ESTestCase {
         }
     }
 
+    public void testSkipIndicesOutsideOfTimestampRanges() {
+        MetaData.Builder metaDataBuilder = MetaData.builder();
+        Index[] indices = new Index[4];
+        for (int i = 0; i < indices.length; i++) {
+            IndexMetaData.Builder indexMetaData = IndexMetaData.builder("index-" + i)
+                .settings(Settings.builder()
+                    .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                    .put(IndexTimestampRange.INDEX_TIMESTAMP_RANGE_FIELD_SETTING.getKey(), "@timestamp")
+                    .put(IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.getKey(), true))
+                .numberOfShards(1)
+                .numberOfReplicas(0);
+            // the last index has no recorded range, so it is never skipped
+            if (i < indices.length - 1) {
+                indexMetaData.putCustom("timestamp_range",
+                    Map.of("field", "@timestamp", "min", Long.toString(i * 1000L), "max", Long.toString(i * 1000L + 999)));
+            }
+            indices[i] = indexMetaData.build().getIndex();
+            metaDataBuilder.put(indexMetaData);
+        }
+        MetaData metaData = metaDataBuilder.build();
+
+        SearchRequest searchRequest = new SearchRequest().source(new SearchSourceBuilder().query(QueryBuilders.boolQuery()
+            .must(QueryBuilders.termQuery("field", "value"))
+            .filter(QueryBuilders.rangeQuery("@timestamp").gte(1500).lt(2500).format("epoch_millis"))));
+        assertArrayEquals(new Index[] { indices[1], indices[2], indices[3] },
+            TransportSearchAction.skipIndicesOutsideOfTimestampRanges(searchRequest, metaData, () -> 0L, indices));
+
+        searchRequest.source().query(QueryBuilders.constantScoreQuery(QueryBuilders.rangeQuery("@timestamp").gte("now-1s")));
+        assertArrayEquals(new Index[] { indices[1], indices[2], indices[3] },
+            TransportSearchAction.skipIndicesOutsideOfTimestampRanges(searchRequest, metaData, () -> 2500L, indices));
+
+        // at least one index is kept
+        Index[] indicesWithRanges = Arrays.copyOf(indices, 3);
+        searchRequest.source().query(QueryBuilders.rangeQuery("@timestamp").gt(5000).format("epoch_millis"));
+        assertArrayEquals(new Index[] { indices[0] },
+            TransportSearchAction.skipIndicesOutsideOfTimestampRanges(searchRequest, metaData, () -> 0L, indicesWithRanges));
+
+        // ranges on other fields, optional ranges, dfs and global aggregations don't skip indices
+        searchRequest.source().query(QueryBuilders.rangeQuery("other").gt(5000).format("epoch_millis"));
+        assertSame(indices, TransportSearchAction.skipIndicesOutsideOfTimestampRanges(searchRequest, metaData, () -> 0L, indices));
+        searchRequest.source().query(QueryBuilders.boolQuery()
+            .should(QueryBuilders.rangeQuery("@timestamp").gt(5000).format("epoch_millis")));
+        assertSame(indices, TransportSearchAction.skipIndicesOutsideOfTimestampRanges(searchRequest, metaData, () -> 0L, indices));
+        searchRequest.source().query(QueryBuilders.rangeQuery("@timestamp").gt(5000).format("epoch_millis"));
+        searchRequest.searchType(SearchType.DFS_QUERY_THEN_FETCH);
+        assertSame(indices, TransportSearchAction.skipIndicesOutsideOfTimestampRanges(searchRequest, metaData, () -> 0L, indices));
+        searchRequest.searchType(SearchType.QUERY_THEN_FETCH);
+        searchRequest.source().aggregation(AggregationBuilders.global("global"));
+        assertSame(indices, TransportSearchAction.skipIndicesOutsideOfTimestampRanges(searchRequest, metaData, () -> 0L, indices));
+    }
+
     public void testShouldMinimizeRoundtrips() throws Exception {
         {
             SearchRequest searchRequest = new SearchRequest();
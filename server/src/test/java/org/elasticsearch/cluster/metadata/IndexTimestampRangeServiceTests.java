@@ -0,0 +1,66 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.metadata;
+
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+
+import java.time.Instant;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IndexTimestampRangeServiceTests extends ESSingleNodeTestCase {
+
+    private IndexMetaData indexMetaData(String index) {
+        return getInstanceFromNode(ClusterService.class).state().metaData().index(index);
+    }
+
+    private void setWriteBlock(String index, boolean blocked) {
+        client().admin().indices().prepareUpdateSettings(index)
+            .setSettings(Settings.builder().put(IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.getKey(), blocked))
+            .get();
+    }
+
+    public void testRangeIsOnlyRecordedWhileWritesAreBlocked() throws Exception {
+        createIndex("test", Settings.builder().put(IndexTimestampRange.INDEX_TIMESTAMP_RANGE_FIELD_SETTING.getKey(), "@timestamp").build(),
+            "_doc", "@timestamp", "type=date");
+        client().prepareIndex("test").setId("1").setSource("@timestamp", "2020-01-01T00:00:00Z").get();
+        client().prepareIndex("test").setId("2").setSource("@timestamp", "2020-01-02T00:00:00Z").get();
+
+        setWriteBlock("test", true);
+        assertBusy(() -> assertThat(IndexTimestampRange.fromIndexMetaData(indexMetaData("test")), notNullValue()));
+        IndexTimestampRange range = IndexTimestampRange.fromIndexMetaData(indexMetaData("test"));
+        assertThat(range.getMin(), equalTo(Instant.parse("2020-01-01T00:00:00Z").toEpochMilli()));
+        assertThat(range.getMax(), equalTo(Instant.parse("2020-01-02T00:00:00Z").toEpochMilli()));
+
+        // the update that lifts the block removes the range, before the index can receive writes
+        setWriteBlock("test", false);
+        assertThat(indexMetaData("test").getCustomData(IndexTimestampRange.CUSTOM_KEY), nullValue());
+        client().prepareIndex("test").setId("3").setSource("@timestamp", "2020-01-03T00:00:00Z").get();
+
+        setWriteBlock("test", true);
+        assertBusy(() -> assertThat(IndexTimestampRange.fromIndexMetaData(indexMetaData("test")), notNullValue()));
+        range = IndexTimestampRange.fromIndexMetaData(indexMetaData("test"));
+        assertThat(range.getMax(), equalTo(Instant.parse("2020-01-03T00:00:00Z").toEpochMilli()));
+    }
+}
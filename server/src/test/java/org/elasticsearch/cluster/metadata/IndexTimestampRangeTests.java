@@ -0,0 +1,129 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.metadata;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.admin.indices.rollover.RolloverInfo;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.test.ESTestCase;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IndexTimestampRangeTests extends ESTestCase {
+
+    private static final long MIN = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+    private static final long MAX = Instant.parse("2020-01-01T23:59:59.999Z").toEpochMilli();
+
+    public void testFromIndexMetaData() {
+        IndexMetaData.Builder indexMetaData =
+            indexMetaData(Settings.builder().put(IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.getKey(), true).build());
+        assertThat(IndexTimestampRange.fromIndexMetaData(indexMetaData.build()), nullValue());
+
+        String format = randomBoolean() ? null : "yyyy-MM-dd";
+        IndexTimestampRange range = new IndexTimestampRange("@timestamp", format, MIN, MAX);
+        indexMetaData.putCustom(IndexTimestampRange.CUSTOM_KEY, range.toCustomData());
+        IndexTimestampRange parsed = IndexTimestampRange.fromIndexMetaData(indexMetaData.build());
+        assertThat(parsed.getField(), equalTo("@timestamp"));
+        assertThat(parsed.getMin(), equalTo(MIN));
+        assertThat(parsed.getMax(), equalTo(MAX));
+        assertThat(parsed.toCustomData(), equalTo(range.toCustomData()));
+
+        // the range of an index that may receive writes is ignored
+        indexMetaData.settings(Settings.builder().put(indexMetaData.build().getSettings())
+            .put(IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.getKey(), false));
+        assertThat(IndexTimestampRange.fromIndexMetaData(indexMetaData.build()), nullValue());
+    }
+
+    public void testMayMatch() {
+        IndexTimestampRange range = new IndexTimestampRange("@timestamp", null, MIN, MAX);
+        assertTrue(range.mayMatch(rangeQuery().gte("2020-01-01T12:00:00Z"), () -> 0L));
+        assertTrue(range.mayMatch(rangeQuery().gt("2019-12-31").lte("2020-01-01"), () -> 0L));
+        assertTrue(range.mayMatch(rangeQuery().lt(MIN + 1).format("epoch_millis"), () -> 0L));
+        assertFalse(range.mayMatch(rangeQuery().lt(MIN).format("epoch_millis"), () -> 0L));
+        assertFalse(range.mayMatch(rangeQuery().gte("2020-01-02"), () -> 0L));
+        assertFalse(range.mayMatch(rangeQuery().lte("2019-12-31T23:59:59.999Z"), () -> 0L));
+        // date math is resolved against the start time of the search
+        assertTrue(range.mayMatch(rangeQuery().gte("now-1d"), () -> MAX + 1000));
+        assertFalse(range.mayMatch(rangeQuery().gte("now-1h"), () -> MAX + 7_200_000));
+        // time zones shift the bounds
+        assertFalse(range.mayMatch(rangeQuery().gte("2020-01-02T00:00:00"), () -> 0L));
+        assertTrue(range.mayMatch(rangeQuery().gte("2020-01-02T00:00:00").timeZone("+01:00"), () -> 0L));
+        // bounds that can't be parsed never skip the index
+        assertTrue(range.mayMatch(rangeQuery().gte("not a date"), () -> 0L));
+
+        // the format of the field is used unless the query has one
+        IndexTimestampRange formatted = new IndexTimestampRange("@timestamp", "dd/MM/yyyy", MIN, MAX);
+        assertFalse(formatted.mayMatch(rangeQuery().gte("02/01/2020"), () -> 0L));
+        assertTrue(formatted.mayMatch(rangeQuery().gte("01/01/2020"), () -> 0L));
+        assertTrue(formatted.mayMatch(rangeQuery().gte("2020-01-01").format("strict_date"), () -> 0L));
+
+        IndexTimestampRange empty = new IndexTimestampRange("@timestamp", null, Long.MAX_VALUE, Long.MIN_VALUE);
+        assertFalse(empty.mayMatch(rangeQuery().gte("2020-01-01"), () -> 0L));
+    }
+
+    public void testIsWriteBlocked() {
+        assertFalse(IndexTimestampRange.isWriteBlocked(indexMetaData(Settings.EMPTY).build()));
+        assertTrue(IndexTimestampRange.isWriteBlocked(indexMetaData(
+            Settings.builder().put(IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.getKey(), true).build()).build()));
+        assertTrue(IndexTimestampRange.isWriteBlocked(indexMetaData(
+            Settings.builder().put(IndexMetaData.INDEX_READ_ONLY_SETTING.getKey(), true).build()).build()));
+        // rolled over indices may still receive writes
+        assertFalse(IndexTimestampRange.isWriteBlocked(indexMetaData(Settings.EMPTY)
+            .putRolloverInfo(new RolloverInfo("alias", Collections.emptyList(), randomNonNegativeLong())).build()));
+    }
+
+    public void testTimestampFormat() {
+        IndexMetaData indexMetaData = indexMetaData(Settings.EMPTY)
+            .putMapping("{\"properties\":{\"@timestamp\":{\"type\":\"date\"},\"event\":{\"properties\":{"
+                + "\"created\":{\"type\":\"date_nanos\",\"format\":\"strict_date\"},\"name\":{\"type\":\"keyword\"},"
+                + "\"ingested\":{\"type\":\"date\",\"locale\":\"de\"}}}}}")
+            .build();
+        assertThat(IndexTimestampRangeService.timestampFormat(indexMetaData, "@timestamp"), nullValue());
+        assertThat(IndexTimestampRangeService.timestampFormat(indexMetaData, "event.created"), equalTo("strict_date"));
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> IndexTimestampRangeService.timestampFormat(indexMetaData, "event.name"));
+        assertThat(e.getMessage(), containsString("is of type [keyword] but must be a date"));
+        e = expectThrows(IllegalArgumentException.class, () -> IndexTimestampRangeService.timestampFormat(indexMetaData, "event.ingested"));
+        assertThat(e.getMessage(), containsString("has a locale"));
+        e = expectThrows(IllegalArgumentException.class, () -> IndexTimestampRangeService.timestampFormat(indexMetaData, "missing"));
+        assertThat(e.getMessage(), containsString("isn't mapped"));
+    }
+
+    private static RangeQueryBuilder rangeQuery() {
+        return QueryBuilders.rangeQuery("@timestamp");
+    }
+
+    private static IndexMetaData.Builder indexMetaData(Settings settings) {
+        return IndexMetaData.builder("index")
+            .settings(Settings.builder()
+                .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexTimestampRange.INDEX_TIMESTAMP_RANGE_FIELD_SETTING.getKey(), "@timestamp")
+                .put(settings))
+            .numberOfShards(1)
+            .numberOfReplicas(0);
+    }
+}
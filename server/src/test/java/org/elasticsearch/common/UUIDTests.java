@@ -37,13 +37,18 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.test.ESTestCase;
 import org.hamcrest.Matchers;
 
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 public class UUIDTests extends ESTestCase {
 
     static UUIDGenerator timeUUIDGen = new TimeBasedUUIDGenerator();
+    static UUIDGenerator timeOrderedUUIDGen = new TimeOrderedUUIDGenerator();
     static UUIDGenerator randomUUIDGen = new RandomBasedUUIDGenerator();
 
     public void testRandomUUID() {
@@ -58,6 +63,54 @@ public class UUIDTests extends ESTestCase {
         testUUIDThreaded(timeUUIDGen);
     }
 
+    public void testTimeOrderedUUID() {
+        verifyUUIDSet(100000, timeOrderedUUIDGen);
+    }
+
+    public void testThreadedTimeOrderedUUID() {
+        testUUIDThreaded(timeOrderedUUIDGen);
+    }
+
+    public void testTimeOrderedUUIDsSortByTimeAndNode() {
+        final long[] currentTimeMillis = new long[] { randomLongBetween(0L, 10000000000L) };
+        final byte[][] macAddresses = new byte[][] { new byte[6], new byte[6] };
+        random().nextBytes(macAddresses[0]);
+        random().nextBytes(macAddresses[1]);
+        final int[] node = new int[1];
+        UUIDGenerator generator = new TimeOrderedUUIDGenerator() {
+            @Override
+            protected long currentTimeMillis() {
+                return currentTimeMillis[0];
+            }
+
+            @Override
+            protected byte[] macAddress() {
+                return macAddresses[node[0]];
+            }
+        };
+        byte[] previous = null;
+        for (int i = 0; i < 1000; i++) {
+            if (randomBoolean()) {
+                currentTimeMillis[0] += randomIntBetween(1, 100);
+            }
+            byte[] uuid = Base64.getUrlDecoder().decode(generator.getBase64UUID());
+            assertEquals(15, uuid.length);
+            if (previous != null) {
+                assertThat(Arrays.compareUnsigned(previous, uuid), Matchers.lessThan(0));
+            }
+            previous = uuid;
+        }
+
+        // ids generated on different nodes within the same minute only share their leading time bytes
+        currentTimeMillis[0] &= ~0xFFFFL;
+        String first = generator.getBase64UUID();
+        node[0] = 1;
+        currentTimeMillis[0] += randomIntBetween(0, 0xFFFF);
+        String second = generator.getBase64UUID();
+        assertEquals(first.substring(0, 4), second.substring(0, 4));
+        assertEquals(Arrays.equals(macAddresses[0], macAddresses[1]), first.substring(0, 12).equals(second.substring(0, 12)));
+    }
+
     public void testThreadedRandomUUID() {
         testUUIDThreaded(randomUUIDGen);
     }
@@ -128,7 +181,19 @@ public class UUIDTests extends ESTestCase {
         assertThat(testCompression(100000, 100, 3, logger), Matchers.lessThan(21d)); // ~20 in practice
     }
 
+    public void testTimeOrderedCompression() throws Exception {
+        Logger logger = LogManager.getLogger(UUIDTests.class);
+        assertThat(testCompression(100000, 10000, 3, true, logger), Matchers.lessThan(14d));
+        assertThat(testCompression(100000, 1000, 3, true, logger), Matchers.lessThan(15d));
+        assertThat(testCompression(100000, 100, 3, true, logger), Matchers.lessThan(21d));
+    }
+
     private static double testCompression(int numDocs, int numDocsPerSecond, int numNodes, Logger logger) throws Exception {
+        return testCompression(numDocs, numDocsPerSecond, numNodes, false, logger);
+    }
+
+    private static double testCompression(int numDocs, int numDocsPerSecond, int numNodes, boolean timeOrdered,
+                                          Logger logger) throws Exception {
         final double intervalBetweenDocs = 1000. / numDocsPerSecond; // milliseconds
         final byte[][] macAddresses = new byte[numNodes][];
         Random r = random();
@@ -136,18 +201,31 @@ public class UUIDTests extends ESTestCase {
             macAddresses[i] = new byte[6];
             random().nextBytes(macAddresses[i]);
         }
-        UUIDGenerator generator = new TimeBasedUUIDGenerator() {
-            double currentTimeMillis = TestUtil.nextLong(random(), 0L, 10000000000L);
+        final double[] currentTimeMillis = new double[] { TestUtil.nextLong(random(), 0L, 10000000000L) };
+        final LongSupplier clock = () -> {
+            currentTimeMillis[0] += intervalBetweenDocs * 2 * r.nextDouble();
+            return (long) currentTimeMillis[0];
+        };
+        final Supplier<byte[]> macAddress = () -> RandomPicks.randomFrom(r, macAddresses);
+        UUIDGenerator generator = timeOrdered ? new TimeOrderedUUIDGenerator() {
+            @Override
+            protected long currentTimeMillis() {
+                return clock.getAsLong();
+            }
 
+            @Override
+            protected byte[] macAddress() {
+                return macAddress.get();
+            }
+        } : new TimeBasedUUIDGenerator() {
             @Override
             protected long currentTimeMillis() {
-                currentTimeMillis += intervalBetweenDocs * 2 * r.nextDouble();
-                return (long) currentTimeMillis;
+                return clock.getAsLong();
             }
 
             @Override
             protected byte[] macAddress() {
-                return RandomPicks.randomFrom(r, macAddresses);
+                return macAddress.get();
             }
         };
         // Avoid randomization which will slow down things without improving
@@ -174,7 +252,8 @@ public class UUIDTests extends ESTestCase {
         }
         dir.close();
         double bytesPerDoc = (double) size / numDocs;
-        logger.info(numDocs + " docs indexed at " + numDocsPerSecond + " docs/s required " + new ByteSizeValue(size)
+        logger.info((timeOrdered ? "time ordered ids: " : "default ids: ") + numDocs + " docs indexed at " + numDocsPerSecond
+                + " docs/s required " + new ByteSizeValue(size)
                 + " bytes of disk space, or " + bytesPerDoc + " bytes per document. Took: " + new TimeValue(time) + ".");
         return bytesPerDoc;
     }
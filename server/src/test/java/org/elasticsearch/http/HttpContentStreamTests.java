@@ -0,0 +1,160 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class HttpContentStreamTests extends ESTestCase {
+
+    public void testChunksAreBufferedUntilHandlerIsSet() {
+        RecordingReadControl readControl = new RecordingReadControl();
+        HttpContentStream stream = new HttpContentStream(Long.MAX_VALUE, readControl);
+        stream.receiveChunk(new BytesArray("a"), false);
+        stream.receiveChunk(new BytesArray("b"), false);
+
+        RecordingHandler handler = new RecordingHandler();
+        stream.setHandler(handler);
+        assertThat(handler.chunks, contains("a", "b"));
+        assertFalse(handler.lastChunkReceived);
+
+        stream.receiveChunk(new BytesArray("c"), true);
+        assertThat(handler.chunks, contains("a", "b", "c"));
+        assertTrue(handler.lastChunkReceived);
+
+        // chunks after the last one are dropped
+        stream.receiveChunk(new BytesArray("d"), true);
+        assertThat(handler.chunks, contains("a", "b", "c"));
+        assertFalse(readControl.paused);
+        expectThrows(IllegalStateException.class, () -> stream.setHandler(new RecordingHandler()));
+    }
+
+    public void testLastChunkIsBuffered() {
+        HttpContentStream stream = new HttpContentStream(Long.MAX_VALUE, new RecordingReadControl());
+        stream.receiveChunk(new BytesArray("a"), true);
+        RecordingHandler handler = new RecordingHandler();
+        stream.setHandler(handler);
+        assertThat(handler.chunks, contains("a"));
+        assertTrue(handler.lastChunkReceived);
+    }
+
+    public void testReadingIsPausedWhileTooManyBytesAreBuffered() {
+        RecordingReadControl readControl = new RecordingReadControl();
+        HttpContentStream stream = new HttpContentStream(Long.MAX_VALUE, readControl);
+        stream.receiveChunk(new BytesArray(new byte[HttpContentStream.MAX_BUFFERED_BYTES]), false);
+        assertFalse(readControl.paused);
+        stream.receiveChunk(new BytesArray("a"), false);
+        assertTrue(readControl.paused);
+
+        RecordingHandler handler = new RecordingHandler();
+        stream.setHandler(handler);
+        assertThat(handler.chunks.size(), equalTo(2));
+        assertFalse(readControl.paused);
+    }
+
+    public void testMaxContentLength() {
+        HttpContentStream stream = new HttpContentStream(4, new RecordingReadControl());
+        RecordingHandler handler = new RecordingHandler();
+        stream.setHandler(handler);
+        stream.receiveChunk(new BytesArray("abc"), false);
+        stream.receiveChunk(new BytesArray("de"), false);
+        assertThat(handler.chunks, contains("abc"));
+        assertThat(handler.failure, instanceOf(ElasticsearchStatusException.class));
+        assertThat(((ElasticsearchStatusException) handler.failure).status(), equalTo(RestStatus.REQUEST_ENTITY_TOO_LARGE));
+
+        stream.receiveChunk(new BytesArray("f"), true);
+        assertThat(handler.chunks, contains("abc"));
+        assertFalse(handler.lastChunkReceived);
+    }
+
+    public void testFailureBeforeHandlerIsSet() {
+        HttpContentStream stream = new HttpContentStream(Long.MAX_VALUE, new RecordingReadControl());
+        stream.receiveChunk(new BytesArray("a"), false);
+        stream.fail(new ClosedChannelException());
+        RecordingHandler handler = new RecordingHandler();
+        stream.setHandler(handler);
+        assertThat(handler.chunks, empty());
+        assertThat(handler.failure, instanceOf(ClosedChannelException.class));
+    }
+
+    public void testDiscard() {
+        RecordingReadControl readControl = new RecordingReadControl();
+        HttpContentStream stream = new HttpContentStream(Long.MAX_VALUE, readControl);
+        RecordingHandler handler = new RecordingHandler();
+        stream.setHandler(handler);
+        stream.receiveChunk(new BytesArray("a"), false);
+        stream.pauseReading();
+        assertTrue(readControl.paused);
+
+        stream.discard();
+        assertFalse(readControl.paused);
+        stream.receiveChunk(new BytesArray("b"), false);
+        stream.receiveChunk(new BytesArray("c"), true);
+        stream.fail(new ClosedChannelException());
+        assertThat(handler.chunks, contains("a"));
+        assertFalse(handler.lastChunkReceived);
+        assertNull(handler.failure);
+    }
+
+    private static class RecordingHandler implements HttpContentStream.Handler {
+        private final List<String> chunks = new ArrayList<>();
+        private boolean lastChunkReceived;
+        private Exception failure;
+
+        @Override
+        public void onChunk(BytesReference chunk, boolean isLast) {
+            assertFalse(lastChunkReceived);
+            chunks.add(chunk.utf8ToString());
+            lastChunkReceived = isLast;
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            assertNull(failure);
+            failure = e;
+        }
+    }
+
+    private static class RecordingReadControl implements HttpContentStream.ReadControl {
+        private boolean paused;
+
+        @Override
+        public void pauseReading() {
+            paused = true;
+        }
+
+        @Override
+        public void resumeReading() {
+            paused = false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index;
+
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.test.ESTestCase;
+
+public class IndexingPressureTests extends ESTestCase {
+
+    private final Settings settings = Settings.builder().put(IndexingPressure.MAX_INDEXING_BYTES.getKey(), "10KB").build();
+
+    public void testMemoryBytesMarkedAndReleased() {
+        IndexingPressure indexingPressure = new IndexingPressure(settings);
+        try (Releasable coordinating = indexingPressure.markCoordinatingOperationStarted(10, false);
+             Releasable coordinating2 = indexingPressure.markCoordinatingOperationStarted(50, false);
+             Releasable primary = indexingPressure.markPrimaryOperationStarted(15, true);
+             Releasable primary2 = indexingPressure.markPrimaryOperationStarted(5, false);
+             Releasable replica = indexingPressure.markReplicaOperationStarted(25, true);
+             Releasable replica2 = indexingPressure.markReplicaOperationStarted(10, false)) {
+            IndexingPressureStats stats = indexingPressure.stats();
+            assertEquals(60, stats.getCurrentCoordinatingBytes());
+            assertEquals(20, stats.getCurrentPrimaryBytes());
+            assertEquals(80, stats.getCurrentCombinedCoordinatingAndPrimaryBytes());
+            assertEquals(35, stats.getCurrentReplicaBytes());
+        }
+        IndexingPressureStats stats = indexingPressure.stats();
+        assertEquals(0, stats.getCurrentCoordinatingBytes());
+        assertEquals(0, stats.getCurrentPrimaryBytes());
+        assertEquals(0, stats.getCurrentCombinedCoordinatingAndPrimaryBytes());
+        assertEquals(0, stats.getCurrentReplicaBytes());
+        assertEquals(60, stats.getTotalCoordinatingBytes());
+        assertEquals(20, stats.getTotalPrimaryBytes());
+        assertEquals(35, stats.getTotalReplicaBytes());
+    }
+
+    public void testPrimaryLocalToCoordinatingNodeIsNotCountedTwice() {
+        IndexingPressure indexingPressure = new IndexingPressure(settings);
+        try (Releasable coordinating = indexingPressure.markCoordinatingOperationStarted(1024 * 6, false);
+             Releasable primary = indexingPressure.markPrimaryOperationLocalToCoordinatingNodeStarted(1024 * 6)) {
+            assertEquals(1024 * 6, indexingPressure.getCurrentCombinedCoordinatingAndPrimaryBytes());
+            assertEquals(1024 * 6, indexingPressure.getCurrentPrimaryBytes());
+            // another coordinating operation of the same size still fits in the budget if the primary was not double counted
+            try (Releasable coordinating2 = indexingPressure.markCoordinatingOperationStarted(1024 * 3, false)) {
+                assertEquals(1024 * 9, indexingPressure.getCurrentCombinedCoordinatingAndPrimaryBytes());
+            }
+        }
+        assertEquals(0, indexingPressure.getCurrentCombinedCoordinatingAndPrimaryBytes());
+        assertEquals(0, indexingPressure.getCurrentPrimaryBytes());
+    }
+
+    public void testCoordinatingAndPrimaryRejections() {
+        IndexingPressure indexingPressure = new IndexingPressure(settings);
+        try (Releasable coordinating = indexingPressure.markCoordinatingOperationStarted(1024 * 3, false);
+             Releasable primary = indexingPressure.markPrimaryOperationStarted(1024 * 3, false);
+             Releasable replica = indexingPressure.markReplicaOperationStarted(1024 * 3, false)) {
+            if (randomBoolean()) {
+                expectThrows(EsRejectedExecutionException.class, () -> indexingPressure.markCoordinatingOperationStarted(1024 * 2, false));
+                IndexingPressureStats stats = indexingPressure.stats();
+                assertEquals(1, stats.getCoordinatingRejections());
+                assertEquals(1024 * 6, stats.getCurrentCombinedCoordinatingAndPrimaryBytes());
+            } else {
+                expectThrows(EsRejectedExecutionException.class, () -> indexingPressure.markPrimaryOperationStarted(1024 * 2, false));
+                IndexingPressureStats stats = indexingPressure.stats();
+                assertEquals(1, stats.getPrimaryRejections());
+                assertEquals(1024 * 6, stats.getCurrentCombinedCoordinatingAndPrimaryBytes());
+            }
+            long preForceRejections =
+                indexingPressure.stats().getCoordinatingRejections() + indexingPressure.stats().getPrimaryRejections();
+            // Primary can be forced
+            Releasable forced = indexingPressure.markPrimaryOperationStarted(1024 * 2, true);
+            assertEquals(preForceRejections,
+                indexingPressure.stats().getCoordinatingRejections() + indexingPressure.stats().getPrimaryRejections());
+            assertEquals(1024 * 8, indexingPressure.stats().getCurrentCombinedCoordinatingAndPrimaryBytes());
+            forced.close();
+        }
+
+        IndexingPressureStats stats = indexingPressure.stats();
+        assertEquals(1024 * 8, stats.getTotalCoordinatingBytes() + stats.getTotalPrimaryBytes());
+        assertEquals(0, stats.getCurrentCombinedCoordinatingAndPrimaryBytes());
+    }
+
+    public void testReplicaRejections() {
+        IndexingPressure indexingPressure = new IndexingPressure(settings);
+        try (Releasable replica = indexingPressure.markReplicaOperationStarted(1024 * 14, false)) {
+            // Replica will not be rejected until replica bytes > 15KB
+            Releasable replica2 = indexingPressure.markReplicaOperationStarted(1024, false);
+            assertEquals(1024 * 15, indexingPressure.getCurrentReplicaBytes());
+            // Replica will be rejected once we cross 15KB
+            expectThrows(EsRejectedExecutionException.class, () -> indexingPressure.markReplicaOperationStarted(1024 * 2, false));
+            assertEquals(1, indexingPressure.stats().getReplicaRejections());
+            assertEquals(1024 * 15, indexingPressure.getCurrentReplicaBytes());
+            // Replica can be forced
+            Releasable forced = indexingPressure.markReplicaOperationStarted(1024 * 2, true);
+            assertEquals(1, indexingPressure.stats().getReplicaRejections());
+            assertEquals(1024 * 17, indexingPressure.getCurrentReplicaBytes());
+            forced.close();
+            replica2.close();
+        }
+
+        assertEquals(1024 * 17, indexingPressure.stats().getTotalReplicaBytes());
+        assertEquals(0, indexingPressure.getCurrentReplicaBytes());
+    }
+}
@@ -31,6 +31,7 @@ import static org.elasticsearch.common.settings.Settings.Builder.EMPTY_SETTINGS;
 import static org.elasticsearch.index.IndexSettingsTests.newIndexMeta;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 
 public class MergePolicySettingsTests extends ESTestCase {
     protected final ShardId shardId = new ShardId("index", "_na_", 1);
@@ -64,6 +65,14 @@ public class MergePolicySettingsTests extends ESTestCase {
         assertTrue(mp.getMergePolicy() instanceof NoMergePolicy);
     }
 
+    public void testTimeSeriesMergePolicy() {
+        assertThat(new MergePolicyConfig(logger, indexSettings(Settings.EMPTY)).getMergePolicy(), instanceOf(EsTieredMergePolicy.class));
+        MergePolicyConfig mp = new MergePolicyConfig(logger, indexSettings(Settings.builder()
+            .put(MergePolicyConfig.INDEX_MERGE_POLICY_TIME_SERIES_FIELD_SETTING.getKey(), "@timestamp").build()));
+        assertThat(mp.getMergePolicy(), instanceOf(TimeSeriesMergePolicy.class));
+        assertThat(((TimeSeriesMergePolicy) mp.getMergePolicy()).getField(), equalTo("@timestamp"));
+    }
+
     public void testUpdateSettings() throws IOException {
         IndexSettings indexSettings = indexSettings(EMPTY_SETTINGS);
         assertThat(indexSettings.getMergePolicy().getNoCFSRatio(), equalTo(0.1));
@@ -0,0 +1,146 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.InfoStream;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TimeSeriesMergePolicyTests extends ESTestCase {
+
+    private static final String FIELD = "@timestamp";
+
+    public void testReadTimeBounds() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            int numDocs = randomIntBetween(1, 100);
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < numDocs; i++) {
+                long timestamp = randomLongBetween(0, 1_000_000);
+                min = Math.min(min, timestamp);
+                max = Math.max(max, timestamp);
+                writer.addDocument(timestampDocument(timestamp));
+            }
+            writer.commit();
+            Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+
+            SegmentInfos infos = SegmentInfos.readLatestCommit(dir);
+            assertThat(infos.size(), equalTo(2));
+            TimeSeriesMergePolicy.TimeBounds bounds = TimeSeriesMergePolicy.readTimeBounds(infos.info(0), FIELD);
+            assertThat(bounds.getMin(), equalTo(min));
+            assertThat(bounds.getMax(), equalTo(max));
+            assertThat(TimeSeriesMergePolicy.readTimeBounds(infos.info(1), FIELD), sameInstance(TimeSeriesMergePolicy.TimeBounds.UNKNOWN));
+        }
+    }
+
+    public void testOnlyMergesAdjacentTimeRanges() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            int numSegments = randomIntBetween(6, 20);
+            List<Integer> ranges = new ArrayList<>();
+            for (int i = 0; i < numSegments; i++) {
+                ranges.add(i);
+            }
+            // segments are flushed out of the order of their time ranges
+            Collections.shuffle(ranges, random());
+            for (int range : ranges) {
+                for (int i = 0; i < 10; i++) {
+                    writer.addDocument(timestampDocument(range * 1000L + randomIntBetween(0, 999)));
+                }
+                writer.commit();
+            }
+
+            EsTieredMergePolicy tieredMergePolicy = new EsTieredMergePolicy();
+            tieredMergePolicy.setMaxMergeAtOnce(randomIntBetween(2, 4));
+            tieredMergePolicy.setSegmentsPerTier(tieredMergePolicy.getMaxMergeAtOnce());
+            TimeSeriesMergePolicy policy = new TimeSeriesMergePolicy(tieredMergePolicy, FIELD);
+            SegmentInfos infos = SegmentInfos.readLatestCommit(dir);
+            MergePolicy.MergeSpecification spec = policy.findMerges(MergeTrigger.SEGMENT_FLUSH, infos, new TestMergeContext());
+            assertThat(spec, notNullValue());
+            assertThat(spec.merges.size(), greaterThan(0));
+            for (MergePolicy.OneMerge merge : spec.merges) {
+                assertThat(merge.segments.size(), greaterThan(1));
+                List<Long> mergedRanges = new ArrayList<>();
+                for (SegmentCommitInfo info : merge.segments) {
+                    mergedRanges.add(policy.getTimeBounds(info).getMin() / 1000);
+                }
+                Collections.sort(mergedRanges);
+                for (int i = 1; i < mergedRanges.size(); i++) {
+                    assertThat("merged " + mergedRanges, mergedRanges.get(i), equalTo(mergedRanges.get(i - 1) + 1));
+                }
+            }
+        }
+    }
+
+    private static Document timestampDocument(long timestamp) {
+        Document document = new Document();
+        document.add(new LongPoint(FIELD, timestamp));
+        return document;
+    }
+
+    private static final class TestMergeContext implements MergePolicy.MergeContext {
+
+        @Override
+        public int numDeletesToMerge(SegmentCommitInfo info) {
+            return 0;
+        }
+
+        @Override
+        public int numDeletedDocs(SegmentCommitInfo info) {
+            return 0;
+        }
+
+        @Override
+        public InfoStream getInfoStream() {
+            return InfoStream.NO_OUTPUT;
+        }
+
+        @Override
+        public Set<SegmentCommitInfo> getMergingSegments() {
+            return Collections.emptySet();
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat.Mode;
 import org.apache.lucene.codecs.lucene84.Lucene84Codec;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -67,6 +68,34 @@ public class CodecTests extends ESTestCase {
         assertCompressionEquals(Mode.BEST_COMPRESSION, codec);
     }
 
+    public void testDictionaryCompression() throws Exception {
+        Codec codec = createCodecService().codec("dictionary_compression");
+        assertThat(codec, instanceOf(DictionaryCompressionCodec.class));
+        Directory dir = newDirectory();
+        // a merge policy that keeps documents in order
+        IndexWriterConfig iwc = new IndexWriterConfig(null);
+        iwc.setCodec(codec);
+        IndexWriter iw = new IndexWriter(dir, iwc);
+        int numDocs = randomIntBetween(1, 2000);
+        String[] values = new String[numDocs];
+        for (int i = 0; i < numDocs; i++) {
+            values[i] = "{\"@timestamp\":" + randomNonNegativeLong() + ",\"message\":\"" + randomAlphaOfLengthBetween(0, 600) + "\"}";
+            Document document = new Document();
+            document.add(new StoredField("_source", values[i]));
+            iw.addDocument(document);
+        }
+        iw.forceMerge(1);
+        iw.close();
+        DirectoryReader ir = DirectoryReader.open(dir);
+        SegmentReader sr = (SegmentReader) ir.leaves().get(0).reader();
+        assertEquals(DictionaryCompressionCodec.CODEC_NAME, sr.getSegmentInfo().info.getCodec().getName());
+        for (int i = 0; i < numDocs; i++) {
+            assertEquals(values[i], sr.document(i).get("_source"));
+        }
+        ir.close();
+        dir.close();
+    }
+
     // write some docs with it, inspect .si to see this was the used compression
     private void assertCompressionEquals(Mode expected, Codec actual) throws Exception {
         Directory dir = newDirectory();
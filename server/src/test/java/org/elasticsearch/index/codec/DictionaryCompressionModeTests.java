@@ -0,0 +1,81 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.compressing.Compressor;
+import org.apache.lucene.codecs.compressing.Decompressor;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class DictionaryCompressionModeTests extends ESTestCase {
+
+    public void testRoundTrip() throws IOException {
+        final DictionaryCompressionMode mode = new DictionaryCompressionMode();
+        final Compressor compressor = mode.newCompressor();
+        final Decompressor decompressor = mode.newDecompressor();
+        for (int iter = 0; iter < 20; iter++) {
+            final byte[] bytes = randomBoolean() ? randomDocuments() : randomByteArrayOfLength(randomIntBetween(0, 1 << 16));
+            final byte[] compressed = compress(compressor, bytes);
+            final BytesRef restored = new BytesRef();
+            decompressor.decompress(new ByteArrayDataInput(compressed), bytes.length, 0, bytes.length, restored);
+            assertThat(BytesRef.deepCopyOf(restored).bytes, equalTo(bytes));
+
+            final int offset = randomIntBetween(0, bytes.length);
+            final int length = randomIntBetween(0, bytes.length - offset);
+            decompressor.clone().decompress(new ByteArrayDataInput(compressed), bytes.length, offset, length, restored);
+            assertThat(restored, equalTo(new BytesRef(bytes, offset, length)));
+        }
+    }
+
+    public void testCompressesSimilarDocuments() throws IOException {
+        final byte[] bytes = randomDocuments();
+        final byte[] compressed = compress(new DictionaryCompressionMode().newCompressor(), bytes);
+        assertThat(compressed.length, lessThan(bytes.length * 2 / 3));
+    }
+
+    private static byte[] compress(Compressor compressor, byte[] bytes) throws IOException {
+        final ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+        compressor.compress(bytes, 0, bytes.length, out);
+        return out.toArrayCopy();
+    }
+
+    /**
+     * Concatenates small JSON documents that share their keys and some of their values, like log messages.
+     */
+    private static byte[] randomDocuments() {
+        final String[] hosts = new String[] { "web-01", "web-02", "db-01" };
+        final StringBuilder builder = new StringBuilder();
+        final int numDocs = randomIntBetween(100, 400);
+        for (int i = 0; i < numDocs; i++) {
+            builder.append("{\"@timestamp\":\"2020-01-0").append(randomIntBetween(1, 9)).append("T12:").append(randomIntBetween(10, 59))
+                .append(":00Z\",\"host\":\"").append(randomFrom(hosts)).append("\",\"status\":").append(randomFrom(200, 404, 500))
+                .append(",\"message\":\"GET /index.html HTTP/1.1 ").append(randomAlphaOfLength(8)).append("\"}");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
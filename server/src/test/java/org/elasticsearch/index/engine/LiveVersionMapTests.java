@@ -30,6 +30,7 @@ import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -92,6 +93,59 @@ public class LiveVersionMapTests extends ESTestCase {
         assertEquals(actualRamBytesUsed, estimatedRamBytesUsed, tolerance);
     }
 
+    public void testCompactRamBytesUsed() throws Exception {
+        LiveVersionMap map = new LiveVersionMap(true);
+        for (int i = 0; i < 100000; ++i) {
+            BytesRefBuilder uid = new BytesRefBuilder();
+            uid.copyChars(TestUtil.randomSimpleString(random(), 10, 20));
+            try (Releasable r = map.acquireLock(uid.toBytesRef())) {
+                map.putIndexUnderLock(uid.toBytesRef(), randomIndexVersionValue());
+            }
+        }
+        long actualRamBytesUsed = RamUsageTester.sizeOf(map);
+        long estimatedRamBytesUsed = map.ramBytesUsed();
+        // only the shallow size of the objects holding the arrays is not accounted for
+        assertEquals(actualRamBytesUsed, estimatedRamBytesUsed, actualRamBytesUsed / 20);
+        assertEquals(estimatedRamBytesUsed, map.ramBytesUsedForRefresh());
+
+        // the compact map must use less memory than the default one
+        LiveVersionMap defaultMap = new LiveVersionMap(false);
+        for (int i = 0; i < 100000; ++i) {
+            BytesRefBuilder uid = new BytesRefBuilder();
+            uid.copyChars(TestUtil.randomSimpleString(random(), 10, 20));
+            try (Releasable r = defaultMap.acquireLock(uid.toBytesRef())) {
+                defaultMap.putIndexUnderLock(uid.toBytesRef(), randomIndexVersionValue());
+            }
+        }
+        assertThat(defaultMap.ramBytesUsed(), greaterThan(estimatedRamBytesUsed));
+
+        map.beforeRefresh();
+        assertEquals(estimatedRamBytesUsed, map.getRefreshingBytes());
+        map.afterRefresh(true);
+        assertEquals(0L, map.getRefreshingBytes());
+    }
+
+    public void testCompactPutAndRemove() throws IOException {
+        LiveVersionMap map = new LiveVersionMap(true);
+        BytesRef uid = uid("test");
+        try (Releasable r = map.acquireLock(uid)) {
+            map.putIndexUnderLock(uid, new IndexVersionValue(null, 1, 1, 1));
+            assertEquals(new IndexVersionValue(null, 1, 1, 1), map.getUnderLock(uid));
+            Translog.Location location = new Translog.Location(randomNonNegativeLong(), randomNonNegativeLong(), randomIntBetween(1, 1024));
+            map.putIndexUnderLock(uid, new IndexVersionValue(location, 2, 2, 1));
+            assertEquals(new IndexVersionValue(location, 2, 2, 1), map.getUnderLock(uid));
+            assertEquals(1, map.getAllCurrent().size());
+
+            map.putDeleteUnderLock(uid, new DeleteVersionValue(3, 3, 1, 1));
+            assertEquals(new DeleteVersionValue(3, 3, 1, 1), map.getUnderLock(uid));
+            assertEquals(0, map.getAllCurrent().size());
+
+            map.putIndexUnderLock(uid, new IndexVersionValue(null, 4, 4, 1));
+            assertEquals(new IndexVersionValue(null, 4, 4, 1), map.getUnderLock(uid));
+            assertEquals(Collections.singletonMap(uid, new IndexVersionValue(null, 4, 4, 1)), map.getAllCurrent());
+        }
+    }
+
     public void testRefreshingBytes() throws IOException {
         LiveVersionMap map = new LiveVersionMap();
         BytesRefBuilder uid = new BytesRefBuilder();
@@ -113,7 +167,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testBasics() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = new LiveVersionMap(randomBoolean());
         try (Releasable r = map.acquireLock(uid("test"))) {
             Translog.Location tlogLoc = randomTranslogLocation();
             map.putIndexUnderLock(uid("test"), new IndexVersionValue(tlogLoc, 1, 1, 1));
@@ -145,7 +199,7 @@ public class LiveVersionMapTests extends ESTestCase {
         List<BytesRef> keyList = new ArrayList<>(keySet);
         ConcurrentHashMap<BytesRef, VersionValue> values = new ConcurrentHashMap<>();
         ConcurrentHashMap<BytesRef, DeleteVersionValue> deletes = new ConcurrentHashMap<>();
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = new LiveVersionMap(randomBoolean());
         int numThreads = randomIntBetween(2, 5);
 
         Thread[] threads = new Thread[numThreads];
@@ -273,7 +327,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testCarryOnSafeAccess() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = new LiveVersionMap(randomBoolean());
         assertFalse(map.isUnsafe());
         assertFalse(map.isSafeAccessRequired());
         map.enforceSafeAccess();
@@ -305,7 +359,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testRefreshTransition() throws IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = new LiveVersionMap(randomBoolean());
         try (Releasable r = map.acquireLock(uid("1"))) {
             map.maybePutIndexUnderLock(uid("1"), randomIndexVersionValue());
             assertTrue(map.isUnsafe());
@@ -333,7 +387,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testAddAndDeleteRefreshConcurrently() throws IOException, InterruptedException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = new LiveVersionMap(randomBoolean());
         int numIters = randomIntBetween(1000, 5000);
         AtomicBoolean done = new AtomicBoolean(false);
         AtomicLong version = new AtomicLong();
@@ -390,7 +444,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testPruneTombstonesWhileLocked() throws InterruptedException, IOException {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = new LiveVersionMap(randomBoolean());
         BytesRef uid = uid("1");
 
         try (Releasable ignore = map.acquireLock(uid)) {
@@ -413,7 +467,7 @@ public class LiveVersionMapTests extends ESTestCase {
     }
 
     public void testRandomlyIndexDeleteAndRefresh() throws Exception {
-        final LiveVersionMap versionMap = new LiveVersionMap();
+        final LiveVersionMap versionMap = new LiveVersionMap(randomBoolean());
         final BytesRef uid = uid("1");
         final long versions = between(10, 1000);
         VersionValue latestVersion = null;
@@ -454,7 +508,7 @@ public class LiveVersionMapTests extends ESTestCase {
         if (randomBoolean()) {
             return null;
         } else {
-            return new Translog.Location(randomNonNegativeLong(), randomNonNegativeLong(), randomInt());
+            return new Translog.Location(randomNonNegativeLong(), randomNonNegativeLong(), randomIntBetween(1, 1024));
         }
     }
 }
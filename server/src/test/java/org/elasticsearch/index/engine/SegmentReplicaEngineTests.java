@@ -0,0 +1,107 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.engine;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.test.IndexSettingsModule;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class SegmentReplicaEngineTests extends EngineTestCase {
+
+    private IndexSettings segmentReplicationSettings(boolean softDeletes) {
+        return IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(indexSettings())
+            .put(IndexSettings.INDEX_SOFT_DELETES_SETTING.getKey(), softDeletes)
+            .put(IndexSettings.INDEX_REPLICATION_TYPE_SETTING.getKey(), "segment")
+            .build());
+    }
+
+    private SegmentReplicaEngine createSegmentReplicaEngine(EngineConfig config) throws IOException {
+        final Store store = config.getStore();
+        store.createEmpty(config.getIndexSettings().getIndexVersionCreated().luceneVersion);
+        final String translogUuid = Translog.createEmptyTranslog(config.getTranslogConfig().getTranslogPath(),
+            SequenceNumbers.NO_OPS_PERFORMED, shardId, primaryTerm.get());
+        store.associateIndexWithNewTranslog(translogUuid);
+        final SegmentReplicaEngine engine = new SegmentReplicaEngine(config);
+        engine.recoverFromTranslog(translogHandler, Long.MAX_VALUE);
+        return engine;
+    }
+
+    public void testOperationsSkipLucene() throws IOException {
+        IOUtils.close(engine, store);
+        final AtomicLong globalCheckpoint = new AtomicLong(SequenceNumbers.NO_OPS_PERFORMED);
+        try (Store store = createStore()) {
+            EngineConfig config = config(segmentReplicationSettings(true), store, createTempDir(), newMergePolicy(), null, null,
+                globalCheckpoint::get);
+            int numDocs = scaledRandomIntBetween(10, 100);
+            try (SegmentReplicaEngine engine = createSegmentReplicaEngine(config)) {
+                final long initialGeneration = store.readLastCommittedSegmentsInfo().getGeneration();
+                for (int i = 0; i < numDocs; i++) {
+                    ParsedDocument doc = testParsedDocument(Integer.toString(i), null, testDocument(), new BytesArray("{}"), null);
+                    if (rarely()) {
+                        engine.noOp(new Engine.NoOp(i, primaryTerm.get(), Engine.Operation.Origin.REPLICA, System.nanoTime(), "test"));
+                    } else if (i > 0 && randomBoolean()) {
+                        engine.delete(replicaDeleteForDoc(Integer.toString(i - 1), 1, i, System.nanoTime()));
+                    } else {
+                        engine.index(replicaIndexForDoc(doc, 1, i, false));
+                    }
+                }
+                engine.syncTranslog();
+                assertThat(engine.getPersistedLocalCheckpoint(), equalTo((long) numDocs - 1));
+                engine.refresh("test");
+                try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+                    assertThat(searcher.getIndexReader().maxDoc(), equalTo(0));
+                }
+                engine.flush(true, true);
+                engine.forceMerge(true, 1, false, false, false);
+                assertThat(store.readLastCommittedSegmentsInfo().getGeneration(), equalTo(initialGeneration));
+            }
+        }
+    }
+
+    public void testRequiresSoftDeletes() throws IOException {
+        IOUtils.close(engine, store);
+        try (Store store = createStore()) {
+            EngineConfig config = config(segmentReplicationSettings(false), store, createTempDir(), newMergePolicy(), null);
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> new SegmentReplicaEngine(config));
+            assertThat(e.getMessage(), equalTo("a segment replica engine requires soft deletes to be enabled"));
+        }
+    }
+
+    public void testRequiresSegmentReplication() throws IOException {
+        IOUtils.close(engine, store);
+        try (Store store = createStore()) {
+            EngineConfig config = config(defaultSettings, store, createTempDir(), newMergePolicy(), null);
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> new SegmentReplicaEngine(config));
+            assertThat(e.getMessage(),
+                equalTo("a segment replica engine can not be constructed for an index that replicates documents"));
+        }
+    }
+}
@@ -22,14 +22,18 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexService;
@@ -57,6 +61,8 @@ import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 
 public class IndexFieldDataServiceTests extends ESSingleNodeTestCase {
 
@@ -160,6 +166,45 @@ public class IndexFieldDataServiceTests extends ESSingleNodeTestCase {
         ifdService.clear();
     }
 
+    public void testIncrementalGlobalOrdinalsAreReleasedWithTheReader() throws Exception {
+        final IndexService indexService = createIndex("test", Settings.builder()
+            .put(IndexFieldDataService.INDEX_FIELDDATA_INCREMENTAL_GLOBAL_ORDINALS_SETTING.getKey(), true).build());
+        final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        final IndexFieldDataService ifdService = new IndexFieldDataService(indexService.getIndexSettings(),
+            indicesService.getIndicesFieldDataCache(), indicesService.getCircuitBreakerService(), indexService.mapperService());
+        final CircuitBreaker breaker = indicesService.getCircuitBreakerService().getBreaker(CircuitBreaker.FIELDDATA);
+
+        final BuilderContext ctx = new BuilderContext(indexService.getIndexSettings().getSettings(), new ContentPath(1));
+        final MappedFieldType mapper = new KeywordFieldMapper.Builder("k").build(ctx).fieldType();
+        final IndexWriter writer = new IndexWriter(new RAMDirectory(),
+            new IndexWriterConfig(new KeywordAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+        final ShardId shardId = new ShardId(indexService.index(), 0);
+        for (int i = 0; i < 3; i++) {
+            Document doc = new Document();
+            doc.add(new SortedSetDocValuesField("k", new BytesRef("value" + i)));
+            writer.addDocument(doc);
+            writer.commit();
+        }
+        final long usedBefore = breaker.getUsed();
+        final IndexOrdinalsFieldData ifd = ifdService.getForField(mapper);
+        final DirectoryReader reader1 = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId);
+        ifd.loadGlobal(reader1);
+        // the global ordinals of the reader are accounted for the cached value and for the ordinals kept for the next reader
+        assertThat(breaker.getUsed(), greaterThan(usedBefore));
+
+        Document doc = new Document();
+        doc.add(new SortedSetDocValuesField("k", new BytesRef("value3")));
+        writer.addDocument(doc);
+        writer.commit();
+        final DirectoryReader reader2 = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId);
+        final IndexOrdinalsFieldData global = ifd.loadGlobal(reader2);
+        assertThat(global.load(reader2.leaves().get(0)).getOrdinalsValues().getValueCount(), equalTo(4L));
+        reader1.close();
+        reader2.close();
+        writer.close();
+        assertThat(breaker.getUsed(), equalTo(usedBefore));
+    }
+
     public void testFieldDataCacheListener() throws Exception {
         final IndexService indexService = createIndex("test");
         final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
@@ -0,0 +1,126 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+public class IncrementalOrdinalMapTests extends ESTestCase {
+
+    public void testIncrementalBuildMatchesOrdinalMap() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            addSegment(writer);
+            addSegment(writer);
+            DirectoryReader reader = DirectoryReader.open(writer);
+            IncrementalOrdinalMap map = IncrementalOrdinalMap.build(null, segmentKeys(reader), subs(reader));
+            assertSameMapping(reader, map);
+
+            int iters = randomIntBetween(1, 5);
+            for (int i = 0; i < iters; i++) {
+                int numSegments = randomIntBetween(1, 3);
+                for (int j = 0; j < numSegments; j++) {
+                    addSegment(writer);
+                }
+                if (randomBoolean()) {
+                    // removes the previous segments and replaces them with a merged one
+                    writer.forceMerge(1);
+                }
+                DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer);
+                assertNotNull(newReader);
+                reader.close();
+                reader = newReader;
+                map = IncrementalOrdinalMap.build(map, segmentKeys(reader), subs(reader));
+                assertSameMapping(reader, map);
+            }
+            reader.close();
+        }
+    }
+
+    private void addSegment(IndexWriter writer) throws IOException {
+        int numDocs = randomIntBetween(1, 50);
+        for (int i = 0; i < numDocs; i++) {
+            Document doc = new Document();
+            int numValues = randomIntBetween(1, 3);
+            for (int j = 0; j < numValues; j++) {
+                doc.add(new SortedSetDocValuesField("field", new BytesRef(randomAlphaOfLength(2))));
+            }
+            writer.addDocument(doc);
+        }
+        writer.flush();
+    }
+
+    private static IndexReader.CacheKey[] segmentKeys(IndexReader reader) {
+        IndexReader.CacheKey[] keys = new IndexReader.CacheKey[reader.leaves().size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = reader.leaves().get(i).reader().getCoreCacheHelper().getKey();
+        }
+        return keys;
+    }
+
+    private static SortedSetDocValues[] subs(IndexReader reader) throws IOException {
+        SortedSetDocValues[] subs = new SortedSetDocValues[reader.leaves().size()];
+        for (int i = 0; i < subs.length; i++) {
+            subs[i] = DocValues.getSortedSet(reader.leaves().get(i).reader(), "field");
+        }
+        return subs;
+    }
+
+    private static void assertSameMapping(IndexReader reader, IncrementalOrdinalMap map) throws IOException {
+        SortedSetDocValues[] subs = subs(reader);
+        OrdinalMap expected = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+        assertEquals(expected.getValueCount(), map.getValueCount());
+        TermsEnum[] termsEnums = new TermsEnum[subs.length];
+        for (int i = 0; i < subs.length; i++) {
+            termsEnums[i] = subs[i].termsEnum();
+        }
+        for (int i = 0; i < subs.length; i++) {
+            LongValues expectedGlobalOrds = expected.getGlobalOrds(i);
+            LongValues globalOrds = map.getGlobalOrds(i);
+            for (long ord = 0; ord < subs[i].getValueCount(); ord++) {
+                assertEquals(expectedGlobalOrds.get(ord), globalOrds.get(ord));
+            }
+        }
+        for (long globalOrd = 0; globalOrd < map.getValueCount(); globalOrd++) {
+            int expectedSegment = expected.getFirstSegmentNumber(globalOrd);
+            termsEnums[expectedSegment].seekExact(expected.getFirstSegmentOrd(globalOrd));
+            BytesRef expectedTerm = BytesRef.deepCopyOf(termsEnums[expectedSegment].term());
+            int segment = map.getFirstSegmentNumber(globalOrd);
+            termsEnums[segment].seekExact(map.getFirstSegmentOrd(globalOrd));
+            assertEquals(expectedTerm, termsEnums[segment].term());
+        }
+    }
+}
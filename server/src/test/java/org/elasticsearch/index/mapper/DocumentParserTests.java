@@ -46,10 +46,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.test.StreamsUtils.copyToBytesFromClasspath;
 import static org.elasticsearch.test.StreamsUtils.copyToStringFromClasspath;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
@@ -180,6 +182,38 @@ public class DocumentParserTests extends ESSingleNodeTestCase {
                 e.getMessage());
     }
 
+    public void testParsePlanResolvesMappedFields() throws Exception {
+        DocumentMapperParser mapperParser = createIndex("test").mapperService().documentMapperParser();
+        String mapping = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("type").startObject("properties")
+            .startObject("foo").startObject("properties")
+                .startObject("bar").startObject("properties")
+                    .startObject("baz").field("type", "integer").endObject()
+                .endObject().endObject()
+            .endObject().endObject()
+            .startObject("disabled").field("type", "object").field("enabled", false).startObject("properties")
+                .startObject("field").field("type", "keyword").endObject()
+            .endObject().endObject()
+            .startObject("nested").field("type", "nested").startObject("properties")
+                .startObject("field").field("type", "keyword").endObject()
+            .endObject().endObject()
+            .endObject().endObject().endObject());
+        DocumentMapper mapper = mapperParser.parse("type", new CompressedXContent(mapping));
+        DocumentParsePlan plan = mapper.parsePlan();
+
+        Map<String, DocumentParsePlan.KnownField> rootFields = plan.knownFields(mapper.root());
+        assertThat(rootFields.keySet(), containsInAnyOrder("foo", "foo.bar", "foo.bar.baz", "disabled", "nested"));
+        assertSame(mapper.mappers().getMapper("foo.bar.baz"), rootFields.get("foo.bar.baz").mapper());
+        assertArrayEquals(new String[] {"foo", "bar", "baz"}, rootFields.get("foo.bar.baz").paths());
+
+        Map<String, DocumentParsePlan.KnownField> fooFields = plan.knownFields(mapper.objectMappers().get("foo"));
+        assertThat(fooFields.keySet(), containsInAnyOrder("bar", "bar.baz"));
+        assertThat(plan.knownFields(mapper.objectMappers().get("nested")).keySet(), containsInAnyOrder("field"));
+
+        Mapper.BuilderContext context = new Mapper.BuilderContext(Settings.EMPTY, new ContentPath());
+        ObjectMapper dynamicObject = new ObjectMapper.Builder("dynamic").build(context);
+        assertTrue(plan.knownFields(dynamicObject).isEmpty());
+    }
+
     public void testUnexpectedFieldMappingType() throws Exception {
         DocumentMapperParser mapperParser = createIndex("test").mapperService().documentMapperParser();
         String mapping = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("type").startObject("properties")
@@ -19,7 +19,10 @@
 
 package org.elasticsearch.index.mapper;
 
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.store.Directory;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -225,4 +228,88 @@ public class SourceFieldMapperTests extends ESSingleNodeTestCase {
             assertTrue(message, message.contains("Unexpected close marker '}'"));
         }
     }
+
+    public void testSyntheticSource() throws Exception {
+        String mapping = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("type")
+            .startObject("_source").field("mode", "synthetic").endObject()
+            .startObject("properties")
+                .startObject("long").field("type", "long").endObject()
+                .startObject("double").field("type", "double").endObject()
+                .startObject("keyword").field("type", "keyword").endObject()
+                .startObject("ip").field("type", "ip").endObject()
+                .startObject("date").field("type", "date").endObject()
+                .startObject("bool").field("type", "boolean").endObject()
+                .startObject("object").startObject("properties")
+                    .startObject("keyword").field("type", "keyword").endObject()
+                .endObject().endObject()
+            .endObject()
+            .endObject().endObject());
+        DocumentMapper documentMapper = createIndex("test").mapperService().documentMapperParser()
+            .parse("type", new CompressedXContent(mapping));
+        assertTrue(documentMapper.sourceMapper().isSynthetic());
+        assertNotNull(documentMapper.syntheticSource());
+
+        BytesReference source = BytesReference.bytes(XContentFactory.jsonBuilder().startObject()
+            .array("long", 5, 1)
+            .field("double", 1.5)
+            .array("keyword", "b", "a")
+            .field("ip", "192.168.0.1")
+            .field("date", "2020-01-01T00:00:00.000Z")
+            .field("bool", true)
+            .startObject("object").field("keyword", "c").endObject()
+            .endObject());
+        ParsedDocument doc = documentMapper.parse(new SourceToParse("test", "1", source, XContentType.JSON));
+        assertNull(doc.rootDoc().getField(SourceFieldMapper.NAME));
+        assertNotNull(doc.rootDoc().getField(SourceFieldMapper.RECOVERY_SOURCE_NAME));
+
+        BytesReference syntheticSource;
+        try (Directory directory = newDirectory();
+             RandomIndexWriter writer = new RandomIndexWriter(random(), directory)) {
+            writer.addDocument(doc.rootDoc());
+            try (DirectoryReader reader = writer.getReader()) {
+                syntheticSource = documentMapper.syntheticSource().leaf(getOnlyLeafReader(reader)).source(0);
+            }
+        }
+        Map<String, Object> expected = XContentHelper.convertToMap(new BytesArray("{\"long\":[1,5],\"double\":1.5,"
+            + "\"keyword\":[\"a\",\"b\"],\"ip\":\"192.168.0.1\",\"date\":\"2020-01-01T00:00:00.000Z\",\"bool\":true,"
+            + "\"object\":{\"keyword\":\"c\"}}"), false, XContentType.JSON).v2();
+        assertThat(XContentHelper.convertToMap(syntheticSource, false, XContentType.JSON).v2(), equalTo(expected));
+    }
+
+    public void testSyntheticSourceUnsupportedField() throws Exception {
+        String mapping = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("type")
+            .startObject("_source").field("mode", "synthetic").endObject()
+            .startObject("properties").startObject("text").field("type", "text").endObject().endObject()
+            .endObject().endObject());
+        DocumentMapperParser parser = createIndex("test").mapperService().documentMapperParser();
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> parser.parse("type", new CompressedXContent(mapping)));
+        assertThat(e.getMessage(), containsString("[_source] can't be synthetic with field [text]"));
+    }
+
+    public void testSyntheticSourceCannotBeFiltered() throws Exception {
+        String mapping = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("type")
+            .startObject("_source").field("mode", "synthetic").array("includes", "foo.*").endObject()
+            .endObject().endObject());
+        DocumentMapperParser parser = createIndex("test").mapperService().documentMapperParser();
+        MapperParsingException e = expectThrows(MapperParsingException.class,
+            () -> parser.parse("type", new CompressedXContent(mapping)));
+        assertThat(e.getMessage(), containsString("[_source] can't be synthetic if it is disabled or filtered"));
+    }
+
+    public void testModeNotUpdateable() throws Exception {
+        DocumentMapperParser parser = createIndex("test").mapperService().documentMapperParser();
+        // using default of stored
+        String mapping1 = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("_doc").endObject().endObject());
+        String mapping2 = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("_doc")
+            .startObject("_source").field("mode", "synthetic").endObject()
+            .endObject().endObject());
+        assertConflicts(mapping1, mapping2, parser, "Cannot update mode setting for [_source]");
+
+        // not changing is ok
+        String mapping3 = Strings.toString(XContentFactory.jsonBuilder().startObject().startObject("_doc")
+            .startObject("_source").field("mode", "stored").endObject()
+            .endObject().endObject());
+        assertConflicts(mapping1, mapping3, parser);
+    }
 }
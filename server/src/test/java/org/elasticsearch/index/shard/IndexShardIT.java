@@ -654,7 +654,8 @@ public class IndexShardIT extends ESSingleNodeTestCase {
                 Arrays.asList(listeners),
                 () -> {},
                 RetentionLeaseSyncer.EMPTY,
-                cbs);
+                cbs,
+                null);
     }
 
     private static ShardRouting getInitializingShardRouting(ShardRouting existingShardRouting) {
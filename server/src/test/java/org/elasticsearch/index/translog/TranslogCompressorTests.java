@@ -0,0 +1,98 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.translog;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class TranslogCompressorTests extends ESTestCase {
+
+    public void testCompressIndex() throws IOException {
+        final StringBuilder source = new StringBuilder("{");
+        final int numFields = randomIntBetween(10, 100);
+        for (int i = 0; i < numFields; i++) {
+            source.append("\"field").append(i).append("\":\"").append(randomAlphaOfLength(5)).append("\",");
+        }
+        source.append("\"field\":1}");
+        final Translog.Index index = new Translog.Index(randomAlphaOfLength(10), randomNonNegativeLong(), randomNonNegativeLong(),
+            source.toString().getBytes(StandardCharsets.UTF_8));
+        final BytesReference operation = serialize(index);
+        final BytesReference compressed = TranslogCompressor.compress(operation);
+        assertThat(compressed.length(), lessThan(operation.length()));
+        assertThat(compressed.get(Integer.BYTES), equalTo(TranslogCompressor.DEFLATED));
+        assertThat(readCompressed(compressed), equalTo(index));
+    }
+
+    public void testStoreOperationsThatDoNotShrink() throws IOException {
+        // random bytes don't compress
+        final Translog.Index index = new Translog.Index(randomAlphaOfLength(1), randomNonNegativeLong(), randomNonNegativeLong(),
+            randomByteArrayOfLength(randomIntBetween(100, 1000)));
+        final BytesReference operation = serialize(index);
+        final BytesReference compressed = TranslogCompressor.compress(operation);
+        assertThat(compressed.length(), equalTo(operation.length() + Byte.BYTES + Integer.BYTES));
+        assertThat(compressed.get(Integer.BYTES), equalTo(TranslogCompressor.STORED));
+        assertThat(readCompressed(compressed), equalTo(index));
+    }
+
+    public void testCorruption() throws IOException {
+        final Translog.Index index = new Translog.Index(randomAlphaOfLength(10), randomNonNegativeLong(), randomNonNegativeLong(),
+            randomAlphaOfLength(randomIntBetween(100, 1000)).getBytes(StandardCharsets.UTF_8));
+        final byte[] compressed = BytesReference.toBytes(TranslogCompressor.compress(serialize(index)));
+        final int position = randomIntBetween(Integer.BYTES, compressed.length - 1);
+        compressed[position] = (byte) (compressed[position] ^ (1 << randomIntBetween(0, 7)));
+        expectThrows(TranslogCorruptedException.class, () -> readCompressed(new BytesArray(compressed)));
+    }
+
+    public void testTruncation() throws IOException {
+        final Translog.Index index = new Translog.Index(randomAlphaOfLength(10), randomNonNegativeLong(), randomNonNegativeLong(),
+            randomAlphaOfLength(randomIntBetween(100, 1000)).getBytes(StandardCharsets.UTF_8));
+        final BytesReference compressed = TranslogCompressor.compress(serialize(index));
+        final BytesReference truncated = compressed.slice(0, randomIntBetween(Integer.BYTES + 1, compressed.length() - 1));
+        expectThrows(TruncatedTranslogException.class, () -> readCompressed(truncated));
+    }
+
+    private static BytesReference serialize(Translog.Operation operation) throws IOException {
+        final BytesStreamOutput out = new BytesStreamOutput();
+        out.skip(Integer.BYTES);
+        Translog.writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+        final int end = (int) out.position();
+        out.seek(0);
+        out.writeInt(end - Integer.BYTES);
+        out.seek(end);
+        return out.bytes();
+    }
+
+    private static Translog.Operation readCompressed(BytesReference compressed) throws IOException {
+        // translog readers read operations from byte buffers
+        final ByteBufferStreamInput byteBuffer = new ByteBufferStreamInput(ByteBuffer.wrap(BytesReference.toBytes(compressed)));
+        final BufferedChecksumStreamInput in = new BufferedChecksumStreamInput(byteBuffer, "test");
+        return Translog.readOperation(TranslogCompressor.decompress(in));
+    }
+}
@@ -37,7 +37,7 @@ public class TranslogHeaderTests extends ESTestCase {
 
     public void testCurrentHeaderVersion() throws Exception {
         final String translogUUID = UUIDs.randomBase64UUID();
-        final TranslogHeader outHeader = new TranslogHeader(translogUUID, randomNonNegativeLong());
+        final TranslogHeader outHeader = new TranslogHeader(translogUUID, randomNonNegativeLong(), randomBoolean());
         final long generation = randomNonNegativeLong();
         final Path translogFile = createTempDir().resolve(Translog.getFilename(generation));
         try (FileChannel channel = FileChannel.open(translogFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
@@ -48,6 +48,7 @@ public class TranslogHeaderTests extends ESTestCase {
             final TranslogHeader inHeader = TranslogHeader.read(translogUUID, translogFile, channel);
             assertThat(inHeader.getTranslogUUID(), equalTo(translogUUID));
             assertThat(inHeader.getPrimaryTerm(), equalTo(outHeader.getPrimaryTerm()));
+            assertThat(inHeader.compressedOperations(), equalTo(outHeader.compressedOperations()));
             assertThat(inHeader.sizeInBytes(), equalTo((int)channel.position()));
         }
         final TranslogCorruptedException mismatchUUID = expectThrows(TranslogCorruptedException.class, () -> {
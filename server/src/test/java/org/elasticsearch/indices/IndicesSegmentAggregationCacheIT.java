@@ -0,0 +1,182 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.cache.request.RequestCacheStats;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService.TooManyBucketsException;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.Sum;
+import org.elasticsearch.test.ESIntegTestCase;
+
+import java.util.Collections;
+
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.filter;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.sum;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class IndicesSegmentAggregationCacheIT extends ESIntegTestCase {
+
+    public void testCacheAggsPerSegment() throws Exception {
+        Client client = client();
+        assertAcked(client.admin().indices().prepareCreate("index")
+            .setMapping("k", "type=keyword", "v", "type=long")
+            .setSettings(Settings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), false)
+                .put(IndicesSegmentAggregationCache.INDEX_SEGMENT_AGGS_CACHE_ENABLED_SETTING.getKey(), true)).get());
+        // two segments
+        client.prepareIndex("index").setSource("k", "a", "v", 1).get();
+        client.prepareIndex("index").setSource("k", "b", "v", 2).get();
+        refresh("index");
+        client.prepareIndex("index").setSource("k", "a", "v", 3).get();
+        refresh("index");
+
+        assertAggs(client, 3, 6);
+        RequestCacheStats stats = requestCacheStats(client);
+        assertThat(stats.getSegmentHitCount(), equalTo(0L));
+        assertThat(stats.getSegmentMissCount(), equalTo(2L));
+        assertThat(stats.getSegmentMemorySizeInBytes(), greaterThan(0L));
+        // the shard level request cache is disabled
+        assertThat(stats.getMemorySizeInBytes(), equalTo(0L));
+
+        assertAggs(client, 3, 6);
+        stats = requestCacheStats(client);
+        assertThat(stats.getSegmentHitCount(), equalTo(2L));
+        assertThat(stats.getSegmentMissCount(), equalTo(2L));
+
+        // only the new segment is collected after a refresh
+        client.prepareIndex("index").setSource("k", "c", "v", 4).get();
+        refresh("index");
+        assertAggs(client, 4, 10);
+        stats = requestCacheStats(client);
+        assertThat(stats.getSegmentHitCount(), equalTo(4L));
+        assertThat(stats.getSegmentMissCount(), equalTo(3L));
+
+        // the requests with a timeout are collected with the timeout checks of the query phase
+        SearchResponse response = client.prepareSearch("index").setSize(0)
+            .setTimeout(TimeValue.timeValueMinutes(1))
+            .addAggregation(sum("sum").field("v"))
+            .get();
+        assertSearchResponse(response);
+        assertFalse(response.isTimedOut());
+        stats = requestCacheStats(client);
+        assertThat(stats.getSegmentHitCount(), equalTo(4L));
+        assertThat(stats.getSegmentMissCount(), equalTo(6L));
+
+        client.admin().indices().prepareClearCache("index").setRequestCache(true).get();
+        assertThat(requestCacheStats(client).getSegmentMemorySizeInBytes(), equalTo(0L));
+    }
+
+    public void testAggsWithoutExactPartialReduceAreNotCached() throws Exception {
+        Client client = client();
+        assertAcked(client.admin().indices().prepareCreate("index")
+            .setMapping("k", "type=keyword", "v", "type=long")
+            .setSettings(Settings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), false)
+                .put(IndicesSegmentAggregationCache.INDEX_SEGMENT_AGGS_CACHE_ENABLED_SETTING.getKey(), true)).get());
+        client.prepareIndex("index").setSource("k", "a", "v", 1).get();
+        refresh("index");
+        client.prepareIndex("index").setSource("k", "b", "v", 2).get();
+        refresh("index");
+
+        // the terms aggregation prunes its buckets to shard_size so its per-segment results can't be reduced exactly
+        for (int i = 0; i < 2; i++) {
+            SearchResponse response = client.prepareSearch("index").setSize(0)
+                .addAggregation(sum("sum").field("v"))
+                .addAggregation(terms("terms").field("k"))
+                .get();
+            assertSearchResponse(response);
+            Terms terms = response.getAggregations().get("terms");
+            assertThat(terms.getBuckets().size(), equalTo(2));
+        }
+        RequestCacheStats stats = requestCacheStats(client);
+        assertThat(stats.getSegmentHitCount(), equalTo(0L));
+        assertThat(stats.getSegmentMissCount(), equalTo(0L));
+        assertThat(stats.getSegmentMemorySizeInBytes(), equalTo(0L));
+    }
+
+    public void testBucketsOfAllSegmentsCountTowardsTheLimit() throws Exception {
+        Client client = client();
+        assertAcked(client.admin().indices().prepareCreate("index")
+            .setMapping("v", "type=long")
+            .setSettings(Settings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), false)
+                .put(IndicesSegmentAggregationCache.INDEX_SEGMENT_AGGS_CACHE_ENABLED_SETTING.getKey(), true)).get());
+        // two segments with two buckets each
+        client.prepareIndex("index").setSource("v", 1).get();
+        client.prepareIndex("index").setSource("v", 2).get();
+        refresh("index");
+        client.prepareIndex("index").setSource("v", 3).get();
+        client.prepareIndex("index").setSource("v", 4).get();
+        refresh("index");
+
+        client.admin().cluster().prepareUpdateSettings()
+            .setTransientSettings(Collections.singletonMap(MultiBucketConsumerService.MAX_BUCKET_SETTING.getKey(), 3)).get();
+        try {
+            // the first request collects both segments, the second one may find the first segment in the cache
+            for (int i = 0; i < 2; i++) {
+                SearchPhaseExecutionException e = expectThrows(SearchPhaseExecutionException.class,
+                    () -> client.prepareSearch("index").setSize(0).addAggregation(histogram("histo").field("v").interval(1)).get());
+                assertThat(ExceptionsHelper.unwrap(e, TooManyBucketsException.class), notNullValue());
+            }
+        } finally {
+            client.admin().cluster().prepareUpdateSettings()
+                .setTransientSettings(Collections.singletonMap(MultiBucketConsumerService.MAX_BUCKET_SETTING.getKey(), null)).get();
+        }
+    }
+
+    private static void assertAggs(Client client, long expectedHits, double expectedSum) {
+        SearchResponse response = client.prepareSearch("index").setSize(0)
+            .addAggregation(sum("sum").field("v"))
+            .addAggregation(filter("a", termQuery("k", "a")))
+            .get();
+        assertSearchResponse(response);
+        assertThat(response.getHits().getTotalHits().value, equalTo(expectedHits));
+        Sum sum = response.getAggregations().get("sum");
+        assertThat(sum.getValue(), equalTo(expectedSum));
+        Filter filter = response.getAggregations().get("a");
+        assertThat(filter.getDocCount(), equalTo(2L));
+    }
+
+    private static RequestCacheStats requestCacheStats(Client client) {
+        return client.admin().indices().prepareStats("index").setRequestCache(true).get().getTotal().getRequestCache();
+    }
+}
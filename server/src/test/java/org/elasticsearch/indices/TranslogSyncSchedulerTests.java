@@ -0,0 +1,163 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TranslogSyncSchedulerTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+
+    @Before
+    public void setUpThreadPool() {
+        threadPool = new TestThreadPool(getTestName());
+    }
+
+    @After
+    public void tearDownThreadPool() {
+        terminate(threadPool);
+    }
+
+    private TranslogSyncScheduler newScheduler(Settings settings) {
+        return new TranslogSyncScheduler(settings, new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS), threadPool);
+    }
+
+    public void testDisabledByDefault() {
+        assertFalse(newScheduler(Settings.EMPTY).isEnabled());
+        assertTrue(newScheduler(Settings.builder()
+            .put(TranslogSyncScheduler.GROUP_COMMIT_INTERVAL_SETTING.getKey(), "5ms").build()).isEnabled());
+    }
+
+    public void testSyncsOfSamePathAreBatched() throws Exception {
+        final TranslogSyncScheduler scheduler = newScheduler(Settings.builder()
+            .put(TranslogSyncScheduler.GROUP_COMMIT_INTERVAL_SETTING.getKey(), "1s").build());
+        final Path path = createTempDir();
+        final List<List<Translog.Location>> firstShardSyncs = new CopyOnWriteArrayList<>();
+        final List<List<Translog.Location>> secondShardSyncs = new CopyOnWriteArrayList<>();
+        final TranslogSyncScheduler.Syncer firstShard = firstShardSyncs::add;
+        final TranslogSyncScheduler.Syncer secondShard = secondShardSyncs::add;
+
+        final Translog.Location first = new Translog.Location(1, 0, 10);
+        final Translog.Location second = new Translog.Location(1, 10, 10);
+        final Translog.Location third = new Translog.Location(3, 0, 10);
+        final CountDownLatch latch = new CountDownLatch(3);
+        final CountingListener listener = new CountingListener(latch);
+        scheduler.sync(path, firstShard, first, listener);
+        scheduler.sync(path, secondShard, third, listener);
+        scheduler.sync(path, firstShard, second, listener);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(listener.failures.get(), equalTo(0));
+
+        assertThat(firstShardSyncs, hasSize(1));
+        assertThat(firstShardSyncs.get(0), containsInAnyOrder(first, second));
+        assertThat(secondShardSyncs, hasSize(1));
+        assertThat(secondShardSyncs.get(0), containsInAnyOrder(third));
+
+        final TranslogSyncStats stats = scheduler.stats();
+        assertThat(stats.getPaths(), hasSize(1));
+        final TranslogSyncStats.PathStats pathStats = stats.getPaths().get(0);
+        assertThat(pathStats.getPath(), equalTo(path.toAbsolutePath().toString()));
+        assertThat(pathStats.getBatches(), equalTo(1L));
+        assertThat(pathStats.getRequests(), equalTo(3L));
+        assertThat(pathStats.getSyncs(), equalTo(2L));
+    }
+
+    public void testFullBatchIsCommittedOnCallingThread() {
+        final TranslogSyncScheduler scheduler = newScheduler(Settings.builder()
+            .put(TranslogSyncScheduler.GROUP_COMMIT_INTERVAL_SETTING.getKey(), "1s")
+            .put(TranslogSyncScheduler.GROUP_COMMIT_MAX_BATCH_SIZE_SETTING.getKey(), 2).build());
+        final Path path = createTempDir();
+        final AtomicInteger syncs = new AtomicInteger();
+        final TranslogSyncScheduler.Syncer shard = locations -> {
+            assertThat(locations, hasSize(2));
+            syncs.incrementAndGet();
+        };
+        final AtomicInteger notified = new AtomicInteger();
+        scheduler.sync(path, shard, new Translog.Location(1, 0, 10), e -> notified.incrementAndGet());
+        assertThat(notified.get(), equalTo(0));
+        scheduler.sync(path, shard, new Translog.Location(1, 10, 10), e -> notified.incrementAndGet());
+        assertThat(notified.get(), equalTo(2));
+        assertThat(syncs.get(), equalTo(1));
+    }
+
+    public void testFailuresAreScopedToTheirShard() throws Exception {
+        final TranslogSyncScheduler scheduler = newScheduler(Settings.builder()
+            .put(TranslogSyncScheduler.GROUP_COMMIT_INTERVAL_SETTING.getKey(), "10ms").build());
+        final Path path = createTempDir();
+        final TranslogSyncScheduler.Syncer failingShard = locations -> {
+            throw new IOException("simulated");
+        };
+        final TranslogSyncScheduler.Syncer healthyShard = locations -> {};
+        final AtomicReference<Exception> failingResult = new AtomicReference<>();
+        final AtomicReference<Exception> healthyResult = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(2);
+        scheduler.sync(path, failingShard, new Translog.Location(1, 0, 10), e -> {
+            failingResult.set(e);
+            latch.countDown();
+        });
+        scheduler.sync(path, healthyShard, new Translog.Location(1, 0, 10), e -> {
+            healthyResult.set(e);
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(failingResult.get(), instanceOf(IOException.class));
+        assertThat(healthyResult.get(), nullValue());
+    }
+
+    private static class CountingListener implements Consumer<Exception> {
+        private final CountDownLatch latch;
+        private final AtomicInteger failures = new AtomicInteger();
+
+        CountingListener(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void accept(Exception e) {
+            if (e != null) {
+                failures.incrementAndGet();
+            }
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.replication;
+
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.IndexShardTestCase;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.store.StoreFileMetaData;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+
+public class SegmentReplicationSourceServiceTests extends IndexShardTestCase {
+
+    private static final Settings SEGMENT_REPLICATION = Settings.builder()
+        .put(IndexSettings.INDEX_SOFT_DELETES_SETTING.getKey(), true)
+        .put(IndexSettings.INDEX_REPLICATION_TYPE_SETTING.getKey(), "segment")
+        .build();
+
+    private SegmentReplicationSourceService createService(TimeValue flushInterval) {
+        return createService(flushInterval, threadPool);
+    }
+
+    private SegmentReplicationSourceService createService(TimeValue flushInterval, ThreadPool threadPool) {
+        final Settings settings = Settings.builder()
+            .put(SegmentReplicationSourceService.SEGMENT_REPLICATION_FLUSH_INTERVAL_SETTING.getKey(), flushInterval)
+            .build();
+        return new SegmentReplicationSourceService(settings, new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS),
+            mock(TransportService.class), mock(IndicesService.class), threadPool);
+    }
+
+    private SegmentReplicationSourceService.StartResponse start(SegmentReplicationSourceService service, IndexShard primary,
+                                                                Store.MetadataSnapshot targetMetadata) throws IOException {
+        return service.start(primary, new SegmentReplicationSourceService.StartRequest(primary.shardId(), "target", targetMetadata));
+    }
+
+    private void indexDocs(IndexShard shard, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            indexDoc(shard, "_doc", Integer.toString(i));
+        }
+    }
+
+    public void testReturnsTheFilesOfTheLastCommit() throws IOException {
+        final IndexShard primary = newStartedShard(true, SEGMENT_REPLICATION);
+        final SegmentReplicationSourceService service = createService(TimeValue.timeValueHours(1));
+        indexDocs(primary, 0, randomIntBetween(1, 10));
+        flushShard(primary);
+
+        final SegmentReplicationSourceService.StartResponse response = start(service, primary, Store.MetadataSnapshot.EMPTY);
+        assertThat(response.sessionId(), not(equalTo(SegmentReplicationSourceService.NO_SESSION)));
+        assertThat(service.numberOfSessions(), equalTo(1));
+        final Store.MetadataSnapshot lastCommit = primary.snapshotStoreMetadata();
+        assertThat(response.metadataSnapshot().getSegmentsFile().name(), equalTo(lastCommit.getSegmentsFile().name()));
+        assertThat(response.files().size(), equalTo(lastCommit.size()));
+
+        service.finish(new SegmentReplicationSourceService.FinishRequest(response.sessionId()));
+        assertThat(service.numberOfSessions(), equalTo(0));
+        closeShards(primary);
+    }
+
+    public void testReturnsOnlyTheNewFiles() throws IOException {
+        final IndexShard primary = newStartedShard(true, SEGMENT_REPLICATION);
+        final SegmentReplicationSourceService service = createService(TimeValue.ZERO);
+        indexDocs(primary, 0, randomIntBetween(1, 10));
+        flushShard(primary);
+        final SegmentReplicationSourceService.StartResponse first = start(service, primary, Store.MetadataSnapshot.EMPTY);
+        service.finish(new SegmentReplicationSourceService.FinishRequest(first.sessionId()));
+
+        // the new documents are only refreshed, the primary is flushed since the replica has its last commit
+        indexDocs(primary, 10, 10 + randomIntBetween(1, 10));
+        final SegmentReplicationSourceService.StartResponse second = start(service, primary, first.metadataSnapshot());
+        assertThat(second.files(), not(empty()));
+        for (StoreFileMetaData file : second.files()) {
+            assertThat(first.metadataSnapshot().get(file.name()), nullValue());
+        }
+        service.finish(new SegmentReplicationSourceService.FinishRequest(second.sessionId()));
+        assertThat(service.numberOfSessions(), equalTo(0));
+        closeShards(primary);
+    }
+
+    public void testUpToDateReplicaDoesNotStartASession() throws IOException {
+        final IndexShard primary = newStartedShard(true, SEGMENT_REPLICATION);
+        final SegmentReplicationSourceService service = createService(TimeValue.ZERO);
+        indexDocs(primary, 0, randomIntBetween(1, 10));
+        flushShard(primary);
+        final SegmentReplicationSourceService.StartResponse first = start(service, primary, Store.MetadataSnapshot.EMPTY);
+        service.finish(new SegmentReplicationSourceService.FinishRequest(first.sessionId()));
+
+        final long generation = primary.store().readLastCommittedSegmentsInfo().getGeneration();
+        final SegmentReplicationSourceService.StartResponse second = start(service, primary, first.metadataSnapshot());
+        assertThat(second.sessionId(), equalTo(SegmentReplicationSourceService.NO_SESSION));
+        assertThat(second.files(), empty());
+        assertThat(service.numberOfSessions(), equalTo(0));
+        // flushing a primary without changes doesn't create a new commit
+        assertThat(primary.store().readLastCommittedSegmentsInfo().getGeneration(), equalTo(generation));
+        closeShards(primary);
+    }
+
+    public void testFlushesAtMostOncePerInterval() throws IOException {
+        final IndexShard primary = newStartedShard(true, SEGMENT_REPLICATION);
+        final SegmentReplicationSourceService service = createService(TimeValue.timeValueHours(1));
+        indexDocs(primary, 0, randomIntBetween(1, 10));
+        flushShard(primary);
+        final SegmentReplicationSourceService.StartResponse first = start(service, primary, Store.MetadataSnapshot.EMPTY);
+        service.finish(new SegmentReplicationSourceService.FinishRequest(first.sessionId()));
+
+        indexDocs(primary, 10, 20);
+        final SegmentReplicationSourceService.StartResponse second = start(service, primary, first.metadataSnapshot());
+        assertThat(second.files(), not(empty()));
+        service.finish(new SegmentReplicationSourceService.FinishRequest(second.sessionId()));
+
+        // the primary was flushed less than an interval ago, the replica waits for its next commit
+        indexDocs(primary, 20, 30);
+        final long generation = primary.store().readLastCommittedSegmentsInfo().getGeneration();
+        final SegmentReplicationSourceService.StartResponse third = start(service, primary, second.metadataSnapshot());
+        assertThat(third.sessionId(), equalTo(SegmentReplicationSourceService.NO_SESSION));
+        assertThat(third.files(), empty());
+        assertThat(primary.store().readLastCommittedSegmentsInfo().getGeneration(), equalTo(generation));
+
+        // a commit of the primary is copied regardless of the flush interval
+        flushShard(primary);
+        final SegmentReplicationSourceService.StartResponse fourth = start(service, primary, second.metadataSnapshot());
+        assertThat(fourth.files(), not(empty()));
+        service.finish(new SegmentReplicationSourceService.FinishRequest(fourth.sessionId()));
+        closeShards(primary);
+    }
+
+    public void testOnlyServesIndicesWithSegmentReplication() throws IOException {
+        final SegmentReplicationSourceService service = createService(TimeValue.ZERO);
+        final IndexShard documentReplication = newStartedShard(true);
+        IllegalStateException e = expectThrows(IllegalStateException.class,
+            () -> start(service, documentReplication, Store.MetadataSnapshot.EMPTY));
+        assertThat(e.getMessage(), equalTo("index " + documentReplication.shardId().getIndex() + " does not use segment replication"));
+        assertThat(service.numberOfSessions(), equalTo(0));
+        closeShards(documentReplication);
+    }
+
+    public void testReleasesTheSessionsOfAClosedShard() throws IOException {
+        final IndexShard primary = newStartedShard(true, SEGMENT_REPLICATION);
+        final SegmentReplicationSourceService service = createService(TimeValue.timeValueHours(1));
+        indexDocs(primary, 0, randomIntBetween(1, 10));
+        flushShard(primary);
+        start(service, primary, Store.MetadataSnapshot.EMPTY);
+        final int refCount = primary.store().refCount();
+
+        service.beforeIndexShardClosed(primary.shardId(), primary, primary.indexSettings().getSettings());
+        assertThat(service.numberOfSessions(), equalTo(0));
+        assertThat(primary.store().refCount(), equalTo(refCount - 1));
+        closeShards(primary);
+    }
+
+    public void testReleasesTimedOutSessions() throws IOException {
+        final AtomicLong relativeTimeInMillis = new AtomicLong();
+        final ThreadPool clock = new TestThreadPool(getTestName()) {
+            @Override
+            public long relativeTimeInMillis() {
+                return relativeTimeInMillis.get();
+            }
+        };
+        final IndexShard primary = newStartedShard(true, SEGMENT_REPLICATION);
+        try {
+            final SegmentReplicationSourceService service = createService(TimeValue.timeValueHours(1), clock);
+            indexDocs(primary, 0, randomIntBetween(1, 10));
+            flushShard(primary);
+            final SegmentReplicationSourceService.StartResponse response = start(service, primary, Store.MetadataSnapshot.EMPTY);
+
+            relativeTimeInMillis.addAndGet(SegmentReplicationSourceService.SESSION_TIMEOUT.millis());
+            service.releaseTimedOutSessions();
+            assertThat(service.numberOfSessions(), equalTo(1));
+            // reading a chunk keeps the session alive
+            service.readFileChunk(new SegmentReplicationSourceService.FileChunkRequest(response.sessionId(),
+                response.files().get(0).name(), 0, 1));
+            relativeTimeInMillis.addAndGet(SegmentReplicationSourceService.SESSION_TIMEOUT.millis());
+            service.releaseTimedOutSessions();
+            assertThat(service.numberOfSessions(), equalTo(1));
+
+            relativeTimeInMillis.incrementAndGet();
+            service.releaseTimedOutSessions();
+            assertThat(service.numberOfSessions(), equalTo(0));
+        } finally {
+            closeShards(primary);
+            terminate(clock);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.replication;
+
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.replication.ESIndexLevelReplicationTestCase;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.recovery.RecoverySettings;
+import org.elasticsearch.test.ClusterServiceUtils;
+import org.elasticsearch.test.transport.MockTransport;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.elasticsearch.transport.TransportService.NOOP_TRANSPORT_INTERCEPTOR;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+
+public class SegmentReplicationTargetServiceTests extends ESIndexLevelReplicationTestCase {
+
+    private static final Settings SEGMENT_REPLICATION = Settings.builder()
+        .put(IndexSettings.INDEX_SOFT_DELETES_SETTING.getKey(), true)
+        .put(IndexSettings.INDEX_REPLICATION_TYPE_SETTING.getKey(), "segment")
+        .build();
+
+    public void testCopiesOnlyTheSegmentsThatChanged() throws Exception {
+        try (ReplicationGroup shards = createGroup(1, SEGMENT_REPLICATION)) {
+            shards.startAll();
+            final IndexShard primary = shards.getPrimary();
+            final IndexShard replica = shards.getReplicas().get(0);
+            final ClusterSettings clusterSettings = new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+            // flush the primary whenever the replica has its last commit
+            final Settings sourceSettings = Settings.builder()
+                .put(SegmentReplicationSourceService.SEGMENT_REPLICATION_FLUSH_INTERVAL_SETTING.getKey(), TimeValue.ZERO)
+                .build();
+            final SegmentReplicationSourceService sourceService = new SegmentReplicationSourceService(sourceSettings,
+                new ClusterSettings(sourceSettings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS), mock(TransportService.class),
+                mock(IndicesService.class), threadPool);
+            final Set<String> copiedFiles = ConcurrentCollections.newConcurrentSet();
+            final MockTransport transport = new MockTransport() {
+                @Override
+                protected void onSendRequest(long requestId, String action, TransportRequest request, DiscoveryNode node) {
+                    try {
+                        switch (action) {
+                            case SegmentReplicationSourceService.Actions.START:
+                                handleResponse(requestId,
+                                    sourceService.start(primary, (SegmentReplicationSourceService.StartRequest) request));
+                                break;
+                            case SegmentReplicationSourceService.Actions.FILE_CHUNK:
+                                final SegmentReplicationSourceService.FileChunkRequest chunkRequest =
+                                    (SegmentReplicationSourceService.FileChunkRequest) request;
+                                copiedFiles.add(chunkRequest.name());
+                                handleResponse(requestId, sourceService.readFileChunk(chunkRequest));
+                                break;
+                            case SegmentReplicationSourceService.Actions.FINISH:
+                                sourceService.finish((SegmentReplicationSourceService.FinishRequest) request);
+                                handleResponse(requestId, TransportResponse.Empty.INSTANCE);
+                                break;
+                            default:
+                                throw new AssertionError("unexpected action [" + action + "]");
+                        }
+                    } catch (Exception e) {
+                        handleRemoteError(requestId, e);
+                    }
+                }
+            };
+            final DiscoveryNode primaryNode = getFakeDiscoNode("primary");
+            final DiscoveryNode replicaNode = getFakeDiscoNode("replica");
+            final TransportService transportService = transport.createTransportService(Settings.EMPTY, threadPool,
+                NOOP_TRANSPORT_INTERCEPTOR, boundAddress -> replicaNode, null, Collections.emptySet());
+            transportService.start();
+            transportService.acceptIncomingRequests();
+            final ClusterService clusterService = ClusterServiceUtils.createClusterService(threadPool, replicaNode, clusterSettings);
+            try {
+                final SegmentReplicationTargetService targetService = new SegmentReplicationTargetService(Settings.EMPTY, threadPool,
+                    transportService, clusterService, mock(IndicesService.class), new RecoverySettings(Settings.EMPTY, clusterSettings));
+                assertThat(replica.getLastCopiedSegmentsMetaData(), nullValue());
+
+                final int numDocs = shards.indexDocs(randomIntBetween(1, 10));
+                // the replica did not copy a commit yet, so the primary is not flushed by its first copy
+                flushShard(primary);
+                copyFromPrimary(targetService, replica, primaryNode);
+                assertThat(copiedFiles, not(empty()));
+                assertThat(getShardDocUIDs(replica), equalTo(getShardDocUIDs(primary)));
+                assertThat(getShardDocUIDs(replica).size(), equalTo(numDocs));
+                final Store.MetadataSnapshot firstCopy = replica.getLastCopiedSegmentsMetaData();
+                assertThat(firstCopy, notNullValue());
+
+                // nothing changed on the primary, the replica keeps its engine
+                copiedFiles.clear();
+                final Engine engine = getEngine(replica);
+                copyFromPrimary(targetService, replica, primaryNode);
+                assertThat(copiedFiles, empty());
+                assertSame(engine, getEngine(replica));
+                assertSame(firstCopy, replica.getLastCopiedSegmentsMetaData());
+                assertThat(sourceService.numberOfSessions(), equalTo(0));
+
+                // only the segments of the new documents are copied
+                final int moreDocs = shards.indexDocs(randomIntBetween(1, 10));
+                copyFromPrimary(targetService, replica, primaryNode);
+                assertThat(copiedFiles, not(empty()));
+                for (String file : copiedFiles) {
+                    assertThat(firstCopy.get(file), nullValue());
+                }
+                assertThat(getShardDocUIDs(replica), equalTo(getShardDocUIDs(primary)));
+                assertThat(getShardDocUIDs(replica).size(), equalTo(numDocs + moreDocs));
+                assertThat(sourceService.numberOfSessions(), equalTo(0));
+            } finally {
+                clusterService.close();
+                transportService.close();
+            }
+        }
+    }
+
+    private static void copyFromPrimary(SegmentReplicationTargetService targetService, IndexShard replica, DiscoveryNode primaryNode) {
+        final PlainActionFuture<Void> future = PlainActionFuture.newFuture();
+        targetService.copyFromPrimary(replica, primaryNode, future);
+        future.actionGet();
+    }
+}
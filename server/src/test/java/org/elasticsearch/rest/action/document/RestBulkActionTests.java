@@ -19,22 +19,42 @@
 
 package org.elasticsearch.rest.action.document;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.node.NodeClient;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.http.HttpContentStream;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.rest.FakeRestChannel;
 import org.elasticsearch.test.rest.FakeRestRequest;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.hamcrest.CustomMatcher;
 import org.mockito.Mockito;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
@@ -73,4 +93,174 @@ public class RestBulkActionTests extends ESTestCase {
                 }
             }), any());
     }
+
+    @SuppressWarnings("unchecked")
+    public void testStreamedBulkExecutesBatchesWhileReceivingContent() throws Exception {
+        final ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            final List<BulkRequest> batches = new ArrayList<>();
+            final List<ActionListener<BulkResponse>> listeners = new ArrayList<>();
+            final NodeClient client = new NodeClient(Settings.EMPTY, threadPool) {
+                @Override
+                public void bulk(BulkRequest request, ActionListener<BulkResponse> listener) {
+                    batches.add(request);
+                    listeners.add(listener);
+                }
+            };
+            final int[] pausedAndResumed = new int[2];
+            final HttpContentStream contentStream = new HttpContentStream(Long.MAX_VALUE, new HttpContentStream.ReadControl() {
+                @Override
+                public void pauseReading() {
+                    pausedAndResumed[0]++;
+                }
+
+                @Override
+                public void resumeReading() {
+                    pausedAndResumed[1]++;
+                }
+            });
+            final Map<String, String> params = new HashMap<>();
+            params.put("pipeline", "timestamps");
+            final RestRequest request = new FakeRestRequest.Builder(xContentRegistry()).withPath("my_index/_bulk").withParams(params)
+                .withContentStream(contentStream, XContentType.JSON).withMethod(RestRequest.Method.POST).build();
+            final FakeRestChannel channel = new FakeRestChannel(request, false, 1);
+            new RestBulkAction(streamingSettings(), mock(RestController.class)).handleRequest(request, channel, client);
+
+            // the first item exceeds the batch size on its own, so it is executed before the rest of the content is received
+            final StringBuilder largeValue = new StringBuilder();
+            while (largeValue.length() <= RestBulkAction.STREAMED_BATCH_SIZE_IN_BYTES) {
+                largeValue.append(randomAlphaOfLength(1024));
+            }
+            contentStream.receiveChunk(new BytesArray("{\"index\":{\"_id\":\"1\"}}\n{\"field1\":\""), false);
+            contentStream.receiveChunk(new BytesArray(largeValue + "\"}\n{\"index\":{\"_id\""), false);
+            assertThat(batches, hasSize(1));
+            assertThat(batches.get(0).requests(), hasSize(1));
+            contentStream.receiveChunk(new BytesArray(":\"2\"}}\n{\"field1\":\"val2\"}\n"), true);
+            assertThat(batches, hasSize(2));
+            assertThat(batches.get(1).requests(), hasSize(1));
+            for (BulkRequest batch : batches) {
+                IndexRequest indexRequest = (IndexRequest) batch.requests().get(0);
+                assertThat(indexRequest.index(), equalTo("my_index"));
+                assertThat(indexRequest.getPipeline(), equalTo("timestamps"));
+            }
+            // reading was not paused since the last chunk was received when the second batch started executing
+            assertThat(pausedAndResumed[0], equalTo(0));
+
+            final ShardId shardId = new ShardId("my_index", "_na_", 0);
+            listeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] {
+                new BulkItemResponse(0, DocWriteRequest.OpType.INDEX, new IndexResponse(shardId, "1", 0, 1, 1, true))}, 1));
+            assertThat(channel.responses().get(), equalTo(0));
+            listeners.get(1).onFailure(new EsRejectedExecutionException("rejected"));
+            assertThat(channel.responses().get(), equalTo(1));
+            assertThat(channel.capturedResponse().status(), equalTo(RestStatus.OK));
+
+            final Map<String, Object> response =
+                XContentHelper.convertToMap(channel.capturedResponse().content(), false, XContentType.JSON).v2();
+            assertThat(response.get("errors"), equalTo(true));
+            final List<Map<String, Map<String, Object>>> items = (List<Map<String, Map<String, Object>>>) response.get("items");
+            assertThat(items, hasSize(2));
+            assertThat(items.get(0).get("index").get("_id"), equalTo("1"));
+            assertThat(items.get(0).get("index").get("status"), equalTo(201));
+            assertThat(items.get(1).get("index").get("_id"), equalTo("2"));
+            assertThat(items.get(1).get("index").get("error").toString(), containsString("rejected"));
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    public void testStreamedBulkFailsOnMalformedContent() throws Exception {
+        final ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            final NodeClient client = new NodeClient(Settings.EMPTY, threadPool) {
+                @Override
+                public void bulk(BulkRequest request, ActionListener<BulkResponse> listener) {
+                    fail("no batch should be executed");
+                }
+            };
+            final HttpContentStream contentStream = new HttpContentStream(Long.MAX_VALUE, new HttpContentStream.ReadControl() {
+                @Override
+                public void pauseReading() {
+                }
+
+                @Override
+                public void resumeReading() {
+                }
+            });
+            final RestRequest request = new FakeRestRequest.Builder(xContentRegistry()).withPath("my_index/_bulk")
+                .withContentStream(contentStream, XContentType.JSON).withMethod(RestRequest.Method.POST).build();
+            final FakeRestChannel channel = new FakeRestChannel(request, false, 1);
+            new RestBulkAction(streamingSettings(), mock(RestController.class)).handleRequest(request, channel, client);
+
+            contentStream.receiveChunk(new BytesArray("{\"index\":{\"_id\":\"1\"}}\n{\"field1\":\"val1\"}\n"), false);
+            contentStream.receiveChunk(new BytesArray("{\"index\":{\"_id\":\"2\",\"unknown\":\"x\"}}\n"), true);
+            assertThat(channel.responses().get(), equalTo(1));
+            assertThat(channel.capturedResponse().status(), equalTo(RestStatus.BAD_REQUEST));
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    public void testContentIsOnlyStreamedWhenEnabled() {
+        assertFalse(new RestBulkAction(settings(Version.CURRENT).build(), mock(RestController.class)).supportsIncrementalContent());
+        assertTrue(new RestBulkAction(streamingSettings(), mock(RestController.class)).supportsIncrementalContent());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testStreamedBulkReportsExecutedItemsOnMalformedContent() throws Exception {
+        final ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            final List<ActionListener<BulkResponse>> listeners = new ArrayList<>();
+            final NodeClient client = new NodeClient(Settings.EMPTY, threadPool) {
+                @Override
+                public void bulk(BulkRequest request, ActionListener<BulkResponse> listener) {
+                    listeners.add(listener);
+                }
+            };
+            final HttpContentStream contentStream = new HttpContentStream(Long.MAX_VALUE, new HttpContentStream.ReadControl() {
+                @Override
+                public void pauseReading() {
+                }
+
+                @Override
+                public void resumeReading() {
+                }
+            });
+            final RestRequest request = new FakeRestRequest.Builder(xContentRegistry()).withPath("my_index/_bulk")
+                .withContentStream(contentStream, XContentType.JSON).withMethod(RestRequest.Method.POST).build();
+            final FakeRestChannel channel = new FakeRestChannel(request, false, 1);
+            new RestBulkAction(streamingSettings(), mock(RestController.class)).handleRequest(request, channel, client);
+
+            // the first item exceeds the batch size on its own, so it is executed before the malformed item is received
+            final StringBuilder largeValue = new StringBuilder();
+            while (largeValue.length() <= RestBulkAction.STREAMED_BATCH_SIZE_IN_BYTES) {
+                largeValue.append(randomAlphaOfLength(1024));
+            }
+            contentStream.receiveChunk(new BytesArray("{\"index\":{\"_id\":\"1\"}}\n{\"field1\":\"" + largeValue + "\"}\n"), false);
+            assertThat(listeners, hasSize(1));
+            contentStream.receiveChunk(new BytesArray("{\"index\":{\"_id\":\"2\",\"unknown\":\"x\"}}\n"), true);
+            // the request only fails once the batch that is executing has completed
+            assertThat(channel.responses().get(), equalTo(0));
+
+            final ShardId shardId = new ShardId("my_index", "_na_", 0);
+            listeners.get(0).onResponse(new BulkResponse(new BulkItemResponse[] {
+                new BulkItemResponse(0, DocWriteRequest.OpType.INDEX, new IndexResponse(shardId, "1", 0, 1, 1, true))}, 1));
+            assertThat(listeners, hasSize(1));
+            assertThat(channel.responses().get(), equalTo(1));
+            assertThat(channel.capturedResponse().status(), equalTo(RestStatus.BAD_REQUEST));
+
+            final Map<String, Object> response =
+                XContentHelper.convertToMap(channel.capturedResponse().content(), false, XContentType.JSON).v2();
+            assertThat(response.get("error").toString(), containsString("unknown"));
+            final List<Map<String, Map<String, Object>>> items = (List<Map<String, Map<String, Object>>>) response.get("items");
+            assertThat(items, hasSize(1));
+            assertThat(items.get(0).get("index").get("_id"), equalTo("1"));
+            assertThat(items.get(0).get("index").get("status"), equalTo(201));
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    private static Settings streamingSettings() {
+        return settings(Version.CURRENT).put(RestBulkAction.STREAM_CONTENT_SETTING.getKey(), true).build();
+    }
 }
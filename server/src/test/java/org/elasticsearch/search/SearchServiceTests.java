@@ -25,10 +25,16 @@ import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.ClosePointInTimeAction;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeAction;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
@@ -71,6 +77,7 @@ import org.elasticsearch.search.aggregations.MultiBucketConsumerService;
 import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.aggregations.support.ValueType;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.FetchSearchResult;
 import org.elasticsearch.search.fetch.ShardFetchRequest;
@@ -237,6 +244,52 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
         assertEquals(0, service.getActiveContexts());
     }
 
+    public void testPointInTime() {
+        createIndex("index");
+        client().prepareIndex("index").setId("1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        SearchService service = getInstanceFromNode(SearchService.class);
+        OpenPointInTimeRequest openRequest = new OpenPointInTimeRequest("index").keepAlive(TimeValue.timeValueMinutes(1));
+        String pitId = client().execute(OpenPointInTimeAction.INSTANCE, openRequest).actionGet().getSearchContextId();
+        assertEquals(1, service.getActiveReaderContexts());
+
+        client().prepareIndex("index").setId("2").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        assertHitCount(client().prepareSearch("index").get(), 2);
+        for (int i = 0; i < 3; i++) {
+            SearchResponse searchResponse = client().prepareSearch()
+                .setSource(new SearchSourceBuilder().pointInTimeBuilder(new PointInTimeBuilder(pitId, null)))
+                .get();
+            assertHitCount(searchResponse, 1);
+        }
+        // searches over a point in time do not keep a search context open
+        assertEquals(0, service.getActiveContexts());
+        assertEquals(1, service.getActiveReaderContexts());
+
+        ClearScrollResponse closeResponse = client().execute(ClosePointInTimeAction.INSTANCE, new ClosePointInTimeRequest(pitId))
+            .actionGet();
+        assertTrue(closeResponse.isSucceeded());
+        assertEquals(1, closeResponse.getNumFreed());
+        assertEquals(0, service.getActiveReaderContexts());
+        expectThrows(SearchPhaseExecutionException.class, () -> client().prepareSearch()
+            .setSource(new SearchSourceBuilder().pointInTimeBuilder(new PointInTimeBuilder(pitId, null)))
+            .get());
+    }
+
+    public void testPointInTimeKeepAliveLimit() {
+        createIndex("index");
+        client().admin().cluster().prepareUpdateSettings()
+            .setPersistentSettings(Settings.builder().put("search.default_keep_alive", "1m").put("search.max_keep_alive", "1m")).get();
+        try {
+            OpenPointInTimeRequest openRequest = new OpenPointInTimeRequest("index").keepAlive(TimeValue.timeValueHours(1));
+            Exception exc = expectThrows(Exception.class,
+                () -> client().execute(OpenPointInTimeAction.INSTANCE, openRequest).actionGet());
+            assertThat(ExceptionsHelper.unwrapCause(exc).getMessage(), startsWith("Keep alive for point in time (1h) is too large"));
+            assertEquals(0, getInstanceFromNode(SearchService.class).getActiveReaderContexts());
+        } finally {
+            client().admin().cluster().prepareUpdateSettings()
+                .setPersistentSettings(Settings.builder().putNull("search.default_keep_alive").putNull("search.max_keep_alive")).get();
+        }
+    }
+
     public void testCloseSearchContextOnRewriteException() {
         // if refresh happens while checking the exception, the subsequent reference count might not match, so we switch it off
         createIndex("index", Settings.builder().put("index.refresh_interval", -1).build());
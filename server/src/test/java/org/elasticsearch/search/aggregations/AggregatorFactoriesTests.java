@@ -228,6 +228,28 @@ public class AggregatorFactoriesTests extends ESTestCase {
         assertSame(rewritten, secondRewritten);
     }
 
+    public void testSupportsExactPartialReduce() {
+        assertTrue(new AggregatorFactories.Builder().supportsExactPartialReduce());
+        assertTrue(new AggregatorFactories.Builder()
+            .addAggregator(AggregationBuilders.dateHistogram("histo").field("date")
+                .subAggregation(AggregationBuilders.avg("avg").field("value")))
+            .addAggregator(AggregationBuilders.max("max").field("value"))
+            .addPipelineAggregator(PipelineAggregatorBuilders.avgBucket("avg_bucket", "histo>avg"))
+            .supportsExactPartialReduce());
+        // terms prune their buckets on each partial result
+        assertFalse(new AggregatorFactories.Builder()
+            .addAggregator(AggregationBuilders.terms("terms").field("keyword"))
+            .supportsExactPartialReduce());
+        assertFalse(new AggregatorFactories.Builder()
+            .addAggregator(AggregationBuilders.histogram("histo").field("value").interval(1)
+                .subAggregation(AggregationBuilders.terms("terms").field("keyword")))
+            .supportsExactPartialReduce());
+        // global aggregations run their own search
+        assertFalse(new AggregatorFactories.Builder()
+            .addAggregator(AggregationBuilders.global("global"))
+            .supportsExactPartialReduce());
+    }
+
     @Override
     protected NamedXContentRegistry xContentRegistry() {
         return xContentRegistry;
@@ -26,18 +26,26 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.index.mapper.KeywordFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
 import org.elasticsearch.search.aggregations.support.AggregationInspectionHelper;
+import org.elasticsearch.search.internal.SearchContext;
 import org.junit.Before;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.elasticsearch.test.InternalAggregationTestCase.DEFAULT_MAX_BUCKETS;
 
 public class FiltersAggregatorTests extends AggregatorTestCase {
     private MappedFieldType fieldType;
@@ -206,4 +214,80 @@ public class FiltersAggregatorTests extends AggregatorTestCase {
             directory.close();
         }
     }
+
+    public void testSlicesShareTheFactory() throws Exception {
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory);
+        int numDocs = randomIntBetween(10, 100);
+        int[] expectedBucketCount = new int[3];
+        Document document = new Document();
+        for (int i = 0; i < numDocs; i++) {
+            if (frequently()) {
+                indexWriter.commit();
+            }
+            int value = randomInt(expectedBucketCount.length - 1);
+            expectedBucketCount[value] += 1;
+            document.add(new Field("field", Integer.toString(value), fieldType));
+            indexWriter.addDocument(document);
+            document.clear();
+        }
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+        try {
+            QueryBuilder[] filters = new QueryBuilder[expectedBucketCount.length];
+            for (int i = 0; i < filters.length; i++) {
+                filters[i] = QueryBuilders.termQuery("field", Integer.toString(i));
+            }
+            FiltersAggregationBuilder builder = new FiltersAggregationBuilder("test", filters);
+            SearchContext searchContext = createSearchContext(indexSearcher, createIndexSettings(), new MatchAllDocsQuery(),
+                new MultiBucketConsumer(DEFAULT_MAX_BUCKETS), fieldType);
+            // the slices of a concurrent search create their aggregators from the same factory
+            FiltersAggregatorFactory factory = (FiltersAggregatorFactory) builder.build(searchContext.getQueryShardContext(), null);
+            Aggregator[] aggregators = new Aggregator[randomIntBetween(2, 8)];
+            for (int i = 0; i < aggregators.length; i++) {
+                aggregators[i] = factory.create(searchContext, null, true);
+            }
+            // the weights are created lazily by the first slice that collects a segment
+            CountDownLatch startLatch = new CountDownLatch(1);
+            Thread[] threads = new Thread[aggregators.length];
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            for (int i = 0; i < threads.length; i++) {
+                Aggregator aggregator = aggregators[i];
+                threads[i] = new Thread(() -> {
+                    try {
+                        startLatch.await();
+                        aggregator.preCollection();
+                        indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+                        aggregator.postCollection();
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                threads[i].start();
+            }
+            startLatch.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(failure.get());
+
+            Weight[] weights = factory.getWeights(searchContext);
+            assertEquals(filters.length, weights.length);
+            for (Weight weight : weights) {
+                assertNotNull(weight);
+            }
+            for (Aggregator aggregator : aggregators) {
+                InternalFilters response = (InternalFilters) aggregator.buildAggregation(0L);
+                for (InternalFilters.InternalBucket bucket : response.getBuckets()) {
+                    int index = Integer.parseInt(bucket.getKey());
+                    assertEquals((long) expectedBucketCount[index], bucket.getDocCount());
+                }
+            }
+        } finally {
+            indexReader.close();
+            directory.close();
+        }
+    }
 }
@@ -20,11 +20,14 @@
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
@@ -39,10 +42,13 @@ import org.elasticsearch.search.aggregations.MultiBucketConsumerService.TooManyB
 import org.elasticsearch.search.aggregations.support.AggregationInspectionHelper;
 
 import java.io.IOException;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.equalTo;
@@ -1164,6 +1170,64 @@ public class DateHistogramAggregatorTests extends AggregatorTestCase {
         assertWarnings("[interval] on [date_histogram] is deprecated, use [fixed_interval] or [calendar_interval] in the future.");
     }
 
+    public void testCountFromPoints() throws IOException {
+        DateFieldMapper.DateFieldType fieldType = new DateFieldMapper.Builder("_name").fieldType();
+        fieldType.setName(DATE_FIELD);
+        fieldType.setHasDocValues(true);
+        final long start = asLong("2017-02-01T00:00:00");
+        final long hour = 60 * 60 * 1000;
+        final long lower = start + randomLongBetween(0, 10 * 24 * hour);
+        final long upper = lower + randomLongBetween(0, 10 * 24 * hour);
+        Map<Long, Integer> allCounts = new TreeMap<>();
+        Map<Long, Integer> rangeCounts = new TreeMap<>();
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                int numDocs = randomIntBetween(1, 5000);
+                for (int i = 0; i < numDocs; i++) {
+                    if (rarely()) {
+                        indexWriter.commit();
+                    }
+                    long instant = start + randomLongBetween(0, 30 * 24 * hour);
+                    Document document = new Document();
+                    document.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+                    document.add(new SortedNumericDocValuesField(DATE_FIELD, instant));
+                    document.add(new LongPoint(DATE_FIELD, instant));
+                    indexWriter.addDocument(document);
+                    if (rarely()) {
+                        // segments with deleted documents are collected
+                        indexWriter.deleteDocuments(new Term("id", Integer.toString(i)));
+                    } else {
+                        long key = instant - instant % hour;
+                        allCounts.merge(key, 1, Integer::sum);
+                        if (instant >= lower && instant <= upper) {
+                            rangeCounts.merge(key, 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+                DateHistogramAggregationBuilder aggregationBuilder = new DateHistogramAggregationBuilder("_name")
+                    .field(DATE_FIELD)
+                    .calendarInterval(DateHistogramInterval.HOUR)
+                    .minDocCount(1);
+                InternalDateHistogram histogram = search(indexSearcher, new MatchAllDocsQuery(), aggregationBuilder, fieldType);
+                assertThat(bucketCounts(histogram), equalTo(allCounts));
+                histogram = search(indexSearcher, LongPoint.newRangeQuery(DATE_FIELD, lower, upper), aggregationBuilder, fieldType);
+                assertThat(bucketCounts(histogram), equalTo(rangeCounts));
+            }
+        }
+    }
+
+    private static Map<Long, Integer> bucketCounts(InternalDateHistogram histogram) {
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (InternalDateHistogram.Bucket bucket : histogram.getBuckets()) {
+            counts.put(((ZonedDateTime) bucket.getKey()).toInstant().toEpochMilli(), (int) bucket.getDocCount());
+        }
+        return counts;
+    }
+
     private void testSearchCase(Query query, List<String> dataset,
                                 Consumer<DateHistogramAggregationBuilder> configure,
                                 Consumer<InternalDateHistogram> verify, boolean useNanosecondResolution) throws IOException {
@@ -74,6 +74,7 @@ public class CollapseBuilderTests extends AbstractSerializingTestCase<CollapseBu
     public static CollapseBuilder randomCollapseBuilder(boolean multiInnerHits) {
         CollapseBuilder builder = new CollapseBuilder(randomAlphaOfLength(10));
         builder.setMaxConcurrentGroupRequests(randomIntBetween(1, 48));
+        builder.setBatchedExpansion(randomBoolean());
         int numInnerHits = randomIntBetween(0, multiInnerHits ? 5 : 1);
         if (numInnerHits == 1) {
             InnerHitBuilder innerHit = InnerHitBuilderTests.randomInnerHits();
@@ -103,10 +104,11 @@ public class CollapseBuilderTests extends AbstractSerializingTestCase<CollapseBu
     @Override
     protected CollapseBuilder mutateInstance(CollapseBuilder instance) throws IOException {
         CollapseBuilder newBuilder;
-        switch (between(0, 2)) {
+        switch (between(0, 3)) {
         case 0:
             newBuilder = new CollapseBuilder(instance.getField() + randomAlphaOfLength(10));
             newBuilder.setMaxConcurrentGroupRequests(instance.getMaxConcurrentGroupRequests());
+            newBuilder.setBatchedExpansion(instance.isBatchedExpansion());
             newBuilder.setInnerHits(instance.getInnerHits());
             break;
         case 1:
@@ -114,7 +116,6 @@ public class CollapseBuilderTests extends AbstractSerializingTestCase<CollapseBu
             newBuilder.setMaxConcurrentGroupRequests(instance.getMaxConcurrentGroupRequests() + between(1, 20));
             break;
         case 2:
-        default:
             newBuilder = copyInstance(instance);
             List<InnerHitBuilder> innerHits = new ArrayList<>(newBuilder.getInnerHits());
             for (int i = 0; i < between(1, 5); i++) {
@@ -122,6 +123,11 @@ public class CollapseBuilderTests extends AbstractSerializingTestCase<CollapseBu
             }
             newBuilder.setInnerHits(innerHits);
             break;
+        case 3:
+        default:
+            newBuilder = copyInstance(instance);
+            newBuilder.setBatchedExpansion(instance.isBatchedExpansion() == false);
+            break;
         }
         return newBuilder;
     }
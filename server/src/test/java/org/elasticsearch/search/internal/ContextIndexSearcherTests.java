@@ -37,6 +37,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
@@ -49,6 +50,7 @@ import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Accountable;
@@ -61,23 +63,32 @@ import org.apache.lucene.util.SparseFixedBitSet;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.tasks.TaskCancelledException;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.IndexSettingsModule;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.elasticsearch.search.internal.ContextIndexSearcher.intersectScorerAndBitSet;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 public class ContextIndexSearcherTests extends ESTestCase {
     public void testIntersectScorerAndRoleBits() throws Exception {
@@ -253,6 +264,117 @@ public class ContextIndexSearcherTests extends ESTestCase {
         IOUtils.close(reader, w, dir);
     }
 
+    public void testComputeSlicesPreservesLeafOrder() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final int numSegments = randomIntBetween(1, 20);
+            for (int i = 0; i < numSegments; i++) {
+                w.addDocument(new Document());
+                w.commit();
+            }
+            try (DirectoryReader reader = DirectoryReader.open(w)) {
+                List<LeafReaderContext> leaves = new ArrayList<>(reader.leaves());
+                Collections.shuffle(leaves, random());
+                List<List<LeafReaderContext>> slices = ContextIndexSearcher.computeSlices(leaves);
+                assertEquals((numSegments + ContextIndexSearcher.MAX_SEGMENTS_PER_SLICE - 1) / ContextIndexSearcher.MAX_SEGMENTS_PER_SLICE,
+                    slices.size());
+                List<LeafReaderContext> flattened = new ArrayList<>();
+                for (List<LeafReaderContext> slice : slices) {
+                    assertThat(slice.size(), lessThanOrEqualTo(ContextIndexSearcher.MAX_SEGMENTS_PER_SLICE));
+                    flattened.addAll(slice);
+                }
+                assertEquals(leaves, flattened);
+            }
+        }
+    }
+
+    public void testConcurrentSearch() throws IOException {
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try (Directory dir = newDirectory();
+             IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final int numSegments = randomIntBetween(ContextIndexSearcher.MAX_SEGMENTS_PER_SLICE + 1, 30);
+            int numDocs = 0;
+            for (int i = 0; i < numSegments; i++) {
+                final int numSegmentDocs = randomIntBetween(1, 10);
+                for (int j = 0; j < numSegmentDocs; j++) {
+                    Document doc = new Document();
+                    doc.add(new StringField("foo", randomBoolean() ? "bar" : "baz", Field.Store.NO));
+                    w.addDocument(doc);
+                }
+                numDocs += numSegmentDocs;
+                w.commit();
+            }
+            try (DirectoryReader reader = DirectoryReader.open(w)) {
+                ContextIndexSearcher sequential = new ContextIndexSearcher(reader, IndexSearcher.getDefaultSimilarity(),
+                    IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy());
+                ContextIndexSearcher concurrent = new ContextIndexSearcher(reader, IndexSearcher.getDefaultSimilarity(),
+                    IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy(),
+                    threadPool.executor(ThreadPool.Names.SEARCH_WORKER));
+                assertFalse(sequential.isConcurrentSearchEnabled());
+                assertTrue(concurrent.isConcurrentSearchEnabled());
+                concurrent.setCheckCancelled(() -> {});
+
+                assertEquals(numDocs, (int) concurrent.search(new MatchAllDocsQuery(), new TotalHitCountCollectorManager()));
+                Query query = new TermQuery(new Term("foo", "bar"));
+                assertEquals(sequential.count(query), (int) concurrent.search(query, new TotalHitCountCollectorManager()));
+                TopDocs expected = sequential.search(query, numDocs);
+                TopDocs actual = concurrent.search(query, numDocs);
+                assertEquals(expected.totalHits, actual.totalHits);
+                assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+                for (int i = 0; i < expected.scoreDocs.length; i++) {
+                    assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+                }
+
+                // failures on worker threads are rethrown as is
+                concurrent.setCheckCancelled(() -> {
+                    throw new TaskCancelledException("cancelled");
+                });
+                expectThrows(TaskCancelledException.class,
+                    () -> concurrent.search(new MatchAllDocsQuery(), new TotalHitCountCollectorManager()));
+            }
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    public void testConcurrentSearchWithRejectedSlices() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final int numSegments = randomIntBetween(ContextIndexSearcher.MAX_SEGMENTS_PER_SLICE + 1, 30);
+            for (int i = 0; i < numSegments; i++) {
+                w.addDocument(new Document());
+                w.commit();
+            }
+            try (DirectoryReader reader = DirectoryReader.open(w)) {
+                AtomicInteger rejections = new AtomicInteger();
+                ContextIndexSearcher searcher = new ContextIndexSearcher(reader, IndexSearcher.getDefaultSimilarity(),
+                    IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy(), command -> {
+                        rejections.incrementAndGet();
+                        throw new EsRejectedExecutionException("rejected");
+                    });
+                // the rejected slices are collected on the calling thread
+                assertEquals(numSegments, (int) searcher.search(new MatchAllDocsQuery(), new TotalHitCountCollectorManager()));
+                assertEquals(ContextIndexSearcher.computeSlices(reader.leaves()).size() - 1, rejections.get());
+            }
+        }
+    }
+
+    private static class TotalHitCountCollectorManager implements CollectorManager<TotalHitCountCollector, Integer> {
+        @Override
+        public TotalHitCountCollector newCollector() {
+            return new TotalHitCountCollector();
+        }
+
+        @Override
+        public Integer reduce(Collection<TotalHitCountCollector> collectors) {
+            int totalHits = 0;
+            for (TotalHitCountCollector collector : collectors) {
+                totalHits += collector.getTotalHits();
+            }
+            return totalHits;
+        }
+    }
+
     private SparseFixedBitSet query(LeafReaderContext leaf, String field, String value) throws IOException {
         SparseFixedBitSet sparseFixedBitSet = new SparseFixedBitSet(leaf.reader().maxDoc());
         TermsEnum tenum = leaf.reader().terms(field).iterator();
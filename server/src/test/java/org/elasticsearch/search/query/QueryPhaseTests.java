@@ -23,9 +23,11 @@ import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.LatLonPoint;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
@@ -57,6 +59,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHitCountCollector;
@@ -95,8 +98,10 @@ import static org.elasticsearch.search.query.QueryPhase.indexFieldHasDuplicateDa
 import static org.elasticsearch.search.query.TopDocsCollectorContext.hasInfMaxScore;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.spy;
@@ -703,6 +708,64 @@ public class QueryPhaseTests extends IndexShardTestCase {
         dir.close();
     }
 
+    public void testNumericSortSkipsNonCompetitiveDocs() throws Exception {
+        final String fieldName = "int-field";
+        MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.INTEGER);
+        MapperService mapperService = mock(MapperService.class);
+        when(mapperService.fullName(fieldName)).thenReturn(fieldType);
+
+        final int numDocs = 10000;
+        List<Long> values = new ArrayList<>();
+        Directory dir = newDirectory();
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(null));
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            doc.add(new LongPoint("filter", i % 2));
+            if (i % 100 != 0) {
+                // every hundredth document has no value
+                int value = randomIntBetween(-1000000, 1000000);
+                values.add((long) value);
+                doc.add(new IntPoint(fieldName, value));
+                doc.add(new SortedNumericDocValuesField(fieldName, value));
+            }
+            writer.addDocument(doc);
+        }
+        writer.close();
+        values.sort(Collections.reverseOrder());
+        final IndexReader reader = DirectoryReader.open(dir);
+
+        TestSearchContext searchContext = spy(new TestSearchContext(null, indexShard, newContextSearcher(reader)));
+        when(searchContext.mapperService()).thenReturn(mapperService);
+        SortField sortField = new SortedNumericSortField(fieldName, SortField.Type.LONG, true);
+        sortField.setMissingValue(Long.MIN_VALUE);
+        searchContext.sort(new SortAndFormats(new Sort(sortField), new DocValueFormat[] { DocValueFormat.RAW }));
+        // a query whose hits can't be counted without collecting them
+        searchContext.parsedQuery(new ParsedQuery(LongPoint.newRangeQuery("filter", 0, 1)));
+        searchContext.setTask(new SearchShardTask(123L, "", "", "", null, Collections.emptyMap()));
+        searchContext.setSize(10);
+        searchContext.trackTotalHitsUpTo(100);
+        QueryPhase.executeInternal(searchContext);
+        TopDocs topDocs = searchContext.queryResult().topDocs().topDocs;
+        assertThat(topDocs.totalHits.relation, equalTo(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO));
+        assertThat(topDocs.totalHits.value, greaterThan(100L));
+        assertThat(topDocs.totalHits.value, lessThan((long) numDocs));
+        assertThat(topDocs.scoreDocs.length, equalTo(10));
+        for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+            assertThat(((FieldDoc) topDocs.scoreDocs[i]).fields[0], equalTo(values.get(i)));
+        }
+
+        // all hits are collected to count them accurately
+        searchContext.trackTotalHitsUpTo(SearchContext.TRACK_TOTAL_HITS_ACCURATE);
+        QueryPhase.executeInternal(searchContext);
+        topDocs = searchContext.queryResult().topDocs().topDocs;
+        assertThat(topDocs.totalHits, equalTo(new TotalHits(numDocs, TotalHits.Relation.EQUAL_TO)));
+        for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+            assertThat(((FieldDoc) topDocs.scoreDocs[i]).fields[0], equalTo(values.get(i)));
+        }
+        reader.close();
+        dir.close();
+    }
+
     @AwaitsFix(bugUrl = "https://github.com/elastic/elasticsearch/issues/49703")
     public void testIndexHasDuplicateData() throws IOException {
         int docsCount = 7000;
@@ -834,6 +897,89 @@ public class QueryPhaseTests extends IndexShardTestCase {
 
     }
 
+    public void testConcurrentCollection() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+        // enough segments for more than one slice
+        final int numSegments = randomIntBetween(10, 20);
+        for (int i = 0; i < numSegments; i++) {
+            final int numSegmentDocs = randomIntBetween(1, 20);
+            for (int j = 0; j < numSegmentDocs; j++) {
+                Document doc = new Document();
+                doc.add(new TextField("title", randomFrom("foo", "foo bar", "foo bar bar", "baz"), Store.NO));
+                doc.add(new NumericDocValuesField("rank", randomIntBetween(0, 10)));
+                doc.add(new StringField("filter", randomFrom("f1", "f2"), Store.NO));
+                w.addDocument(doc);
+            }
+            w.commit();
+        }
+        w.close();
+
+        IndexReader reader = DirectoryReader.open(dir);
+        final Query query = new TermQuery(new Term("title", "foo"));
+        final int size = randomIntBetween(1, 50);
+        final boolean sort = randomBoolean();
+        final boolean postFilter = randomBoolean();
+        final int trackTotalHitsUpTo = randomFrom(SearchContext.TRACK_TOTAL_HITS_ACCURATE, 10);
+        final List<TopDocs> results = new ArrayList<>();
+        for (boolean concurrent : new boolean[] { false, true }) {
+            ContextIndexSearcher searcher = concurrent
+                ? new ContextIndexSearcher(reader, IndexSearcher.getDefaultSimilarity(), IndexSearcher.getDefaultQueryCache(),
+                    IndexSearcher.getDefaultQueryCachingPolicy(), Runnable::run)
+                : newContextSearcher(reader);
+            assertEquals(concurrent, searcher.isConcurrentSearchEnabled());
+            TestSearchContext context = new TestSearchContext(null, indexShard, searcher);
+            context.setTask(new SearchShardTask(123L, "", "", "", null, Collections.emptyMap()));
+            context.parsedQuery(new ParsedQuery(query));
+            if (postFilter) {
+                context.parsedPostFilter(new ParsedQuery(new TermQuery(new Term("filter", "f1"))));
+            }
+            if (sort) {
+                context.sort(new SortAndFormats(new Sort(new SortField("rank", SortField.Type.INT)),
+                    new DocValueFormat[] { DocValueFormat.RAW }));
+            }
+            context.setSize(size);
+            context.trackTotalHitsUpTo(trackTotalHitsUpTo);
+            assertEquals(concurrent, QueryPhaseCollectorManager.canCollectConcurrently(context));
+            QueryPhase.executeInternal(context);
+            results.add(context.queryResult().topDocs().topDocs);
+        }
+        final TopDocs expected = results.get(0);
+        final TopDocs actual = results.get(1);
+        if (trackTotalHitsUpTo == SearchContext.TRACK_TOTAL_HITS_ACCURATE) {
+            assertEquals(expected.totalHits, actual.totalHits);
+        } else {
+            assertThat(actual.totalHits.value, greaterThanOrEqualTo(Math.min(expected.totalHits.value, trackTotalHitsUpTo)));
+        }
+        assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+        for (int i = 0; i < expected.scoreDocs.length; i++) {
+            assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+            assertEquals(-1, actual.scoreDocs[i].shardIndex);
+        }
+        reader.close();
+        dir.close();
+    }
+
+    public void testConcurrentCollectionIsDisabledForSharedCollectors() throws Exception {
+        Directory dir = newDirectory();
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, newIndexWriterConfig());
+        w.addDocument(new Document());
+        w.close();
+        IndexReader reader = DirectoryReader.open(dir);
+        TestSearchContext context = new TestSearchContext(null, indexShard, new ContextIndexSearcher(reader,
+            IndexSearcher.getDefaultSimilarity(), IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy(),
+            Runnable::run));
+        context.parsedQuery(new ParsedQuery(new MatchAllDocsQuery()));
+        assertTrue(QueryPhaseCollectorManager.canCollectConcurrently(context));
+        context.terminateAfter(1);
+        assertFalse(QueryPhaseCollectorManager.canCollectConcurrently(context));
+        context.terminateAfter(SearchContext.DEFAULT_TERMINATE_AFTER);
+        context.scrollContext(new ScrollContext());
+        assertFalse(QueryPhaseCollectorManager.canCollectConcurrently(context));
+        reader.close();
+        dir.close();
+    }
+
     private static ContextIndexSearcher newContextSearcher(IndexReader reader) {
         return new ContextIndexSearcher(reader, IndexSearcher.getDefaultSimilarity(),
             IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy());
@@ -0,0 +1,112 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.tasks.TaskId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * A class that contains all information related to a submitted async search.
+ * The encoded id is a base64 encoding of the id of the document where the final
+ * response is stored and the {@link TaskId} of the running search.
+ */
+final class AsyncSearchId {
+    private final String docId;
+    private final TaskId taskId;
+    private final String encoded;
+
+    AsyncSearchId(String docId, TaskId taskId) {
+        this.docId = docId;
+        this.taskId = taskId;
+        this.encoded = encode(docId, taskId);
+    }
+
+    /**
+     * The document id of the response in the async search index.
+     */
+    String getDocId() {
+        return docId;
+    }
+
+    /**
+     * The {@link TaskId} of the async search in the task manager.
+     */
+    TaskId getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Gets the encoded string that represents this search.
+     */
+    String getEncoded() {
+        return encoded;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AsyncSearchId searchId = (AsyncSearchId) o;
+        return docId.equals(searchId.docId) &&
+            taskId.equals(searchId.taskId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(docId, taskId);
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncSearchId{" +
+            "docId='" + docId + '\'' +
+            ", taskId=" + taskId +
+            '}';
+    }
+
+    /**
+     * Encodes the provided <code>docId</code> and <code>taskId</code> as a URL-safe string.
+     */
+    static String encode(String docId, TaskId taskId) {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeString(docId);
+            out.writeString(taskId.toString());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(BytesReference.toBytes(out.bytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes a string representation of an async search id.
+     *
+     * @throws IllegalArgumentException if the provided id is not a valid async search id
+     */
+    static AsyncSearchId decode(String id) {
+        final byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(id);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("invalid id: [" + id + "]", e);
+        }
+        try (StreamInput in = StreamInput.wrap(bytes)) {
+            final AsyncSearchId searchId = new AsyncSearchId(in.readString(), new TaskId(in.readString()));
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("invalid id: [" + id + "]");
+            }
+            return searchId;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid id: [" + id + "]", e);
+        }
+    }
+}
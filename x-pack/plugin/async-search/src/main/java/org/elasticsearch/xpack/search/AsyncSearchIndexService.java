@@ -0,0 +1,325 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.ResourceAlreadyExistsException;
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.OriginSettingClient;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.DeleteByQueryAction;
+import org.elasticsearch.index.reindex.DeleteByQueryRequest;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskManager;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+import org.elasticsearch.xpack.core.security.authc.Authentication;
+import org.elasticsearch.xpack.core.security.index.RestrictedIndicesNames;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.xpack.core.ClientHelper.ASYNC_SEARCH_ORIGIN;
+import static org.elasticsearch.xpack.core.ClientHelper.SECURITY_HEADER_FILTERS;
+import static org.elasticsearch.xpack.core.security.authc.AuthenticationField.AUTHENTICATION_KEY;
+
+/**
+ * A service that exposes the CRUD operations for the async-search index.
+ */
+class AsyncSearchIndexService {
+    private static final Logger logger = LogManager.getLogger(AsyncSearchIndexService.class);
+
+    // the index is only accessible to the async search origin, see RestrictedIndicesNames
+    public static final String INDEX = RestrictedIndicesNames.ASYNC_SEARCH_PREFIX + "results";
+
+    public static final String HEADERS_FIELD = "headers";
+    public static final String EXPIRATION_TIME_FIELD = "expiration_time";
+    public static final String RESULT_FIELD = "result";
+
+    static Settings settings() {
+        return Settings.builder()
+            .put("index.codec", "best_compression")
+            .put("index.number_of_shards", 1)
+            .put("index.auto_expand_replicas", "0-1")
+            .build();
+    }
+
+    static XContentBuilder mappings() throws IOException {
+        XContentBuilder builder = jsonBuilder()
+            .startObject()
+                .startObject(MapperService.SINGLE_MAPPING_NAME)
+                    .field("dynamic", "strict")
+                    .startObject("properties")
+                        .startObject(HEADERS_FIELD)
+                            .field("type", "object")
+                            .field("enabled", "false")
+                        .endObject()
+                        .startObject(RESULT_FIELD)
+                            .field("type", "binary")
+                        .endObject()
+                        .startObject(EXPIRATION_TIME_FIELD)
+                            .field("type", "long")
+                        .endObject()
+                    .endObject()
+                .endObject()
+            .endObject();
+        return builder;
+    }
+
+    private final ClusterService clusterService;
+    private final ThreadContext threadContext;
+    private final Client client;
+    private final NamedWriteableRegistry registry;
+
+    AsyncSearchIndexService(ClusterService clusterService, ThreadContext threadContext, Client client, NamedWriteableRegistry registry) {
+        this.clusterService = clusterService;
+        this.threadContext = threadContext;
+        this.client = new OriginSettingClient(client, ASYNC_SEARCH_ORIGIN);
+        this.registry = registry;
+    }
+
+    /**
+     * Creates the index with the expected settings and mappings if it doesn't exist.
+     */
+    void createIndexIfNecessary(ActionListener<Void> listener) {
+        if (clusterService.state().routingTable().hasIndex(INDEX) == false) {
+            try {
+                CreateIndexRequest request = new CreateIndexRequest(INDEX)
+                    .settings(settings())
+                    .mapping(mappings());
+                client.admin().indices().create(request, ActionListener.wrap(
+                    resp -> listener.onResponse(null),
+                    exc -> {
+                        if (ExceptionsHelper.unwrapCause(exc) instanceof ResourceAlreadyExistsException) {
+                            listener.onResponse(null);
+                        } else {
+                            logger.error("failed to create async-search index", exc);
+                            listener.onFailure(exc);
+                        }
+                    }));
+            } catch (Exception exc) {
+                logger.error("failed to create async-search index", exc);
+                listener.onFailure(exc);
+            }
+        } else {
+            listener.onResponse(null);
+        }
+    }
+
+    /**
+     * Stores the final response of a search (and creates the index if it doesn't exist yet). The response
+     * is serialized with the transport protocol since the full response (with partial aggregations and
+     * failures) cannot be rebuilt from its XContent representation.
+     */
+    void storeFinalResponse(String docId,
+                            Map<String, String> headers,
+                            AsyncSearchResponse response,
+                            ActionListener<IndexResponse> listener) throws IOException {
+        Map<String, Object> source = new HashMap<>();
+        source.put(HEADERS_FIELD, filterSecurityHeaders(headers));
+        source.put(EXPIRATION_TIME_FIELD, response.getExpirationTime());
+        source.put(RESULT_FIELD, encodeResponse(response));
+        IndexRequest indexRequest = new IndexRequest(INDEX)
+            .id(docId)
+            .source(source);
+        createIndexIfNecessary(ActionListener.wrap(v -> client.index(indexRequest, listener), listener::onFailure));
+    }
+
+    /**
+     * Returns the stored response of the provided <code>searchId</code> if the user that submitted the
+     * search is the same as the user that executes the current request.
+     */
+    void getResponse(AsyncSearchId searchId, ActionListener<AsyncSearchResponse> listener) {
+        final Authentication current = Authentication.getAuthentication(threadContext);
+        GetRequest internalGet = new GetRequest(INDEX)
+            .preference(searchId.getEncoded())
+            .id(searchId.getDocId());
+        client.get(internalGet, ActionListener.wrap(
+            get -> {
+                if (get.isExists() == false) {
+                    listener.onFailure(new ResourceNotFoundException(searchId.getEncoded()));
+                    return;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, String> headers = (Map<String, String>) get.getSource().get(HEADERS_FIELD);
+                if (ensureAuthenticatedUserIsSame(headers, current) == false) {
+                    listener.onFailure(new ResourceNotFoundException(searchId.getEncoded()));
+                    return;
+                }
+                String encoded = (String) get.getSource().get(RESULT_FIELD);
+                if (encoded == null) {
+                    listener.onFailure(new ResourceNotFoundException(searchId.getEncoded()));
+                    return;
+                }
+                listener.onResponse(decodeResponse(encoded, registry));
+            },
+            exc -> {
+                if (ExceptionsHelper.unwrapCause(exc) instanceof IndexNotFoundException) {
+                    listener.onFailure(new ResourceNotFoundException(searchId.getEncoded()));
+                } else {
+                    listener.onFailure(exc);
+                }
+            }
+        ));
+    }
+
+    /**
+     * Deletes the stored response of the provided <code>searchId</code>.
+     */
+    void deleteResponse(AsyncSearchId searchId, boolean failIfNotFound, ActionListener<AcknowledgedResponse> listener) {
+        DeleteRequest request = new DeleteRequest(INDEX).id(searchId.getDocId());
+        client.delete(request, ActionListener.wrap(
+            resp -> {
+                if (resp.getResult() == DocWriteResponse.Result.NOT_FOUND && failIfNotFound) {
+                    listener.onFailure(new ResourceNotFoundException(searchId.getEncoded()));
+                } else {
+                    listener.onResponse(new AcknowledgedResponse(true));
+                }
+            },
+            exc -> {
+                if (ExceptionsHelper.unwrapCause(exc) instanceof IndexNotFoundException) {
+                    if (failIfNotFound) {
+                        listener.onFailure(new ResourceNotFoundException(searchId.getEncoded()));
+                    } else {
+                        listener.onResponse(new AcknowledgedResponse(true));
+                    }
+                } else {
+                    logger.error(() -> new ParameterizedMessage("failed to clean async-search [{}]", searchId.getEncoded()), exc);
+                    listener.onFailure(exc);
+                }
+            }));
+    }
+
+    /**
+     * Removes all the responses that expired before the provided time (in milliseconds since epoch).
+     */
+    void deleteExpiredResponses(long nowInMillis, ActionListener<BulkByScrollResponse> listener) {
+        DeleteByQueryRequest request = new DeleteByQueryRequest(INDEX)
+            .setQuery(QueryBuilders.rangeQuery(EXPIRATION_TIME_FIELD).lte(nowInMillis))
+            .setIndicesOptions(IndicesOptions.lenientExpandOpen());
+        client.execute(DeleteByQueryAction.INSTANCE, request, listener);
+    }
+
+    /**
+     * Returns the {@link AsyncSearchTask} if the provided <code>searchId</code>
+     * is registered in the task manager, <code>null</code> otherwise.
+     *
+     * This method throws a {@link ResourceNotFoundException} if the authenticated user
+     * is not the creator of the original task.
+     */
+    AsyncSearchTask getTask(TaskManager taskManager, AsyncSearchId searchId) throws IOException {
+        Task task = taskManager.getTask(searchId.getTaskId().getId());
+        if (task instanceof AsyncSearchTask == false) {
+            return null;
+        }
+        AsyncSearchTask searchTask = (AsyncSearchTask) task;
+        if (searchTask.getSearchId().equals(searchId) == false) {
+            return null;
+        }
+
+        // Check authentication for the user
+        final Authentication auth = Authentication.getAuthentication(threadContext);
+        if (ensureAuthenticatedUserIsSame(searchTask.getOriginHeaders(), auth) == false) {
+            throw new ResourceNotFoundException(searchId.getEncoded() + " not found");
+        }
+        return searchTask;
+    }
+
+    /**
+     * Extracts the authentication from the original headers and checks that it matches
+     * the current user. This function returns always <code>true</code> if the provided
+     * <code>headers</code> do not contain any authentication.
+     */
+    static boolean ensureAuthenticatedUserIsSame(Map<String, String> originHeaders, Authentication current) throws IOException {
+        if (originHeaders == null || originHeaders.containsKey(AUTHENTICATION_KEY) == false) {
+            // no authorization attached to the original request
+            return true;
+        }
+        if (current == null) {
+            // origin is an authenticated user but current is not
+            return false;
+        }
+        Authentication origin = Authentication.decode(originHeaders.get(AUTHENTICATION_KEY));
+        return ensureAuthenticatedUserIsSame(origin, current);
+    }
+
+    /**
+     * Compares the {@link Authentication} that was used to create the {@link AsyncSearchId} with the
+     * current authentication.
+     */
+    static boolean ensureAuthenticatedUserIsSame(Authentication original, Authentication current) {
+        final boolean samePrincipal = original.getUser().principal().equals(current.getUser().principal());
+        final boolean sameRealmType;
+        if (original.getUser().isRunAs()) {
+            if (current.getUser().isRunAs()) {
+                sameRealmType = original.getLookedUpBy().getType().equals(current.getLookedUpBy().getType());
+            } else {
+                sameRealmType = original.getLookedUpBy().getType().equals(current.getAuthenticatedBy().getType());
+            }
+        } else if (current.getUser().isRunAs()) {
+            sameRealmType = original.getAuthenticatedBy().getType().equals(current.getLookedUpBy().getType());
+        } else {
+            sameRealmType = original.getAuthenticatedBy().getType().equals(current.getAuthenticatedBy().getType());
+        }
+        return samePrincipal && sameRealmType;
+    }
+
+    private static Map<String, String> filterSecurityHeaders(Map<String, String> headers) {
+        return headers.entrySet().stream()
+            .filter(e -> SECURITY_HEADER_FILTERS.contains(e.getKey()))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /**
+     * Encodes the provided {@link AsyncSearchResponse} in a base64 string.
+     */
+    static String encodeResponse(AsyncSearchResponse response) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            Version.writeVersion(Version.CURRENT, out);
+            response.writeTo(out);
+            return Base64.getEncoder().encodeToString(BytesReference.toBytes(out.bytes()));
+        }
+    }
+
+    /**
+     * Decodes a base64 string representation of an {@link AsyncSearchResponse}.
+     */
+    static AsyncSearchResponse decodeResponse(String value, NamedWriteableRegistry registry) throws IOException {
+        try (StreamInput in = new NamedWriteableAwareStreamInput(StreamInput.wrap(Base64.getDecoder().decode(value)), registry)) {
+            in.setVersion(Version.readVersion(in));
+            return new AsyncSearchResponse(in);
+        }
+    }
+}
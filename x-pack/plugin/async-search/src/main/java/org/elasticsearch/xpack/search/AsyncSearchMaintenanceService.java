@@ -0,0 +1,82 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.LocalNodeMasterListener;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.Scheduler;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * A service that runs on the elected master node and periodically removes the
+ * async search responses that are expired from the async search index.
+ */
+class AsyncSearchMaintenanceService implements LocalNodeMasterListener {
+    private static final Logger logger = LogManager.getLogger(AsyncSearchMaintenanceService.class);
+
+    public static final Setting<TimeValue> ASYNC_SEARCH_CLEANUP_INTERVAL_SETTING =
+        Setting.timeSetting("async_search.index_cleanup_interval", TimeValue.timeValueHours(1),
+            TimeValue.timeValueMinutes(1), Setting.Property.NodeScope);
+
+    private final ThreadPool threadPool;
+    private final AsyncSearchIndexService indexService;
+    private final TimeValue delay;
+
+    private volatile boolean isMaster;
+    private volatile Scheduler.ScheduledCancellable cancellable;
+
+    AsyncSearchMaintenanceService(Settings settings, ThreadPool threadPool, AsyncSearchIndexService indexService) {
+        this.threadPool = threadPool;
+        this.indexService = indexService;
+        this.delay = ASYNC_SEARCH_CLEANUP_INTERVAL_SETTING.get(settings);
+    }
+
+    @Override
+    public synchronized void onMaster() {
+        isMaster = true;
+        executeNextCleanup();
+    }
+
+    @Override
+    public synchronized void offMaster() {
+        isMaster = false;
+        if (cancellable != null && cancellable.isCancelled() == false) {
+            cancellable.cancel();
+        }
+    }
+
+    @Override
+    public String executorName() {
+        return ThreadPool.Names.GENERIC;
+    }
+
+    private synchronized void executeNextCleanup() {
+        if (isMaster) {
+            long nowInMillis = System.currentTimeMillis();
+            indexService.deleteExpiredResponses(nowInMillis, ActionListener.wrap(
+                resp -> scheduleNextCleanup(),
+                exc -> {
+                    logger.warn("failed to clean up expired async search responses", exc);
+                    scheduleNextCleanup();
+                }));
+        }
+    }
+
+    private synchronized void scheduleNextCleanup() {
+        if (isMaster) {
+            try {
+                cancellable = threadPool.schedule(this::executeNextCleanup, delay, ThreadPool.Names.GENERIC);
+            } catch (Exception exc) {
+                logger.error("failed to schedule next maintenance task", exc);
+            }
+        }
+    }
+}
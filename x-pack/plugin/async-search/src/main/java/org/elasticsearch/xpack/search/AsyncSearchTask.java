@@ -0,0 +1,251 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.search.SearchProgressActionListener;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponse.Clusters;
+import org.elasticsearch.action.search.SearchShard;
+import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.threadpool.Scheduler.Cancellable;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Task that tracks the progress of a currently running {@link org.elasticsearch.action.search.SearchRequest}.
+ */
+final class AsyncSearchTask extends SearchTask {
+    private final AsyncSearchId searchId;
+    private final ThreadPool threadPool;
+    private final Supplier<InternalAggregation.ReduceContext> aggReduceContextSupplier;
+    private final Map<String, String> originHeaders;
+    private final long expirationTimeMillis;
+    private final Listener progressListener;
+
+    private boolean hasCompleted = false;
+    private long completionId;
+    private final Map<Long, Consumer<AsyncSearchResponse>> completionListeners = new HashMap<>();
+
+    private volatile List<SearchShard> shards;
+    private volatile MutableSearchResponse searchResponse;
+
+    /**
+     * Creates an instance of {@link AsyncSearchTask}.
+     *
+     * @param id The id of the task.
+     * @param type The type of the task.
+     * @param action The action name.
+     * @param parentTaskId The parent task id.
+     * @param keepAlive The time to keep the response available after the submission.
+     * @param originHeaders All the request context headers.
+     * @param taskHeaders The filtered request headers for the task.
+     * @param searchId The {@link AsyncSearchId} of the task.
+     * @param threadPool The threadPool to schedule runnable.
+     * @param aggReduceContextSupplier A supplier to create final reduce contexts.
+     */
+    AsyncSearchTask(long id,
+                    String type,
+                    String action,
+                    TaskId parentTaskId,
+                    TimeValue keepAlive,
+                    Map<String, String> originHeaders,
+                    Map<String, String> taskHeaders,
+                    AsyncSearchId searchId,
+                    ThreadPool threadPool,
+                    Supplier<InternalAggregation.ReduceContext> aggReduceContextSupplier) {
+        super(id, type, action, "async_search", parentTaskId, taskHeaders);
+        this.expirationTimeMillis = getStartTime() + keepAlive.getMillis();
+        this.originHeaders = originHeaders;
+        this.searchId = searchId;
+        this.threadPool = threadPool;
+        this.aggReduceContextSupplier = aggReduceContextSupplier;
+        this.progressListener = new Listener();
+        setProgressListener(progressListener);
+    }
+
+    /**
+     * Returns all of the request contexts headers
+     */
+    Map<String, String> getOriginHeaders() {
+        return originHeaders;
+    }
+
+    /**
+     * Returns the {@link AsyncSearchId} of the task
+     */
+    AsyncSearchId getSearchId() {
+        return searchId;
+    }
+
+    /**
+     * Returns the expiration time of the search in milliseconds since epoch.
+     */
+    long getExpirationTime() {
+        return expirationTimeMillis;
+    }
+
+    /**
+     * Returns the listener that must be used to execute the underlying search.
+     */
+    SearchProgressActionListener getSearchProgressActionListener() {
+        return progressListener;
+    }
+
+    /**
+     * Schedules the provided <code>onExpiration</code> at the expiration time of the task.
+     * The scheduled runnable is cancelled if the search completes before.
+     */
+    void scheduleExpiration(Runnable onExpiration) {
+        final long delayMillis = Math.max(0L, expirationTimeMillis - System.currentTimeMillis());
+        final Cancellable cancellable = threadPool.schedule(onExpiration, TimeValue.timeValueMillis(delayMillis), ThreadPool.Names.GENERIC);
+        addCompletionListener(response -> cancellable.cancel());
+    }
+
+    /**
+     * Creates a listener that listens for an {@link AsyncSearchResponse} and executes the
+     * consumer when the task is finished or when the provided <code>waitForCompletion</code>
+     * timeout occurs. In such case the consumed {@link AsyncSearchResponse} will contain partial results.
+     */
+    void addCompletionListener(ActionListener<AsyncSearchResponse> listener, TimeValue waitForCompletion) {
+        final boolean executeImmediately;
+        synchronized (this) {
+            if (hasCompleted || waitForCompletion.getMillis() <= 0) {
+                executeImmediately = true;
+            } else {
+                executeImmediately = false;
+                final long id = completionId++;
+                final Cancellable cancellable = threadPool.schedule(() -> {
+                    if (removeCompletionListener(id)) {
+                        listener.onResponse(getResponse());
+                    }
+                }, waitForCompletion, ThreadPool.Names.GENERIC);
+                completionListeners.put(id, resp -> {
+                    cancellable.cancel();
+                    listener.onResponse(resp);
+                });
+            }
+        }
+        if (executeImmediately) {
+            listener.onResponse(getResponse());
+        }
+    }
+
+    /**
+     * Creates a listener that listens for an {@link AsyncSearchResponse} and executes the
+     * consumer when the task is finished.
+     */
+    void addCompletionListener(Consumer<AsyncSearchResponse> listener) {
+        final boolean executeImmediately;
+        synchronized (this) {
+            if (hasCompleted) {
+                executeImmediately = true;
+            } else {
+                executeImmediately = false;
+                completionListeners.put(completionId++, listener);
+            }
+        }
+        if (executeImmediately) {
+            listener.accept(getResponse());
+        }
+    }
+
+    private synchronized boolean removeCompletionListener(long id) {
+        return completionListeners.remove(id) != null;
+    }
+
+    private void executeCompletionListeners() {
+        final List<Consumer<AsyncSearchResponse>> listeners;
+        synchronized (this) {
+            if (hasCompleted) {
+                return;
+            }
+            hasCompleted = true;
+            listeners = new ArrayList<>(completionListeners.values());
+            completionListeners.clear();
+        }
+        // we don't need to restore the response headers, they should be included in the current
+        // context since we are called by the search action listener.
+        final AsyncSearchResponse finalResponse = getResponse();
+        for (Consumer<AsyncSearchResponse> listener : listeners) {
+            listener.accept(finalResponse);
+        }
+    }
+
+    /**
+     * Returns the current {@link AsyncSearchResponse}.
+     */
+    AsyncSearchResponse getResponse() {
+        final MutableSearchResponse current = searchResponse;
+        if (current == null) {
+            // the shards are not listed yet
+            return new AsyncSearchResponse(searchId.getEncoded(), true, true, getStartTime(), expirationTimeMillis);
+        }
+        return current.toAsyncSearchResponse(this, expirationTimeMillis);
+    }
+
+    private class Listener extends SearchProgressActionListener {
+        @Override
+        public void onListShards(List<SearchShard> shards, boolean fetchPhase) {
+            AsyncSearchTask.this.shards = shards;
+            searchResponse = new MutableSearchResponse(shards.size(), 0, Clusters.EMPTY, aggReduceContextSupplier);
+        }
+
+        @Override
+        public void onQueryFailure(int shardIndex, Exception exc) {
+            SearchShard shard = shards.get(shardIndex);
+            SearchShardTarget target = new SearchShardTarget(null, shard.getShardId(), shard.getClusterAlias(), OriginalIndices.NONE);
+            searchResponse.addShardFailure(shardIndex, new ShardSearchFailure(exc, target));
+        }
+
+        @Override
+        public void onPartialReduce(List<SearchShard> shards, TotalHits totalHits, InternalAggregations aggs, int reducePhase) {
+            searchResponse.updatePartialResponse(shards.size(), totalHits, aggs, reducePhase, false);
+        }
+
+        @Override
+        public void onReduce(List<SearchShard> shards, TotalHits totalHits, InternalAggregations aggs) {
+            final MutableSearchResponse current = searchResponse;
+            current.updatePartialResponse(shards.size(), totalHits, aggs, current.getReducePhase() + 1, true);
+        }
+
+        @Override
+        public void onResponse(SearchResponse response) {
+            if (searchResponse == null) {
+                // the search completed without listing shards (e.g. no index matched)
+                searchResponse = new MutableSearchResponse(response.getTotalShards(), response.getSkippedShards(),
+                    response.getClusters(), aggReduceContextSupplier);
+            }
+            searchResponse.updateFinalResponse(response);
+            executeCompletionListeners();
+        }
+
+        @Override
+        public void onFailure(Exception exc) {
+            if (searchResponse == null) {
+                // if the failure occurred before calling onListShards
+                searchResponse = new MutableSearchResponse(-1, -1, null, aggReduceContextSupplier);
+            }
+            searchResponse.updateWithFailure(exc);
+            executeCompletionListeners();
+        }
+    }
+}
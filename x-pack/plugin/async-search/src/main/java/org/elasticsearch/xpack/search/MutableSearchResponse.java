@@ -0,0 +1,178 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponse.Clusters;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A mutable search response that allows to update and create partial response synchronously.
+ * Synchronized methods ensure that updates of the content are blocked if another thread is
+ * creating an async response concurrently. This limits the number of final reduction that can
+ * run concurrently to 1 and ensures that we pause the search progress when an {@link AsyncSearchResponse} is built.
+ */
+class MutableSearchResponse {
+    private static final TotalHits EMPTY_TOTAL_HITS = new TotalHits(0L, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
+
+    private final int totalShards;
+    private final int skippedShards;
+    private final Clusters clusters;
+    private final AtomicArray<ShardSearchFailure> shardFailures;
+    private final Supplier<InternalAggregation.ReduceContext> aggReduceContextSupplier;
+
+    private int successfulShards;
+    private TotalHits totalHits = EMPTY_TOTAL_HITS;
+    /**
+     * The aggregations of the last (partial) reduce, these are not final until {@link #isFinalReduce}
+     * is set and must be reduced one more time before they can be exposed.
+     */
+    private InternalAggregations aggs;
+    private boolean isFinalReduce;
+    private int reducePhase;
+
+    private boolean isPartial = true;
+    private SearchResponse finalResponse;
+    private Exception failure;
+    private boolean frozen;
+
+    /**
+     * Creates a new mutable search response.
+     *
+     * @param totalShards The number of shards that participate in the request, or -1 to indicate a failure.
+     * @param skippedShards The number of skipped shards, or -1 to indicate a failure.
+     * @param clusters The remote clusters statistics.
+     * @param aggReduceContextSupplier A supplier to run final reduce on partial aggregations.
+     */
+    MutableSearchResponse(int totalShards,
+                          int skippedShards,
+                          Clusters clusters,
+                          Supplier<InternalAggregation.ReduceContext> aggReduceContextSupplier) {
+        this.totalShards = totalShards;
+        this.skippedShards = skippedShards;
+        this.clusters = clusters;
+        this.aggReduceContextSupplier = aggReduceContextSupplier;
+        this.shardFailures = totalShards == -1 ? null : new AtomicArray<>(totalShards);
+    }
+
+    /**
+     * Updates the response with the result of a partial reduction.
+     *
+     * @param reducedAggs The aggregations of the reduction, kept as is until a response is requested.
+     * @param isFinalReduce Whether the aggregations were produced by the final reduction.
+     */
+    synchronized void updatePartialResponse(int successfulShards, TotalHits totalHits,
+                                            InternalAggregations reducedAggs, int reducePhase, boolean isFinalReduce) {
+        failIfFrozen();
+        if (reducePhase < this.reducePhase) {
+            // should never happen since partial response are updated under a lock
+            // in the search phase controller
+            throw new IllegalStateException("received partial response out of order: "
+                + reducePhase + " < " + this.reducePhase);
+        }
+        this.successfulShards = successfulShards;
+        this.totalHits = totalHits;
+        this.aggs = reducedAggs;
+        this.reducePhase = reducePhase;
+        this.isFinalReduce = isFinalReduce;
+    }
+
+    /**
+     * Updates the response with the final {@link SearchResponse} once the
+     * search is complete.
+     */
+    synchronized void updateFinalResponse(SearchResponse response) {
+        failIfFrozen();
+        this.isPartial = false;
+        this.finalResponse = response;
+        this.frozen = true;
+    }
+
+    /**
+     * Updates the response with a fatal failure. This method preserves the partial response
+     * received from previous updates
+     */
+    synchronized void updateWithFailure(Exception exc) {
+        failIfFrozen();
+        this.isPartial = true;
+        this.failure = exc;
+        this.frozen = true;
+    }
+
+    /**
+     * Adds a shard failure concurrently (non-blocking).
+     */
+    void addShardFailure(int shardIndex, ShardSearchFailure failure) {
+        synchronized (this) {
+            failIfFrozen();
+        }
+        shardFailures.set(shardIndex, failure);
+    }
+
+    int getReducePhase() {
+        synchronized (this) {
+            return reducePhase;
+        }
+    }
+
+    /**
+     * Creates an {@link AsyncSearchResponse} based on the current state of the mutable response.
+     * The final reduce of the aggregations is executed if needed (partial response).
+     * This method is synchronized to ensure that we don't perform final reduces concurrently.
+     */
+    synchronized AsyncSearchResponse toAsyncSearchResponse(AsyncSearchTask task, long expirationTime) {
+        final SearchResponse resp;
+        if (finalResponse != null) {
+            resp = finalResponse;
+        } else if (totalShards == -1) {
+            // the search failed before the list of shards was known
+            resp = null;
+        } else {
+            resp = buildPartialResponse(task);
+        }
+        return new AsyncSearchResponse(task.getSearchId().getEncoded(), resp, failure, isPartial,
+            frozen == false, task.getStartTime(), expirationTime);
+    }
+
+    private SearchResponse buildPartialResponse(AsyncSearchTask task) {
+        final InternalAggregations reducedAggs;
+        if (aggs == null || isFinalReduce) {
+            reducedAggs = aggs;
+        } else {
+            reducedAggs = InternalAggregations.topLevelReduce(Collections.singletonList(aggs), aggReduceContextSupplier.get());
+        }
+        InternalSearchResponse internal = new InternalSearchResponse(new SearchHits(SearchHits.EMPTY, totalHits, Float.NaN),
+            reducedAggs, null, null, false, null, reducePhase);
+        long tookInMillis = Math.max(0L, System.currentTimeMillis() - task.getStartTime());
+        return new SearchResponse(internal, null, totalShards, successfulShards, skippedShards,
+            tookInMillis, buildShardFailures(), clusters);
+    }
+
+    private ShardSearchFailure[] buildShardFailures() {
+        if (shardFailures == null) {
+            return ShardSearchFailure.EMPTY_ARRAY;
+        }
+        List<ShardSearchFailure> failures = shardFailures.asList();
+        return failures.toArray(new ShardSearchFailure[0]);
+    }
+
+    private void failIfFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("invalid update received after the completion of the request");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionListenerResponseHandler;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.xpack.core.search.action.DeleteAsyncSearchAction;
+
+import java.io.IOException;
+
+public class TransportDeleteAsyncSearchAction extends HandledTransportAction<DeleteAsyncSearchAction.Request, AcknowledgedResponse> {
+    private final ClusterService clusterService;
+    private final TransportService transportService;
+    private final AsyncSearchIndexService store;
+
+    @Inject
+    public TransportDeleteAsyncSearchAction(TransportService transportService,
+                                            ActionFilters actionFilters,
+                                            ClusterService clusterService,
+                                            NamedWriteableRegistry registry,
+                                            Client client,
+                                            ThreadPool threadPool) {
+        super(DeleteAsyncSearchAction.NAME, transportService, actionFilters, DeleteAsyncSearchAction.Request::new);
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        this.store = new AsyncSearchIndexService(clusterService, threadPool.getThreadContext(), client, registry);
+    }
+
+    @Override
+    protected void doExecute(Task task, DeleteAsyncSearchAction.Request request, ActionListener<AcknowledgedResponse> listener) {
+        try {
+            AsyncSearchId searchId = AsyncSearchId.decode(request.getId());
+            DiscoveryNode node = clusterService.state().nodes().get(searchId.getTaskId().getNodeId());
+            if (clusterService.localNode().getId().equals(searchId.getTaskId().getNodeId()) || node == null) {
+                cancelTaskAndDeleteResult(searchId, listener);
+            } else {
+                // the search is owned by another node that is still in the cluster
+                transportService.sendRequest(node, DeleteAsyncSearchAction.NAME, request,
+                    new ActionListenerResponseHandler<>(listener, AcknowledgedResponse::new, ThreadPool.Names.SAME));
+            }
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+    }
+
+    private void cancelTaskAndDeleteResult(AsyncSearchId searchId, ActionListener<AcknowledgedResponse> listener) throws IOException {
+        AsyncSearchTask task = store.getTask(taskManager, searchId);
+        if (task != null && task.isCancelled() == false) {
+            // the response is not stored when the task is cancelled but it may have been stored already if the
+            // search completed concurrently so we also clean up the index
+            boolean cancelled = taskManager.cancel(task, "cancelled by user", () -> store.deleteResponse(searchId, false, listener));
+            if (cancelled == false) {
+                store.deleteResponse(searchId, false, listener);
+            }
+        } else {
+            store.deleteResponse(searchId, true, listener);
+        }
+    }
+}
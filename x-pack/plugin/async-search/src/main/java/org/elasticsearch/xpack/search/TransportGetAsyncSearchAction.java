@@ -0,0 +1,75 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionListenerResponseHandler;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+import org.elasticsearch.xpack.core.search.action.GetAsyncSearchAction;
+
+import java.io.IOException;
+
+public class TransportGetAsyncSearchAction extends HandledTransportAction<GetAsyncSearchAction.Request, AsyncSearchResponse> {
+    private final ClusterService clusterService;
+    private final TransportService transportService;
+    private final AsyncSearchIndexService store;
+
+    @Inject
+    public TransportGetAsyncSearchAction(TransportService transportService,
+                                         ActionFilters actionFilters,
+                                         ClusterService clusterService,
+                                         NamedWriteableRegistry registry,
+                                         Client client,
+                                         ThreadPool threadPool) {
+        super(GetAsyncSearchAction.NAME, transportService, actionFilters, GetAsyncSearchAction.Request::new);
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        this.store = new AsyncSearchIndexService(clusterService, threadPool.getThreadContext(), client, registry);
+    }
+
+    @Override
+    protected void doExecute(Task task, GetAsyncSearchAction.Request request, ActionListener<AsyncSearchResponse> listener) {
+        try {
+            AsyncSearchId searchId = AsyncSearchId.decode(request.getId());
+            DiscoveryNode node = clusterService.state().nodes().get(searchId.getTaskId().getNodeId());
+            if (clusterService.localNode().getId().equals(searchId.getTaskId().getNodeId()) || node == null) {
+                getSearchResponseFromTask(searchId, request, listener);
+            } else {
+                // the search is owned by another node that is still in the cluster
+                transportService.sendRequest(node, GetAsyncSearchAction.NAME, request,
+                    new ActionListenerResponseHandler<>(listener, AsyncSearchResponse::new, ThreadPool.Names.SAME));
+            }
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+    }
+
+    private void getSearchResponseFromTask(AsyncSearchId searchId, GetAsyncSearchAction.Request request,
+                                           ActionListener<AsyncSearchResponse> listener) throws IOException {
+        final AsyncSearchTask task = store.getTask(taskManager, searchId);
+        if (task == null) {
+            // the search is completed (or the node that was running it left the cluster)
+            store.getResponse(searchId, listener);
+            return;
+        }
+        if (task.isCancelled()) {
+            listener.onFailure(new ResourceNotFoundException(searchId.getEncoded()));
+            return;
+        }
+        task.addCompletionListener(listener, request.getWaitForCompletion());
+    }
+}
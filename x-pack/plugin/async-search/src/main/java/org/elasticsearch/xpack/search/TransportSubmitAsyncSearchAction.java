@@ -0,0 +1,132 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.TransportSearchAction;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.search.SearchService;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskAwareRequest;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+import org.elasticsearch.xpack.core.search.action.SubmitAsyncSearchAction;
+import org.elasticsearch.xpack.core.search.action.SubmitAsyncSearchRequest;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class TransportSubmitAsyncSearchAction extends HandledTransportAction<SubmitAsyncSearchRequest, AsyncSearchResponse> {
+    private static final Logger logger = LogManager.getLogger(TransportSubmitAsyncSearchAction.class);
+
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    private final ThreadContext threadContext;
+    private final Supplier<InternalAggregation.ReduceContext> reduceContextSupplier;
+    private final TransportSearchAction searchAction;
+    private final AsyncSearchIndexService store;
+
+    @Inject
+    public TransportSubmitAsyncSearchAction(ClusterService clusterService,
+                                            TransportService transportService,
+                                            ActionFilters actionFilters,
+                                            NamedWriteableRegistry registry,
+                                            Client client,
+                                            ThreadPool threadPool,
+                                            SearchService searchService,
+                                            TransportSearchAction searchAction) {
+        super(SubmitAsyncSearchAction.NAME, transportService, actionFilters, SubmitAsyncSearchRequest::new);
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        this.threadContext = threadPool.getThreadContext();
+        this.reduceContextSupplier = () -> searchService.createReduceContext(true);
+        this.searchAction = searchAction;
+        this.store = new AsyncSearchIndexService(clusterService, threadContext, client, registry);
+    }
+
+    @Override
+    protected void doExecute(Task task, SubmitAsyncSearchRequest request, ActionListener<AsyncSearchResponse> submitListener) {
+        final String docID = UUIDs.randomBase64UUID();
+        final Map<String, String> originHeaders = threadContext.getHeaders();
+        final SearchRequest searchRequest = request.getSearchRequest();
+        // the async search task is not a child of the submit task since it must outlive it
+        final AsyncSearchTask searchTask = (AsyncSearchTask) taskManager.register("transport", SearchAction.INSTANCE.name(),
+            new AsyncSearchTaskRequest(request, docID, originHeaders));
+        // the search is cancelled if it is still running when its keep_alive expires, cancelled searches are not stored
+        searchTask.scheduleExpiration(() -> taskManager.cancel(searchTask, "async search has expired", () -> {}));
+        searchAction.execute(searchTask, searchRequest, searchTask.getSearchProgressActionListener());
+        searchTask.addCompletionListener(submitListener, request.getWaitForCompletion());
+        searchTask.addCompletionListener(response -> onFinalResponse(searchTask, response));
+    }
+
+    private void onFinalResponse(AsyncSearchTask searchTask, AsyncSearchResponse response) {
+        if (searchTask.isCancelled()) {
+            // the task was cancelled by a delete request or because it expired, there is nothing to store
+            taskManager.unregister(searchTask);
+            return;
+        }
+        try {
+            store.storeFinalResponse(searchTask.getSearchId().getDocId(), searchTask.getOriginHeaders(), response,
+                ActionListener.wrap(resp -> taskManager.unregister(searchTask),
+                    exc -> {
+                        logger.error(() -> new ParameterizedMessage("failed to store async-search [{}]",
+                            searchTask.getSearchId().getEncoded()), exc);
+                        taskManager.unregister(searchTask);
+                    }));
+        } catch (Exception exc) {
+            logger.error(() -> new ParameterizedMessage("failed to store async-search [{}]", searchTask.getSearchId().getEncoded()), exc);
+            taskManager.unregister(searchTask);
+        }
+    }
+
+    /**
+     * The request used to register the {@link AsyncSearchTask} in the task manager. {@link SearchRequest} is final
+     * so the creation of the task is delegated to this wrapper rather than to the request itself.
+     */
+    private class AsyncSearchTaskRequest implements TaskAwareRequest {
+        private final SubmitAsyncSearchRequest request;
+        private final String docID;
+        private final Map<String, String> originHeaders;
+
+        AsyncSearchTaskRequest(SubmitAsyncSearchRequest request, String docID, Map<String, String> originHeaders) {
+            this.request = request;
+            this.docID = docID;
+            this.originHeaders = originHeaders;
+        }
+
+        @Override
+        public void setParentTask(TaskId taskId) {
+            // the async search task must outlive the submit task so it never has a parent
+        }
+
+        @Override
+        public TaskId getParentTask() {
+            return TaskId.EMPTY_TASK_ID;
+        }
+
+        @Override
+        public Task createTask(long id, String type, String action, TaskId parentTaskId, Map<String, String> taskHeaders) {
+            AsyncSearchId searchId = new AsyncSearchId(docID, new TaskId(clusterService.localNode().getId(), id));
+            return new AsyncSearchTask(id, type, action, parentTaskId, request.getKeepAlive(), originHeaders, taskHeaders,
+                searchId, threadPool, reduceContextSupplier);
+        }
+    }
+}
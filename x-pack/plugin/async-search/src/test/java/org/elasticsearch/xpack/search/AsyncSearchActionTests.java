@@ -0,0 +1,103 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.tasks.TaskManager;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+import org.elasticsearch.xpack.core.search.action.DeleteAsyncSearchAction;
+import org.elasticsearch.xpack.core.search.action.GetAsyncSearchAction;
+import org.elasticsearch.xpack.core.search.action.SubmitAsyncSearchAction;
+import org.elasticsearch.xpack.core.search.action.SubmitAsyncSearchRequest;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class AsyncSearchActionTests extends ESSingleNodeTestCase {
+
+    @Override
+    protected Collection<Class<? extends Plugin>> getPlugins() {
+        return pluginList(AsyncSearch.class);
+    }
+
+    private int indexDocs(String index) {
+        int numDocs = randomIntBetween(1, 20);
+        BulkRequestBuilder bulk = client().prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+        for (int i = 0; i < numDocs; i++) {
+            bulk.add(client().prepareIndex(index).setId(Integer.toString(i)).setSource("field", i));
+        }
+        assertFalse(bulk.get().hasFailures());
+        return numDocs;
+    }
+
+    private AsyncSearchResponse getAsyncSearch(String id) {
+        return client().execute(GetAsyncSearchAction.INSTANCE,
+            new GetAsyncSearchAction.Request(id).setWaitForCompletion(TimeValue.timeValueSeconds(10))).actionGet();
+    }
+
+    public void testSubmitGetAndDelete() throws Exception {
+        int numDocs = indexDocs("test");
+        SubmitAsyncSearchRequest request = new SubmitAsyncSearchRequest(new SearchSourceBuilder(), "test");
+        request.setWaitForCompletion(TimeValue.timeValueSeconds(10));
+        AsyncSearchResponse response = client().execute(SubmitAsyncSearchAction.INSTANCE, request).actionGet();
+        assertNotNull(response.getId());
+        assertFalse(response.isRunning());
+        assertFalse(response.isPartial());
+        assertThat(response.getSearchResponse().getHits().getTotalHits().value, equalTo((long) numDocs));
+
+        // the task is unregistered once the response is stored
+        TaskManager taskManager = getInstanceFromNode(TransportService.class).getTaskManager();
+        assertBusy(() -> assertFalse(taskManager.getTasks().values().stream().anyMatch(task -> task instanceof AsyncSearchTask)));
+        AsyncSearchResponse stored = getAsyncSearch(response.getId());
+        assertThat(stored.getId(), equalTo(response.getId()));
+        assertFalse(stored.isRunning());
+        assertFalse(stored.isPartial());
+        assertThat(stored.getSearchResponse().getHits().getTotalHits().value, equalTo((long) numDocs));
+
+        AcknowledgedResponse deleteResponse =
+            client().execute(DeleteAsyncSearchAction.INSTANCE, new DeleteAsyncSearchAction.Request(response.getId())).actionGet();
+        assertTrue(deleteResponse.isAcknowledged());
+        expectThrows(ResourceNotFoundException.class, () -> getAsyncSearch(response.getId()));
+        expectThrows(ResourceNotFoundException.class,
+            () -> client().execute(DeleteAsyncSearchAction.INSTANCE, new DeleteAsyncSearchAction.Request(response.getId())).actionGet());
+    }
+
+    public void testGetUnknownSearch() {
+        String nodeId = getInstanceFromNode(ClusterService.class).localNode().getId();
+        String id = AsyncSearchId.encode(UUIDs.randomBase64UUID(), new TaskId(nodeId, randomNonNegativeLong()));
+        expectThrows(ResourceNotFoundException.class, () -> getAsyncSearch(id));
+        expectThrows(ResourceNotFoundException.class,
+            () -> client().execute(DeleteAsyncSearchAction.INSTANCE, new DeleteAsyncSearchAction.Request(id)).actionGet());
+    }
+
+    public void testGetStoredSearchWithoutResult() throws IOException {
+        client().admin().indices().create(new CreateIndexRequest(AsyncSearchIndexService.INDEX)
+            .settings(AsyncSearchIndexService.settings())
+            .mapping(AsyncSearchIndexService.mappings())).actionGet();
+        String docId = UUIDs.randomBase64UUID();
+        client().prepareIndex(AsyncSearchIndexService.INDEX).setId(docId)
+            .setSource(AsyncSearchIndexService.EXPIRATION_TIME_FIELD, System.currentTimeMillis())
+            .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE)
+            .get();
+        String nodeId = getInstanceFromNode(ClusterService.class).localNode().getId();
+        String id = AsyncSearchId.encode(docId, new TaskId(nodeId, randomNonNegativeLong()));
+        expectThrows(ResourceNotFoundException.class, () -> getAsyncSearch(id));
+    }
+}
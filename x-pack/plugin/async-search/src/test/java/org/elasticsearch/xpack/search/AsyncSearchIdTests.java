@@ -0,0 +1,41 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Base64;
+
+public class AsyncSearchIdTests extends ESTestCase {
+    public void testEncodeAndDecode() {
+        for (int i = 0; i < 10; i++) {
+            AsyncSearchId instance = new AsyncSearchId(UUIDs.randomBase64UUID(),
+                new TaskId(randomAlphaOfLengthBetween(5, 20), randomNonNegativeLong()));
+            String encoded = AsyncSearchId.encode(instance.getDocId(), instance.getTaskId());
+            assertEquals(instance.getEncoded(), encoded);
+            AsyncSearchId same = AsyncSearchId.decode(encoded);
+            assertEquals(instance, same);
+            assertEquals(instance.getEncoded(), same.getEncoded());
+        }
+    }
+
+    public void testDecodeInvalidId() throws IOException {
+        expectThrows(IllegalArgumentException.class, () -> AsyncSearchId.decode("invalid id with spaces"));
+        // empty doc id and task id followed by an extra byte
+        expectThrows(IllegalArgumentException.class, () -> AsyncSearchId.decode("AAAA"));
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeString(UUIDs.randomBase64UUID());
+            out.writeString("malformed_task_id");
+            String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(BytesReference.toBytes(out.bytes()));
+            expectThrows(IllegalArgumentException.class, () -> AsyncSearchId.decode(encoded));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskAwareRequest;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.tasks.TaskManager;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.client.NoOpClient;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.xpack.core.security.authc.Authentication;
+import org.elasticsearch.xpack.core.security.authc.Authentication.RealmRef;
+import org.elasticsearch.xpack.core.security.user.User;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.elasticsearch.xpack.core.security.authc.AuthenticationField.AUTHENTICATION_KEY;
+
+public class AsyncSearchIndexServiceTests extends ESTestCase {
+    private ThreadPool threadPool;
+    private TaskManager taskManager;
+    private AsyncSearchIndexService indexService;
+
+    @Before
+    public void setupService() {
+        threadPool = new TestThreadPool(getTestName());
+        taskManager = new TaskManager(Settings.EMPTY, threadPool, Collections.emptySet());
+        indexService = new AsyncSearchIndexService(null, threadPool.getThreadContext(), new NoOpClient(threadPool), null);
+    }
+
+    @After
+    public void shutdownThreadPool() {
+        threadPool.shutdownNow();
+    }
+
+    public void testEnsureAuthenticatedUserIsSame() throws IOException {
+        Authentication original = new Authentication(new User("test", "role"), new RealmRef("realm", "file", "node"), null);
+        Authentication current = randomBoolean() ? original
+            : new Authentication(new User("test", "role"), new RealmRef("realm", "file", "node"), null);
+        assertTrue(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(original, current));
+        Map<String, String> headers = Collections.singletonMap(AUTHENTICATION_KEY, original.encode());
+        assertTrue(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(headers, current));
+        // no authentication in the original request
+        assertTrue(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(Collections.emptyMap(), current));
+        assertTrue(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(Collections.emptyMap(), null));
+        // the original request is authenticated but the current one is not
+        assertFalse(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(headers, null));
+
+        // original user being run as
+        User user = new User(new User("test", "role"), new User("authenticated", "runas"));
+        current = new Authentication(user, new RealmRef("realm", "file", "node"), new RealmRef("realm", "file", "node"));
+        assertTrue(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(original, current));
+
+        // both users are run as
+        assertTrue(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(current, current));
+
+        // different authenticated by type
+        Authentication differentRealmType =
+            new Authentication(new User("test", "role"), new RealmRef("realm", randomAlphaOfLength(5), "node"), null);
+        assertFalse(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(original, differentRealmType));
+
+        // different user
+        Authentication differentUser =
+            new Authentication(new User("test2", "role"), new RealmRef("realm", "file", "node"), null);
+        assertFalse(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(original, differentUser));
+
+        // run as different user
+        Authentication differentRunAs =
+            new Authentication(new User(new User("test2", "role"), new User("authenticated", "runas")),
+                new RealmRef("realm", "file", "node1"), new RealmRef("realm", "file", "node1"));
+        assertFalse(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(original, differentRunAs));
+
+        // run as different looked up by type
+        Authentication runAsDiffType = new Authentication(user, new RealmRef("realm", "file", "node"),
+            new RealmRef("realm", randomAlphaOfLengthBetween(5, 12), "node"));
+        assertFalse(AsyncSearchIndexService.ensureAuthenticatedUserIsSame(original, runAsDiffType));
+    }
+
+    public void testGetTaskChecksAuthentication() throws IOException {
+        Authentication owner = new Authentication(new User("owner", "role"), new RealmRef("realm", "file", "node"), null);
+        Map<String, String> originHeaders = Collections.singletonMap(AUTHENTICATION_KEY, owner.encode());
+        String docId = UUIDs.randomBase64UUID();
+        AsyncSearchTask task = (AsyncSearchTask) taskManager.register("transport", SearchAction.NAME,
+            new TestTaskRequest(docId, originHeaders));
+        try {
+            AsyncSearchId searchId = task.getSearchId();
+            ThreadContext threadContext = threadPool.getThreadContext();
+            try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+                owner.writeToContext(threadContext);
+                assertSame(task, indexService.getTask(taskManager, searchId));
+                // the task id matches but the id of the stored document doesn't
+                assertNull(indexService.getTask(taskManager, new AsyncSearchId(UUIDs.randomBase64UUID(), searchId.getTaskId())));
+            }
+            try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+                Authentication other = new Authentication(new User("other", "role"), new RealmRef("realm", "file", "node"), null);
+                other.writeToContext(threadContext);
+                expectThrows(ResourceNotFoundException.class, () -> indexService.getTask(taskManager, searchId));
+            }
+            try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+                // unauthenticated requests cannot access the task of an authenticated user
+                expectThrows(ResourceNotFoundException.class, () -> indexService.getTask(taskManager, searchId));
+            }
+        } finally {
+            taskManager.unregister(task);
+        }
+    }
+
+    private class TestTaskRequest implements TaskAwareRequest {
+        private final String docId;
+        private final Map<String, String> originHeaders;
+
+        TestTaskRequest(String docId, Map<String, String> originHeaders) {
+            this.docId = docId;
+            this.originHeaders = originHeaders;
+        }
+
+        @Override
+        public void setParentTask(TaskId taskId) {
+        }
+
+        @Override
+        public TaskId getParentTask() {
+            return TaskId.EMPTY_TASK_ID;
+        }
+
+        @Override
+        public Task createTask(long id, String type, String action, TaskId parentTaskId, Map<String, String> taskHeaders) {
+            AsyncSearchId searchId = new AsyncSearchId(docId, new TaskId("node", id));
+            return new AsyncSearchTask(id, type, action, parentTaskId, TimeValue.timeValueDays(1), originHeaders, taskHeaders,
+                searchId, threadPool, () -> null);
+        }
+    }
+}
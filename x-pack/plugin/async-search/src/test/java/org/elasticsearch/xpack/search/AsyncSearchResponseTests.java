@@ -0,0 +1,87 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.SearchModule;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class AsyncSearchResponseTests extends ESTestCase {
+    private NamedWriteableRegistry namedWriteableRegistry;
+
+    @Before
+    public void registerNamedObjects() {
+        SearchModule searchModule = new SearchModule(Settings.EMPTY, Collections.emptyList());
+        namedWriteableRegistry = new NamedWriteableRegistry(searchModule.getNamedWriteables());
+    }
+
+    public void testSerialization() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            AsyncSearchResponse instance = randomAsyncSearchResponse();
+            AsyncSearchResponse copy = copyWriteable(instance, namedWriteableRegistry, AsyncSearchResponse::new);
+            assertEqualResponses(instance, copy);
+        }
+    }
+
+    public void testStorageEncoding() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            AsyncSearchResponse instance = randomAsyncSearchResponse();
+            String encoded = AsyncSearchIndexService.encodeResponse(instance);
+            AsyncSearchResponse copy = AsyncSearchIndexService.decodeResponse(encoded, namedWriteableRegistry);
+            assertEqualResponses(instance, copy);
+        }
+    }
+
+    private static AsyncSearchResponse randomAsyncSearchResponse() {
+        String id = AsyncSearchId.encode(randomAlphaOfLength(10), new TaskId(randomAlphaOfLength(10), randomNonNegativeLong()));
+        long startTime = randomNonNegativeLong() / 2;
+        long expirationTime = startTime + randomIntBetween(1, 1000);
+        switch (randomIntBetween(0, 2)) {
+            case 0:
+                return new AsyncSearchResponse(id, randomBoolean(), randomBoolean(), startTime, expirationTime);
+            case 1:
+                return new AsyncSearchResponse(id, randomSearchResponse(), null,
+                    randomBoolean(), randomBoolean(), startTime, expirationTime);
+            default:
+                return new AsyncSearchResponse(id, randomBoolean() ? randomSearchResponse() : null,
+                    new ElasticsearchException(randomAlphaOfLength(10)), true, false, startTime, expirationTime);
+        }
+    }
+
+    private static SearchResponse randomSearchResponse() {
+        int totalShards = randomIntBetween(1, 10);
+        int successfulShards = randomIntBetween(0, totalShards);
+        TotalHits totalHits = new TotalHits(randomNonNegativeLong(), TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
+        InternalSearchResponse internal = new InternalSearchResponse(new SearchHits(SearchHits.EMPTY, totalHits, Float.NaN),
+            null, null, null, false, null, randomIntBetween(0, 5));
+        return new SearchResponse(internal, null, totalShards, successfulShards, 0, randomNonNegativeLong(),
+            ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+
+    private static void assertEqualResponses(AsyncSearchResponse expected, AsyncSearchResponse actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.isPartial(), actual.isPartial());
+        assertEquals(expected.isRunning(), actual.isRunning());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getExpirationTime(), actual.getExpirationTime());
+        assertEquals(expected.status(), actual.status());
+        assertEquals(Strings.toString(expected), Strings.toString(actual));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.search;
+
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.xpack.core.search.action.AsyncSearchResponse;
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncSearchTaskTests extends ESTestCase {
+    private ThreadPool threadPool;
+
+    @Before
+    public void beforeTest() {
+        threadPool = new TestThreadPool(getTestName());
+    }
+
+    @After
+    public void afterTest() {
+        threadPool.shutdownNow();
+    }
+
+    private AsyncSearchTask createTask(TimeValue keepAlive) {
+        long id = randomNonNegativeLong();
+        AsyncSearchId searchId = new AsyncSearchId(UUIDs.randomBase64UUID(), new TaskId("node", id));
+        return new AsyncSearchTask(id, "transport", SearchAction.NAME, TaskId.EMPTY_TASK_ID, keepAlive,
+            Collections.emptyMap(), Collections.emptyMap(), searchId, threadPool, () -> null);
+    }
+
+    private static SearchResponse newSearchResponse() {
+        return new SearchResponse(InternalSearchResponse.empty(), null, 1, 1, 0, 1L,
+            ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+
+    public void testExpirationOfRunningSearch() throws InterruptedException {
+        AsyncSearchTask task = createTask(TimeValue.timeValueMillis(randomIntBetween(1, 100)));
+        CountDownLatch latch = new CountDownLatch(1);
+        task.scheduleExpiration(latch::countDown);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    public void testExpirationIsCancelledOnCompletion() throws InterruptedException {
+        AsyncSearchTask task = createTask(TimeValue.timeValueMillis(500));
+        AtomicBoolean expired = new AtomicBoolean();
+        task.scheduleExpiration(() -> expired.set(true));
+        task.getSearchProgressActionListener().onResponse(newSearchResponse());
+
+        // a search that expires after its completion is not cancelled
+        CountDownLatch latch = new CountDownLatch(1);
+        threadPool.schedule(latch::countDown, TimeValue.timeValueSeconds(1), ThreadPool.Names.GENERIC);
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertFalse(expired.get());
+    }
+
+    public void testCompletionListeners() throws InterruptedException {
+        AsyncSearchTask task = createTask(TimeValue.timeValueDays(1));
+        AtomicReference<AsyncSearchResponse> running = new AtomicReference<>();
+        task.addCompletionListener(running::set);
+        assertNull(running.get());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        task.addCompletionListener(response -> {
+            assertTrue(response.isRunning());
+            latch.countDown();
+        }, TimeValue.timeValueMillis(1));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        task.getSearchProgressActionListener().onResponse(newSearchResponse());
+        assertNotNull(running.get());
+        assertFalse(running.get().isPartial());
+        assertFalse(running.get().isRunning());
+
+        AtomicReference<AsyncSearchResponse> completed = new AtomicReference<>();
+        task.addCompletionListener(completed::set);
+        assertNotNull(completed.get());
+        assertFalse(completed.get().isRunning());
+    }
+}
@@ -17,6 +17,7 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexingPressure;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.seqno.SeqNoStats;
 import org.elasticsearch.index.seqno.SequenceNumbers;
@@ -43,7 +44,8 @@ public class TransportBulkShardOperationsAction
             final IndicesService indicesService,
             final ThreadPool threadPool,
             final ShardStateAction shardStateAction,
-            final ActionFilters actionFilters) {
+            final ActionFilters actionFilters,
+            final IndexingPressure indexingPressure) {
         super(
                 settings,
                 BulkShardOperationsAction.NAME,
@@ -55,7 +57,25 @@ public class TransportBulkShardOperationsAction
                 actionFilters,
                 BulkShardOperationsRequest::new,
                 BulkShardOperationsRequest::new,
-                ThreadPool.Names.WRITE, false);
+                ThreadPool.Names.WRITE, false, indexingPressure);
+    }
+
+    @Override
+    protected long primaryOperationSize(BulkShardOperationsRequest request) {
+        return operationSizeInBytes(request.getOperations());
+    }
+
+    @Override
+    protected long replicaOperationSize(BulkShardOperationsRequest request) {
+        return operationSizeInBytes(request.getOperations());
+    }
+
+    private static long operationSizeInBytes(List<Translog.Operation> operations) {
+        long operationSizeInBytes = 0;
+        for (Translog.Operation operation : operations) {
+            operationSizeInBytes += operation.estimateSize();
+        }
+        return operationSizeInBytes;
     }
 
     @Override
@@ -0,0 +1,136 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.xpack.core.search.action;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.CompositeIndicesRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * A request to track asynchronously the progress of a search against one or more indices.
+ *
+ * @see AsyncSearchResponse
+ */
+public class SubmitAsyncSearchRequest extends ActionRequest implements CompositeIndicesRequest {
+    public static final TimeValue DEFAULT_WAIT_FOR_COMPLETION = TimeValue.timeValueSeconds(1);
+    public static final TimeValue DEFAULT_KEEP_ALIVE = TimeValue.timeValueDays(5);
+    public static final int DEFAULT_BATCHED_REDUCE_SIZE = 5;
+
+    private TimeValue waitForCompletion = DEFAULT_WAIT_FOR_COMPLETION;
+    private TimeValue keepAlive = DEFAULT_KEEP_ALIVE;
+
+    private final SearchRequest request;
+
+    /**
+     * Creates a new request
+     */
+    public SubmitAsyncSearchRequest(String... indices) {
+        this(new SearchSourceBuilder(), indices);
+    }
+
+    /**
+     * Creates a new request
+     */
+    public SubmitAsyncSearchRequest(SearchSourceBuilder source, String... indices) {
+        this.request = new SearchRequest(indices, source);
+        // partial results are only available after a partial reduce so we reduce more eagerly than regular searches
+        request.setBatchedReduceSize(DEFAULT_BATCHED_REDUCE_SIZE);
+        // the progress of remote clusters cannot be tracked if each cluster reduces its own results
+        request.setCcsMinimizeRoundtrips(false);
+    }
+
+    public SubmitAsyncSearchRequest(StreamInput in) throws IOException {
+        super(in);
+        this.request = new SearchRequest(in);
+        this.waitForCompletion = in.readTimeValue();
+        this.keepAlive = in.readTimeValue();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        request.writeTo(out);
+        out.writeTimeValue(waitForCompletion);
+        out.writeTimeValue(keepAlive);
+    }
+
+    /**
+     * Returns the underlying {@link SearchRequest}.
+     */
+    public SearchRequest getSearchRequest() {
+        return request;
+    }
+
+    /**
+     * Sets the minimum time that the request should wait before returning a partial result (defaults to 1 second).
+     */
+    public SubmitAsyncSearchRequest setWaitForCompletion(TimeValue waitForCompletion) {
+        this.waitForCompletion = Objects.requireNonNull(waitForCompletion);
+        return this;
+    }
+
+    public TimeValue getWaitForCompletion() {
+        return waitForCompletion;
+    }
+
+    /**
+     * Sets the amount of time after which the result will expire (defaults to 5 days).
+     */
+    public SubmitAsyncSearchRequest setKeepAlive(TimeValue keepAlive) {
+        this.keepAlive = Objects.requireNonNull(keepAlive);
+        return this;
+    }
+
+    public TimeValue getKeepAlive() {
+        return keepAlive;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = request.validate();
+        if (request.scroll() != null) {
+            validationException = addValidationError("[scroll] queries are not supported", validationException);
+        }
+        if (request.isCcsMinimizeRoundtrips()) {
+            validationException = addValidationError("[ccs_minimize_roundtrips] is not supported on async search queries",
+                validationException);
+        }
+        if (keepAlive.getMillis() < TimeValue.timeValueSeconds(1).getMillis()) {
+            validationException = addValidationError("[keep_alive] must be greater than 1 second, got: " + keepAlive.toString(),
+                validationException);
+        }
+        return validationException;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SubmitAsyncSearchRequest that = (SubmitAsyncSearchRequest) o;
+        return Objects.equals(waitForCompletion, that.waitForCompletion)
+            && Objects.equals(keepAlive, that.keepAlive)
+            && request.equals(that.request);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(waitForCompletion, keepAlive, request);
+    }
+}
@@ -8,6 +8,7 @@ package org.elasticsearch.xpack.core.security.user;
 import org.elasticsearch.xpack.core.security.authz.RoleDescriptor;
 import org.elasticsearch.xpack.core.security.authz.permission.Role;
 import org.elasticsearch.xpack.core.security.index.IndexAuditTrailField;
+import org.elasticsearch.xpack.core.security.index.RestrictedIndicesNames;
 import org.elasticsearch.xpack.core.security.support.MetadataUtils;
 
 /**
@@ -21,7 +22,9 @@ public class XPackUser extends User {
             new RoleDescriptor.IndicesPrivileges[] {
                     RoleDescriptor.IndicesPrivileges.builder().indices("/@&~(\\.security.*)/").privileges("all").build(),
                     RoleDescriptor.IndicesPrivileges.builder().indices(IndexAuditTrailField.INDEX_NAME_PREFIX + "-*")
-                            .privileges("read").build()
+                            .privileges("read").build(),
+                    RoleDescriptor.IndicesPrivileges.builder().indices(RestrictedIndicesNames.ASYNC_SEARCH_PREFIX + "*")
+                            .privileges("all").allowRestrictedIndices(true).build()
             },
             new String[] { "*" },
             MetadataUtils.DEFAULT_RESERVED_METADATA), null).build();
@@ -34,7 +34,12 @@ public class XPackUserTests extends ESTestCase {
         for (String index : RestrictedIndicesNames.RESTRICTED_NAMES) {
             assertThat(predicate.test(index), Matchers.is(false));
         }
-        assertThat(predicate.test(RestrictedIndicesNames.ASYNC_SEARCH_PREFIX + randomAlphaOfLengthBetween(0, 2)), Matchers.is(false));
+    }
+
+    public void testXPackUserCanAccessAsyncSearchIndices() {
+        final String action = randomFrom(GetAction.NAME, SearchAction.NAME, IndexAction.NAME, UpdateAction.NAME);
+        final Predicate<String> predicate = XPackUser.ROLE.indices().allowedIndicesMatcher(action);
+        assertThat(predicate.test(RestrictedIndicesNames.ASYNC_SEARCH_PREFIX + randomAlphaOfLengthBetween(0, 2)), Matchers.is(true));
     }
 
     public void testXPackUserCanReadAuditTrail() {
@@ -0,0 +1,336 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.xpack.vectors.codec;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.lucene80.Lucene80DocValuesFormat;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.ChecksumIndexInput;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.xpack.vectors.mapper.VectorSimilarity;
+import org.elasticsearch.xpack.vectors.query.HnswGraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DocValuesFormat} for the vectors of {@code dense_vector} fields that have a similarity. The doc values are
+ * written with the default doc values format and the vectors of each segment are linked in a {@link HnswGraph} when
+ * the segment is written, on flush and on merge, so that searches never have to build graphs. The graphs of the fields
+ * can be retrieved from the {@link BinaryDocValues} of the segment with {@link #getGraph(BinaryDocValues)}.
+ */
+public final class HnswGraphDocValuesFormat extends DocValuesFormat {
+
+    public static final String NAME = "HnswGraph";
+
+    static final String META_CODEC = "HnswGraphMeta";
+    static final String META_EXTENSION = "hnm";
+    static final String DATA_CODEC = "HnswGraphData";
+    static final String DATA_EXTENSION = "hnd";
+    static final int VERSION_START = 0;
+    static final int VERSION_CURRENT = VERSION_START;
+
+    // the parameters of the graph are recorded in the field infos so that segments can be merged without the mapping
+    static final String DIMS_ATTRIBUTE = HnswGraphDocValuesFormat.class.getSimpleName() + ".dims";
+    static final String SIMILARITY_ATTRIBUTE = HnswGraphDocValuesFormat.class.getSimpleName() + ".similarity";
+
+    private final DocValuesFormat delegate = new Lucene80DocValuesFormat();
+    private final int dims;
+    @Nullable
+    private final VectorSimilarity similarity;
+
+    /**
+     * Used by the service provider interface to read segments, and to merge them when the mapping is not available.
+     */
+    public HnswGraphDocValuesFormat() {
+        this(0, null);
+    }
+
+    public HnswGraphDocValuesFormat(int dims, @Nullable VectorSimilarity similarity) {
+        super(NAME);
+        this.dims = dims;
+        this.similarity = similarity;
+    }
+
+    /**
+     * Returns the graph of the segment the provided doc values belong to, or <code>null</code> if they were not written
+     * by this format.
+     */
+    @Nullable
+    public static HnswGraph getGraph(@Nullable BinaryDocValues values) {
+        return values instanceof GraphBinaryDocValues ? ((GraphBinaryDocValues) values).graph : null;
+    }
+
+    @Override
+    public DocValuesConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+        return new GraphConsumer(delegate.fieldsConsumer(state), state, dims, similarity);
+    }
+
+    @Override
+    public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+        return new GraphProducer(delegate.fieldsProducer(state), state);
+    }
+
+    private static final class GraphConsumer extends DocValuesConsumer {
+        private final DocValuesConsumer delegate;
+        private final int maxDoc;
+        private final int dims;
+        private final VectorSimilarity similarity;
+        private IndexOutput meta;
+        private IndexOutput data;
+
+        GraphConsumer(DocValuesConsumer delegate, SegmentWriteState state, int dims, VectorSimilarity similarity) throws IOException {
+            this.delegate = delegate;
+            this.maxDoc = state.segmentInfo.maxDoc();
+            this.dims = dims;
+            this.similarity = similarity;
+            boolean success = false;
+            try {
+                String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, META_EXTENSION);
+                meta = state.directory.createOutput(metaName, state.context);
+                CodecUtil.writeIndexHeader(meta, META_CODEC, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+                String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, DATA_EXTENSION);
+                data = state.directory.createOutput(dataName, state.context);
+                CodecUtil.writeIndexHeader(data, DATA_CODEC, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+                success = true;
+            } finally {
+                if (success == false) {
+                    IOUtils.closeWhileHandlingException(delegate, meta, data);
+                }
+            }
+        }
+
+        @Override
+        public void addBinaryField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+            delegate.addBinaryField(field, valuesProducer);
+            final int fieldDims;
+            final VectorSimilarity fieldSimilarity;
+            if (similarity != null) {
+                fieldDims = dims;
+                fieldSimilarity = similarity;
+                field.putAttribute(DIMS_ATTRIBUTE, Integer.toString(dims));
+                field.putAttribute(SIMILARITY_ATTRIBUTE, similarity.toString());
+            } else if (field.getAttribute(SIMILARITY_ATTRIBUTE) != null) {
+                fieldDims = Integer.parseInt(field.getAttribute(DIMS_ATTRIBUTE));
+                fieldSimilarity = VectorSimilarity.fromString(field.getAttribute(SIMILARITY_ATTRIBUTE));
+            } else {
+                throw new IllegalStateException("no similarity for the nearest neighbour graph of field [" + field.name + "]");
+            }
+            final HnswGraph graph = HnswGraph.build(valuesProducer.getBinary(field), maxDoc, fieldDims, fieldSimilarity);
+            meta.writeInt(field.number);
+            graph.write(meta, data);
+        }
+
+        @Override
+        public void addNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+            delegate.addNumericField(field, valuesProducer);
+        }
+
+        @Override
+        public void addSortedField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+            delegate.addSortedField(field, valuesProducer);
+        }
+
+        @Override
+        public void addSortedNumericField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+            delegate.addSortedNumericField(field, valuesProducer);
+        }
+
+        @Override
+        public void addSortedSetField(FieldInfo field, DocValuesProducer valuesProducer) throws IOException {
+            delegate.addSortedSetField(field, valuesProducer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            boolean success = false;
+            try {
+                if (meta != null) {
+                    meta.writeInt(-1); // no more fields
+                    CodecUtil.writeFooter(meta);
+                }
+                if (data != null) {
+                    CodecUtil.writeFooter(data);
+                }
+                success = true;
+            } finally {
+                if (success) {
+                    IOUtils.close(delegate, meta, data);
+                } else {
+                    IOUtils.closeWhileHandlingException(delegate, meta, data);
+                }
+                meta = data = null;
+            }
+        }
+    }
+
+    private static final class GraphProducer extends DocValuesProducer {
+        private final DocValuesProducer delegate;
+        private final Map<String, HnswGraph> graphs = new HashMap<>();
+        private final IndexInput data;
+
+        GraphProducer(DocValuesProducer delegate, SegmentReadState state) throws IOException {
+            this.delegate = delegate;
+            boolean success = false;
+            try {
+                String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, META_EXTENSION);
+                String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, DATA_EXTENSION);
+                data = state.directory.openInput(dataName, state.context);
+                int version = CodecUtil.checkIndexHeader(data, DATA_CODEC, VERSION_START, VERSION_CURRENT,
+                    state.segmentInfo.getId(), state.segmentSuffix);
+                // the vectors are read on demand, only check the structure of the footer
+                CodecUtil.retrieveChecksum(data);
+                try (ChecksumIndexInput meta = state.directory.openChecksumInput(metaName, state.context)) {
+                    Throwable priorE = null;
+                    try {
+                        int metaVersion = CodecUtil.checkIndexHeader(meta, META_CODEC, VERSION_START, VERSION_CURRENT,
+                            state.segmentInfo.getId(), state.segmentSuffix);
+                        if (metaVersion != version) {
+                            throw new CorruptIndexException("Format versions mismatch: meta=" + metaVersion + ", data=" + version, meta);
+                        }
+                        for (int fieldNumber = meta.readInt(); fieldNumber != -1; fieldNumber = meta.readInt()) {
+                            FieldInfo field = state.fieldInfos.fieldInfo(fieldNumber);
+                            if (field == null) {
+                                throw new CorruptIndexException("Invalid field number: " + fieldNumber, meta);
+                            }
+                            graphs.put(field.name, HnswGraph.read(meta, data));
+                        }
+                    } catch (Throwable exception) {
+                        priorE = exception;
+                    } finally {
+                        CodecUtil.checkFooter(meta, priorE);
+                    }
+                }
+                success = true;
+            } finally {
+                if (success == false) {
+                    IOUtils.closeWhileHandlingException(this);
+                }
+            }
+        }
+
+        @Override
+        public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+            final BinaryDocValues values = delegate.getBinary(field);
+            final HnswGraph graph = graphs.get(field.name);
+            return graph == null ? values : new GraphBinaryDocValues(values, graph);
+        }
+
+        @Override
+        public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+            return delegate.getNumeric(field);
+        }
+
+        @Override
+        public SortedDocValues getSorted(FieldInfo field) throws IOException {
+            return delegate.getSorted(field);
+        }
+
+        @Override
+        public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+            return delegate.getSortedNumeric(field);
+        }
+
+        @Override
+        public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+            return delegate.getSortedSet(field);
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            delegate.checkIntegrity();
+            CodecUtil.checksumEntireFile(data);
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            long ramBytesUsed = delegate.ramBytesUsed();
+            for (HnswGraph graph : graphs.values()) {
+                ramBytesUsed += graph.ramBytesUsed();
+            }
+            return ramBytesUsed;
+        }
+
+        @Override
+        public Collection<Accountable> getChildResources() {
+            final List<Accountable> resources = new ArrayList<>(Accountables.namedAccountables("graph", graphs));
+            resources.add(Accountables.namedAccountable("delegate", delegate));
+            return Collections.unmodifiableList(resources);
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOUtils.close(delegate, data);
+        }
+    }
+
+    /**
+     * The doc values of a field, that also give access to the graph of the segment.
+     */
+    private static final class GraphBinaryDocValues extends BinaryDocValues {
+        private final BinaryDocValues in;
+        private final HnswGraph graph;
+
+        GraphBinaryDocValues(BinaryDocValues in, HnswGraph graph) {
+            this.in = in;
+            this.graph = graph;
+        }
+
+        @Override
+        public BytesRef binaryValue() throws IOException {
+            return in.binaryValue();
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+            return in.advanceExact(target);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+}
@@ -7,6 +7,7 @@
 
 package org.elasticsearch.xpack.vectors.mapper;
 
+import org.apache.lucene.codecs.DocValuesFormat;
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexableField;
@@ -27,6 +28,7 @@ import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.xpack.vectors.codec.HnswGraphDocValuesFormat;
 import org.elasticsearch.xpack.vectors.query.VectorDVIndexFieldData;
 
 import java.io.IOException;
@@ -60,6 +62,7 @@ public class DenseVectorFieldMapper extends FieldMapper implements ArrayValueMap
 
     public static class Builder extends FieldMapper.Builder<Builder, DenseVectorFieldMapper> {
         private int dims = 0;
+        private VectorSimilarity similarity;
 
         public Builder(String name) {
             super(name, Defaults.FIELD_TYPE, Defaults.FIELD_TYPE);
@@ -75,10 +78,19 @@ public class DenseVectorFieldMapper extends FieldMapper implements ArrayValueMap
             return this;
         }
 
+        /**
+         * Builds a nearest neighbour graph of the vectors of each segment that is compared with the provided similarity.
+         */
+        public Builder similarity(VectorSimilarity similarity) {
+            this.similarity = similarity;
+            return this;
+        }
+
         @Override
         protected void setupFieldType(BuilderContext context) {
             super.setupFieldType(context);
             fieldType().setDims(dims);
+            fieldType().setSimilarity(similarity);
         }
 
         @Override
@@ -104,36 +116,66 @@ public class DenseVectorFieldMapper extends FieldMapper implements ArrayValueMap
                 throw new MapperParsingException("The [dims] property must be specified for field [" + name + "].");
             }
             int dims = XContentMapValues.nodeIntegerValue(dimsField);
+            Object similarityField = node.remove("similarity");
+            if (similarityField != null) {
+                try {
+                    builder.similarity(VectorSimilarity.fromString(similarityField.toString()));
+                } catch (IllegalArgumentException e) {
+                    throw new MapperParsingException("Invalid [similarity] for field [" + name + "]: " + e.getMessage(), e);
+                }
+            }
             return builder.dims(dims);
         }
     }
 
     public static final class DenseVectorFieldType extends MappedFieldType {
         private int dims;
+        private VectorSimilarity similarity;
 
         public DenseVectorFieldType() {}
 
         protected DenseVectorFieldType(DenseVectorFieldType ref) {
             super(ref);
+            this.dims = ref.dims;
+            this.similarity = ref.similarity;
         }
 
         public DenseVectorFieldType clone() {
             return new DenseVectorFieldType(this);
         }
 
-        int dims() {
+        public int dims() {
             return dims;
         }
 
         void setDims(int dims) {
+            checkIfFrozen();
             this.dims = dims;
         }
 
+        /**
+         * The similarity of the nearest neighbour graph or <code>null</code> if the vectors are not indexed in a graph.
+         */
+        public VectorSimilarity similarity() {
+            return similarity;
+        }
+
+        void setSimilarity(VectorSimilarity similarity) {
+            checkIfFrozen();
+            this.similarity = similarity;
+        }
+
         @Override
         public String typeName() {
             return CONTENT_TYPE;
         }
 
+        @Override
+        public DocValuesFormat docValuesFormat() {
+            // the nearest neighbour graph of the vectors is written with the doc values
+            return similarity == null ? null : new HnswGraphDocValuesFormat(dims, similarity);
+        }
+
         @Override
         public DocValueFormat docValueFormat(String format, ZoneId timeZone) {
             throw new UnsupportedOperationException(
@@ -222,6 +264,9 @@ public class DenseVectorFieldMapper extends FieldMapper implements ArrayValueMap
     protected void doXContentBody(XContentBuilder builder, boolean includeDefaults, Params params) throws IOException {
         super.doXContentBody(builder, includeDefaults, params);
         builder.field("dims", fieldType().dims());
+        if (fieldType().similarity() != null) {
+            builder.field("similarity", fieldType().similarity().toString());
+        }
     }
 
     @Override
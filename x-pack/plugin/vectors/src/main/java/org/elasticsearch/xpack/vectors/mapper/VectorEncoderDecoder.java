@@ -10,11 +10,16 @@ package org.elasticsearch.xpack.vectors.mapper;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.Version;
 
-import java.nio.ByteBuffer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 
 public final class VectorEncoderDecoder {
     public static final byte INT_BYTES = 4;
 
+    // reads the big-endian floats of encoded vectors in place
+    private static final VarHandle BIG_ENDIAN_FLOAT = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+
     private VectorEncoderDecoder() { }
 
     public static int denseVectorLength(Version indexVersion, BytesRef vectorBR) {
@@ -30,7 +35,13 @@ public final class VectorEncoderDecoder {
      */
     public static float decodeVectorMagnitude(Version indexVersion, BytesRef vectorBR) {
         assert indexVersion.onOrAfter(Version.V_7_5_0);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(vectorBR.bytes, vectorBR.offset, vectorBR.length);
-        return byteBuffer.getFloat(vectorBR.offset + vectorBR.length - 4);
+        return (float) BIG_ENDIAN_FLOAT.get(vectorBR.bytes, vectorBR.offset + vectorBR.length - INT_BYTES);
+    }
+
+    /**
+     * Decodes the value of the provided dimension of the encoded vector, without copying the vector.
+     */
+    public static float decodeDenseVectorValue(BytesRef vectorBR, int dim) {
+        return (float) BIG_ENDIAN_FLOAT.get(vectorBR.bytes, vectorBR.offset + dim * INT_BYTES);
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.xpack.vectors.mapper;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The similarity used to compare the vectors of a {@code dense_vector} field in its nearest neighbour graph.
+ * Scores are always positive and higher scores mean closer vectors.
+ */
+public enum VectorSimilarity {
+
+    /**
+     * Scores vectors by their euclidean distance: {@code 1 / (1 + l2_norm(v1 - v2)^2)}.
+     */
+    L2_NORM {
+        @Override
+        public float score(float[] v1, float[] v2) {
+            float squareSum = 0;
+            for (int dim = 0; dim < v1.length; dim++) {
+                float diff = v1[dim] - v2[dim];
+                squareSum += diff * diff;
+            }
+            return 1f / (1f + squareSum);
+        }
+    },
+
+    /**
+     * Scores vectors by the cosine of their angle: {@code (1 + cosine(v1, v2)) / 2}. The vectors are normalized
+     * before being added to the graph so that the cosine is computed as a dot product.
+     */
+    COSINE {
+        @Override
+        public boolean normalize() {
+            return true;
+        }
+
+        @Override
+        public float score(float[] v1, float[] v2) {
+            float dotProduct = 0;
+            for (int dim = 0; dim < v1.length; dim++) {
+                dotProduct += v1[dim] * v2[dim];
+            }
+            return Math.max((1f + dotProduct) / 2f, 0f);
+        }
+    };
+
+    /**
+     * Whether the vectors must be normalized before being compared with {@link #score(float[], float[])}.
+     */
+    public boolean normalize() {
+        return false;
+    }
+
+    /**
+     * Compares two vectors of the same number of dimensions.
+     */
+    public abstract float score(float[] v1, float[] v2);
+
+    public static VectorSimilarity fromString(String name) {
+        for (VectorSimilarity similarity : values()) {
+            if (similarity.toString().equals(name)) {
+                return similarity;
+            }
+        }
+        throw new IllegalArgumentException("unknown vector similarity [" + name + "], must be one of " +
+            Arrays.toString(values()));
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
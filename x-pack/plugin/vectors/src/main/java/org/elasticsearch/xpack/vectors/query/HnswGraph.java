@@ -0,0 +1,532 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.xpack.vectors.query;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.SparseFixedBitSet;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.xpack.vectors.mapper.VectorEncoderDecoder;
+import org.elasticsearch.xpack.vectors.mapper.VectorSimilarity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * A hierarchical navigable small world graph of the vectors of a segment, used to find the approximate nearest
+ * neighbours of a query vector without comparing it with every vector of the segment.
+ * <p>
+ * Every vector is a node of the bottom level of the graph and a random, exponentially decreasing, fraction of
+ * them are also part of the upper levels. Searches descend greedily from the entry point of the top level and
+ * run a beam search on the bottom level. Graphs are built when the vectors of a segment are written, on flush
+ * and on merge, and contain every document of the segment that has a vector. The links of the nodes are read in
+ * memory when the segment is opened while the vectors are read from the index files on demand.
+ */
+public final class HnswGraph implements Accountable {
+
+    /** The maximum number of neighbours of a node in the upper levels, twice as many in the bottom level */
+    static final int MAX_CONNECTIONS = 16;
+    /** The number of candidates that are considered when linking a new node */
+    static final int BEAM_WIDTH = 100;
+
+    private static final double LEVEL_MULTIPLIER = 1 / Math.log(MAX_CONNECTIONS);
+    // a fixed seed so that the same segment always produces the same graph
+    private static final long SEED = 0x5EED;
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(HnswGraph.class);
+    private static final Comparator<ScoredNode> BEST_FIRST = (a, b) -> {
+        int cmp = Float.compare(b.score, a.score);
+        return cmp != 0 ? cmp : Integer.compare(a.node, b.node);
+    };
+
+    private final VectorSimilarity similarity;
+    private final int dims;
+    private final int[] docs;
+    private final VectorStore vectors;
+    // level -> node -> neighbours, null if the node is not part of the level
+    private final int[][][] neighbors;
+    private final int entryPoint;
+    private final long ramBytesUsed;
+
+    private HnswGraph(VectorSimilarity similarity, int dims, int[] docs, VectorStore vectors, int[][][] neighbors, int entryPoint) {
+        this.similarity = similarity;
+        this.dims = dims;
+        this.docs = docs;
+        this.vectors = vectors;
+        this.neighbors = neighbors;
+        this.entryPoint = entryPoint;
+        long ramBytesUsed = BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(docs) + vectors.ramBytesUsed()
+            + RamUsageEstimator.shallowSizeOf(neighbors);
+        for (int[][] level : neighbors) {
+            ramBytesUsed += RamUsageEstimator.shallowSizeOf(level);
+            for (int[] nodeNeighbors : level) {
+                if (nodeNeighbors != null) {
+                    ramBytesUsed += RamUsageEstimator.sizeOf(nodeNeighbors);
+                }
+            }
+        }
+        this.ramBytesUsed = ramBytesUsed;
+    }
+
+    /**
+     * Reads the vectors of a segment and links them in a graph.
+     *
+     * @param values the vectors of the segment, encoded like the doc values of a {@code dense_vector} field
+     */
+    public static HnswGraph build(BinaryDocValues values, int maxDoc, int dims, VectorSimilarity similarity) throws IOException {
+        int[] docs = new int[maxDoc];
+        float[][] vectors = new float[maxDoc][];
+        int size = 0;
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+            docs[size] = doc;
+            vectors[size] = decode(values.binaryValue(), dims, similarity.normalize());
+            size++;
+        }
+        docs = Arrays.copyOf(docs, size);
+        vectors = Arrays.copyOf(vectors, size);
+
+        final Random random = new Random(SEED);
+        final int[] nodeLevels = new int[size];
+        int topLevel = 0;
+        for (int node = 0; node < size; node++) {
+            nodeLevels[node] = (int) (-Math.log(1 - random.nextDouble()) * LEVEL_MULTIPLIER);
+            topLevel = Math.max(topLevel, nodeLevels[node]);
+        }
+        final Builder builder = new Builder(similarity, vectors, topLevel + 1);
+        for (int node = 0; node < size; node++) {
+            builder.add(node, nodeLevels[node]);
+        }
+        return new HnswGraph(similarity, dims, docs, new HeapVectorStore(vectors), builder.neighbors(), builder.entryPoint);
+    }
+
+    /**
+     * Writes the graph, its links and documents to <code>meta</code> and its vectors to <code>data</code>.
+     */
+    public void write(DataOutput meta, IndexOutput data) throws IOException {
+        meta.writeString(similarity.toString());
+        meta.writeVInt(dims);
+        meta.writeVInt(docs.length);
+        int previousDoc = 0;
+        for (int doc : docs) {
+            meta.writeVInt(doc - previousDoc);
+            previousDoc = doc;
+        }
+        meta.writeLong(data.getFilePointer());
+        final NodeVectors nodeVectors = vectors.reader();
+        for (int node = 0; node < docs.length; node++) {
+            for (float value : nodeVectors.vector(node)) {
+                data.writeInt(Float.floatToIntBits(value));
+            }
+        }
+        meta.writeVInt(entryPoint + 1);
+        meta.writeVInt(neighbors.length);
+        for (int[][] level : neighbors) {
+            for (int[] nodeNeighbors : level) {
+                if (nodeNeighbors == null) {
+                    meta.writeVInt(0);
+                } else {
+                    meta.writeVInt(nodeNeighbors.length + 1);
+                    for (int neighbor : nodeNeighbors) {
+                        meta.writeVInt(neighbor);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a graph that was written with {@link #write(DataOutput, IndexOutput)}. The vectors are not read in memory,
+     * they are read from <code>data</code> when the graph is searched.
+     */
+    public static HnswGraph read(DataInput meta, IndexInput data) throws IOException {
+        final VectorSimilarity similarity = VectorSimilarity.fromString(meta.readString());
+        final int dims = meta.readVInt();
+        final int[] docs = new int[meta.readVInt()];
+        int doc = 0;
+        for (int node = 0; node < docs.length; node++) {
+            doc += meta.readVInt();
+            docs[node] = doc;
+        }
+        final long vectorsOffset = meta.readLong();
+        final VectorStore vectors = new IndexVectorStore(data, vectorsOffset, docs.length, dims);
+        final int entryPoint = meta.readVInt() - 1;
+        final int[][][] neighbors = new int[meta.readVInt()][docs.length][];
+        for (int[][] level : neighbors) {
+            for (int node = 0; node < docs.length; node++) {
+                final int numNeighbors = meta.readVInt() - 1;
+                if (numNeighbors >= 0) {
+                    level[node] = new int[numNeighbors];
+                    for (int i = 0; i < numNeighbors; i++) {
+                        level[node][i] = meta.readVInt();
+                    }
+                }
+            }
+        }
+        return new HnswGraph(similarity, dims, docs, vectors, neighbors, entryPoint);
+    }
+
+    /**
+     * Decodes a vector encoded like the doc values of a {@code dense_vector} field, normalizing it if required.
+     */
+    static float[] decode(BytesRef encoded, int dims, boolean normalize) {
+        final float[] vector = new float[dims];
+        double squareSum = 0;
+        for (int dim = 0; dim < dims; dim++) {
+            vector[dim] = VectorEncoderDecoder.decodeDenseVectorValue(encoded, dim);
+            squareSum += vector[dim] * vector[dim];
+        }
+        if (normalize && squareSum > 0) {
+            normalize(vector, (float) Math.sqrt(squareSum));
+        }
+        return vector;
+    }
+
+    /**
+     * Returns a copy of the query vector that is normalized if the similarity requires it.
+     */
+    static float[] prepareQuery(float[] queryVector, VectorSimilarity similarity) {
+        if (similarity.normalize()) {
+            double squareSum = 0;
+            for (float value : queryVector) {
+                squareSum += value * value;
+            }
+            if (squareSum > 0) {
+                float[] query = queryVector.clone();
+                normalize(query, (float) Math.sqrt(squareSum));
+                return query;
+            }
+        }
+        return queryVector;
+    }
+
+    private static void normalize(float[] vector, float magnitude) {
+        for (int dim = 0; dim < vector.length; dim++) {
+            vector[dim] /= magnitude;
+        }
+    }
+
+    /**
+     * Returns the number of vectors in the graph.
+     */
+    public int size() {
+        return docs.length;
+    }
+
+    /**
+     * Finds the approximate nearest neighbours of the provided vector.
+     *
+     * @param queryVector   the query vector, that must have the same number of dimensions as the indexed vectors
+     * @param k             the number of neighbours to return
+     * @param numCandidates the number of candidates that are tracked on the bottom level of the graph, the higher the
+     *                      more accurate and the slower
+     * @param acceptDocs    the documents that can be returned, or <code>null</code> to accept all of them
+     * @return the nearest documents, the closest first
+     */
+    public ScoreDoc[] search(float[] queryVector, int k, int numCandidates, @Nullable Bits acceptDocs) throws IOException {
+        if (docs.length == 0) {
+            return new ScoreDoc[0];
+        }
+        final float[] query = prepareQuery(queryVector, similarity);
+        final NodeVectors nodeVectors = vectors.reader();
+        int entry = entryPoint;
+        for (int level = neighbors.length - 1; level > 0; level--) {
+            entry = searchLevel(similarity, nodeVectors, docs.length, neighbors[level], null, query, entry, 1, null, null)
+                .peek().node;
+        }
+        PriorityQueue<ScoredNode> results = searchLevel(similarity, nodeVectors, docs.length, neighbors[0], null, query, entry,
+            Math.max(k, numCandidates), docs, acceptDocs);
+        while (results.size() > k) {
+            results.poll();
+        }
+        ScoreDoc[] scoreDocs = new ScoreDoc[results.size()];
+        for (int i = scoreDocs.length - 1; i >= 0; i--) {
+            ScoredNode result = results.poll();
+            scoreDocs[i] = new ScoreDoc(docs[result.node], result.score);
+        }
+        return scoreDocs;
+    }
+
+    /**
+     * Runs a beam search on a level of the graph.
+     *
+     * @param neighborCounts the number of neighbours of each node while the graph is built, <code>null</code> once the
+     *                       neighbours are trimmed to their actual size
+     * @return the best accepted nodes, the worst first
+     */
+    private static PriorityQueue<ScoredNode> searchLevel(VectorSimilarity similarity, NodeVectors vectors, int numNodes,
+                                                         int[][] levelNeighbors, @Nullable int[] neighborCounts, float[] query,
+                                                         int entry, int beamWidth, @Nullable int[] docs,
+                                                         @Nullable Bits acceptDocs) throws IOException {
+        final SparseFixedBitSet visited = new SparseFixedBitSet(numNodes);
+        final PriorityQueue<ScoredNode> candidates = new PriorityQueue<>(BEST_FIRST);
+        final PriorityQueue<ScoredNode> results = new PriorityQueue<>(BEST_FIRST.reversed());
+        final ScoredNode first = new ScoredNode(entry, similarity.score(query, vectors.vector(entry)));
+        visited.set(entry);
+        candidates.add(first);
+        if (acceptDocs == null || acceptDocs.get(docs[entry])) {
+            results.add(first);
+        }
+        while (candidates.isEmpty() == false) {
+            final ScoredNode candidate = candidates.poll();
+            if (results.size() >= beamWidth && candidate.score < results.peek().score) {
+                break;
+            }
+            final int[] candidateNeighbors = levelNeighbors[candidate.node];
+            final int numNeighbors = neighborCounts == null ? candidateNeighbors.length : neighborCounts[candidate.node];
+            for (int i = 0; i < numNeighbors; i++) {
+                final int neighbor = candidateNeighbors[i];
+                if (visited.getAndSet(neighbor)) {
+                    continue;
+                }
+                final float score = similarity.score(query, vectors.vector(neighbor));
+                if (results.size() < beamWidth || score > results.peek().score) {
+                    final ScoredNode node = new ScoredNode(neighbor, score);
+                    candidates.add(node);
+                    if (acceptDocs == null || acceptDocs.get(docs[neighbor])) {
+                        results.add(node);
+                        if (results.size() > beamWidth) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Links the nodes of a graph, one at a time.
+     */
+    private static final class Builder {
+        private final VectorSimilarity similarity;
+        private final float[][] vectors;
+        private final NodeVectors nodeVectors;
+        private final int[][][] neighbors;
+        private final int[][] neighborCounts;
+        private int entryPoint = -1;
+        private int entryLevel = -1;
+
+        Builder(VectorSimilarity similarity, float[][] vectors, int numLevels) {
+            this.similarity = similarity;
+            this.vectors = vectors;
+            this.nodeVectors = node -> vectors[node];
+            this.neighbors = new int[numLevels][vectors.length][];
+            this.neighborCounts = new int[numLevels][vectors.length];
+        }
+
+        void add(int node, int nodeLevel) throws IOException {
+            for (int level = 0; level <= nodeLevel; level++) {
+                // one extra slot to add a neighbour before pruning
+                neighbors[level][node] = new int[maxConnections(level) + 1];
+            }
+            if (entryPoint == -1) {
+                entryPoint = node;
+                entryLevel = nodeLevel;
+                return;
+            }
+            final float[] vector = vectors[node];
+            int entry = entryPoint;
+            for (int level = entryLevel; level > nodeLevel; level--) {
+                entry = searchLevel(similarity, nodeVectors, vectors.length, neighbors[level], neighborCounts[level], vector, entry,
+                    1, null, null).peek().node;
+            }
+            for (int level = Math.min(nodeLevel, entryLevel); level >= 0; level--) {
+                final PriorityQueue<ScoredNode> candidates = searchLevel(similarity, nodeVectors, vectors.length, neighbors[level],
+                    neighborCounts[level], vector, entry, BEAM_WIDTH, null, null);
+                final List<ScoredNode> sorted = new ArrayList<>(candidates);
+                sorted.sort(BEST_FIRST);
+                entry = sorted.get(0).node;
+                for (int neighbor : selectNeighbors(sorted, maxConnections(level))) {
+                    link(level, node, neighbor);
+                    link(level, neighbor, node);
+                }
+            }
+            if (nodeLevel > entryLevel) {
+                entryPoint = node;
+                entryLevel = nodeLevel;
+            }
+        }
+
+        /**
+         * Keeps the candidates that are closer to the new node than to any of the already selected neighbours so that
+         * the links of the node point in different directions, and fills the remaining slots with the closest candidates.
+         */
+        private int[] selectNeighbors(List<ScoredNode> sortedCandidates, int maxConnections) {
+            final int[] selected = new int[Math.min(maxConnections, sortedCandidates.size())];
+            final boolean[] used = new boolean[sortedCandidates.size()];
+            int count = 0;
+            for (int i = 0; i < sortedCandidates.size() && count < selected.length; i++) {
+                final ScoredNode candidate = sortedCandidates.get(i);
+                boolean diverse = true;
+                for (int j = 0; j < count; j++) {
+                    if (similarity.score(vectors[candidate.node], vectors[selected[j]]) > candidate.score) {
+                        diverse = false;
+                        break;
+                    }
+                }
+                if (diverse) {
+                    selected[count++] = candidate.node;
+                    used[i] = true;
+                }
+            }
+            for (int i = 0; i < sortedCandidates.size() && count < selected.length; i++) {
+                if (used[i] == false) {
+                    selected[count++] = sortedCandidates.get(i).node;
+                }
+            }
+            return selected;
+        }
+
+        private void link(int level, int node, int neighbor) {
+            final int[] nodeNeighbors = neighbors[level][node];
+            int count = neighborCounts[level][node];
+            nodeNeighbors[count++] = neighbor;
+            final int maxConnections = maxConnections(level);
+            if (count > maxConnections) {
+                // drop the farthest neighbour
+                final float[] vector = vectors[node];
+                int worst = 0;
+                float worstScore = Float.POSITIVE_INFINITY;
+                for (int i = 0; i < count; i++) {
+                    final float score = similarity.score(vector, vectors[nodeNeighbors[i]]);
+                    if (score < worstScore) {
+                        worst = i;
+                        worstScore = score;
+                    }
+                }
+                nodeNeighbors[worst] = nodeNeighbors[count - 1];
+                count--;
+            }
+            neighborCounts[level][node] = count;
+        }
+
+        /**
+         * Trims the neighbours of the nodes to their actual size.
+         */
+        int[][][] neighbors() {
+            for (int level = 0; level < neighbors.length; level++) {
+                for (int node = 0; node < vectors.length; node++) {
+                    if (neighbors[level][node] != null) {
+                        neighbors[level][node] = Arrays.copyOf(neighbors[level][node], neighborCounts[level][node]);
+                    }
+                }
+            }
+            return neighbors;
+        }
+    }
+
+    private static int maxConnections(int level) {
+        return level == 0 ? MAX_CONNECTIONS * 2 : MAX_CONNECTIONS;
+    }
+
+    private static final class ScoredNode {
+        final int node;
+        final float score;
+
+        ScoredNode(int node, float score) {
+            this.node = node;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Reads the vectors of the nodes of a graph, a reader must only be used by a single thread.
+     */
+    @FunctionalInterface
+    private interface NodeVectors {
+        float[] vector(int node) throws IOException;
+    }
+
+    /**
+     * Stores the vectors of the nodes of a graph.
+     */
+    private interface VectorStore {
+        NodeVectors reader() throws IOException;
+
+        long ramBytesUsed();
+    }
+
+    /**
+     * The vectors of a graph that is being written, in memory.
+     */
+    private static final class HeapVectorStore implements VectorStore {
+        private final float[][] vectors;
+
+        HeapVectorStore(float[][] vectors) {
+            this.vectors = vectors;
+        }
+
+        @Override
+        public NodeVectors reader() {
+            return node -> vectors[node];
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            long ramBytesUsed = RamUsageEstimator.shallowSizeOf(vectors);
+            for (float[] vector : vectors) {
+                ramBytesUsed += RamUsageEstimator.sizeOf(vector);
+            }
+            return ramBytesUsed;
+        }
+    }
+
+    /**
+     * The vectors of a graph that was read from the index files, read on demand.
+     */
+    private static final class IndexVectorStore implements VectorStore {
+        private final IndexInput data;
+        private final long offset;
+        private final int size;
+        private final int dims;
+
+        IndexVectorStore(IndexInput data, long offset, int size, int dims) {
+            this.data = data;
+            this.offset = offset;
+            this.size = size;
+            this.dims = dims;
+        }
+
+        @Override
+        public NodeVectors reader() throws IOException {
+            final long vectorBytes = (long) dims * Float.BYTES;
+            final RandomAccessInput slice = data.randomAccessSlice(offset, size * vectorBytes);
+            return node -> {
+                final float[] vector = new float[dims];
+                final long start = node * vectorBytes;
+                for (int dim = 0; dim < dims; dim++) {
+                    vector[dim] = Float.intBitsToFloat(slice.readInt(start + dim * Float.BYTES));
+                }
+                return vector;
+            };
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return 0;
+        }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.xpack.vectors.query;
+
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.query.AbstractQueryBuilder;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.xpack.vectors.mapper.DenseVectorFieldMapper;
+import org.elasticsearch.xpack.vectors.mapper.DenseVectorFieldMapper.DenseVectorFieldType;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.optionalConstructorArg;
+
+/**
+ * A query that returns the k nearest neighbours of a query vector in a {@code dense_vector} field, according to the
+ * nearest neighbour graphs of the segments. The field must be mapped with a {@code similarity}.
+ */
+public class KnnQueryBuilder extends AbstractQueryBuilder<KnnQueryBuilder> {
+    public static final String NAME = "knn";
+    public static final int DEFAULT_NUM_CANDIDATES = 100;
+    public static final int MAX_NUM_CANDIDATES = 10000;
+
+    private static final ParseField FIELD_FIELD = new ParseField("field");
+    private static final ParseField QUERY_VECTOR_FIELD = new ParseField("query_vector");
+    private static final ParseField K_FIELD = new ParseField("k");
+    private static final ParseField NUM_CANDIDATES_FIELD = new ParseField("num_candidates");
+
+    private final String field;
+    private final float[] queryVector;
+    private final int k;
+    private final int numCandidates;
+
+    public KnnQueryBuilder(String field, float[] queryVector, int k) {
+        this(field, queryVector, k, Math.max(k, DEFAULT_NUM_CANDIDATES));
+    }
+
+    public KnnQueryBuilder(String field, float[] queryVector, int k, int numCandidates) {
+        if (field == null) {
+            throw new IllegalArgumentException("[" + NAME + "] requires a [" + FIELD_FIELD.getPreferredName() + "]");
+        }
+        if (queryVector == null || queryVector.length == 0) {
+            throw new IllegalArgumentException("[" + NAME + "] requires a non empty [" + QUERY_VECTOR_FIELD.getPreferredName() + "]");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("[" + K_FIELD.getPreferredName() + "] must be greater than 0");
+        }
+        if (numCandidates < k || numCandidates > MAX_NUM_CANDIDATES) {
+            throw new IllegalArgumentException("[" + NUM_CANDIDATES_FIELD.getPreferredName() + "] must be in the range [" + k + ", "
+                + MAX_NUM_CANDIDATES + "] but was [" + numCandidates + "]");
+        }
+        this.field = field;
+        this.queryVector = queryVector;
+        this.k = k;
+        this.numCandidates = numCandidates;
+    }
+
+    /**
+     * Read from a stream.
+     */
+    public KnnQueryBuilder(StreamInput in) throws IOException {
+        super(in);
+        field = in.readString();
+        queryVector = in.readFloatArray();
+        k = in.readVInt();
+        numCandidates = in.readVInt();
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        out.writeString(field);
+        out.writeFloatArray(queryVector);
+        out.writeVInt(k);
+        out.writeVInt(numCandidates);
+    }
+
+    public String field() {
+        return field;
+    }
+
+    public float[] queryVector() {
+        return queryVector;
+    }
+
+    public int k() {
+        return k;
+    }
+
+    public int numCandidates() {
+        return numCandidates;
+    }
+
+    @Override
+    protected void doXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(NAME);
+        builder.field(FIELD_FIELD.getPreferredName(), field);
+        builder.array(QUERY_VECTOR_FIELD.getPreferredName(), queryVector);
+        builder.field(K_FIELD.getPreferredName(), k);
+        builder.field(NUM_CANDIDATES_FIELD.getPreferredName(), numCandidates);
+        printBoostAndQueryName(builder);
+        builder.endObject();
+    }
+
+    private static final ConstructingObjectParser<KnnQueryBuilder, Void> PARSER = new ConstructingObjectParser<>(NAME,
+        a -> {
+            @SuppressWarnings("unchecked")
+            List<Float> values = (List<Float>) a[1];
+            float[] queryVector = new float[values.size()];
+            for (int i = 0; i < queryVector.length; i++) {
+                queryVector[i] = values.get(i);
+            }
+            int k = (Integer) a[2];
+            return a[3] == null ? new KnnQueryBuilder((String) a[0], queryVector, k)
+                : new KnnQueryBuilder((String) a[0], queryVector, k, (Integer) a[3]);
+        });
+    static {
+        PARSER.declareString(constructorArg(), FIELD_FIELD);
+        PARSER.declareFloatArray(constructorArg(), QUERY_VECTOR_FIELD);
+        PARSER.declareInt(constructorArg(), K_FIELD);
+        PARSER.declareInt(optionalConstructorArg(), NUM_CANDIDATES_FIELD);
+        declareStandardFields(PARSER);
+    }
+
+    public static KnnQueryBuilder fromXContent(XContentParser parser) {
+        try {
+            return PARSER.apply(parser, null);
+        } catch (IllegalArgumentException e) {
+            throw new ParsingException(parser.getTokenLocation(), e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    @Override
+    protected Query doToQuery(QueryShardContext context) {
+        MappedFieldType fieldType = context.fieldMapper(field);
+        if (fieldType == null) {
+            return new MatchNoDocsQuery("field [" + field + "] does not exist");
+        }
+        if (fieldType instanceof DenseVectorFieldType == false) {
+            throw new IllegalArgumentException("[" + NAME + "] queries are only supported on [" + DenseVectorFieldMapper.CONTENT_TYPE
+                + "] fields, but [" + field + "] is of type [" + fieldType.typeName() + "]");
+        }
+        DenseVectorFieldType vectorFieldType = (DenseVectorFieldType) fieldType;
+        if (vectorFieldType.similarity() == null) {
+            throw new IllegalArgumentException("[" + NAME + "] queries require the field [" + field + "] to be mapped with a [similarity]");
+        }
+        if (vectorFieldType.dims() != queryVector.length) {
+            throw new IllegalArgumentException("The query vector has a different number of dimensions [" + queryVector.length
+                + "] than the field [" + field + "] [" + vectorFieldType.dims() + "]");
+        }
+        VectorDVIndexFieldData fieldData = (VectorDVIndexFieldData) context.getForField(fieldType);
+        return new KnnVectorQuery(field, queryVector, k, numCandidates, fieldData);
+    }
+
+    @Override
+    protected int doHashCode() {
+        return Objects.hash(field, Arrays.hashCode(queryVector), k, numCandidates);
+    }
+
+    @Override
+    protected boolean doEquals(KnnQueryBuilder other) {
+        return field.equals(other.field) && Arrays.equals(queryVector, other.queryVector)
+            && k == other.k && numCandidates == other.numCandidates;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.xpack.vectors.query;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.xpack.vectors.mapper.VectorSimilarity;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * A query that matches the k documents of each segment whose vectors are the closest to a query vector. The nearest
+ * neighbour graph that was written with the segment is searched when the scorer of the segment is created, segments
+ * without a graph compare the query vector with all their vectors. The matching documents are scored with the
+ * similarity of their vectors, so that the top k hits of the shard are the closest vectors of all its segments.
+ */
+public class KnnVectorQuery extends Query {
+
+    // the worst hit first, ties are broken by doc id like in top docs collectors
+    private static final Comparator<ScoreDoc> WORST_FIRST = (a, b) -> {
+        int cmp = Float.compare(a.score, b.score);
+        return cmp != 0 ? cmp : Integer.compare(b.doc, a.doc);
+    };
+
+    private final String field;
+    private final float[] queryVector;
+    private final int k;
+    private final int numCandidates;
+    private final VectorDVIndexFieldData fieldData;
+
+    public KnnVectorQuery(String field, float[] queryVector, int k, int numCandidates, VectorDVIndexFieldData fieldData) {
+        this.field = Objects.requireNonNull(field);
+        this.queryVector = Objects.requireNonNull(queryVector);
+        this.k = k;
+        this.numCandidates = numCandidates;
+        this.fieldData = Objects.requireNonNull(fieldData);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public float[] getQueryVector() {
+        return queryVector;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int getNumCandidates() {
+        return numCandidates;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) {
+        return new Weight(this) {
+            @Override
+            public void extractTerms(Set<Term> terms) {
+            }
+
+            @Override
+            public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+                for (ScoreDoc hit : searchLeaf(context)) {
+                    if (hit.doc == doc) {
+                        return Explanation.match(hit.score * boost, "vector similarity of [" + field + "]");
+                    }
+                }
+                return Explanation.noMatch("not in the top [" + k + "] nearest neighbours of the query vector in its segment");
+            }
+
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                final ScoreDoc[] hits = searchLeaf(context);
+                if (hits.length == 0) {
+                    return null;
+                }
+                return new TopDocsScorer(this, hits, boost);
+            }
+
+            @Override
+            public boolean isCacheable(LeafReaderContext ctx) {
+                // the nearest neighbours depend on the deleted documents of the segment
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Finds the nearest neighbours of the query vector in a segment.
+     *
+     * @return the nearest live documents of the segment, sorted by doc id
+     */
+    private ScoreDoc[] searchLeaf(LeafReaderContext context) throws IOException {
+        final Bits liveDocs = context.reader().getLiveDocs();
+        final HnswGraph graph = fieldData.loadGraph(context);
+        final ScoreDoc[] hits;
+        if (graph != null) {
+            hits = graph.search(queryVector, k, numCandidates, liveDocs);
+        } else {
+            hits = exactSearch(context, liveDocs);
+        }
+        Arrays.sort(hits, Comparator.comparingInt(hit -> hit.doc));
+        return hits;
+    }
+
+    /**
+     * Compares the query vector with all the vectors of a segment that has no nearest neighbour graph.
+     */
+    private ScoreDoc[] exactSearch(LeafReaderContext context, Bits liveDocs) throws IOException {
+        final VectorSimilarity similarity = fieldData.similarity();
+        final float[] query = HnswGraph.prepareQuery(queryVector, similarity);
+        final BinaryDocValues values = DocValues.getBinary(context.reader(), field);
+        final PriorityQueue<ScoreDoc> hits = new PriorityQueue<>(WORST_FIRST);
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+            if (liveDocs != null && liveDocs.get(doc) == false) {
+                continue;
+            }
+            final float[] vector = HnswGraph.decode(values.binaryValue(), fieldData.dims(), similarity.normalize());
+            final float score = similarity.score(query, vector);
+            if (hits.size() < k) {
+                hits.add(new ScoreDoc(doc, score));
+            } else if (score > hits.peek().score) {
+                hits.poll();
+                hits.add(new ScoreDoc(doc, score));
+            }
+        }
+        return hits.toArray(new ScoreDoc[0]);
+    }
+
+    @Override
+    public String toString(String field) {
+        return "KnnVectorQuery(field=" + this.field + ", k=" + k + ", num_candidates=" + numCandidates + ")";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (sameClassAs(obj) == false) {
+            return false;
+        }
+        KnnVectorQuery other = (KnnVectorQuery) obj;
+        return field.equals(other.field) && Arrays.equals(queryVector, other.queryVector)
+            && k == other.k && numCandidates == other.numCandidates;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(classHash(), field, Arrays.hashCode(queryVector), k, numCandidates);
+    }
+
+    /**
+     * Iterates over the nearest neighbours of a segment, with their pre-computed scores.
+     */
+    private static final class TopDocsScorer extends Scorer {
+        private final int[] docs;
+        private final float[] scores;
+        private final float boost;
+        private int index = -1;
+
+        TopDocsScorer(Weight weight, ScoreDoc[] hits, float boost) {
+            super(weight);
+            this.docs = new int[hits.length];
+            this.scores = new float[hits.length];
+            for (int i = 0; i < hits.length; i++) {
+                docs[i] = hits[i].doc;
+                scores[i] = hits[i].score;
+            }
+            this.boost = boost;
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return new DocIdSetIterator() {
+                @Override
+                public int docID() {
+                    return TopDocsScorer.this.docID();
+                }
+
+                @Override
+                public int nextDoc() {
+                    index++;
+                    return docID();
+                }
+
+                @Override
+                public int advance(int target) {
+                    final int lowerBound = Arrays.binarySearch(docs, target);
+                    index = Math.max(index + 1, lowerBound < 0 ? -1 - lowerBound : lowerBound);
+                    return docID();
+                }
+
+                @Override
+                public long cost() {
+                    return docs.length;
+                }
+            };
+        }
+
+        @Override
+        public float getMaxScore(int upTo) {
+            float maxScore = 0;
+            for (int i = Math.max(index, 0); i < docs.length && docs[i] <= upTo; i++) {
+                maxScore = Math.max(maxScore, scores[i]);
+            }
+            return maxScore * boost;
+        }
+
+        @Override
+        public float score() {
+            return scores[index] * boost;
+        }
+
+        @Override
+        public int docID() {
+            if (index < 0) {
+                return -1;
+            }
+            return index < docs.length ? docs[index] : DocIdSetIterator.NO_MORE_DOCS;
+        }
+    }
+}
@@ -14,15 +14,25 @@ import org.elasticsearch.script.ScoreScript;
 import org.elasticsearch.xpack.vectors.mapper.VectorEncoderDecoder;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.List;
 
+import static org.elasticsearch.xpack.vectors.mapper.VectorEncoderDecoder.decodeDenseVectorValue;
+
+/**
+ * The functions that compare a query vector with the dense vectors of documents in scripts. A function is bound to a script
+ * instance, that is to a segment, so the query vector is prepared once per segment. The document vectors are read in place
+ * from the doc values bytes, without allocating.
+ */
 public class ScoreScriptUtils {
 
     public static class DenseVectorFunction {
         final ScoreScript scoreScript;
         final float[] queryVector;
         final DenseVectorScriptDocValues docValues;
+        final Version indexVersion;
+        // whether the document vectors end with their magnitude
+        final boolean hasMagnitude;
+        private final int encodedLength;
 
         public DenseVectorFunction(ScoreScript scoreScript,
                                    List<Number> queryVector,
@@ -43,6 +53,8 @@ public class ScoreScriptUtils {
                                    boolean normalizeQuery) {
             this.scoreScript = scoreScript;
             this.docValues = (DenseVectorScriptDocValues) scoreScript.getDoc().get(field);
+            this.indexVersion = scoreScript._getIndexVersion();
+            this.hasMagnitude = indexVersion.onOrAfter(Version.V_7_5_0);
 
             this.queryVector = new float[queryVector.size()];
             double queryMagnitude = 0.0;
@@ -58,6 +70,7 @@ public class ScoreScriptUtils {
                     this.queryVector[dim] /= queryMagnitude;
                 }
             }
+            this.encodedLength = (this.queryVector.length + (hasMagnitude ? 1 : 0)) * VectorEncoderDecoder.INT_BYTES;
         }
 
         BytesRef getEncodedVector() {
@@ -73,8 +86,8 @@ public class ScoreScriptUtils {
                 throw new IllegalArgumentException("A document doesn't have a value for a vector field!");
             }
 
-            int vectorLength = VectorEncoderDecoder.denseVectorLength(scoreScript._getIndexVersion(), vector);
-            if (queryVector.length != vectorLength) {
+            if (vector.length != encodedLength) {
+                int vectorLength = VectorEncoderDecoder.denseVectorLength(indexVersion, vector);
                 throw new IllegalArgumentException("The query vector has a different number of dimensions [" +
                     queryVector.length + "] than the document vectors [" + vectorLength + "].");
             }
@@ -91,12 +104,9 @@ public class ScoreScriptUtils {
 
         public double l1norm() {
             BytesRef vector = getEncodedVector();
-            ByteBuffer byteBuffer = ByteBuffer.wrap(vector.bytes, vector.offset, vector.length);
-
             double l1norm = 0;
-
-            for (float queryValue : queryVector) {
-                l1norm += Math.abs(queryValue - byteBuffer.getFloat());
+            for (int dim = 0; dim < queryVector.length; dim++) {
+                l1norm += Math.abs(queryVector[dim] - decodeDenseVectorValue(vector, dim));
             }
             return l1norm;
         }
@@ -111,11 +121,9 @@ public class ScoreScriptUtils {
 
         public double l2norm() {
             BytesRef vector = getEncodedVector();
-            ByteBuffer byteBuffer = ByteBuffer.wrap(vector.bytes, vector.offset, vector.length);
-
             double l2norm = 0;
-            for (float queryValue : queryVector) {
-                double diff = queryValue - byteBuffer.getFloat();
+            for (int dim = 0; dim < queryVector.length; dim++) {
+                double diff = queryVector[dim] - decodeDenseVectorValue(vector, dim);
                 l2norm += diff * diff;
             }
             return Math.sqrt(l2norm);
@@ -130,14 +138,7 @@ public class ScoreScriptUtils {
         }
 
         public double dotProduct() {
-            BytesRef vector = getEncodedVector();
-            ByteBuffer byteBuffer = ByteBuffer.wrap(vector.bytes, vector.offset, vector.length);
-
-            double dotProduct = 0;
-            for (float queryValue : queryVector) {
-                dotProduct += queryValue * byteBuffer.getFloat();
-            }
-            return dotProduct;
+            return dotProduct(queryVector, getEncodedVector());
         }
     }
 
@@ -150,19 +151,15 @@ public class ScoreScriptUtils {
 
         public double cosineSimilarity() {
             BytesRef vector = getEncodedVector();
-            ByteBuffer byteBuffer = ByteBuffer.wrap(vector.bytes, vector.offset, vector.length);
-
-            double dotProduct = 0.0;
-            double vectorMagnitude = 0.0f;
-            if (scoreScript._getIndexVersion().onOrAfter(Version.V_7_5_0)) {
-                for (float queryValue : queryVector) {
-                    dotProduct += queryValue * byteBuffer.getFloat();
-                }
-                vectorMagnitude = VectorEncoderDecoder.decodeVectorMagnitude(scoreScript._getIndexVersion(), vector);
+            double dotProduct = dotProduct(queryVector, vector);
+            double vectorMagnitude;
+            if (hasMagnitude) {
+                // the magnitude is computed at index time
+                vectorMagnitude = VectorEncoderDecoder.decodeVectorMagnitude(indexVersion, vector);
             } else {
-                for (float queryValue : queryVector) {
-                    float docValue = byteBuffer.getFloat();
-                    dotProduct += queryValue * docValue;
+                vectorMagnitude = 0.0f;
+                for (int dim = 0; dim < queryVector.length; dim++) {
+                    float docValue = decodeDenseVectorValue(vector, dim);
                     vectorMagnitude += docValue * docValue;
                 }
                 vectorMagnitude = (float) Math.sqrt(vectorMagnitude);
@@ -170,4 +167,12 @@ public class ScoreScriptUtils {
             return dotProduct / vectorMagnitude;
         }
     }
+
+    private static double dotProduct(float[] queryVector, BytesRef vector) {
+        double dotProduct = 0;
+        for (int dim = 0; dim < queryVector.length; dim++) {
+            dotProduct += queryVector[dim] * decodeDenseVectorValue(vector, dim);
+        }
+        return dotProduct;
+    }
 }
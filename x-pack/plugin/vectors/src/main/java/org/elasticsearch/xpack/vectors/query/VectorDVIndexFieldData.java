@@ -20,12 +20,55 @@ import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.xpack.vectors.codec.HnswGraphDocValuesFormat;
+import org.elasticsearch.xpack.vectors.mapper.DenseVectorFieldMapper.DenseVectorFieldType;
+import org.elasticsearch.xpack.vectors.mapper.VectorSimilarity;
+
+import java.io.IOException;
 
 
 public class VectorDVIndexFieldData extends DocValuesIndexFieldData implements IndexFieldData<VectorDVAtomicFieldData> {
 
+    private final int dims;
+    @Nullable
+    private final VectorSimilarity similarity;
+
     public VectorDVIndexFieldData(Index index, String fieldName) {
+        this(index, fieldName, 0, null);
+    }
+
+    private VectorDVIndexFieldData(Index index, String fieldName, int dims, @Nullable VectorSimilarity similarity) {
         super(index, fieldName);
+        this.dims = dims;
+        this.similarity = similarity;
+    }
+
+    /**
+     * Returns the similarity of the nearest neighbour graphs of the field.
+     */
+    public VectorSimilarity similarity() {
+        if (similarity == null) {
+            throw new IllegalArgumentException("Field [" + fieldName + "] is not indexed in a nearest neighbour graph, " +
+                "set [similarity] in its mapping to enable it");
+        }
+        return similarity;
+    }
+
+    /**
+     * Returns the number of dimensions of the vectors of the field.
+     */
+    public int dims() {
+        return dims;
+    }
+
+    /**
+     * Returns the nearest neighbour graph that was written with the vectors of a segment, or <code>null</code> if the
+     * segment has no graph, for instance because its vectors were indexed before the field had a similarity.
+     */
+    @Nullable
+    public HnswGraph loadGraph(LeafReaderContext context) throws IOException {
+        similarity();
+        return HnswGraphDocValuesFormat.getGraph(context.reader().getBinaryDocValues(fieldName));
     }
 
     @Override
@@ -49,6 +92,11 @@ public class VectorDVIndexFieldData extends DocValuesIndexFieldData implements I
         public IndexFieldData<?> build(IndexSettings indexSettings, MappedFieldType fieldType, IndexFieldDataCache cache,
                                        CircuitBreakerService breakerService, MapperService mapperService) {
             final String fieldName = fieldType.name();
+            if (fieldType instanceof DenseVectorFieldType) {
+                DenseVectorFieldType vectorFieldType = (DenseVectorFieldType) fieldType;
+                return new VectorDVIndexFieldData(indexSettings.getIndex(), fieldName, vectorFieldType.dims(),
+                    vectorFieldType.similarity());
+            }
             return new VectorDVIndexFieldData(indexSettings.getIndex(), fieldName);
         }
 
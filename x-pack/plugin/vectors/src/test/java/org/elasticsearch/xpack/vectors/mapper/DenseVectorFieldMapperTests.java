@@ -28,6 +28,7 @@ import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 import org.elasticsearch.xpack.core.LocalStateCompositeXPackPlugin;
 import org.elasticsearch.xpack.vectors.Vectors;
+import org.elasticsearch.xpack.vectors.codec.HnswGraphDocValuesFormat;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -64,6 +65,39 @@ public class DenseVectorFieldMapperTests extends ESSingleNodeTestCase {
         assertEquals(e.getMessage(), "The number of dimensions for field [my-dense-vector] should be in the range [1, 2048]");
     }
 
+    public void testSimilarity() throws IOException {
+        IndexService indexService = createIndex("test-index");
+        DocumentMapperParser parser = indexService.mapperService().documentMapperParser();
+        String mapping = Strings.toString(XContentFactory.jsonBuilder()
+            .startObject()
+            .startObject("_doc")
+            .startObject("properties")
+            .startObject("my-dense-vector").field("type", "dense_vector").field("dims", 3).field("similarity", "cosine")
+            .endObject()
+            .endObject()
+            .endObject()
+            .endObject());
+        DocumentMapper mapper = parser.parse("_doc", new CompressedXContent(mapping));
+        DenseVectorFieldMapper fieldMapper = (DenseVectorFieldMapper) mapper.mappers().getMapper("my-dense-vector");
+        assertEquals(VectorSimilarity.COSINE, fieldMapper.fieldType().similarity());
+        // the nearest neighbour graphs are written with the doc values
+        assertThat(fieldMapper.fieldType().docValuesFormat(), instanceOf(HnswGraphDocValuesFormat.class));
+        assertThat(mapper.mappingSource().toString(), containsString("\"similarity\":\"cosine\""));
+
+        String invalidMapping = Strings.toString(XContentFactory.jsonBuilder()
+            .startObject()
+            .startObject("_doc")
+            .startObject("properties")
+            .startObject("my-dense-vector").field("type", "dense_vector").field("dims", 3).field("similarity", "hamming")
+            .endObject()
+            .endObject()
+            .endObject()
+            .endObject());
+        MapperParsingException e = expectThrows(MapperParsingException.class,
+            () -> parser.parse("_doc", new CompressedXContent(invalidMapping)));
+        assertThat(e.getMessage(), containsString("Invalid [similarity] for field [my-dense-vector]"));
+    }
+
     public void testDefaults() throws Exception {
         Version indexVersion = Version.CURRENT;
         IndexService indexService = createIndex("test-index");
@@ -98,12 +98,15 @@ public class DenseVectorFunctionTests extends ESTestCase {
     }
 
     private static BytesRef mockEncodeDenseVector(float[] values, Version indexVersion) {
-        byte[] bytes = indexVersion.onOrAfter(Version.V_7_5_0)
-            ? new byte[VectorEncoderDecoder.INT_BYTES * values.length + VectorEncoderDecoder.INT_BYTES]
-            : new byte[VectorEncoderDecoder.INT_BYTES * values.length];
+        int length = indexVersion.onOrAfter(Version.V_7_5_0)
+            ? VectorEncoderDecoder.INT_BYTES * values.length + VectorEncoderDecoder.INT_BYTES
+            : VectorEncoderDecoder.INT_BYTES * values.length;
+        // the vector is read in place, at any offset of the doc values bytes
+        int offset = randomIntBetween(0, 7);
+        byte[] bytes = new byte[offset + length + randomIntBetween(0, 7)];
         double dotProduct = 0f;
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, offset, length);
         for (float value : values) {
             byteBuffer.putFloat(value);
             dotProduct += value * value;
@@ -114,6 +117,6 @@ public class DenseVectorFunctionTests extends ESTestCase {
             float vectorMagnitude = (float) Math.sqrt(dotProduct);
             byteBuffer.putFloat(vectorMagnitude);
         }
-        return new BytesRef(bytes);
+        return new BytesRef(bytes, offset, length);
     }
 }
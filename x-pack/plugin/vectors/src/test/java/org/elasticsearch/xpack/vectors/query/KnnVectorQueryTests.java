@@ -0,0 +1,234 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.xpack.vectors.query;
+
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.lucene84.Lucene84Codec;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.mapper.ContentPath;
+import org.elasticsearch.index.mapper.Mapper;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.IndexSettingsModule;
+import org.elasticsearch.xpack.vectors.codec.HnswGraphDocValuesFormat;
+import org.elasticsearch.xpack.vectors.mapper.DenseVectorFieldMapper;
+import org.elasticsearch.xpack.vectors.mapper.VectorSimilarity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class KnnVectorQueryTests extends ESTestCase {
+
+    private static final String FIELD = "vector";
+
+    public void testRecall() throws IOException {
+        final int dims = randomIntBetween(2, 16);
+        final float[][] vectors = randomVectors(randomIntBetween(500, 1000), dims);
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, writerConfig(dims, VectorSimilarity.L2_NORM))) {
+            indexVectors(writer, vectors);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                VectorDVIndexFieldData fieldData = fieldData(dims, VectorSimilarity.L2_NORM);
+                int k = 10;
+                int found = 0;
+                int numQueries = 20;
+                for (int i = 0; i < numQueries; i++) {
+                    float[] queryVector = randomVector(dims);
+                    Set<Integer> expected = bruteForce(vectors, queryVector, k, VectorSimilarity.L2_NORM);
+                    TopDocs topDocs = searcher.search(new KnnVectorQuery(FIELD, queryVector, k, 100, fieldData), k);
+                    assertThat(topDocs.scoreDocs.length, equalTo(k));
+                    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                        int id = Integer.parseInt(searcher.doc(scoreDoc.doc).get("id"));
+                        assertEquals(VectorSimilarity.L2_NORM.score(queryVector, vectors[id]), scoreDoc.score, 0f);
+                        if (expected.contains(id)) {
+                            found++;
+                        }
+                    }
+                }
+                assertThat((double) found / (k * numQueries), greaterThanOrEqualTo(0.9));
+            }
+        }
+    }
+
+    public void testDeletedDocuments() throws IOException {
+        final int dims = randomIntBetween(2, 16);
+        final float[][] vectors = randomVectors(randomIntBetween(100, 300), dims);
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, writerConfig(dims, VectorSimilarity.COSINE))) {
+            indexVectors(writer, vectors);
+            Set<Integer> deleted = new HashSet<>();
+            for (int id = 0; id < vectors.length; id++) {
+                if (randomBoolean()) {
+                    writer.deleteDocuments(new Term("id", Integer.toString(id)));
+                    deleted.add(id);
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                VectorDVIndexFieldData fieldData = fieldData(dims, VectorSimilarity.COSINE);
+                int k = 5;
+                float[] queryVector = randomVector(dims);
+                Query query = new KnnVectorQuery(FIELD, queryVector, k, 100, fieldData);
+                TopDocs topDocs = searcher.search(query, vectors.length);
+                // each segment returns its own nearest neighbours
+                assertThat(topDocs.scoreDocs.length, greaterThanOrEqualTo(Math.min(k, vectors.length - deleted.size())));
+                assertThat(topDocs.scoreDocs.length, lessThanOrEqualTo(k * reader.leaves().size()));
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    int id = Integer.parseInt(searcher.doc(scoreDoc.doc).get("id"));
+                    assertFalse(deleted.contains(id));
+                }
+                assertThat(searcher.count(query), equalTo(topDocs.scoreDocs.length));
+            }
+        }
+    }
+
+    public void testGraphIsWrittenOnFlushAndMerge() throws IOException {
+        final int dims = randomIntBetween(2, 16);
+        final float[][] vectors = randomVectors(randomIntBetween(100, 300), dims);
+        final IndexWriterConfig config = writerConfig(dims, VectorSimilarity.L2_NORM).setMergePolicy(newLogMergePolicy());
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, config)) {
+            indexVectors(writer, vectors);
+            writer.deleteDocuments(new Term("id", "0"));
+            VectorDVIndexFieldData fieldData = fieldData(dims, VectorSimilarity.L2_NORM);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                for (LeafReaderContext context : reader.leaves()) {
+                    // deleted documents stay in the graph until the segment is merged
+                    assertThat(fieldData.loadGraph(context).size(), equalTo(context.reader().maxDoc()));
+                }
+            }
+            writer.forceMerge(1);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                assertThat(reader.leaves().size(), equalTo(1));
+                assertThat(fieldData.loadGraph(reader.leaves().get(0)).size(), equalTo(vectors.length - 1));
+            }
+        }
+    }
+
+    public void testSegmentsWithoutGraph() throws IOException {
+        final int dims = randomIntBetween(2, 16);
+        final float[][] vectors = randomVectors(randomIntBetween(10, 100), dims);
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig())) {
+            indexVectors(writer, vectors);
+            writer.forceMerge(1);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                VectorDVIndexFieldData fieldData = fieldData(dims, VectorSimilarity.L2_NORM);
+                assertNull(fieldData.loadGraph(reader.leaves().get(0)));
+                // the vectors of segments that have no graph are all compared with the query vector
+                int k = randomIntBetween(1, vectors.length);
+                float[] queryVector = randomVector(dims);
+                TopDocs topDocs = searcher.search(new KnnVectorQuery(FIELD, queryVector, k, 100, fieldData), k);
+                Set<Integer> ids = new HashSet<>();
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    ids.add(Integer.parseInt(searcher.doc(scoreDoc.doc).get("id")));
+                }
+                assertThat(ids, equalTo(bruteForce(vectors, queryVector, k, VectorSimilarity.L2_NORM)));
+            }
+        }
+    }
+
+    public void testFieldWithoutSimilarity() throws IOException {
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig())) {
+            indexVectors(writer, randomVectors(10, 3));
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                Query query = new KnnVectorQuery(FIELD, randomVector(3), 1, 10, fieldData(3, null));
+                IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> new IndexSearcher(reader).search(query, 1));
+                assertThat(e.getMessage(), equalTo("Field [vector] is not indexed in a nearest neighbour graph, " +
+                    "set [similarity] in its mapping to enable it"));
+            }
+        }
+    }
+
+    private static VectorDVIndexFieldData fieldData(int dims, VectorSimilarity similarity) {
+        Settings settings = Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT).build();
+        DenseVectorFieldMapper mapper = new DenseVectorFieldMapper.Builder(FIELD).dims(dims).similarity(similarity)
+            .build(new Mapper.BuilderContext(settings, new ContentPath()));
+        return (VectorDVIndexFieldData) new VectorDVIndexFieldData.Builder().build(IndexSettingsModule.newIndexSettings("test", settings),
+            mapper.fieldType(), new IndexFieldDataCache.None(), new NoneCircuitBreakerService(), null);
+    }
+
+    private static IndexWriterConfig writerConfig(int dims, VectorSimilarity similarity) {
+        final DocValuesFormat format = new HnswGraphDocValuesFormat(dims, similarity);
+        return new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE).setCodec(new Lucene84Codec() {
+            @Override
+            public DocValuesFormat getDocValuesFormatForField(String field) {
+                return FIELD.equals(field) ? format : super.getDocValuesFormatForField(field);
+            }
+        });
+    }
+
+    private static void indexVectors(IndexWriter writer, float[][] vectors) throws IOException {
+        for (int id = 0; id < vectors.length; id++) {
+            Document doc = new Document();
+            doc.add(new StringField("id", Integer.toString(id), Field.Store.YES));
+            ByteBuffer buffer = ByteBuffer.allocate(vectors[id].length * Float.BYTES);
+            for (float value : vectors[id]) {
+                buffer.putFloat(value);
+            }
+            doc.add(new BinaryDocValuesField(FIELD, new BytesRef(buffer.array())));
+            writer.addDocument(doc);
+            if (rarely()) {
+                writer.flush();
+            }
+        }
+    }
+
+    private static Set<Integer> bruteForce(float[][] vectors, float[] queryVector, int k, VectorSimilarity similarity) {
+        Integer[] ids = new Integer[vectors.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        Arrays.sort(ids, (a, b) -> Float.compare(similarity.score(queryVector, vectors[b]), similarity.score(queryVector, vectors[a])));
+        return new HashSet<>(Arrays.asList(ids).subList(0, k));
+    }
+
+    private static float[][] randomVectors(int count, int dims) {
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = randomVector(dims);
+        }
+        return vectors;
+    }
+
+    private static float[] randomVector(int dims) {
+        float[] vector = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            vector[i] = randomFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}